@@ -4,18 +4,17 @@ import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
 
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.TransformerFactoryConfigurationError;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
@@ -30,6 +29,9 @@ import com.workflowconversion.portlet.core.resource.Application;
 import com.workflowconversion.portlet.core.resource.Queue;
 import com.workflowconversion.portlet.core.resource.Resource;
 import com.workflowconversion.portlet.core.resource.ResourceProvider;
+import com.workflowconversion.portlet.core.search.ApplicationSearchQuery;
+import com.workflowconversion.portlet.core.search.ApplicationSearchResult;
+import com.workflowconversion.portlet.core.utils.XMLFactories;
 
 /**
  * This class handles instances of {@link Resource}, but JAX-RS also defines a <i>Resource</i> as a class that contains
@@ -74,9 +76,7 @@ public class ApplicationsResource {
 		// right tools for the right job ;)
 		LOG.info("Servicing REST-API request (GET /apps)");
 
-		final DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
-		final DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
-		final Document document = documentBuilder.newDocument();
+		final Document document = XMLFactories.getDocumentBuilder().newDocument();
 		final Element rootElement = document.createElement("resources");
 
 		for (final ResourceProvider provider : Settings.getInstance().getResourceProviders()) {
@@ -105,7 +105,89 @@ public class ApplicationsResource {
 		}
 		document.appendChild(rootElement);
 
-		final Transformer transformer = TransformerFactory.newInstance().newTransformer();
+		return Response.ok(toXml(document), MediaType.APPLICATION_XML).build();
+	}
+
+	/**
+	 * Searches applications of all resources and returns a single page of results in XML format, e.g.:
+	 * <pre>{@code
+	 * <applications total="2" offset="0">
+	 *   <application name="SampleApp" version="1.1" path="/usr/bin/sampleapp" description="Sample app"
+	 *                resourceName="pbs-cluster.university.eu" resourceType="pbs"/>
+	 *   <application name="SampleApp" version="1.2" path="/usr/bin/sampleapp" description="Sample app"
+	 *                resourceName="pbs-cluster.university.eu" resourceType="pbs"/>
+	 * </applications>
+	 * }</pre>
+	 * 
+	 * Applications are ordered by name, version and resource. All parameters are optional.
+	 * 
+	 * @param name
+	 *            prefix of the application name, ignoring case.
+	 * @param contains
+	 *            text contained in the application name, ignoring case.
+	 * @param text
+	 *            words contained in the application description, ignoring case.
+	 * @param minVersion
+	 *            lowest version, inclusive.
+	 * @param maxVersion
+	 *            highest version, inclusive.
+	 * @param type
+	 *            type of the resource on which the applications reside.
+	 * @param offset
+	 *            number of matching applications to skip.
+	 * @param limit
+	 *            maximum number of applications to return.
+	 * @return
+	 * @throws TransformerFactoryConfigurationError
+	 * @throws ParserConfigurationException
+	 * @throws TransformerException
+	 */
+	@GET
+	@Path("search")
+	@Produces(MediaType.APPLICATION_XML)
+	public Response search(@QueryParam("name") final String name, @QueryParam("contains") final String contains,
+			@QueryParam("text") final String text, @QueryParam("minVersion") final String minVersion,
+			@QueryParam("maxVersion") final String maxVersion, @QueryParam("type") final String type,
+			@QueryParam("offset") @DefaultValue("0") final int offset,
+			@QueryParam("limit") @DefaultValue("" + ApplicationSearchQuery.DEFAULT_LIMIT) final int limit)
+			throws TransformerFactoryConfigurationError, ParserConfigurationException, TransformerException {
+		LOG.info("Servicing REST-API request (GET /apps/search)");
+
+		if (offset < 0 || limit < 1 || limit > ApplicationSearchQuery.MAX_LIMIT) {
+			return Response.status(Response.Status.BAD_REQUEST)
+					.entity("offset cannot be negative and limit must be between 1 and "
+							+ ApplicationSearchQuery.MAX_LIMIT)
+					.type(MediaType.TEXT_PLAIN).build();
+		}
+		final ApplicationSearchQuery.Builder queryBuilder = new ApplicationSearchQuery.Builder();
+		queryBuilder.withNamePrefix(name).withNameSubstring(contains).withDescriptionText(text)
+				.withMinVersion(minVersion).withMaxVersion(maxVersion).withResourceType(type).withOffset(offset)
+				.withLimit(limit);
+		final ApplicationSearchResult result = Settings.getInstance().getAssetIndex().getSearchIndex()
+				.search(queryBuilder.newInstance());
+
+		final Document document = XMLFactories.getDocumentBuilder().newDocument();
+		final Element rootElement = document.createElement("applications");
+		rootElement.setAttribute("total", Integer.toString(result.getTotalHits()));
+		rootElement.setAttribute("offset", Integer.toString(result.getOffset()));
+		for (final ApplicationSearchResult.Hit hit : result.getHits()) {
+			final Application app = hit.getApplication();
+			final Element applicationElement = document.createElement("application");
+			applicationElement.setAttribute("name", app.getName());
+			applicationElement.setAttribute("version", app.getVersion());
+			applicationElement.setAttribute("path", app.getPath());
+			applicationElement.setAttribute("description", app.getDescription());
+			applicationElement.setAttribute("resourceName", hit.getResource().getName());
+			applicationElement.setAttribute("resourceType", hit.getResource().getType());
+			rootElement.appendChild(applicationElement);
+		}
+		document.appendChild(rootElement);
+
+		return Response.ok(toXml(document), MediaType.APPLICATION_XML).build();
+	}
+
+	private String toXml(final Document document) throws TransformerException {
+		final Transformer transformer = XMLFactories.getTransformer();
 		transformer.setOutputProperty(OutputKeys.INDENT, "yes");
 		final DOMSource source = new DOMSource(document);
 
@@ -113,6 +195,6 @@ public class ApplicationsResource {
 		final StreamResult streamResult = new StreamResult(writer);
 		transformer.transform(source, streamResult);
 
-		return Response.ok(writer.toString(), MediaType.APPLICATION_XML).build();
+		return writer.toString();
 	}
 }
@@ -1,8 +1,11 @@
 package com.workflowconversion.portlet.core;
 
+import java.io.ObjectStreamException;
 import java.io.Serializable;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
 
 import org.apache.commons.lang3.Validate;
 
@@ -10,13 +13,17 @@ import com.workflowconversion.portlet.core.exception.ApplicationException;
 import com.workflowconversion.portlet.core.execution.JobExecutionPropertiesHandler;
 import com.workflowconversion.portlet.core.middleware.MiddlewareProvider;
 import com.workflowconversion.portlet.core.resource.ResourceProvider;
+import com.workflowconversion.portlet.core.search.GlobalAssetIndex;
 import com.workflowconversion.portlet.core.validation.PortletSanityCheck;
 import com.workflowconversion.portlet.core.workflow.WorkflowExporterFactory;
 import com.workflowconversion.portlet.core.workflow.WorkflowManagerFactory;
 
 /**
  * Simple class that provides application settings that are configured when the application is started up.
- * 
+ *
+ * Executors are not serialized; deserialized instances are replaced by the current instance, which holds the executors
+ * of this application.
+ *
  * @author delagarza
  *
  */
@@ -30,12 +37,16 @@ public class Settings implements Serializable {
 	private final Class<? extends WorkflowExporterFactory> workflowExporterFactoryClass;
 	private final String workflowStagingAreaPath;
 	private final JobExecutionPropertiesHandler jobExecutionPropertiesHandler;
+	private final transient ExecutorService workflowImportExecutor;
+	private final transient ScheduledExecutorService resourceRefreshExecutor;
+	private final transient ExecutorService resourceDiscoveryExecutor;
+	private final GlobalAssetIndex assetIndex;
 
 	private static Settings INSTANCE;
 
 	/**
 	 * Sets the current instance.
-	 * 
+	 *
 	 * @param instance
 	 *            The current instance.
 	 */
@@ -56,7 +67,7 @@ public class Settings implements Serializable {
 
 	/**
 	 * Obtains the current instance.
-	 * 
+	 *
 	 * @return The current instance.
 	 */
 	public synchronized static Settings getInstance() {
@@ -67,9 +78,14 @@ public class Settings implements Serializable {
 		return INSTANCE;
 	}
 
+	// executors can't be serialized and there is only one instance per application anyway
+	private Object readResolve() throws ObjectStreamException {
+		return getInstance();
+	}
+
 	/**
 	 * Obtains the application providers.
-	 * 
+	 *
 	 * @return The application providers.
 	 */
 	public Collection<ResourceProvider> getResourceProviders() {
@@ -126,11 +142,42 @@ public class Settings implements Serializable {
 		return jobExecutionPropertiesHandler;
 	}
 
+	/**
+	 * @return the executor used to import workflow archives concurrently. Its size is given by the
+	 *         {@code workflow.import.threads} context parameter; it is shut down when the context is destroyed.
+	 */
+	public ExecutorService getWorkflowImportExecutor() {
+		return workflowImportExecutor;
+	}
+
+	/**
+	 * @return the executor used to periodically refresh resource providers in the background.
+	 */
+	public ScheduledExecutorService getResourceRefreshExecutor() {
+		return resourceRefreshExecutor;
+	}
+
+	/**
+	 * @return the executor used to query remote resources concurrently.
+	 */
+	public ExecutorService getResourceDiscoveryExecutor() {
+		return resourceDiscoveryExecutor;
+	}
+
+	/**
+	 * @return the index of the resources, applications and queues of all resource providers.
+	 */
+	public GlobalAssetIndex getAssetIndex() {
+		return assetIndex;
+	}
+
 	private Settings(final PortletSanityCheck portletSanityCheck, final Collection<ResourceProvider> resourceProviders,
 			final MiddlewareProvider middlewareProvider,
 			final Class<? extends WorkflowExporterFactory> workflowExporterFactoryClass,
 			final Class<? extends WorkflowManagerFactory> workflowManagerFactoryClass,
-			final String workflowStagingAreaPath, final JobExecutionPropertiesHandler jobExecutionPropertiesHandler) {
+			final String workflowStagingAreaPath, final JobExecutionPropertiesHandler jobExecutionPropertiesHandler,
+			final ExecutorService workflowImportExecutor, final ScheduledExecutorService resourceRefreshExecutor,
+			final ExecutorService resourceDiscoveryExecutor) {
 		Validate.notNull(portletSanityCheck,
 				"portletSanityCheck cannot be null, please use the Builder.withPortletSanityCheck() method to set a non-null value");
 		Validate.notEmpty(resourceProviders,
@@ -141,6 +188,12 @@ public class Settings implements Serializable {
 				"workflowManagerFactoryClass cannot be null, please use the Builder.withWorkflowProviderFactoryClass() method to set a non-null value");
 		Validate.notNull(workflowExporterFactoryClass,
 				"workflowExporterFactoryClass cannot be null, please use the Builder.withWorkflowExporterFactoryClass() method to set a non-null value");
+		Validate.notNull(workflowImportExecutor,
+				"workflowImportExecutor cannot be null, please use the Builder.withWorkflowImportExecutor() method to set a non-null value");
+		Validate.notNull(resourceRefreshExecutor,
+				"resourceRefreshExecutor cannot be null, please use the Builder.withResourceRefreshExecutor() method to set a non-null value");
+		Validate.notNull(resourceDiscoveryExecutor,
+				"resourceDiscoveryExecutor cannot be null, please use the Builder.withResourceDiscoveryExecutor() method to set a non-null value");
 		this.resourceProviders = Collections.unmodifiableCollection(resourceProviders);
 		this.portletSanityCheck = portletSanityCheck;
 		this.middlewareProvider = middlewareProvider;
@@ -150,11 +203,16 @@ public class Settings implements Serializable {
 		this.workflowStagingAreaPath = workflowStagingAreaPath;
 		// execution properties handler might be unused
 		this.jobExecutionPropertiesHandler = jobExecutionPropertiesHandler;
+		this.workflowImportExecutor = workflowImportExecutor;
+		this.resourceRefreshExecutor = resourceRefreshExecutor;
+		this.resourceDiscoveryExecutor = resourceDiscoveryExecutor;
+		// kept up to date by the resource providers, which haven't been initialized yet
+		this.assetIndex = new GlobalAssetIndex(this.resourceProviders, resourceRefreshExecutor);
 	}
 
 	/**
 	 * Builder class for {@link Settings}.
-	 * 
+	 *
 	 * @author delagarza
 	 *
 	 */
@@ -166,10 +224,13 @@ public class Settings implements Serializable {
 		private Class<? extends WorkflowExporterFactory> workflowExporterFactoryClass;
 		private String workflowStagingAreaPath;
 		private JobExecutionPropertiesHandler jobExecutionPropertiesHandler;
+		private ExecutorService workflowImportExecutor;
+		private ScheduledExecutorService resourceRefreshExecutor;
+		private ExecutorService resourceDiscoveryExecutor;
 
 		/**
 		 * Sets the application providers.
-		 * 
+		 *
 		 * @param resourceProviders
 		 *            The collection of resource providers.
 		 * @return the instance of {@code this} {@link Builder}.
@@ -181,7 +242,7 @@ public class Settings implements Serializable {
 
 		/**
 		 * Sets the middleware provider.
-		 * 
+		 *
 		 * @param middlewareProvider
 		 *            the middleware provider.
 		 * @return the instance of {@code this} {@link Builder}.
@@ -193,7 +254,7 @@ public class Settings implements Serializable {
 
 		/**
 		 * Sets the portlet sanity check.
-		 * 
+		 *
 		 * @param portletSanityCheck
 		 *            the portlet sanity check.
 		 * @return the instance of {@code this} {@link Builder}.
@@ -205,7 +266,7 @@ public class Settings implements Serializable {
 
 		/**
 		 * Sets the workflow exporter factory.
-		 * 
+		 *
 		 * @param workflowExporterFactoryClass
 		 *            the factory.
 		 * @return the instance of {@code this} {@link Builder}.
@@ -218,7 +279,7 @@ public class Settings implements Serializable {
 
 		/**
 		 * Sets the workflow manager factory.
-		 * 
+		 *
 		 * @param workflowManagerFactoryClass
 		 *            the workflow provider factory.
 		 * @return the instance of {@code this} {@link Builder}.
@@ -231,7 +292,7 @@ public class Settings implements Serializable {
 
 		/**
 		 * Sets the path of the workflow staging area to use.
-		 * 
+		 *
 		 * @param workflowStagingAreaPath
 		 *            the path to use.
 		 * @return the instance of {@code this} {@link Builder}.
@@ -243,7 +304,7 @@ public class Settings implements Serializable {
 
 		/**
 		 * Sets the job execution properties handler to use.
-		 * 
+		 *
 		 * @param jobExecutionPropertiesHandler
 		 *            the handler.
 		 * @return the instance of {@code this} {@link Builder}.
@@ -254,14 +315,51 @@ public class Settings implements Serializable {
 			return this;
 		}
 
+		/**
+		 * Sets the executor used to import workflow archives concurrently.
+		 *
+		 * @param workflowImportExecutor
+		 *            the executor.
+		 * @return the instance of {@code this} {@link Builder}.
+		 */
+		public Builder withWorkflowImportExecutor(final ExecutorService workflowImportExecutor) {
+			this.workflowImportExecutor = workflowImportExecutor;
+			return this;
+		}
+
+		/**
+		 * Sets the executor used to periodically refresh resource providers in the background.
+		 *
+		 * @param resourceRefreshExecutor
+		 *            the executor.
+		 * @return the instance of {@code this} {@link Builder}.
+		 */
+		public Builder withResourceRefreshExecutor(final ScheduledExecutorService resourceRefreshExecutor) {
+			this.resourceRefreshExecutor = resourceRefreshExecutor;
+			return this;
+		}
+
+		/**
+		 * Sets the executor used to query remote resources concurrently.
+		 *
+		 * @param resourceDiscoveryExecutor
+		 *            the executor.
+		 * @return the instance of {@code this} {@link Builder}.
+		 */
+		public Builder withResourceDiscoveryExecutor(final ExecutorService resourceDiscoveryExecutor) {
+			this.resourceDiscoveryExecutor = resourceDiscoveryExecutor;
+			return this;
+		}
+
 		/**
 		 * Builds a new {@link Settings}.
-		 * 
+		 *
 		 * @return a new instance of an {@link Settings}.
 		 */
 		public Settings newSettings() {
 			return new Settings(portletSanityCheck, resourceProviders, middlewareProvider, workflowExporterFactoryClass,
-					workflowManagerFactoryClass, workflowStagingAreaPath, jobExecutionPropertiesHandler);
+					workflowManagerFactoryClass, workflowStagingAreaPath, jobExecutionPropertiesHandler,
+					workflowImportExecutor, resourceRefreshExecutor, resourceDiscoveryExecutor);
 		}
 	}
 }
@@ -0,0 +1,19 @@
+package com.workflowconversion.portlet.core.exception;
+
+import com.workflowconversion.portlet.core.resource.Resource;
+
+/**
+ * Exception thrown when a resource cannot be saved because it was modified by someone else after it was loaded.
+ */
+public class ResourceModifiedException extends ApplicationException {
+	private static final long serialVersionUID = -2937452160718349521L;
+
+	/**
+	 * @param resource
+	 *            the resource that could not be saved.
+	 */
+	public ResourceModifiedException(final Resource resource) {
+		super("This resource was modified by another user or portal instance, please reload it and try again. Resource: "
+				+ resource);
+	}
+}
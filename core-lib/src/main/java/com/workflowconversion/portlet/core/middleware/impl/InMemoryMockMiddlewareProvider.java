@@ -5,10 +5,8 @@ import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.Unmarshaller;
-
 import com.workflowconversion.portlet.core.exception.ApplicationException;
+import com.workflowconversion.portlet.core.utils.JAXBContextRegistry;
 
 import dci.data.Configure;
 import dci.data.Middleware;
@@ -22,6 +20,12 @@ import dci.data.Middleware;
 public class InMemoryMockMiddlewareProvider extends AbstractFilteredMiddlewareProvider {
 
 	private static final long serialVersionUID = 770998780205006667L;
+
+	/**
+	 * Context path of the classes that represent the configuration of the DCI Bridge.
+	 */
+	public static final String DCI_DATA_CONTEXT_PATH = "dci.data";
+
 	private final Configure configure;
 
 	/**
@@ -29,9 +33,7 @@ public class InMemoryMockMiddlewareProvider extends AbstractFilteredMiddlewarePr
 	 */
 	public InMemoryMockMiddlewareProvider() {
 		try {
-			final JAXBContext jc = JAXBContext.newInstance("dci.data");
-			final Unmarshaller u = jc.createUnmarshaller();
-			configure = (Configure) u.unmarshal(getXml());
+			configure = (Configure) JAXBContextRegistry.unmarshal(DCI_DATA_CONTEXT_PATH, getXml());
 		} catch (Exception e) {
 			throw new ApplicationException("Could not instantiate InMemoryMockMiddlewareProvider!!!", e);
 		}
@@ -1,17 +1,20 @@
 package com.workflowconversion.portlet.core.middleware.impl;
 
+import java.io.ObjectStreamException;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Supplier;
-import com.google.common.base.Suppliers;
+import com.workflowconversion.portlet.core.Settings;
 import com.workflowconversion.portlet.core.exception.ApplicationException;
 import com.workflowconversion.portlet.core.middleware.MiddlewareProvider;
+import com.workflowconversion.portlet.core.utils.StaleWhileRevalidateSupplier;
 
 import dci.data.Middleware;
 import hu.sztaki.lpds.dcibridge.client.ResourceConfigurationFace;
@@ -20,6 +23,9 @@ import hu.sztaki.lpds.information.local.InformationBase;
 /**
  * Implementation of {@link MiddlewareProvider} that uses webservices to query WS-PGRADE about middlewares.
  * 
+ * The cache is not serialized; deserialized instances refresh their cache on the discovery executor of the current
+ * {@link Settings} and query the middlewares again on first use.
+ * 
  * @author delagarza
  *
  */
@@ -27,7 +33,9 @@ public class WSPGRADEMiddlewareProvider extends AbstractFilteredMiddlewareProvid
 
 	private static final long serialVersionUID = -8805943511022013993L;
 	private final static Logger LOG = LoggerFactory.getLogger(WSPGRADEMiddlewareProvider.class);
-	private final Supplier<Collection<Middleware>> cachedMiddlewares;
+	private final int cacheDuration;
+	// restored in readResolve()
+	private transient StaleWhileRevalidateSupplier<Collection<Middleware>> cachedMiddlewares;
 
 	// there are multiple <middleware> items, but there should be only one with type "unicore"
 	// inside of the middleware of type unicore there will be several <item> nodes, the name of these
@@ -76,14 +84,29 @@ public class WSPGRADEMiddlewareProvider extends AbstractFilteredMiddlewareProvid
 	/**
 	 * @param cacheDuration
 	 *            the duration of the cache, in seconds.
+	 * @param refreshExecutor
+	 *            the executor on which the cache is refreshed.
 	 */
-	public WSPGRADEMiddlewareProvider(final int cacheDuration) {
-		cachedMiddlewares = Suppliers.memoizeWithExpiration(new Supplier<Collection<Middleware>>() {
-			@Override
-			public Collection<Middleware> get() {
-				return getAllMiddlewares_internal();
-			}
-		}, cacheDuration, TimeUnit.SECONDS);
+	public WSPGRADEMiddlewareProvider(final int cacheDuration, final Executor refreshExecutor) {
+		this.cacheDuration = cacheDuration;
+		this.cachedMiddlewares = createCache(refreshExecutor);
+	}
+
+	// executors can't be serialized, so the one of the current settings is used along with a new, empty cache
+	private Object readResolve() throws ObjectStreamException {
+		this.cachedMiddlewares = createCache(Settings.getInstance().getResourceDiscoveryExecutor());
+		return this;
+	}
+
+	private StaleWhileRevalidateSupplier<Collection<Middleware>> createCache(final Executor refreshExecutor) {
+		// expired middlewares are served while they are refreshed in the background
+		return new StaleWhileRevalidateSupplier<Collection<Middleware>>("WSPGRADE Middlewares",
+				new Supplier<Collection<Middleware>>() {
+					@Override
+					public Collection<Middleware> get() {
+						return getAllMiddlewares_internal();
+					}
+				}, cacheDuration, TimeUnit.SECONDS, refreshExecutor);
 	}
 
 	private Collection<Middleware> getAllMiddlewares_internal() {
@@ -110,4 +133,11 @@ public class WSPGRADEMiddlewareProvider extends AbstractFilteredMiddlewareProvid
 	public Collection<Middleware> getAllMiddlewares() {
 		return Collections.unmodifiableCollection(cachedMiddlewares.get());
 	}
+
+	/**
+	 * @return the metrics of the middlewares cache.
+	 */
+	public StaleWhileRevalidateSupplier.Statistics getCacheStatistics() {
+		return cachedMiddlewares.getStatistics();
+	}
 }
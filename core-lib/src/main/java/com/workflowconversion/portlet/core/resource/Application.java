@@ -5,6 +5,8 @@ import java.io.Serializable;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 
+import com.workflowconversion.portlet.core.exception.InvalidApplicationException;
+
 /**
  * Simple object that contains all of the information an application requires to be executed on gUSE.
  * 
@@ -23,6 +25,7 @@ public class Application implements Serializable {
 	private final String version;
 	private final String path;
 	private final String description;
+	private final ApplicationKey key;
 
 	private Application(final String name, final String version, final String path, final String description) {
 		Validate.notBlank(name,
@@ -36,6 +39,14 @@ public class Application implements Serializable {
 		this.path = path;
 		// no need to validate description
 		this.description = StringUtils.trimToEmpty(description);
+		this.key = new ApplicationKey(name, version, path);
+	}
+
+	/**
+	 * @return the key that identifies this application within its resource.
+	 */
+	public ApplicationKey getKey() {
+		return key;
 	}
 
 	/**
@@ -66,6 +77,27 @@ public class Application implements Serializable {
 		return path;
 	}
 
+	/**
+	 * Checks that the fields of this application are not longer than their {@link Field#getMaxLength() maximum
+	 * length}, which is also the size of the database columns in which they are stored.
+	 * 
+	 * @throws InvalidApplicationException
+	 *             if a field is too long.
+	 */
+	public void validateFieldLengths() {
+		validateFieldLength(Field.Name, name);
+		validateFieldLength(Field.Version, version);
+		validateFieldLength(Field.Path, path);
+		validateFieldLength(Field.Description, description);
+	}
+
+	private void validateFieldLength(final Field field, final String value) {
+		if (value.length() > field.getMaxLength()) {
+			throw new InvalidApplicationException(field.getDisplayName() + " is longer than " + field.getMaxLength()
+					+ " characters", this);
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -141,11 +173,11 @@ public class Application implements Serializable {
 		/**
 		 * Path on which the application is found.
 		 */
-		Path(512, "path", "Path"),
+		Path(1024, "path", "Path"),
 		/**
 		 * Version of the application.
 		 */
-		Version(16, "version", "Version");
+		Version(64, "version", "Version");
 
 		private final int maxLength;
 		private final String memberName;
@@ -0,0 +1,61 @@
+package com.workflowconversion.portlet.core.resource;
+
+import java.io.Serializable;
+import java.util.Collection;
+
+/**
+ * Storage of the applications of a {@link Resource}. Applications are identified by their {@link ApplicationKey}.
+ * 
+ * Implementations are not thread safe, but must support concurrent reads.
+ * 
+ * @author delagarza
+ *
+ */
+public interface ApplicationCatalog extends Serializable {
+
+	/**
+	 * Adds an application, unless an application with the same key is already contained in this catalog.
+	 * 
+	 * @param application
+	 *            the application to add.
+	 * @return {@code true} if the application was added.
+	 */
+	public boolean add(final Application application);
+
+	/**
+	 * Replaces the application with the same key as the given one.
+	 * 
+	 * @param application
+	 *            the application.
+	 * @return {@code true} if the application was replaced, {@code false} if no application with the same key is
+	 *         contained in this catalog.
+	 */
+	public boolean replace(final Application application);
+
+	/**
+	 * @param name
+	 *            the application name.
+	 * @param version
+	 *            the application version.
+	 * @param path
+	 *            the application path.
+	 * @return the application with the given fields, or {@code null} if no such application is contained in this
+	 *         catalog.
+	 */
+	public Application get(final String name, final String version, final String path);
+
+	/**
+	 * @return an unmodifiable view of the applications, in insertion order.
+	 */
+	public Collection<Application> getApplications();
+
+	/**
+	 * Removes all applications.
+	 */
+	public void clear();
+
+	/**
+	 * @return the number of applications.
+	 */
+	public int size();
+}
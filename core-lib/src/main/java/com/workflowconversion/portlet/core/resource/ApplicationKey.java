@@ -0,0 +1,119 @@
+package com.workflowconversion.portlet.core.resource;
+
+import java.io.Serializable;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.workflowconversion.portlet.core.utils.KeyUtils;
+
+/**
+ * Key that identifies an {@link Application} within a resource. Components are trimmed. Keys are immutable and
+ * compute their hash code only once, so they are cheap to use in hash-based maps.
+ * 
+ * The string form of this key, returned by {@link #toString()}, is generated by {@link KeyUtils} and is meant for
+ * serialization only.
+ * 
+ * @author delagarza
+ *
+ */
+public final class ApplicationKey implements Comparable<ApplicationKey>, Serializable {
+
+	private static final long serialVersionUID = 3161704250933711096L;
+
+	private final String name;
+	private final String version;
+	private final String path;
+	private final int hashCode;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param name
+	 *            the application name.
+	 * @param version
+	 *            the application version.
+	 * @param path
+	 *            the application path.
+	 */
+	public ApplicationKey(final String name, final String version, final String path) {
+		this.name = StringUtils.trimToEmpty(name);
+		this.version = StringUtils.trimToEmpty(version);
+		this.path = StringUtils.trimToEmpty(path);
+		int hashCode = 1;
+		hashCode = 31 * hashCode + this.name.hashCode();
+		hashCode = 31 * hashCode + this.version.hashCode();
+		hashCode = 31 * hashCode + this.path.hashCode();
+		this.hashCode = hashCode;
+	}
+
+	/**
+	 * @return the application name.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the application version.
+	 */
+	public String getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return the application path.
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		final ApplicationKey other = (ApplicationKey) obj;
+		return hashCode == other.hashCode && name.equals(other.name) && version.equals(other.version)
+				&& path.equals(other.path);
+	}
+
+	@Override
+	public int compareTo(final ApplicationKey other) {
+		int result = name.compareTo(other.name);
+		if (result == 0) {
+			result = version.compareTo(other.version);
+		}
+		if (result == 0) {
+			result = path.compareTo(other.path);
+		}
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return KeyUtils.generateApplicationKey(name, version, path);
+	}
+}
@@ -0,0 +1,236 @@
+package com.workflowconversion.portlet.core.resource;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Compact {@link ApplicationCatalog} meant for resources with a very large number of applications (e.g., sites
+ * offering every version of every module).
+ * 
+ * Names, versions, paths and descriptions are stored in columns of dictionary codes; each distinct string is stored
+ * only once, no matter how many applications use it. Applications are looked up through an open addressing hash table
+ * of row numbers, so lookups don't allocate. {@link Application} instances are not kept, they are created on demand
+ * whenever they are requested. Names, versions and paths are stored trimmed.
+ * 
+ * @author delagarza
+ *
+ */
+public class ColumnarApplicationCatalog implements ApplicationCatalog {
+
+	private static final long serialVersionUID = -6140287533380167315L;
+
+	private final static int INITIAL_CAPACITY = 16;
+	// marks a free slot in the hash table
+	private final static int NO_ROW = -1;
+
+	// dictionary shared by all columns
+	private final Map<String, Integer> codes;
+	private final List<String> strings;
+
+	private int[] names;
+	private int[] versions;
+	private int[] paths;
+	private int[] descriptions;
+	private int size;
+	// row numbers, the length is always a power of two
+	private int[] slots;
+
+	/**
+	 * Constructor.
+	 */
+	public ColumnarApplicationCatalog() {
+		this.codes = new HashMap<String, Integer>();
+		this.strings = new ArrayList<String>();
+		initColumns();
+	}
+
+	private void initColumns() {
+		names = new int[INITIAL_CAPACITY];
+		versions = new int[INITIAL_CAPACITY];
+		paths = new int[INITIAL_CAPACITY];
+		descriptions = new int[INITIAL_CAPACITY];
+		slots = newSlots(INITIAL_CAPACITY * 2);
+		size = 0;
+	}
+
+	@Override
+	public boolean add(final Application application) {
+		final int name = encode(StringUtils.trimToEmpty(application.getName()));
+		final int version = encode(StringUtils.trimToEmpty(application.getVersion()));
+		final int path = encode(StringUtils.trimToEmpty(application.getPath()));
+		int slot = findSlot(slots, name, version, path);
+		if (slots[slot] != NO_ROW) {
+			return false;
+		}
+		if (size == names.length) {
+			final int capacity = size * 2;
+			names = Arrays.copyOf(names, capacity);
+			versions = Arrays.copyOf(versions, capacity);
+			paths = Arrays.copyOf(paths, capacity);
+			descriptions = Arrays.copyOf(descriptions, capacity);
+			// keep the load factor at 0.5 at most
+			rehash(capacity * 2);
+			slot = findSlot(slots, name, version, path);
+		}
+		names[size] = name;
+		versions[size] = version;
+		paths[size] = path;
+		descriptions[size] = encode(application.getDescription());
+		slots[slot] = size;
+		size++;
+		return true;
+	}
+
+	@Override
+	public boolean replace(final Application application) {
+		final int row = findRow(application.getName(), application.getVersion(), application.getPath());
+		if (row == NO_ROW) {
+			return false;
+		}
+		descriptions[row] = encode(application.getDescription());
+		return true;
+	}
+
+	@Override
+	public Application get(final String name, final String version, final String path) {
+		final int row = findRow(name, version, path);
+		return row == NO_ROW ? null : newApplication(row);
+	}
+
+	@Override
+	public Collection<Application> getApplications() {
+		return new AbstractCollection<Application>() {
+
+			@Override
+			public Iterator<Application> iterator() {
+				return new Iterator<Application>() {
+					private int row = 0;
+
+					@Override
+					public boolean hasNext() {
+						return row < size;
+					}
+
+					@Override
+					public Application next() {
+						if (row >= size) {
+							throw new NoSuchElementException();
+						}
+						return newApplication(row++);
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+
+		};
+	}
+
+	@Override
+	public void clear() {
+		codes.clear();
+		strings.clear();
+		initColumns();
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of distinct strings stored in this catalog.
+	 */
+	public int getDistinctStrings() {
+		return strings.size();
+	}
+
+	private int findRow(final String name, final String version, final String path) {
+		final Integer nameCode = codes.get(StringUtils.trimToEmpty(name));
+		final Integer versionCode = codes.get(StringUtils.trimToEmpty(version));
+		final Integer pathCode = codes.get(StringUtils.trimToEmpty(path));
+		if (nameCode == null || versionCode == null || pathCode == null) {
+			return NO_ROW;
+		}
+		return slots[findSlot(slots, nameCode, versionCode, pathCode)];
+	}
+
+	// returns the slot holding the given application or, if there's no such application, the free slot in which it
+	// should be stored
+	private int findSlot(final int[] table, final int name, final int version, final int path) {
+		final int mask = table.length - 1;
+		int slot = hash(name, version, path) & mask;
+		while (table[slot] != NO_ROW) {
+			final int row = table[slot];
+			if (names[row] == name && versions[row] == version && paths[row] == path) {
+				break;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void rehash(final int tableSize) {
+		final int[] newTable = newSlots(tableSize);
+		for (int row = 0; row < size; row++) {
+			newTable[findSlot(newTable, names[row], versions[row], paths[row])] = row;
+		}
+		slots = newTable;
+	}
+
+	private int encode(final String value) {
+		Integer code = codes.get(value);
+		if (code == null) {
+			code = strings.size();
+			strings.add(value);
+			codes.put(value, code);
+		}
+		return code;
+	}
+
+	private Application newApplication(final int row) {
+		final Application.Builder applicationBuilder = new Application.Builder();
+		applicationBuilder.withName(strings.get(names[row])).withVersion(strings.get(versions[row]))
+				.withPath(strings.get(paths[row])).withDescription(strings.get(descriptions[row]));
+		return applicationBuilder.newInstance();
+	}
+
+	private static int[] newSlots(final int tableSize) {
+		final int[] table = new int[tableSize];
+		Arrays.fill(table, NO_ROW);
+		return table;
+	}
+
+	private static int hash(final int name, final int version, final int path) {
+		// spread the bits, codes are small consecutive numbers
+		final int hash = (31 * (31 * name + version) + path) * 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return getApplications().toString();
+	}
+}
@@ -0,0 +1,77 @@
+package com.workflowconversion.portlet.core.resource;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@link ApplicationCatalog} that keeps applications in a map. Fast, but every application is kept as a full object
+ * along with its key.
+ * 
+ * @author delagarza
+ *
+ */
+public class MapApplicationCatalog implements ApplicationCatalog {
+
+	private static final long serialVersionUID = 2946617000785421391L;
+
+	private final Map<ApplicationKey, Application> applications;
+
+	/**
+	 * Constructor.
+	 */
+	public MapApplicationCatalog() {
+		this.applications = new LinkedHashMap<ApplicationKey, Application>();
+	}
+
+	@Override
+	public boolean add(final Application application) {
+		final ApplicationKey key = application.getKey();
+		if (applications.containsKey(key)) {
+			return false;
+		}
+		applications.put(key, application);
+		return true;
+	}
+
+	@Override
+	public boolean replace(final Application application) {
+		final ApplicationKey key = application.getKey();
+		if (!applications.containsKey(key)) {
+			return false;
+		}
+		applications.put(key, application);
+		return true;
+	}
+
+	@Override
+	public Application get(final String name, final String version, final String path) {
+		return applications.get(new ApplicationKey(name, version, path));
+	}
+
+	@Override
+	public Collection<Application> getApplications() {
+		return Collections.unmodifiableCollection(applications.values());
+	}
+
+	@Override
+	public void clear() {
+		applications.clear();
+	}
+
+	@Override
+	public int size() {
+		return applications.size();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return applications.values().toString();
+	}
+}
@@ -19,11 +19,13 @@ public class Queue implements Comparable<Queue>, Serializable {
 	private static final long serialVersionUID = -1202346412388738016L;
 
 	private final String name;
+	private final QueueKey key;
 
 	private Queue(final String name) {
 		Validate.notBlank(name,
 				"name cannot be null, empty or contain only whitespaces; this is a coding problem and should be reported.");
 		this.name = name;
+		this.key = new QueueKey(name);
 	}
 
 	/**
@@ -33,6 +35,13 @@ public class Queue implements Comparable<Queue>, Serializable {
 		return name;
 	}
 
+	/**
+	 * @return the key that identifies this queue within its resource.
+	 */
+	public QueueKey getKey() {
+		return key;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -0,0 +1,87 @@
+package com.workflowconversion.portlet.core.resource;
+
+import java.io.Serializable;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.workflowconversion.portlet.core.utils.KeyUtils;
+
+/**
+ * Key that identifies a {@link Queue} within a resource. Components are trimmed. Keys are immutable and compute their
+ * hash code only once, so they are cheap to use in hash-based maps.
+ * 
+ * The string form of this key, returned by {@link #toString()}, is generated by {@link KeyUtils} and is meant for
+ * serialization only.
+ * 
+ * @author delagarza
+ *
+ */
+public final class QueueKey implements Comparable<QueueKey>, Serializable {
+
+	private static final long serialVersionUID = -6315402087702361942L;
+
+	private final String name;
+	private final int hashCode;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param name
+	 *            the queue name.
+	 */
+	public QueueKey(final String name) {
+		this.name = StringUtils.trimToEmpty(name);
+		int hashCode = 1;
+		hashCode = 31 * hashCode + this.name.hashCode();
+		this.hashCode = hashCode;
+	}
+
+	/**
+	 * @return the queue name.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		final QueueKey other = (QueueKey) obj;
+		return hashCode == other.hashCode && name.equals(other.name);
+	}
+
+	@Override
+	public int compareTo(final QueueKey other) {
+		return name.compareTo(other.name);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return KeyUtils.generateQueueKey(name);
+	}
+}
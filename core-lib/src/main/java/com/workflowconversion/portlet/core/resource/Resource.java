@@ -3,15 +3,14 @@ package com.workflowconversion.portlet.core.resource;
 import java.io.Serializable;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.TreeMap;
 
 import org.apache.commons.lang3.Validate;
 
 import com.workflowconversion.portlet.core.exception.ApplicationNotFoundException;
 import com.workflowconversion.portlet.core.exception.DuplicateApplicationException;
 import com.workflowconversion.portlet.core.exception.ResourceNotEditableException;
-import com.workflowconversion.portlet.core.utils.KeyUtils;
 
 /**
  * Class representing a computing resource, such as a computing cluster.
@@ -34,20 +33,28 @@ public class Resource implements Serializable {
 	private final String type;
 	private final String name;
 	private final boolean canModifyApplications;
+	private final ResourceKey key;
+	// version in the persistence layer of the provider when this resource was loaded or last saved
+	private long version;
 
-	private final Map<String, Application> applications;
-	private final Map<String, Queue> queues;
+	private final ApplicationCatalog applications;
+	// in insertion order
+	private final Map<QueueKey, Queue> queues;
 
 	private Resource(final String type, final String name, final boolean canModifyApplications,
-			final Collection<Application> initialApplications, final Collection<Queue> queues) {
+			final boolean compactApplicationCatalog, final Collection<Application> initialApplications,
+			final Collection<Queue> queues, final long version) {
 		Validate.notBlank(type, "type cannot be null, empty or contain only whitespace characters.");
 		Validate.notBlank(name, "name cannot be null, empty or contain only whitespace characters.");
 		this.type = type;
 		this.name = name;
 		this.canModifyApplications = canModifyApplications;
+		this.key = new ResourceKey(name, type);
+		this.version = version;
 
-		this.applications = new TreeMap<String, Application>();
-		this.queues = new TreeMap<String, Queue>();
+		this.applications = compactApplicationCatalog ? new ColumnarApplicationCatalog()
+				: new MapApplicationCatalog();
+		this.queues = new LinkedHashMap<QueueKey, Queue>();
 
 		// copy the contents of the collection!
 		fillInitialApplications(initialApplications);
@@ -57,7 +64,7 @@ public class Resource implements Serializable {
 	private void fillQueues(final Collection<Queue> queues) {
 		if (queues != null) {
 			for (final Queue queue : queues) {
-				this.queues.put(KeyUtils.generate(queue), queue);
+				this.queues.put(queue.getKey(), queue);
 			}
 		}
 	}
@@ -65,7 +72,7 @@ public class Resource implements Serializable {
 	private void fillInitialApplications(final Collection<Application> initialApplications) {
 		if (initialApplications != null) {
 			for (final Application application : initialApplications) {
-				if (applications.put(KeyUtils.generate(application), application) != null) {
+				if (!applications.add(application)) {
 					throw new DuplicateApplicationException(application);
 				}
 			}
@@ -86,6 +93,33 @@ public class Resource implements Serializable {
 		return name;
 	}
 
+	/**
+	 * @return the key that identifies this resource.
+	 */
+	public ResourceKey getKey() {
+		return key;
+	}
+
+	/**
+	 * Providers that share their persistence layer with other instances use versions to detect whether a resource was
+	 * modified by others since it was loaded. Other providers leave it at zero.
+	 * 
+	 * @return the version of this resource in the persistence layer of its provider when it was loaded or last saved.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Sets the version of this resource. Only resource providers should call this method, after saving this resource.
+	 * 
+	 * @param version
+	 *            the version this resource has in the persistence layer of its provider.
+	 */
+	public void setVersion(final long version) {
+		this.version = version;
+	}
+
 	/**
 	 * @return whether this resource supports modifying its applications.
 	 */
@@ -93,11 +127,18 @@ public class Resource implements Serializable {
 		return canModifyApplications;
 	}
 
+	/**
+	 * @return whether the applications of this resource are kept in a {@link ColumnarApplicationCatalog}.
+	 */
+	public boolean hasCompactApplicationCatalog() {
+		return applications instanceof ColumnarApplicationCatalog;
+	}
+
 	/**
 	 * @return the applications
 	 */
 	public Collection<Application> getApplications() {
-		return Collections.unmodifiableCollection(applications.values());
+		return applications.getApplications();
 	}
 
 	private void assertCanAddApplications() {
@@ -115,10 +156,7 @@ public class Resource implements Serializable {
 	public void addApplication(final Application application) throws DuplicateApplicationException {
 		assertCanAddApplications();
 		Validate.notNull(application, "application cannot be null");
-		final String key = KeyUtils.generate(application);
-		if (!applications.containsKey(key)) {
-			applications.put(key, application);
-		} else {
+		if (!applications.add(application)) {
 			throw new DuplicateApplicationException(application);
 		}
 	}
@@ -142,11 +180,8 @@ public class Resource implements Serializable {
 	public void saveApplication(final Application application) throws ApplicationNotFoundException {
 		assertCanAddApplications();
 		Validate.notNull(application, "application cannot be null");
-		final String key = KeyUtils.generate(application);
-		if (applications.containsKey(key)) {
-			// application.setResource(this);
-			applications.put(key, application);
-		} else {
+		// application.setResource(this);
+		if (!applications.replace(application)) {
 			throw new ApplicationNotFoundException(application);
 		}
 	}
@@ -164,7 +199,7 @@ public class Resource implements Serializable {
 	 *         resource.
 	 */
 	public Application getApplication(final String name, final String version, final String path) {
-		return applications.get(KeyUtils.generateApplicationKey(name, version, path));
+		return applications.get(name, version, path);
 	}
 
 	/**
@@ -182,7 +217,7 @@ public class Resource implements Serializable {
 	 * @return the queue with the given name, or {@code null} if the queue is not contained in this resource.
 	 */
 	public Queue getQueue(final String name) {
-		return queues.get(KeyUtils.generateQueueKey(name));
+		return queues.get(new QueueKey(name));
 	}
 
 	/*
@@ -284,8 +319,10 @@ public class Resource implements Serializable {
 		private String type;
 		private String name;
 		private boolean canModifyApplications;
+		private boolean compactApplicationCatalog;
 		private Collection<Application> applications;
 		private Collection<Queue> queues;
+		private long version;
 
 		/**
 		 * @param type
@@ -331,6 +368,18 @@ public class Resource implements Serializable {
 			return this;
 		}
 
+		/**
+		 * @param compactApplicationCatalog
+		 *            whether applications should be kept in a {@link ColumnarApplicationCatalog}, which uses much less
+		 *            memory for large numbers of applications, at the cost of creating {@link Application} instances
+		 *            whenever they are requested.
+		 * @return {@code this} builder.
+		 */
+		public Builder withCompactApplicationCatalog(final boolean compactApplicationCatalog) {
+			this.compactApplicationCatalog = compactApplicationCatalog;
+			return this;
+		}
+
 		/**
 		 * @param applications
 		 *            the initial applications of the resource.
@@ -351,11 +400,22 @@ public class Resource implements Serializable {
 			return this;
 		}
 
+		/**
+		 * @param version
+		 *            the version of the resource in the persistence layer of its provider.
+		 * @return {@code this} builder.
+		 */
+		public Builder withVersion(final long version) {
+			this.version = version;
+			return this;
+		}
+
 		/**
 		 * @return a new instance of {@link Resource}.
 		 */
 		public Resource newInstance() {
-			return new Resource(type, name, canModifyApplications, applications, queues);
+			return new Resource(type, name, canModifyApplications, compactApplicationCatalog, applications, queues,
+					version);
 		}
 	}
 }
@@ -0,0 +1,103 @@
+package com.workflowconversion.portlet.core.resource;
+
+import java.io.Serializable;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.workflowconversion.portlet.core.utils.KeyUtils;
+
+/**
+ * Key that identifies a {@link Resource}, system-wide. Components are trimmed. Keys are immutable and compute their
+ * hash code only once, so they are cheap to use in hash-based maps.
+ * 
+ * The string form of this key, returned by {@link #toString()}, is generated by {@link KeyUtils} and is meant for
+ * serialization only.
+ * 
+ * @author delagarza
+ *
+ */
+public final class ResourceKey implements Comparable<ResourceKey>, Serializable {
+
+	private static final long serialVersionUID = -4820183611923441583L;
+
+	private final String name;
+	private final String type;
+	private final int hashCode;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param name
+	 *            the resource name.
+	 * @param type
+	 *            the resource type.
+	 */
+	public ResourceKey(final String name, final String type) {
+		this.name = StringUtils.trimToEmpty(name);
+		this.type = StringUtils.trimToEmpty(type);
+		int hashCode = 1;
+		hashCode = 31 * hashCode + this.name.hashCode();
+		hashCode = 31 * hashCode + this.type.hashCode();
+		this.hashCode = hashCode;
+	}
+
+	/**
+	 * @return the resource name.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the resource type.
+	 */
+	public String getType() {
+		return type;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		final ResourceKey other = (ResourceKey) obj;
+		return hashCode == other.hashCode && name.equals(other.name) && type.equals(other.type);
+	}
+
+	@Override
+	public int compareTo(final ResourceKey other) {
+		int result = name.compareTo(other.name);
+		if (result == 0) {
+			result = type.compareTo(other.type);
+		}
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return KeyUtils.generateResourceKey(name, type);
+	}
+}
@@ -3,6 +3,8 @@ package com.workflowconversion.portlet.core.resource;
 import java.io.Serializable;
 import java.util.Collection;
 
+import com.workflowconversion.portlet.core.exception.InvalidApplicationException;
+import com.workflowconversion.portlet.core.exception.ResourceModifiedException;
 import com.workflowconversion.portlet.core.middleware.MiddlewareProvider;
 
 /**
@@ -80,8 +82,25 @@ public interface ResourceProvider extends Serializable {
 	 * command, the last one will overwrite any previous modifications on the text file. This is, of course,
 	 * resource-wide.
 	 * 
+	 * Implementations whose persistence layer is shared with other instances may refuse to overwrite modifications they
+	 * have not seen yet by throwing a {@link ResourceModifiedException}.
+	 * 
 	 * @param resource
 	 *            the {@link Resource} that contains the applications to be saved.
+	 * @throws ResourceModifiedException
+	 *             if the resource was modified by others since it was last loaded.
+	 * @throws InvalidApplicationException
+	 *             if an application does not fit in the persistence layer, e.g., if one of its fields is longer than
+	 *             allowed; nothing is saved in that case.
 	 */
 	public void save(final Resource resource);
+
+	/**
+	 * Registers a listener that will be notified every time the resources of this provider are loaded, reloaded or
+	 * saved.
+	 * 
+	 * @param listener
+	 *            the listener.
+	 */
+	public void addListener(final ResourceProviderListener listener);
 }
@@ -0,0 +1,20 @@
+package com.workflowconversion.portlet.core.resource;
+
+/**
+ * Interface to notify objects interested in the event of the resources of a {@link ResourceProvider} being loaded,
+ * reloaded or saved.
+ * 
+ * @author delagarza
+ *
+ */
+public interface ResourceProviderListener {
+
+	/**
+	 * Invoked after the resources of the given provider changed. Implementations are invoked in the thread that changed
+	 * the resources, so they should return quickly.
+	 * 
+	 * @param resourceProvider
+	 *            the provider whose resources changed.
+	 */
+	public void resourcesChanged(final ResourceProvider resourceProvider);
+}
@@ -1,21 +1,26 @@
 package com.workflowconversion.portlet.core.resource.impl;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.sql.CallableStatement;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.tomcat.jdbc.pool.DataSource;
 import org.apache.tomcat.jdbc.pool.PoolProperties;
@@ -24,6 +29,7 @@ import org.slf4j.LoggerFactory;
 
 import com.workflowconversion.portlet.core.SupportedClusters;
 import com.workflowconversion.portlet.core.exception.ApplicationException;
+import com.workflowconversion.portlet.core.exception.ResourceModifiedException;
 import com.workflowconversion.portlet.core.filter.Filter;
 import com.workflowconversion.portlet.core.filter.FilterApplicator;
 import com.workflowconversion.portlet.core.filter.impl.SimpleFilterFactory;
@@ -31,9 +37,10 @@ import com.workflowconversion.portlet.core.middleware.MiddlewareProvider;
 import com.workflowconversion.portlet.core.resource.Application;
 import com.workflowconversion.portlet.core.resource.Queue;
 import com.workflowconversion.portlet.core.resource.Resource;
+import com.workflowconversion.portlet.core.resource.ResourceKey;
 import com.workflowconversion.portlet.core.resource.ResourceProvider;
-import com.workflowconversion.portlet.core.utils.KeyUtils;
-import com.workflowconversion.portlet.core.utils.ScriptRunner;
+import com.workflowconversion.portlet.core.resource.ResourceProviderListener;
+import com.workflowconversion.portlet.core.utils.SchemaMigrator;
 
 import dci.data.Item;
 import dci.data.Middleware;
@@ -42,10 +49,27 @@ import hu.sztaki.lpds.information.local.PropertyLoader;
 /**
  * Resource provider for cluster-based providers. It uses the same MySQL database as gUSE in order to store information
  * about applications.
- * 
- * During the initialization, this provider will establish a JDBC connection to the MySQL database and will execute a
- * setup SQL script (SQL) that will create the needed MySQL objects if it's needed to.
- * 
+ *
+ * During the initialization, this provider will establish a JDBC connection to the MySQL database and will apply the
+ * migration scripts (SQL) that have not been applied yet, creating or updating the needed MySQL objects.
+ *
+ * Resources and their applications are periodically reloaded in the background, so changes made to the middleware
+ * configuration or by other portal nodes become visible without a restart. The reloaded resources replace the current
+ * ones atomically.
+ *
+ * Readers never block: resources are published as an immutable snapshot that is replaced, never modified, by saves and
+ * reloads. Saves and reloads are serialized among themselves. The resources of the snapshot hold exactly what is stored
+ * in the database and are never handed out; {@link #getResource(String, String)} and {@link #getResources()} return
+ * copies that callers are free to modify and {@link #save(Resource)} publishes a copy of the saved resource, so nobody
+ * sees changes that were not saved.
+ *
+ * Several portal nodes can share the same database. Each resource has a version in {@code tbl_resource_version} that is
+ * incremented on every save, only if it still matches the {@link Resource#getVersion() version} the saved resource was
+ * loaded at; otherwise the resource is reloaded and the save is rejected with a {@link ResourceModifiedException}.
+ * Resources obtained before their version changed cannot be saved either, even if this provider already reloaded them.
+ * Reloads only read the applications of resources whose version changed; resources that did not change at all are kept
+ * as they are, and listeners are only notified if something changed.
+ *
  * @author delagarza
  *
  */
@@ -54,34 +78,79 @@ public class ClusterResourceProvider implements ResourceProvider {
 	private static final long serialVersionUID = -3799340787944829350L;
 	private final static Logger LOG = LoggerFactory.getLogger(ClusterResourceProvider.class);
 
-	private final static String SETUP_SCRIPT_LOCATION = "setupdb.sql";
-	private final static String GET_SQL = "{CALL sp_get_applications(?, ?)}";
-	private final static String ADD_SQL = "{CALL sp_add_application(?, ?, ?, ?, ?, ?)}";
-	private final static String DELETE_SQL = "{CALL sp_delete_applications(?, ?)}";
+	// new schema changes go into new scripts at the end of this list, released scripts must never be modified
+	private final static String[] MIGRATION_SCRIPT_LOCATIONS = { "db/migration/001_initial_schema.sql",
+			"db/migration/002_bounded_columns.sql" };
+	// all applications are read in a single query instead of invoking sp_get_applications for each resource
+	private final static String GET_ALL_SQL = "SELECT resource_name, resource_type, name, version, path, description FROM tbl_application";
+	private final static String GET_SQL = "SELECT name, version, path, description FROM tbl_application WHERE resource_name = ? AND resource_type = ?";
+	private final static String GET_VERSIONS_SQL = "SELECT resource_name, resource_type, version FROM tbl_resource_version";
+	private final static String INIT_VERSION_SQL = "INSERT IGNORE INTO tbl_resource_version (resource_name, resource_type, version) VALUES (?, ?, 0)";
+	private final static String INCREMENT_VERSION_SQL = "UPDATE tbl_resource_version SET version = version + 1 WHERE resource_name = ? AND resource_type = ? AND version = ?";
+	// number of rows fetched from the server at a time while reading all applications
+	private final static int GET_ALL_FETCH_SIZE = 1000;
+	// plain INSERT instead of sp_add_application, so the driver can rewrite batches as multi-row INSERTs
+	private final static String ADD_SQL = "INSERT INTO tbl_application (resource_name, resource_type, name, version, path, description) VALUES (?, ?, ?, ?, ?, ?)";
+	private final static String UPDATE_SQL = "UPDATE tbl_application SET description = ? WHERE resource_name = ? AND resource_type = ? AND name = ? AND version = ? AND path = ?";
+	private final static String DELETE_SQL = "DELETE FROM tbl_application WHERE resource_name = ? AND resource_type = ? AND name = ? AND version = ? AND path = ?";
 
 	private volatile boolean hasInitErrors;
 	private final int maxActiveConnections;
+	private final int batchSize;
+	private final int refreshPeriod;
+	private final boolean compactApplicationCatalog;
 	private final MiddlewareProvider middlewareProvider;
-	private final Map<String, Resource> resources;
-	private final ReadWriteLock readWriteLock;
+	private final ScheduledExecutorService refreshExecutor;
+	private final Runnable refreshTask;
+	// guards writes to the snapshot
+	private final Lock writeLock;
+	private final Collection<ResourceProviderListener> listeners;
 
 	// these cannot be final because their values will be set when the init() method is invoked
 	private DataSource dataSource;
+	// replaced on each save and refresh
+	private volatile Snapshot snapshot;
+	private volatile long lastRefreshMillis;
 
 	/**
 	 * @param middlewareProvider
 	 *            the middleware provider.
 	 * @param maxActiveConnections
 	 *            the number of maximum open sql connections to maintain.
+	 * @param batchSize
+	 *            the maximum number of applications sent to the database in a single batch.
+	 * @param refreshExecutor
+	 *            the executor on which resources will be periodically reloaded.
+	 * @param refreshPeriod
+	 *            the time between reloads, in seconds.
+	 * @param compactApplicationCatalog
+	 *            whether the applications of each resource should be kept in a compact catalog.
 	 */
-	public ClusterResourceProvider(final MiddlewareProvider middlewareProvider, final int maxActiveConnections) {
+	public ClusterResourceProvider(final MiddlewareProvider middlewareProvider, final int maxActiveConnections,
+			final int batchSize, final ScheduledExecutorService refreshExecutor, final int refreshPeriod,
+			final boolean compactApplicationCatalog) {
 		Validate.notNull(middlewareProvider,
 				"middlewareProvider cannot be null. This seems to be a coding problem and should be reported.");
 		Validate.isTrue(maxActiveConnections >= 1, "maxActiveConnections must be greater or equal to one.");
+		Validate.isTrue(batchSize >= 1, "batchSize must be greater or equal to one.");
+		Validate.notNull(refreshExecutor,
+				"refreshExecutor cannot be null. This seems to be a coding problem and should be reported.");
+		Validate.isTrue(refreshPeriod >= 1, "refreshPeriod must be greater or equal to one.");
 		this.middlewareProvider = middlewareProvider;
 		this.maxActiveConnections = maxActiveConnections;
-		this.resources = new TreeMap<String, Resource>();
-		this.readWriteLock = new ReentrantReadWriteLock(false);
+		this.batchSize = batchSize;
+		this.refreshExecutor = refreshExecutor;
+		this.refreshPeriod = refreshPeriod;
+		this.compactApplicationCatalog = compactApplicationCatalog;
+		this.refreshTask = new Runnable() {
+			@Override
+			public void run() {
+				refresh();
+			}
+		};
+		this.snapshot = new Snapshot(new TreeMap<ResourceKey, Resource>(), new HashMap<ResourceKey, Long>());
+		this.writeLock = new ReentrantLock(false);
+		this.listeners = new CopyOnWriteArrayList<ResourceProviderListener>();
 		this.hasInitErrors = false;
 	}
 
@@ -97,7 +166,23 @@ public class ClusterResourceProvider implements ResourceProvider {
 
 	@Override
 	public void init() {
-		final Lock writeLock = readWriteLock.writeLock();
+		final String url, driverClassName, username, password;
+		try {
+			// these values come from invoking gUSE webservices
+			url = PropertyLoader.getInstance().getProperty("guse.system.database.url");
+			// we know it's MySQL, but there's no need to hardcode these settings
+			driverClassName = PropertyLoader.getInstance().getProperty("guse.system.database.driver");
+			username = PropertyLoader.getInstance().getProperty("guse.system.database.user");
+			password = PropertyLoader.getInstance().getProperty("guse.system.database.password");
+		} catch (final Exception e) {
+			hasInitErrors = true;
+			throw new ApplicationException("Could not initialize ClusterResourceProvider.", e);
+		}
+		init(url, driverClassName, username, password);
+	}
+
+	// package-private so benchmarks can use a database other than the one of gUSE
+	void init(final String url, final String driverClassName, final String username, final String password) {
 		writeLock.lock();
 		try {
 			if (dataSource != null) {
@@ -109,12 +194,10 @@ public class ClusterResourceProvider implements ResourceProvider {
 			try {
 				// taken from: https://people.apache.org/~fhanik/jdbc-pool/jdbc-pool.html
 				final PoolProperties p = new PoolProperties();
-				// these values come from invoking gUSE webservices
-				p.setUrl(PropertyLoader.getInstance().getProperty("guse.system.database.url"));
-				// we know it's MySQL, but there's no need to hardcode these settings
-				p.setDriverClassName(PropertyLoader.getInstance().getProperty("guse.system.database.driver"));
-				p.setUsername(PropertyLoader.getInstance().getProperty("guse.system.database.user"));
-				p.setPassword(PropertyLoader.getInstance().getProperty("guse.system.database.password"));
+				p.setUrl(url);
+				p.setDriverClassName(driverClassName);
+				p.setUsername(username);
+				p.setPassword(password);
 				p.setMaxActive(this.maxActiveConnections);
 				p.setJmxEnabled(true);
 				p.setTestWhileIdle(false);
@@ -129,27 +212,74 @@ public class ClusterResourceProvider implements ResourceProvider {
 				p.setMinEvictableIdleTimeMillis(30000);
 				p.setLogAbandoned(true);
 				p.setRemoveAbandoned(true);
+				// send batched INSERTs as multi-row INSERTs and honor fetch sizes using server-side cursors (MySQL
+				// Connector/J)
+				p.setConnectionProperties("rewriteBatchedStatements=true;useCursorFetch=true");
 				dataSource = new DataSource();
 				dataSource.setPoolProperties(p);
 			} catch (final Exception e) {
 				hasInitErrors = true;
 				throw new ApplicationException("Could not initialize ClusterResourceProvider.", e);
 			}
-			// run the initialization script
+			// bring the schema up to date
 			try (Connection connection = dataSource.getConnection()) {
-				LOG.info("Running setupdb.sql");
-				// setupdb.sql must be in the classpath to be accessible!
-				final ScriptRunner runner = new ScriptRunner(connection, true, true);
-				runner.runScript(new BufferedReader(new InputStreamReader(
-						ClusterResourceProvider.class.getResourceAsStream('/' + SETUP_SCRIPT_LOCATION))));
+				// migration scripts must be in the classpath to be accessible!
+				final int appliedScripts = new SchemaMigrator(connection, MIGRATION_SCRIPT_LOCATIONS).migrate();
+				LOG.info("Applied " + appliedScripts + " database migration script(s).");
 			} catch (final IOException | SQLException e) {
 				hasInitErrors = true;
-				throw new ApplicationException("Could not execute database initialization script (setupdb.sql).", e);
+				throw new ApplicationException("Could not execute database migration scripts.", e);
+			}
+			final Snapshot loadedSnapshot = loadSnapshot(snapshot);
+			if (loadedSnapshot != null) {
+				snapshot = loadedSnapshot;
+				lastRefreshMillis = System.currentTimeMillis();
 			}
-			loadResourcesFromDatabase_notThreadSafe();
+			refreshExecutor.scheduleWithFixedDelay(refreshTask, refreshPeriod, refreshPeriod, TimeUnit.SECONDS);
 		} finally {
 			writeLock.unlock();
 		}
+		fireResourcesChanged();
+	}
+
+	/**
+	 * @return the time of the last successful reload of resources from the database, or {@code null} if resources
+	 *         could never be loaded.
+	 */
+	public Date getLastRefreshTime() {
+		final long refreshMillis = lastRefreshMillis;
+		return refreshMillis == 0 ? null : new Date(refreshMillis);
+	}
+
+	// reloads resources without holding the lock and swaps them in, unless a save happened in the meantime
+	private void refresh() {
+		// exceptions would suppress further executions of this task
+		try {
+			final Snapshot snapshotBeforeRefresh = snapshot;
+			final Snapshot loadedSnapshot = loadSnapshot(snapshotBeforeRefresh);
+			if (loadedSnapshot == null) {
+				return;
+			}
+			if (loadedSnapshot == snapshotBeforeRefresh) {
+				// nothing changed; keep the current resources and don't make listeners rebuild their indexes
+				lastRefreshMillis = System.currentTimeMillis();
+				return;
+			}
+			writeLock.lock();
+			try {
+				if (snapshot != snapshotBeforeRefresh) {
+					LOG.info("Resources were saved while refreshing ClusterResourceProvider, discarding refresh.");
+					return;
+				}
+				snapshot = loadedSnapshot;
+				lastRefreshMillis = System.currentTimeMillis();
+			} finally {
+				writeLock.unlock();
+			}
+			fireResourcesChanged();
+		} catch (final RuntimeException e) {
+			LOG.error("Could not refresh ClusterResourceProvider.", e);
+		}
 	}
 
 	@Override
@@ -159,34 +289,89 @@ public class ClusterResourceProvider implements ResourceProvider {
 
 	@Override
 	public void save(final Resource resource) {
-		// TODO: maybe use transactions? but then we would have to use the same connection for two statements, and given
-		// that we are using object pools, who knows how long would it take to implement this or to refactor it
-		final Lock writeLock = readWriteLock.writeLock();
+		boolean modifiedByOthers = false;
 		writeLock.lock();
 		try {
-			final Resource existingResource = resources.get(KeyUtils.generate(resource));
-			// existingResource and resource are holding the same reference (or they should)
+			final Snapshot currentSnapshot = snapshot;
+			final ResourceKey resourceKey = resource.getKey();
+			final Resource existingResource = currentSnapshot.resources.get(resourceKey);
 			if (existingResource != null) {
-				if (existingResource != resource) {
-					throw new ApplicationException(
-							"Inconsistent resources. This is a coding problem and should be reported.");
+				final long version = getVersion(currentSnapshot.versions, resourceKey);
+				// a resource loaded at an older version would silently undo what was saved since then
+				if (resource.getVersion() != version) {
+					LOG.info("Rejecting save of resource " + resource.getName() + '/' + resource.getType()
+							+ ", it was loaded at version " + resource.getVersion() + " but is already at version "
+							+ version + '.');
+					throw new ResourceModifiedException(resource);
+				}
+				// compare against what was last persisted and write only what changed
+				final Collection<Application> insertedApplications = new LinkedList<Application>();
+				final Collection<Application> updatedApplications = new LinkedList<Application>();
+				final Collection<Application> deletedApplications = new LinkedList<Application>();
+				for (final Application application : resource.getApplications()) {
+					final Application persistedApplication = existingResource.getApplication(application.getName(),
+							application.getVersion(), application.getPath());
+					if (persistedApplication == null) {
+						insertedApplications.add(application);
+					} else if (!StringUtils.equals(persistedApplication.getDescription(),
+							application.getDescription())) {
+						updatedApplications.add(application);
+					}
 				}
-				// delete everything related to this resource on the DB, then add whatever we've given
-				try (Connection connection = dataSource.getConnection();
-						CallableStatement deleteStatement = connection.prepareCall(DELETE_SQL)) {
+				for (final Application persistedApplication : existingResource.getApplications()) {
+					if (resource.getApplication(persistedApplication.getName(), persistedApplication.getVersion(),
+							persistedApplication.getPath()) == null) {
+						deletedApplications.add(persistedApplication);
+					}
+				}
+				if (LOG.isDebugEnabled()) {
+					LOG.debug("Saving resource " + resource.getName() + '/' + resource.getType() + ": "
+							+ insertedApplications.size() + " inserted, " + updatedApplications.size() + " updated, "
+							+ deletedApplications.size() + " deleted application(s).");
+				}
+				if (insertedApplications.isEmpty() && updatedApplications.isEmpty() && deletedApplications.isEmpty()) {
+					return;
+				}
+				// all input paths end up here; reject the whole save before a value too long for its column fails a
+				// batch halfway
+				for (final Application application : insertedApplications) {
+					application.validateFieldLengths();
+				}
+				for (final Application application : updatedApplications) {
+					application.validateFieldLengths();
+				}
+				try (Connection connection = dataSource.getConnection()) {
 					connection.setAutoCommit(false);
-					deleteStatement.setString(1, resource.getName());
-					deleteStatement.setString(2, resource.getType());
-					deleteStatement.execute();
-
-					try (CallableStatement addStatement = connection.prepareCall(ADD_SQL)) {
-						for (final Application app : resource.getApplications()) {
-							executeAddApplicationStatement(app, resource, addStatement);
+					try {
+						// the version row stays locked until the transaction ends, so saves of other nodes wait
+						if (incrementVersion(connection, resource, version)) {
+							executeBatched(connection, Change.DELETED, resource, deletedApplications);
+							executeBatched(connection, Change.UPDATED, resource, updatedApplications);
+							executeBatched(connection, Change.INSERTED, resource, insertedApplications);
+							connection.commit();
+							// the database now holds exactly what the resource holds
+							resource.setVersion(version + 1);
+							snapshot = currentSnapshot.withResource(resourceKey, copyResource(resource), version + 1);
+						} else {
+							connection.rollback();
+							modifiedByOthers = true;
 						}
+					} catch (final SQLException e) {
+						connection.rollback();
+						throw e;
 					}
-					connection.commit();
 				} catch (final SQLException e) {
 					LOG.error("Could not save applications. Check database connectivity.", e);
+					throw new ApplicationException("Could not save the applications of resource " + resource.getName()
+							+ '/' + resource.getType() + ", the database could not be updated.", e);
+				}
+				if (modifiedByOthers) {
+					// reload right away, so the caller can show what others saved
+					final Snapshot loadedSnapshot = loadSnapshot(currentSnapshot);
+					if (loadedSnapshot != null) {
+						snapshot = loadedSnapshot;
+						lastRefreshMillis = System.currentTimeMillis();
+					}
 				}
 			} else {
 				// trying to save a resource that doesn't even exist
@@ -196,17 +381,96 @@ public class ClusterResourceProvider implements ResourceProvider {
 		} finally {
 			writeLock.unlock();
 		}
+		fireResourcesChanged();
+		if (modifiedByOthers) {
+			throw new ResourceModifiedException(resource);
+		}
+	}
+
+	@Override
+	public void addListener(final ResourceProviderListener listener) {
+		Validate.notNull(listener,
+				"listener cannot be null. This seems to be a coding problem and should be reported.");
+		listeners.add(listener);
+	}
+
+	// listeners are notified without holding the lock, so they can safely query this provider
+	private void fireResourcesChanged() {
+		for (final ResourceProviderListener listener : listeners) {
+			try {
+				listener.resourcesChanged(this);
+			} catch (final RuntimeException e) {
+				LOG.error("Could not notify listener of changes in ClusterResourceProvider.", e);
+			}
+		}
 	}
 
-	private void executeAddApplicationStatement(final Application app, final Resource resource,
-			final CallableStatement addApplicationStatement) throws SQLException {
-		addApplicationStatement.setString(1, resource.getName());
-		addApplicationStatement.setString(2, resource.getType());
-		addApplicationStatement.setString(3, app.getName());
-		addApplicationStatement.setString(4, app.getVersion());
-		addApplicationStatement.setString(5, app.getPath());
-		addApplicationStatement.setString(6, app.getDescription());
-		addApplicationStatement.execute();
+	// increments the version of the resource if it still matches the expected version
+	private boolean incrementVersion(final Connection connection, final Resource resource, final long expectedVersion)
+			throws SQLException {
+		if (expectedVersion == 0) {
+			// the resource has never been saved with versioning, its row might not exist yet
+			try (PreparedStatement statement = connection.prepareStatement(INIT_VERSION_SQL)) {
+				statement.setString(1, resource.getName());
+				statement.setString(2, resource.getType());
+				statement.executeUpdate();
+			}
+		}
+		try (PreparedStatement statement = connection.prepareStatement(INCREMENT_VERSION_SQL)) {
+			statement.setString(1, resource.getName());
+			statement.setString(2, resource.getType());
+			statement.setLong(3, expectedVersion);
+			return statement.executeUpdate() == 1;
+		}
+	}
+
+	// executes the statement of the given change for each application, sending at most batchSize applications per batch
+	private void executeBatched(final Connection connection, final Change change, final Resource resource,
+			final Collection<Application> applications) throws SQLException {
+		if (applications.isEmpty()) {
+			return;
+		}
+		try (PreparedStatement statement = connection.prepareStatement(change.sql)) {
+			int batchedApplications = 0;
+			for (final Application app : applications) {
+				addApplicationToBatch(change, app, resource, statement);
+				if (++batchedApplications == batchSize) {
+					statement.executeBatch();
+					batchedApplications = 0;
+				}
+			}
+			if (batchedApplications > 0) {
+				statement.executeBatch();
+			}
+		}
+	}
+
+	private void addApplicationToBatch(final Change change, final Application app, final Resource resource,
+			final PreparedStatement statement) throws SQLException {
+		int parameterIndex = 1;
+		if (change == Change.UPDATED) {
+			statement.setString(parameterIndex++, app.getDescription());
+		}
+		statement.setString(parameterIndex++, resource.getName());
+		statement.setString(parameterIndex++, resource.getType());
+		statement.setString(parameterIndex++, app.getName());
+		statement.setString(parameterIndex++, app.getVersion());
+		statement.setString(parameterIndex++, app.getPath());
+		if (change == Change.INSERTED) {
+			statement.setString(parameterIndex++, app.getDescription());
+		}
+		statement.addBatch();
+	}
+
+	// resources of the snapshot are shared by all readers, so they must never be handed out or modified
+	private Resource copyResource(final Resource resource) {
+		final Resource.Builder resourceBuilder = new Resource.Builder();
+		resourceBuilder.withName(resource.getName()).withType(resource.getType());
+		resourceBuilder.withQueues(resource.getQueues()).withApplications(resource.getApplications());
+		resourceBuilder.canModifyApplications(resource.canModifyApplications());
+		resourceBuilder.withCompactApplicationCatalog(compactApplicationCatalog);
+		resourceBuilder.withVersion(resource.getVersion());
+		return resourceBuilder.newInstance();
 	}
 
 	@Override
@@ -214,61 +478,158 @@ public class ClusterResourceProvider implements ResourceProvider {
 		Validate.notBlank(name, "name cannot be empty or only whitespace.");
 		Validate.notBlank(type, "type cannot be empty or only whitespace.");
 
-		final Lock readLock = readWriteLock.readLock();
-		readLock.lock();
-		try {
-			return resources.get(KeyUtils.generateResourceKey(name, type));
-		} finally {
-			readLock.unlock();
-		}
+		final Resource resource = snapshot.resources.get(new ResourceKey(name, type));
+		return resource == null ? null : copyResource(resource);
 	}
 
 	@Override
 	public Collection<Resource> getResources() {
-		final Lock readLock = readWriteLock.readLock();
-		readLock.lock();
-		try {
-			return Collections.unmodifiableCollection(resources.values());
-		} finally {
-			readLock.unlock();
+		final Collection<Resource> resources = snapshot.resources.values();
+		final Collection<Resource> copies = new ArrayList<Resource>(resources.size());
+		for (final Resource resource : resources) {
+			copies.add(copyResource(resource));
 		}
+		return copies;
 	}
 
-	// queries the DB and loads the internal map holding resources
-	private void loadResourcesFromDatabase_notThreadSafe() {
-		final Collection<Resource> enabledResources = getEnabledClusterResources().values();
-		resources.clear();
-		try (Connection connection = dataSource.getConnection();
-				CallableStatement callableStatement = connection.prepareCall(GET_SQL)) {
-			// iterate over all enabled resources and query the database to retrieve applications
-			for (final Resource enabledResource : enabledResources) {
-				fillApplicationsForResource(enabledResource, callableStatement);
-				resources.put(KeyUtils.generate(enabledResource), enabledResource);
+	// loads the enabled resources; applications are only read from the DB for resources that are not part of the base
+	// snapshot or whose version changed, and resources whose version and queues didn't change are reused as they are;
+	// returns the base snapshot if nothing changed, or null if the DB could not be queried
+	private Snapshot loadSnapshot(final Snapshot baseSnapshot) {
+		final Map<ResourceKey, Resource> enabledResources = getEnabledClusterResources();
+		final Map<ResourceKey, Resource> changedResources = new HashMap<ResourceKey, Resource>();
+		final Map<ResourceKey, Long> versions = new HashMap<ResourceKey, Long>();
+		boolean modified = enabledResources.size() != baseSnapshot.resources.size();
+		try (Connection connection = dataSource.getConnection()) {
+			// read versions and applications in the same transaction, so they are consistent with each other
+			connection.setAutoCommit(false);
+			try {
+				fillVersions(versions, connection);
+				for (final Map.Entry<ResourceKey, Resource> entry : enabledResources.entrySet()) {
+					final ResourceKey resourceKey = entry.getKey();
+					final Resource baseResource = baseSnapshot.resources.get(resourceKey);
+					if (baseResource != null && getVersion(baseSnapshot.versions, resourceKey) == getVersion(versions,
+							resourceKey)) {
+						if (haveSameQueues(baseResource, entry.getValue())) {
+							entry.setValue(baseResource);
+						} else {
+							modified = true;
+							for (final Application application : baseResource.getApplications()) {
+								entry.getValue().addApplication(application);
+							}
+							entry.getValue().setVersion(baseResource.getVersion());
+						}
+					} else {
+						modified = true;
+						entry.getValue().setVersion(getVersion(versions, resourceKey));
+						changedResources.put(resourceKey, entry.getValue());
+					}
+				}
+				if (changedResources.size() == enabledResources.size()) {
+					if (!changedResources.isEmpty()) {
+						fillApplicationsForResources(changedResources, connection);
+					}
+				} else {
+					try (PreparedStatement statement = connection.prepareStatement(GET_SQL)) {
+						for (final Resource changedResource : changedResources.values()) {
+							fillApplicationsForResource(changedResource, statement);
+						}
+					}
+				}
+				connection.commit();
+			} catch (final SQLException e) {
+				connection.rollback();
+				throw e;
 			}
 		} catch (final SQLException e) {
 			LOG.error("Could not retrieve applications for ClusterResourceProvider.", e);
+			return null;
 		}
+		if (!modified) {
+			LOG.debug("Cluster resources did not change since they were last loaded.");
+			return baseSnapshot;
+		}
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Loaded " + enabledResources.size() + " cluster resource(s), read applications of "
+					+ changedResources.size() + " new or modified resource(s) from the database.");
+		}
+		return new Snapshot(enabledResources, versions);
 	}
 
-	private void fillApplicationsForResource(final Resource resource, final CallableStatement callableStatement)
-			throws SQLException {
-		callableStatement.setString(1, resource.getName());
-		callableStatement.setString(2, resource.getType());
-		callableStatement.execute();
+	private static boolean haveSameQueues(final Resource resource1, final Resource resource2) {
+		final Iterator<Queue> queues1 = resource1.getQueues().iterator();
+		final Iterator<Queue> queues2 = resource2.getQueues().iterator();
+		while (queues1.hasNext() && queues2.hasNext()) {
+			if (!queues1.next().getKey().equals(queues2.next().getKey())) {
+				return false;
+			}
+		}
+		return !queues1.hasNext() && !queues2.hasNext();
+	}
 
-		try (ResultSet resultSet = callableStatement.getResultSet()) {
+	private void fillVersions(final Map<ResourceKey, Long> versions, final Connection connection) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement(GET_VERSIONS_SQL);
+				ResultSet resultSet = statement.executeQuery()) {
 			while (resultSet.next()) {
-				// get the column values to instantiate an app
-				final Application.Builder applicationBuilder = new Application.Builder();
-				applicationBuilder.withName(resultSet.getString("name")).withVersion(resultSet.getString("version"))
-						.withPath(resultSet.getString("path")).withDescription(resultSet.getString("description"));
-				resource.addApplication(applicationBuilder.newInstance());
+				versions.put(new ResourceKey(resultSet.getString("resource_name"),
+						resultSet.getString("resource_type")), resultSet.getLong("version"));
 			}
 		}
 	}
 
-	private Map<String, Resource> getEnabledClusterResources() {
-		final Map<String, Resource> enabledResources = new TreeMap<String, Resource>();
+	// resources that have never been saved with versioning have no version
+	private static long getVersion(final Map<ResourceKey, Long> versions, final ResourceKey resourceKey) {
+		final Long version = versions.get(resourceKey);
+		return version == null ? 0 : version;
+	}
+
+	private void fillApplicationsForResource(final Resource resource, final PreparedStatement statement)
+			throws SQLException {
+		statement.setString(1, resource.getName());
+		statement.setString(2, resource.getType());
+		try (ResultSet resultSet = statement.executeQuery()) {
+			while (resultSet.next()) {
+				resource.addApplication(readApplication(resultSet));
+			}
+		}
+	}
+
+	// reads all applications in one pass and adds them to their resources; rows of resources that are not enabled are
+	// ignored
+	private void fillApplicationsForResources(final Map<ResourceKey, Resource> enabledResources,
+			final Connection connection) throws SQLException {
+		int ignoredApplications = 0;
+		try (PreparedStatement statement = connection.prepareStatement(GET_ALL_SQL, ResultSet.TYPE_FORWARD_ONLY,
+				ResultSet.CONCUR_READ_ONLY)) {
+			statement.setFetchSize(GET_ALL_FETCH_SIZE);
+			try (ResultSet resultSet = statement.executeQuery()) {
+				while (resultSet.next()) {
+					final ResourceKey resourceKey = new ResourceKey(resultSet.getString("resource_name"),
+							resultSet.getString("resource_type"));
+					final Resource resource = enabledResources.get(resourceKey);
+					if (resource == null) {
+						ignoredApplications++;
+						continue;
+					}
+					resource.addApplication(readApplication(resultSet));
+				}
+			}
+		}
+		if (ignoredApplications > 0 && LOG.isInfoEnabled()) {
+			LOG.info("Ignored " + ignoredApplications + " application(s) of cluster resources that are not enabled.");
+		}
+	}
+
+	private Application readApplication(final ResultSet resultSet) throws SQLException {
+		// get the column values to instantiate an app
+		final Application.Builder applicationBuilder = new Application.Builder();
+		applicationBuilder.withName(resultSet.getString("name")).withVersion(resultSet.getString("version"))
+				.withPath(resultSet.getString("path")).withDescription(resultSet.getString("description"));
+		return applicationBuilder.newInstance();
+	}
+
+	private Map<ResourceKey, Resource> getEnabledClusterResources() {
+		final Map<ResourceKey, Resource> enabledResources = new TreeMap<ResourceKey, Resource>();
 		final Filter<Middleware> clusterMiddlewareFilter = new ClusterMiddlewareFilter();
 		final Collection<Middleware> enabledClusterMiddlewares = FilterApplicator
 				.applyFilter(middlewareProvider.getEnabledMiddlewares(), clusterMiddlewareFilter);
@@ -278,7 +639,7 @@ public class ClusterResourceProvider implements ResourceProvider {
 					enabledItemFilter)) {
 				final String resourceType = enabledClusterMiddleware.getType();
 				final String resourceName = enabledClusterItem.getName();
-				final String key = KeyUtils.generateResourceKey(resourceName, resourceType);
+				final ResourceKey key = new ResourceKey(resourceName, resourceType);
 				if (enabledResources.containsKey(key)) {
 					LOG.warn("Ignoring duplicate enabled middleware item. Middleware type = "
 							+ enabledClusterMiddleware.getType() + ", item name =" + enabledClusterItem.getName());
@@ -287,6 +648,7 @@ public class ClusterResourceProvider implements ResourceProvider {
 					resourceBuilder.withName(enabledClusterItem.getName()).withType(enabledClusterMiddleware.getType());
 					resourceBuilder.withQueues(extractQueuesFromItem(resourceType, enabledClusterItem));
 					resourceBuilder.canModifyApplications(true);
+					resourceBuilder.withCompactApplicationCatalog(compactApplicationCatalog);
 					enabledResources.put(key, resourceBuilder.newInstance());
 				}
 			}
@@ -327,6 +689,39 @@ public class ClusterResourceProvider implements ResourceProvider {
 		return extractedQueues;
 	}
 
+	// immutable view of the resources, as they were last read from/written to the database, and of the versions they
+	// had at that time, all keyed by resource key
+	private final static class Snapshot {
+		// never handed out, so never modified
+		private final Map<ResourceKey, Resource> resources;
+		private final Map<ResourceKey, Long> versions;
+
+		private Snapshot(final Map<ResourceKey, Resource> resources, final Map<ResourceKey, Long> versions) {
+			this.resources = Collections.unmodifiableMap(resources);
+			this.versions = Collections.unmodifiableMap(versions);
+		}
+
+		// copies this snapshot, replacing the given resource
+		private Snapshot withResource(final ResourceKey resourceKey, final Resource resource, final long version) {
+			final Map<ResourceKey, Resource> newResources = new TreeMap<ResourceKey, Resource>(resources);
+			newResources.put(resourceKey, resource);
+			final Map<ResourceKey, Long> newVersions = new HashMap<ResourceKey, Long>(versions);
+			newVersions.put(resourceKey, version);
+			return new Snapshot(newResources, newVersions);
+		}
+	}
+
+	// kinds of changes between the persisted and the current applications of a resource
+	private static enum Change {
+		INSERTED(ADD_SQL), UPDATED(UPDATE_SQL), DELETED(DELETE_SQL);
+
+		private final String sql;
+
+		private Change(final String sql) {
+			this.sql = sql;
+		}
+	}
+
 	private final static class ClusterMiddlewareFilter implements Filter<Middleware> {
 		@Override
 		public boolean passes(final Middleware element) {
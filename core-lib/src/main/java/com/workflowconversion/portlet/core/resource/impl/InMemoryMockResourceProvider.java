@@ -4,6 +4,7 @@ import java.util.Collection;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
@@ -13,15 +14,16 @@ import com.workflowconversion.portlet.core.middleware.MiddlewareProvider;
 import com.workflowconversion.portlet.core.resource.Application;
 import com.workflowconversion.portlet.core.resource.Queue;
 import com.workflowconversion.portlet.core.resource.Resource;
+import com.workflowconversion.portlet.core.resource.ResourceKey;
 import com.workflowconversion.portlet.core.resource.ResourceProvider;
-import com.workflowconversion.portlet.core.utils.KeyUtils;
+import com.workflowconversion.portlet.core.resource.ResourceProviderListener;
 
 import dci.data.Middleware;
 
 /**
  * Mock resource provider (not thread safe). This mock implementation does the opposite to the requirements, but it's OK
  * because this class is only for testing purposes.
- * 
+ *
  * @author delagarza
  *
  */
@@ -37,15 +39,17 @@ public class InMemoryMockResourceProvider implements ResourceProvider {
 
 	private final String name;
 	private final MiddlewareProvider middlewareProvider;
-	private final Map<String, Resource> resources;
+	private final Map<ResourceKey, Resource> resources;
 	private final boolean canAddApplications;
+	private final Collection<ResourceProviderListener> listeners;
 
 	public InMemoryMockResourceProvider(final String name, final MiddlewareProvider middlewareProvider,
 			final boolean canAddApplications) {
 		this.name = name;
 		this.middlewareProvider = middlewareProvider;
-		this.resources = new TreeMap<String, Resource>();
+		this.resources = new TreeMap<ResourceKey, Resource>();
 		this.canAddApplications = canAddApplications;
+		this.listeners = new CopyOnWriteArrayList<ResourceProviderListener>();
 		fillInitialResources();
 	}
 
@@ -95,6 +99,7 @@ public class InMemoryMockResourceProvider implements ResourceProvider {
 	@Override
 	public void init() {
 		LOG.info("Initializing InMemoryMockResourceProvider");
+		fireResourcesChanged();
 	}
 
 	@Override
@@ -104,18 +109,30 @@ public class InMemoryMockResourceProvider implements ResourceProvider {
 
 	@Override
 	public Resource getResource(final String name, final String type) {
-		return resources.get(KeyUtils.generateResourceKey(name, type));
+		return resources.get(new ResourceKey(name, type));
 	}
 
 	private void addResource_internal(final Resource resource) {
 		Validate.notNull(resource);
-		resources.put(KeyUtils.generate(resource), resource);
+		resources.put(resource.getKey(), resource);
 	}
 
 	@Override
 	public void save(final Resource resource) {
 		// does nothing, since we're just storing everything in-memory
 		LOG.info("Saving " + resource);
+		fireResourcesChanged();
+	}
+
+	@Override
+	public void addListener(final ResourceProviderListener listener) {
+		listeners.add(listener);
+	}
+
+	private void fireResourcesChanged() {
+		for (final ResourceProviderListener listener : listeners) {
+			listener.resourcesChanged(this);
+		}
 	}
 
 	@Override
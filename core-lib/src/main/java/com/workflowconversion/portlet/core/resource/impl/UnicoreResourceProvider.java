@@ -1,12 +1,27 @@
 package com.workflowconversion.portlet.core.resource.impl;
 
+import java.io.File;
+import java.io.ObjectStreamException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
@@ -15,13 +30,15 @@ import org.unigrids.x2006.x04.services.tss.ApplicationResourceType;
 import org.w3.x2005.x08.addressing.EndpointReferenceType;
 
 import com.google.common.base.Supplier;
-import com.google.common.base.Suppliers;
+import com.workflowconversion.portlet.core.Settings;
 import com.workflowconversion.portlet.core.exception.ApplicationException;
 import com.workflowconversion.portlet.core.middleware.MiddlewareProvider;
 import com.workflowconversion.portlet.core.resource.Application;
 import com.workflowconversion.portlet.core.resource.Resource;
+import com.workflowconversion.portlet.core.resource.ResourceKey;
 import com.workflowconversion.portlet.core.resource.ResourceProvider;
-import com.workflowconversion.portlet.core.utils.KeyUtils;
+import com.workflowconversion.portlet.core.resource.ResourceProviderListener;
+import com.workflowconversion.portlet.core.utils.StaleWhileRevalidateSupplier;
 
 import dci.data.Item;
 import dci.data.Item.Unicore;
@@ -34,7 +51,20 @@ import de.fzj.unicore.wsrflite.xmlbeans.client.RegistryClient;
 /**
  * Application provider that interacts with UNICORE. This is not editable. It uses UNICORE's Java API to query the
  * Incarnation Database (IDB) of each of the configured UNICORE instances.
- * 
+ *
+ * Resources are refreshed in the background once they are older than the cache duration, even if nobody asks for them,
+ * so listeners learn about changes and resources that could not be loaded during the initialization eventually appear.
+ *
+ * Registries and target system factories are queried concurrently, each within a timeout. Endpoints that fail or time
+ * out are represented by the data they returned the last time they could be queried.
+ *
+ * The security settings of each UNICORE item are reused across refreshes, so keystores and truststores are loaded only
+ * once; they are reloaded when the settings of the item or the keystore or truststore files change.
+ *
+ * The cache, the security settings and the executors are not serialized; deserialized instances use the executors of
+ * the current {@link Settings} and load their resources again on first use; only the original instance refreshes its
+ * resources periodically.
+ *
  * @author delagarza
  *
  */
@@ -47,48 +77,203 @@ public class UnicoreResourceProvider implements ResourceProvider {
 	private final static long serialVersionUID = 6542266373514172909L;
 	private final static Logger LOG = LoggerFactory.getLogger(UnicoreResourceProvider.class);
 
-	private final Supplier<Map<String, Resource>> cachedResources;
 	private final MiddlewareProvider middlewareProvider;
+	private final int cacheDuration;
+	private final long discoveryTimeoutNanos;
+	// restored in readResolve()
+	private transient ExecutorService discoveryExecutor;
+	private transient ScheduledExecutorService refreshExecutor;
+	private transient StaleWhileRevalidateSupplier<Map<ResourceKey, Resource>> cachedResources;
+	// last known good data, by item name and by TSF url
+	private final ConcurrentMap<String, List<String>> lastKnownTsfUrls;
+	private final ConcurrentMap<String, Resource> lastKnownResources;
+	// security settings, by item name; restored in readResolve()
+	private transient ConcurrentMap<String, CachedClientProperties> cachedClientProperties;
+	private final Collection<ResourceProviderListener> listeners;
 
 	private volatile boolean hasErrors;
 
 	/**
 	 * Constructor.
-	 * 
+	 *
 	 * @param middlewareProvider
 	 *            A middleware provider.
 	 * @param cacheDuration
 	 *            the duration of the cache, in seconds.
+	 * @param refreshExecutor
+	 *            the executor on which the cache is periodically checked for expiration.
+	 * @param discoveryExecutor
+	 *            the executor on which UNICORE registries and target system factories are queried and on which the
+	 *            cache is refreshed.
+	 * @param discoveryTimeout
+	 *            the maximum time to wait for a single registry or target system factory, in seconds.
 	 */
-	public UnicoreResourceProvider(final MiddlewareProvider middlewareProvider, final int cacheDuration) {
+	public UnicoreResourceProvider(final MiddlewareProvider middlewareProvider, final int cacheDuration,
+			final ScheduledExecutorService refreshExecutor, final ExecutorService discoveryExecutor,
+			final int discoveryTimeout) {
 		Validate.notNull(middlewareProvider, "middlewareProvider cannot be null");
 		Validate.isTrue(cacheDuration > 0, "invalid cacheDuration " + cacheDuration);
+		Validate.notNull(refreshExecutor, "refreshExecutor cannot be null");
+		Validate.notNull(discoveryExecutor, "discoveryExecutor cannot be null");
+		Validate.isTrue(discoveryTimeout > 0, "invalid discoveryTimeout " + discoveryTimeout);
 		this.hasErrors = false;
 		this.middlewareProvider = middlewareProvider;
-		this.cachedResources = Suppliers.memoizeWithExpiration(new Supplier<Map<String, Resource>>() {
+		this.cacheDuration = cacheDuration;
+		this.refreshExecutor = refreshExecutor;
+		this.discoveryExecutor = discoveryExecutor;
+		this.discoveryTimeoutNanos = TimeUnit.SECONDS.toNanos(discoveryTimeout);
+		this.lastKnownTsfUrls = new ConcurrentHashMap<String, List<String>>();
+		this.lastKnownResources = new ConcurrentHashMap<String, Resource>();
+		this.cachedClientProperties = new ConcurrentHashMap<String, CachedClientProperties>();
+		this.listeners = new CopyOnWriteArrayList<ResourceProviderListener>();
+		this.cachedResources = createCache();
+	}
+
+	// executors can't be serialized, so the ones of the current settings are used along with a new, empty cache
+	private Object readResolve() throws ObjectStreamException {
+		this.refreshExecutor = Settings.getInstance().getResourceRefreshExecutor();
+		this.discoveryExecutor = Settings.getInstance().getResourceDiscoveryExecutor();
+		this.cachedClientProperties = new ConcurrentHashMap<String, CachedClientProperties>();
+		this.cachedResources = createCache();
+		return this;
+	}
+
+	private StaleWhileRevalidateSupplier<Map<ResourceKey, Resource>> createCache() {
+		// expired resources are served while they are refreshed in the background
+		return new StaleWhileRevalidateSupplier<Map<ResourceKey, Resource>>("UNICORE resources",
+				new Supplier<Map<ResourceKey, Resource>>() {
+
+					@Override
+					public Map<ResourceKey, Resource> get() {
+						return getResources_internal();
+					}
+
+				}, cacheDuration, TimeUnit.SECONDS, discoveryExecutor) {
 
 			@Override
-			public Map<String, Resource> get() {
-				return getResources_internal();
+			protected void valueLoaded(final Map<ResourceKey, Resource> resources) {
+				// resources that could not be loaded during the initialization might have been loaded now
+				hasErrors = false;
+				fireResourcesChanged();
 			}
 
-		}, cacheDuration, TimeUnit.SECONDS);
+		};
 	}
 
-	private Map<String, Resource> getResources_internal() {
+	/**
+	 * @return the metrics of the resources cache.
+	 */
+	public StaleWhileRevalidateSupplier.Statistics getCacheStatistics() {
+		return cachedResources.getStatistics();
+	}
+
+	private Map<ResourceKey, Resource> getResources_internal() {
 		LOG.info("Refreshing UNICORE resources cache.");
 		// get the available unicore items
-		final Collection<Item> unicoreItems = middlewareProvider.getEnabledItems(UNICORE_RESOURCE_TYPE);
+		final List<Item> unicoreItems = new ArrayList<Item>(middlewareProvider.getEnabledItems(UNICORE_RESOURCE_TYPE));
 
-		// extract the applications from each item
-		final Map<String, Resource> resources = new TreeMap<String, Resource>();
+		// list the TSFs of all items at once
+		final List<PendingEndpoint<List<EndpointReferenceType>>> pendingRegistries = new ArrayList<PendingEndpoint<List<EndpointReferenceType>>>();
 		for (final Item item : unicoreItems) {
-			extractResourcesFromUnicoreInstance(item, resources);
+			pendingRegistries.add(new PendingEndpoint<List<EndpointReferenceType>>(item.getName().trim(),
+					discoveryExecutor.submit(new Callable<List<EndpointReferenceType>>() {
+						@Override
+						public List<EndpointReferenceType> call() throws Exception {
+							return listTargetSystemFactories(item);
+						}
+					})));
+		}
+
+		// then query all TSFs at once; the order of the TSFs is kept, so later TSFs of an item replace earlier ones, as
+		// they always did
+		final List<PendingEndpoint<Resource>> pendingTsfs = new ArrayList<PendingEndpoint<Resource>>();
+		final Map<ResourceKey, Resource> resources = new TreeMap<ResourceKey, Resource>();
+		for (int i = 0; i < pendingRegistries.size(); i++) {
+			final PendingEndpoint<List<EndpointReferenceType>> pendingRegistry = pendingRegistries.get(i);
+			final Item item = unicoreItems.get(i);
+			final String resourceName = pendingRegistry.name;
+			final List<EndpointReferenceType> tsfEPRs;
+			try {
+				tsfEPRs = pendingRegistry.get();
+			} catch (final Exception e) {
+				LOG.error("Could not retrieve UNICORE applications from " + resourceName
+						+ ", using last known applications.", e);
+				final List<String> tsfUrls = lastKnownTsfUrls.get(resourceName);
+				if (tsfUrls != null) {
+					for (final String tsfUrl : tsfUrls) {
+						addResource(lastKnownResources.get(tsfUrl), resources);
+					}
+				}
+				continue;
+			}
+			final ClientProperties clientProperties = getClientProperties(resourceName, item.getUnicore());
+			final List<String> tsfUrls = new ArrayList<String>(tsfEPRs.size());
+			for (final EndpointReferenceType epr : tsfEPRs) {
+				final String serverUrl = epr.getAddress().getStringValue().trim();
+				tsfUrls.add(serverUrl);
+				// TSFs are queried concurrently and ClientProperties is not thread-safe, so each client gets its own
+				// copy; copies share the keystore and truststore if they were already loaded
+				final ClientProperties tsfClientProperties = clientProperties.clone();
+				final Future<Resource> tsfFuture = discoveryExecutor.submit(new Callable<Resource>() {
+					@Override
+					public Resource call() throws Exception {
+						return queryTargetSystemFactory(resourceName, serverUrl, epr, tsfClientProperties);
+					}
+				});
+				pendingTsfs.add(new PendingEndpoint<Resource>(serverUrl, tsfFuture));
+			}
+			lastKnownTsfUrls.put(resourceName, tsfUrls);
+		}
+
+		for (final PendingEndpoint<Resource> pendingTsf : pendingTsfs) {
+			try {
+				final Resource resource = pendingTsf.get();
+				lastKnownResources.put(pendingTsf.name, resource);
+				addResource(resource, resources);
+			} catch (final Exception e) {
+				LOG.error("Could not retrieve UNICORE applications from " + pendingTsf.name
+						+ ", using last known applications.", e);
+				addResource(lastKnownResources.get(pendingTsf.name), resources);
+			}
 		}
 
+		// forget items that are no longer enabled and TSFs that are no longer listed by their registries
+		final Set<String> resourceNames = new TreeSet<String>();
+		for (final PendingEndpoint<List<EndpointReferenceType>> pendingRegistry : pendingRegistries) {
+			resourceNames.add(pendingRegistry.name);
+		}
+		lastKnownTsfUrls.keySet().retainAll(resourceNames);
+		final Set<String> tsfUrls = new TreeSet<String>();
+		for (final List<String> itemTsfUrls : lastKnownTsfUrls.values()) {
+			tsfUrls.addAll(itemTsfUrls);
+		}
+		lastKnownResources.keySet().retainAll(tsfUrls);
+
 		return resources;
 	}
 
+	@Override
+	public void addListener(final ResourceProviderListener listener) {
+		Validate.notNull(listener, "listener cannot be null");
+		listeners.add(listener);
+	}
+
+	private void fireResourcesChanged() {
+		for (final ResourceProviderListener listener : listeners) {
+			try {
+				listener.resourcesChanged(this);
+			} catch (final RuntimeException e) {
+				LOG.error("Could not notify listener of changes in UNICORE resources.", e);
+			}
+		}
+	}
+
+	private void addResource(final Resource resource, final Map<ResourceKey, Resource> resources) {
+		if (resource != null) {
+			resources.put(resource.getKey(), resource);
+		}
+	}
+
 	@Override
 	public boolean canAddApplications() {
 		return false;
@@ -101,53 +286,81 @@ public class UnicoreResourceProvider implements ResourceProvider {
 
 	@Override
 	public Resource getResource(final String name, final String type) {
-		return cachedResources.get().get(KeyUtils.generateResourceKey(name, type));
+		return cachedResources.get().get(new ResourceKey(name, type));
 	}
 
-	private void extractResourcesFromUnicoreInstance(final Item item, final Map<String, Resource> resources) {
-		try {
-			final Unicore unicoreConfigItem = item.getUnicore();
-			final ClientProperties securityProperties = createClientProperties(unicoreConfigItem);
-			final String resourceName = item.getName().trim();
-			final RegistryClient registryClient = initRegistryClient(resourceName, unicoreConfigItem);
-			final List<EndpointReferenceType> tsfEPRs = registryClient
-					.listAccessibleServices(TargetSystemFactory.TSF_PORT);
-
-			for (final EndpointReferenceType epr : tsfEPRs) {
-				final String serverUrl = epr.getAddress().getStringValue().trim();
-				final TSFClient tsf = new TSFClient(serverUrl, epr, securityProperties);
-				final Resource.Builder resourceBuilder = new Resource.Builder();
-				resourceBuilder.withType(UNICORE_RESOURCE_TYPE).withName(resourceName);
-				// UNICORE does not allow to add applications
-				resourceBuilder.canModifyApplications(false);
-				if (tsf != null && tsf.getResourcePropertiesDocument() != null) {
-					final Collection<Application> extractedApplications = new LinkedList<Application>();
-					for (final ApplicationResourceType unicoreApp : tsf.getResourcePropertiesDocument()
-							.getTargetSystemFactoryProperties().getApplicationResourceArray()) {
-						final Application.Builder applicationBuilder = new Application.Builder();
-						applicationBuilder.withName(unicoreApp.getApplicationName());
-						applicationBuilder.withVersion(unicoreApp.getApplicationVersion());
-						applicationBuilder.withDescription(unicoreApp.getDescription());
-						// UNICORE hides application details such as its path
-						applicationBuilder.withPath("not available");
-						extractedApplications.add(applicationBuilder.newInstance());
-					}
-					resourceBuilder.withApplications(extractedApplications);
-				}
-				final Resource loadedResource = resourceBuilder.newInstance();
-				resources.put(KeyUtils.generate(loadedResource), loadedResource);
+	// package-private, like queryTargetSystemFactory, so tests can replace UNICORE servers with stubs
+	List<EndpointReferenceType> listTargetSystemFactories(final Item item) throws Exception {
+		final String resourceName = item.getName().trim();
+		final RegistryClient registryClient = initRegistryClient(resourceName,
+				getClientProperties(resourceName, item.getUnicore()));
+		return registryClient.listAccessibleServices(TargetSystemFactory.TSF_PORT);
+	}
 
+	Resource queryTargetSystemFactory(final String resourceName, final String serverUrl,
+			final EndpointReferenceType epr, final ClientProperties clientProperties) throws Exception {
+		final TSFClient tsf = new TSFClient(serverUrl, epr, clientProperties);
+		final Resource.Builder resourceBuilder = new Resource.Builder();
+		resourceBuilder.withType(UNICORE_RESOURCE_TYPE).withName(resourceName);
+		// UNICORE does not allow to add applications
+		resourceBuilder.canModifyApplications(false);
+		if (tsf.getResourcePropertiesDocument() != null) {
+			final Collection<Application> extractedApplications = new LinkedList<Application>();
+			for (final ApplicationResourceType unicoreApp : tsf.getResourcePropertiesDocument()
+					.getTargetSystemFactoryProperties().getApplicationResourceArray()) {
+				final Application.Builder applicationBuilder = new Application.Builder();
+				applicationBuilder.withName(unicoreApp.getApplicationName());
+				applicationBuilder.withVersion(unicoreApp.getApplicationVersion());
+				applicationBuilder.withDescription(unicoreApp.getDescription());
+				// UNICORE hides application details such as its path
+				applicationBuilder.withPath("not available");
+				extractedApplications.add(applicationBuilder.newInstance());
 			}
-		} catch (final Exception e) {
-			LOG.error("Could not retrieve UNICORE applications from " + item.getName(), e);
+			resourceBuilder.withApplications(extractedApplications);
 		}
+		return resourceBuilder.newInstance();
 	}
 
-	private RegistryClient initRegistryClient(final String resource, final Unicore unicoreConfigItem) throws Exception {
+	private RegistryClient initRegistryClient(final String resource, final ClientProperties clientProperties)
+			throws Exception {
 		final String url = "https://" + resource + "/REGISTRY/services/Registry?res=default_registry";
 		final EndpointReferenceType epr = EndpointReferenceType.Factory.newInstance();
 		epr.addNewAddress().setStringValue(url);
-		return new RegistryClient(url, epr, createClientProperties(unicoreConfigItem));
+		return new RegistryClient(url, epr, clientProperties);
+	}
+
+	// UNICORE clients load the keystore and truststore once per ClientProperties instance, so instances are reused for
+	// as long as the security settings of the item stay the same
+	private ClientProperties getClientProperties(final String resourceName, final Unicore unicoreConfigItem) {
+		final List<Object> fingerprint = getSecurityFingerprint(unicoreConfigItem);
+		final CachedClientProperties cached = cachedClientProperties.get(resourceName);
+		if (cached != null && cached.fingerprint.equals(fingerprint)) {
+			return cached.clientProperties;
+		}
+		if (cached != null) {
+			LOG.info("The security settings of " + resourceName + " changed, reloading keystore and truststore.");
+		}
+		final ClientProperties clientProperties = createClientProperties(unicoreConfigItem);
+		cachedClientProperties.put(resourceName, new CachedClientProperties(fingerprint, clientProperties));
+		return clientProperties;
+	}
+
+	// everything that, if changed, requires the keystore and truststore to be reloaded
+	private List<Object> getSecurityFingerprint(final Unicore unicoreConfigItem) {
+		final List<Object> fingerprint = new ArrayList<Object>(Arrays.<Object> asList(unicoreConfigItem.getKeystore(),
+				unicoreConfigItem.getKeypass(), unicoreConfigItem.getKeyalias(), unicoreConfigItem.getTruststore(),
+				unicoreConfigItem.getTrustpass()));
+		addFileState(unicoreConfigItem.getKeystore(), fingerprint);
+		addFileState(unicoreConfigItem.getTruststore(), fingerprint);
+		return fingerprint;
+	}
+
+	private void addFileState(final String path, final List<Object> fingerprint) {
+		if (path != null) {
+			final File file = new File(path);
+			fingerprint.add(file.lastModified());
+			fingerprint.add(file.length());
+		}
 	}
 
 	// Adapted from hu.sztaki.lpds.pgportal.util.resource.UnicoreIDBToolHandler, see:
@@ -178,6 +391,14 @@ public class UnicoreResourceProvider implements ResourceProvider {
 			hasErrors = true;
 			LOG.error("The UNICORE Resource Provider could not be initialized.", e);
 		}
+		// expired resources are otherwise only refreshed when they are requested; refreshes run on the discovery
+		// executor, so they don't hold up the refresh executor
+		refreshExecutor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				cachedResources.refreshIfStale();
+			}
+		}, cacheDuration, cacheDuration, TimeUnit.SECONDS);
 	}
 
 	@Override
@@ -196,4 +417,42 @@ public class UnicoreResourceProvider implements ResourceProvider {
 				"This provider does not support adding/editing applications. This is probably a coding problem and should be reported.");
 	}
 
+	private static class CachedClientProperties {
+		private final List<Object> fingerprint;
+		private final ClientProperties clientProperties;
+
+		private CachedClientProperties(final List<Object> fingerprint, final ClientProperties clientProperties) {
+			this.fingerprint = fingerprint;
+			this.clientProperties = clientProperties;
+		}
+	}
+
+	// a query to a UNICORE endpoint that must complete within the discovery timeout, counted from its submission
+	private class PendingEndpoint<T> {
+		private final String name;
+		private final Future<T> future;
+		private final long deadlineNanos;
+
+		private PendingEndpoint(final String name, final Future<T> future) {
+			this.name = name;
+			this.future = future;
+			this.deadlineNanos = System.nanoTime() + discoveryTimeoutNanos;
+		}
+
+		private T get() throws InterruptedException, ExecutionException, TimeoutException {
+			try {
+				return future.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+			} catch (final InterruptedException e) {
+				// keep the interrupted status, the remaining endpoints will fall back to their last known data as well
+				Thread.currentThread().interrupt();
+				future.cancel(true);
+				throw e;
+			} catch (final TimeoutException e) {
+				// the client might not react to interruptions, but there's no need to keep it running either
+				future.cancel(true);
+				throw e;
+			}
+		}
+	}
+
 }
@@ -0,0 +1,333 @@
+package com.workflowconversion.portlet.core.search;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+
+import com.workflowconversion.portlet.core.resource.Application;
+import com.workflowconversion.portlet.core.resource.Resource;
+
+/**
+ * Immutable index used to search the applications of several resources, as they were when the index was built.
+ * 
+ * Applications are kept sorted by name (ignoring case), version (see {@link VersionComparator}), resource and path, so
+ * results are always returned in that order and can be paged. Names are stored once in a sorted dictionary: name
+ * prefixes are found with a binary search and name substrings through an index of the trigrams of each name.
+ * Descriptions are split into words, which are kept in an inverted index. Only the fields needed to find an application
+ * are kept; the application itself is obtained from its resource whenever it is returned, so resources with a compact
+ * application catalog stay compact. Applications that were removed from their resource after the index was built are
+ * not returned.
+ * 
+ * @author delagarza
+ *
+ */
+public class ApplicationSearchIndex implements Serializable {
+
+	private static final long serialVersionUID = -3870147286306424517L;
+
+	/**
+	 * An index without applications.
+	 */
+	public final static ApplicationSearchIndex EMPTY = new ApplicationSearchIndex(Collections.<Entry> emptyList());
+
+	private final static int GRAM_LENGTH = 3;
+	private final static VersionComparator VERSION_COMPARATOR = new VersionComparator();
+
+	// one entry per application, sorted
+	private final Resource[] resources;
+	private final String[] names;
+	private final String[] versions;
+	private final String[] paths;
+
+	// distinct lower case names, sorted; the applications of the i-th name are in [nameStart[i], nameStart[i + 1])
+	private final String[] distinctNames;
+	private final int[] nameStart;
+	// ids of the distinct names containing each trigram
+	private final Map<String, int[]> nameGrams;
+	// applications whose description contains each lower case word
+	private final Map<String, int[]> descriptionWords;
+
+	private ApplicationSearchIndex(final List<Entry> entries) {
+		final int size = entries.size();
+		this.resources = new Resource[size];
+		this.names = new String[size];
+		this.versions = new String[size];
+		this.paths = new String[size];
+
+		final List<String> distinctNameList = new ArrayList<String>();
+		final List<Integer> nameStartList = new ArrayList<Integer>();
+		final Map<String, List<Integer>> grams = new HashMap<String, List<Integer>>();
+		final Map<String, List<Integer>> words = new HashMap<String, List<Integer>>();
+		for (int row = 0; row < size; row++) {
+			final Entry entry = entries.get(row);
+			resources[row] = entry.resource;
+			names[row] = entry.application.getName();
+			versions[row] = entry.application.getVersion();
+			paths[row] = entry.application.getPath();
+			if (distinctNameList.isEmpty() || !distinctNameList.get(distinctNameList.size() - 1).equals(entry.name)) {
+				final int nameId = distinctNameList.size();
+				distinctNameList.add(entry.name);
+				nameStartList.add(row);
+				for (final String gram : getGrams(entry.name)) {
+					getOrCreate(grams, gram).add(nameId);
+				}
+			}
+			for (final String word : getWords(entry.application.getDescription())) {
+				getOrCreate(words, word).add(row);
+			}
+		}
+		nameStartList.add(size);
+
+		this.distinctNames = distinctNameList.toArray(new String[distinctNameList.size()]);
+		this.nameStart = toArray(nameStartList);
+		this.nameGrams = toPostings(grams);
+		this.descriptionWords = toPostings(words);
+	}
+
+	/**
+	 * Builds an index of the applications of the given resources.
+	 * 
+	 * @param resources
+	 *            the resources whose applications will be indexed.
+	 * @return an index of the applications of the given resources.
+	 */
+	public static ApplicationSearchIndex build(final Collection<Resource> resources) {
+		Validate.notNull(resources, "resources cannot be null; this is a coding problem and should be reported.");
+		final List<Entry> entries = new ArrayList<Entry>();
+		for (final Resource resource : resources) {
+			for (final Application application : resource.getApplications()) {
+				entries.add(new Entry(resource, application));
+			}
+		}
+		Collections.sort(entries, ENTRY_COMPARATOR);
+		return new ApplicationSearchIndex(entries);
+	}
+
+	/**
+	 * Searches the applications matching the given query.
+	 * 
+	 * @param query
+	 *            the query.
+	 * @return the requested page of matching applications.
+	 */
+	public ApplicationSearchResult search(final ApplicationSearchQuery query) {
+		Validate.notNull(query, "query cannot be null; this is a coding problem and should be reported.");
+		// null means that all applications are candidates
+		int[] candidates = null;
+		final int[] nameIds = findNames(query);
+		if (nameIds != null) {
+			candidates = toRows(nameIds);
+		}
+		if (query.getDescriptionText() != null) {
+			for (final String word : getWords(query.getDescriptionText())) {
+				final int[] rows = descriptionWords.get(word);
+				candidates = intersect(candidates, rows == null ? new int[0] : rows);
+			}
+		}
+
+		final List<ApplicationSearchResult.Hit> hits = new ArrayList<ApplicationSearchResult.Hit>();
+		final int candidateCount = candidates == null ? names.length : candidates.length;
+		int totalHits = 0;
+		for (int i = 0; i < candidateCount; i++) {
+			final int row = candidates == null ? i : candidates[i];
+			if (!matchesVersionAndResource(row, query)) {
+				continue;
+			}
+			if (totalHits >= query.getOffset() && hits.size() < query.getLimit()) {
+				final Application application = resources[row].getApplication(names[row], versions[row], paths[row]);
+				if (application != null) {
+					hits.add(new ApplicationSearchResult.Hit(resources[row], application));
+				}
+			}
+			totalHits++;
+		}
+		return new ApplicationSearchResult(hits, totalHits, query.getOffset());
+	}
+
+	/**
+	 * @return the number of indexed applications.
+	 */
+	public int getApplicationCount() {
+		return names.length;
+	}
+
+	// returns the sorted ids of the names matching the query, or null if the query has no criteria on the name
+	private int[] findNames(final ApplicationSearchQuery query) {
+		int[] nameIds = null;
+		if (query.getNamePrefix() != null) {
+			final String prefix = toLowerCase(query.getNamePrefix());
+			final int insertionPoint = Arrays.binarySearch(distinctNames, prefix);
+			final int from = insertionPoint < 0 ? -insertionPoint - 1 : insertionPoint;
+			int to = from;
+			while (to < distinctNames.length && distinctNames[to].startsWith(prefix)) {
+				to++;
+			}
+			nameIds = new int[to - from];
+			for (int i = 0; i < nameIds.length; i++) {
+				nameIds[i] = from + i;
+			}
+		}
+		if (query.getNameSubstring() != null) {
+			nameIds = intersect(nameIds, findNamesContaining(toLowerCase(query.getNameSubstring())));
+		}
+		return nameIds;
+	}
+
+	private int[] findNamesContaining(final String text) {
+		// candidates are the names containing all trigrams of the text, short texts are looked up in all names
+		int[] candidates = null;
+		for (final String gram : getGrams(text)) {
+			final int[] nameIds = nameGrams.get(gram);
+			candidates = intersect(candidates, nameIds == null ? new int[0] : nameIds);
+		}
+		final int candidateCount = candidates == null ? distinctNames.length : candidates.length;
+		final int[] matches = new int[candidateCount];
+		int matchCount = 0;
+		for (int i = 0; i < candidateCount; i++) {
+			final int nameId = candidates == null ? i : candidates[i];
+			if (distinctNames[nameId].contains(text)) {
+				matches[matchCount++] = nameId;
+			}
+		}
+		return Arrays.copyOf(matches, matchCount);
+	}
+
+	private int[] toRows(final int[] nameIds) {
+		int rowCount = 0;
+		for (final int nameId : nameIds) {
+			rowCount += nameStart[nameId + 1] - nameStart[nameId];
+		}
+		final int[] rows = new int[rowCount];
+		int index = 0;
+		for (final int nameId : nameIds) {
+			for (int row = nameStart[nameId]; row < nameStart[nameId + 1]; row++) {
+				rows[index++] = row;
+			}
+		}
+		return rows;
+	}
+
+	private boolean matchesVersionAndResource(final int row, final ApplicationSearchQuery query) {
+		if (query.getMinVersion() != null && VERSION_COMPARATOR.compare(versions[row], query.getMinVersion()) < 0) {
+			return false;
+		}
+		if (query.getMaxVersion() != null && VERSION_COMPARATOR.compare(versions[row], query.getMaxVersion()) > 0) {
+			return false;
+		}
+		return query.getResourceType() == null
+				|| query.getResourceType().equals(StringUtils.trim(resources[row].getType()));
+	}
+
+	// intersection of two sorted arrays; null stands for "everything"
+	private static int[] intersect(final int[] sorted1, final int[] sorted2) {
+		if (sorted1 == null) {
+			return sorted2;
+		}
+		final int[] intersection = new int[Math.min(sorted1.length, sorted2.length)];
+		int i1 = 0, i2 = 0, size = 0;
+		while (i1 < sorted1.length && i2 < sorted2.length) {
+			if (sorted1[i1] < sorted2[i2]) {
+				i1++;
+			} else if (sorted1[i1] > sorted2[i2]) {
+				i2++;
+			} else {
+				intersection[size++] = sorted1[i1];
+				i1++;
+				i2++;
+			}
+		}
+		return Arrays.copyOf(intersection, size);
+	}
+
+	private static Set<String> getGrams(final String text) {
+		final Set<String> grams = new LinkedHashSet<String>();
+		for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+			grams.add(text.substring(i, i + GRAM_LENGTH));
+		}
+		return grams;
+	}
+
+	private static Set<String> getWords(final String text) {
+		final Set<String> words = new LinkedHashSet<String>();
+		if (text != null) {
+			for (final String word : toLowerCase(text).split("[^\\p{L}\\p{N}]+")) {
+				if (!word.isEmpty()) {
+					words.add(word);
+				}
+			}
+		}
+		return words;
+	}
+
+	private static String toLowerCase(final String text) {
+		return StringUtils.trimToEmpty(text).toLowerCase(Locale.ENGLISH);
+	}
+
+	private static List<Integer> getOrCreate(final Map<String, List<Integer>> map, final String key) {
+		List<Integer> value = map.get(key);
+		if (value == null) {
+			value = new ArrayList<Integer>();
+			map.put(key, value);
+		}
+		return value;
+	}
+
+	private static Map<String, int[]> toPostings(final Map<String, List<Integer>> map) {
+		final Map<String, int[]> postings = new HashMap<String, int[]>(map.size() * 2);
+		for (final Map.Entry<String, List<Integer>> entry : map.entrySet()) {
+			postings.put(entry.getKey(), toArray(entry.getValue()));
+		}
+		return postings;
+	}
+
+	private static int[] toArray(final List<Integer> list) {
+		final int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = list.get(i);
+		}
+		return array;
+	}
+
+	private final static Comparator<Entry> ENTRY_COMPARATOR = new Comparator<Entry>() {
+		@Override
+		public int compare(final Entry entry1, final Entry entry2) {
+			int result = entry1.name.compareTo(entry2.name);
+			if (result == 0) {
+				result = VERSION_COMPARATOR.compare(entry1.application.getVersion(), entry2.application.getVersion());
+			}
+			if (result == 0) {
+				result = entry1.resource.getKey().compareTo(entry2.resource.getKey());
+			}
+			if (result == 0) {
+				result = StringUtils.trimToEmpty(entry1.application.getPath())
+						.compareTo(StringUtils.trimToEmpty(entry2.application.getPath()));
+			}
+			return result;
+		}
+	};
+
+	// used only while building the index
+	private static class Entry {
+		private final Resource resource;
+		private final Application application;
+		private final String name;
+
+		private Entry(final Resource resource, final Application application) {
+			this.resource = resource;
+			this.application = application;
+			this.name = toLowerCase(application.getName());
+		}
+	}
+}
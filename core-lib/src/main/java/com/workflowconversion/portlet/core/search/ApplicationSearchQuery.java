@@ -0,0 +1,223 @@
+package com.workflowconversion.portlet.core.search;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Immutable set of criteria used to search applications in an {@link ApplicationSearchIndex}. Text values are trimmed;
+ * blank values are treated as missing. An application must match all of the given criteria; a query without criteria
+ * matches every application.
+ * 
+ * @author delagarza
+ *
+ */
+public class ApplicationSearchQuery {
+
+	/**
+	 * Number of results returned when no limit is given.
+	 */
+	public final static int DEFAULT_LIMIT = 50;
+	/**
+	 * Maximum number of results that can be requested at once.
+	 */
+	public final static int MAX_LIMIT = 1000;
+
+	private final String namePrefix;
+	private final String nameSubstring;
+	private final String descriptionText;
+	private final String minVersion;
+	private final String maxVersion;
+	private final String resourceType;
+	private final int offset;
+	private final int limit;
+
+	private ApplicationSearchQuery(final String namePrefix, final String nameSubstring, final String descriptionText,
+			final String minVersion, final String maxVersion, final String resourceType, final int offset,
+			final int limit) {
+		Validate.isTrue(offset >= 0, "offset cannot be negative.");
+		Validate.isTrue(limit >= 1 && limit <= MAX_LIMIT, "limit must be between 1 and " + MAX_LIMIT + '.');
+		this.namePrefix = StringUtils.trimToNull(namePrefix);
+		this.nameSubstring = StringUtils.trimToNull(nameSubstring);
+		this.descriptionText = StringUtils.trimToNull(descriptionText);
+		this.minVersion = StringUtils.trimToNull(minVersion);
+		this.maxVersion = StringUtils.trimToNull(maxVersion);
+		this.resourceType = StringUtils.trimToNull(resourceType);
+		this.offset = offset;
+		this.limit = limit;
+	}
+
+	/**
+	 * @return the prefix the application name must start with, ignoring case, or {@code null} if not set.
+	 */
+	public String getNamePrefix() {
+		return namePrefix;
+	}
+
+	/**
+	 * @return the text the application name must contain, ignoring case, or {@code null} if not set.
+	 */
+	public String getNameSubstring() {
+		return nameSubstring;
+	}
+
+	/**
+	 * @return the words the application description must contain, ignoring case, or {@code null} if not set.
+	 */
+	public String getDescriptionText() {
+		return descriptionText;
+	}
+
+	/**
+	 * @return the lowest matching version (inclusive), or {@code null} if not set.
+	 */
+	public String getMinVersion() {
+		return minVersion;
+	}
+
+	/**
+	 * @return the highest matching version (inclusive), or {@code null} if not set.
+	 */
+	public String getMaxVersion() {
+		return maxVersion;
+	}
+
+	/**
+	 * @return the type of the resource on which the application resides, or {@code null} if not set.
+	 */
+	public String getResourceType() {
+		return resourceType;
+	}
+
+	/**
+	 * @return the number of matching applications to skip.
+	 */
+	public int getOffset() {
+		return offset;
+	}
+
+	/**
+	 * @return the maximum number of applications to return.
+	 */
+	public int getLimit() {
+		return limit;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "ApplicationSearchQuery [namePrefix=" + namePrefix + ", nameSubstring=" + nameSubstring
+				+ ", descriptionText=" + descriptionText + ", minVersion=" + minVersion + ", maxVersion="
+				+ maxVersion + ", resourceType=" + resourceType + ", offset=" + offset + ", limit=" + limit + "]";
+	}
+
+	/**
+	 * Builder for queries.
+	 * 
+	 * @author delagarza
+	 *
+	 */
+	public static class Builder {
+		private String namePrefix;
+		private String nameSubstring;
+		private String descriptionText;
+		private String minVersion;
+		private String maxVersion;
+		private String resourceType;
+		private int offset = 0;
+		private int limit = DEFAULT_LIMIT;
+
+		/**
+		 * @param namePrefix
+		 *            the prefix the application name must start with.
+		 * @return {@code this} builder.
+		 */
+		public Builder withNamePrefix(final String namePrefix) {
+			this.namePrefix = namePrefix;
+			return this;
+		}
+
+		/**
+		 * @param nameSubstring
+		 *            the text the application name must contain.
+		 * @return {@code this} builder.
+		 */
+		public Builder withNameSubstring(final String nameSubstring) {
+			this.nameSubstring = nameSubstring;
+			return this;
+		}
+
+		/**
+		 * @param descriptionText
+		 *            the words the application description must contain.
+		 * @return {@code this} builder.
+		 */
+		public Builder withDescriptionText(final String descriptionText) {
+			this.descriptionText = descriptionText;
+			return this;
+		}
+
+		/**
+		 * @param minVersion
+		 *            the lowest matching version (inclusive).
+		 * @return {@code this} builder.
+		 */
+		public Builder withMinVersion(final String minVersion) {
+			this.minVersion = minVersion;
+			return this;
+		}
+
+		/**
+		 * @param maxVersion
+		 *            the highest matching version (inclusive).
+		 * @return {@code this} builder.
+		 */
+		public Builder withMaxVersion(final String maxVersion) {
+			this.maxVersion = maxVersion;
+			return this;
+		}
+
+		/**
+		 * @param resourceType
+		 *            the type of the resource on which the application resides.
+		 * @return {@code this} builder.
+		 */
+		public Builder withResourceType(final String resourceType) {
+			this.resourceType = resourceType;
+			return this;
+		}
+
+		/**
+		 * @param offset
+		 *            the number of matching applications to skip.
+		 * @return {@code this} builder.
+		 */
+		public Builder withOffset(final int offset) {
+			this.offset = offset;
+			return this;
+		}
+
+		/**
+		 * @param limit
+		 *            the maximum number of applications to return.
+		 * @return {@code this} builder.
+		 */
+		public Builder withLimit(final int limit) {
+			this.limit = limit;
+			return this;
+		}
+
+		/**
+		 * Builds a new query.
+		 * 
+		 * @return a new query.
+		 */
+		public ApplicationSearchQuery newInstance() {
+			return new ApplicationSearchQuery(namePrefix, nameSubstring, descriptionText, minVersion, maxVersion,
+					resourceType, offset, limit);
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package com.workflowconversion.portlet.core.search;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.workflowconversion.portlet.core.resource.Application;
+import com.workflowconversion.portlet.core.resource.Resource;
+
+/**
+ * A page of the applications matching an {@link ApplicationSearchQuery}.
+ * 
+ * @author delagarza
+ *
+ */
+public class ApplicationSearchResult {
+
+	private final List<Hit> hits;
+	private final int totalHits;
+	private final int offset;
+
+	ApplicationSearchResult(final List<Hit> hits, final int totalHits, final int offset) {
+		this.hits = Collections.unmodifiableList(hits);
+		this.totalHits = totalHits;
+		this.offset = offset;
+	}
+
+	/**
+	 * @return the matching applications in this page, ordered by name (ignoring case), version and resource.
+	 */
+	public List<Hit> getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of matching applications, in all pages.
+	 */
+	public int getTotalHits() {
+		return totalHits;
+	}
+
+	/**
+	 * @return the position of the first hit of this page among all matching applications.
+	 */
+	public int getOffset() {
+		return offset;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "ApplicationSearchResult [hits=" + hits + ", totalHits=" + totalHits + ", offset=" + offset + "]";
+	}
+
+	/**
+	 * A matching application, along with the resource on which it resides.
+	 * 
+	 * @author delagarza
+	 *
+	 */
+	public static class Hit {
+		private final Resource resource;
+		private final Application application;
+
+		Hit(final Resource resource, final Application application) {
+			this.resource = resource;
+			this.application = application;
+		}
+
+		/**
+		 * @return the resource on which the application resides.
+		 */
+		public Resource getResource() {
+			return resource;
+		}
+
+		/**
+		 * @return the application.
+		 */
+		public Application getApplication() {
+			return application;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return "Hit [resource=" + resource.getKey() + ", application=" + application + "]";
+		}
+	}
+}
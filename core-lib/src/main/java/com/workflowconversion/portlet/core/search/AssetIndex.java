@@ -0,0 +1,173 @@
+package com.workflowconversion.portlet.core.search;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.workflowconversion.portlet.core.resource.Application;
+import com.workflowconversion.portlet.core.resource.Queue;
+import com.workflowconversion.portlet.core.resource.Resource;
+
+/**
+ * Immutable index of resources and of their queues, as they were when the index was built.
+ * 
+ * Lookups are hash lookups on the given fields, so resolving the assets of large workflows is cheap. Queues are indexed
+ * by resource instance; they can only be looked up directly for resources obtained from the same index. Applications
+ * are looked up in the catalog of their resource, which is already keyed by name, version and path; copying them into
+ * nested maps made lookups slower, not faster.
+ * 
+ * @author delagarza
+ *
+ */
+public class AssetIndex implements Serializable {
+
+	private static final long serialVersionUID = 5467934315690257427L;
+
+	/**
+	 * An index without resources.
+	 */
+	public final static AssetIndex EMPTY = new AssetIndex(Collections.<String, Map<String, Resource>> emptyMap(),
+			new IdentityHashMap<Resource, Map<String, Queue>>());
+
+	// by type and name
+	private final Map<String, Map<String, Resource>> resources;
+	// by resource instance and queue name
+	private final Map<Resource, Map<String, Queue>> queues;
+
+	private AssetIndex(final Map<String, Map<String, Resource>> resources,
+			final Map<Resource, Map<String, Queue>> queues) {
+		this.resources = resources;
+		this.queues = queues;
+	}
+
+	/**
+	 * Builds an index for the given resources.
+	 * 
+	 * @param resources
+	 *            the resources to index.
+	 * @return an index of the given resources.
+	 */
+	public static AssetIndex build(final Collection<Resource> resources) {
+		final Map<String, Map<String, Resource>> resourcesByType = new HashMap<String, Map<String, Resource>>();
+		final Map<Resource, Map<String, Queue>> queuesByResource = new IdentityHashMap<Resource, Map<String, Queue>>();
+		for (final Resource resource : resources) {
+			// same semantics as ResourceKey, the last resource with the same key wins
+			getOrCreate(resourcesByType, StringUtils.trimToEmpty(resource.getType()))
+					.put(StringUtils.trimToEmpty(resource.getName()), resource);
+			final Map<String, Queue> queuesByName = new HashMap<String, Queue>();
+			for (final Queue queue : resource.getQueues()) {
+				queuesByName.put(StringUtils.trimToEmpty(queue.getName()), queue);
+			}
+			queuesByResource.put(resource, queuesByName);
+		}
+		return new AssetIndex(resourcesByType, queuesByResource);
+	}
+
+	/**
+	 * Merges the given indexes into a single index. If a resource is contained in more than one index, the first index
+	 * containing it has precedence.
+	 * 
+	 * @param indexes
+	 *            the indexes to merge.
+	 * @return the merged index.
+	 */
+	public static AssetIndex merge(final List<AssetIndex> indexes) {
+		final Map<String, Map<String, Resource>> resourcesByType = new HashMap<String, Map<String, Resource>>();
+		final Map<Resource, Map<String, Queue>> queuesByResource = new IdentityHashMap<Resource, Map<String, Queue>>();
+		for (final AssetIndex index : indexes) {
+			for (final Map.Entry<String, Map<String, Resource>> typeEntry : index.resources.entrySet()) {
+				final Map<String, Resource> resourcesByName = getOrCreate(resourcesByType, typeEntry.getKey());
+				for (final Map.Entry<String, Resource> nameEntry : typeEntry.getValue().entrySet()) {
+					if (!resourcesByName.containsKey(nameEntry.getKey())) {
+						resourcesByName.put(nameEntry.getKey(), nameEntry.getValue());
+					}
+				}
+			}
+			// the indexed queues are immutable, so they are shared
+			queuesByResource.putAll(index.queues);
+		}
+		return new AssetIndex(resourcesByType, queuesByResource);
+	}
+
+	/**
+	 * @param name
+	 *            the resource name.
+	 * @param type
+	 *            the resource type.
+	 * @return the matching resource, or {@code null} if this index doesn't contain such a resource.
+	 */
+	public Resource getResource(final String name, final String type) {
+		final Map<String, Resource> resourcesByName = resources.get(StringUtils.trimToEmpty(type));
+		return resourcesByName == null ? null : resourcesByName.get(StringUtils.trimToEmpty(name));
+	}
+
+	/**
+	 * Finds an application in the catalog of the given resource.
+	 * 
+	 * @param resource
+	 *            the resource on which the application resides.
+	 * @param name
+	 *            the application name.
+	 * @param version
+	 *            the application version.
+	 * @param path
+	 *            the application path.
+	 * @return the matching application, or {@code null} if the resource doesn't contain such an application.
+	 */
+	public Application getApplication(final Resource resource, final String name, final String version,
+			final String path) {
+		return resource.getApplication(name, version, path);
+	}
+
+	/**
+	 * Finds a queue in the given resource. Resources that were not obtained from this index are searched directly.
+	 * 
+	 * @param resource
+	 *            the resource on which the queue resides.
+	 * @param name
+	 *            the queue name.
+	 * @return the matching queue, or {@code null} if the resource doesn't contain such a queue.
+	 */
+	public Queue getQueue(final Resource resource, final String name) {
+		final Map<String, Queue> queuesByName = queues.get(resource);
+		if (queuesByName == null) {
+			return resource.getQueue(name);
+		}
+		return queuesByName.get(StringUtils.trimToEmpty(name));
+	}
+
+	/**
+	 * @return the indexed resources; if more than one resource has the same name and type, only the one that can be
+	 *         looked up is returned.
+	 */
+	public Collection<Resource> getResources() {
+		final Collection<Resource> allResources = new ArrayList<Resource>();
+		for (final Map<String, Resource> resourcesByName : resources.values()) {
+			allResources.addAll(resourcesByName.values());
+		}
+		return allResources;
+	}
+
+	/**
+	 * @return the number of indexed resources.
+	 */
+	public int getResourceCount() {
+		return queues.size();
+	}
+
+	private static <T> Map<String, T> getOrCreate(final Map<String, Map<String, T>> map, final String key) {
+		Map<String, T> value = map.get(key);
+		if (value == null) {
+			value = new HashMap<String, T>();
+			map.put(key, value);
+		}
+		return value;
+	}
+}
@@ -0,0 +1,169 @@
+package com.workflowconversion.portlet.core.search;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Immutable set of criteria used to find a resource and the application and queue within it. Values are trimmed; blank
+ * values are treated as missing.
+ * 
+ * @author delagarza
+ *
+ */
+public class AssetQuery {
+
+	private final String resourceName;
+	private final String resourceType;
+	private final String applicationName;
+	private final String applicationVersion;
+	private final String applicationPath;
+	private final String queueName;
+
+	private AssetQuery(final String resourceName, final String resourceType, final String applicationName,
+			final String applicationVersion, final String applicationPath, final String queueName) {
+		this.resourceName = StringUtils.trimToNull(resourceName);
+		this.resourceType = StringUtils.trimToNull(resourceType);
+		this.applicationName = StringUtils.trimToNull(applicationName);
+		this.applicationVersion = StringUtils.trimToNull(applicationVersion);
+		this.applicationPath = StringUtils.trimToNull(applicationPath);
+		this.queueName = StringUtils.trimToNull(queueName);
+	}
+
+	/**
+	 * @return the resource name, or {@code null} if not set.
+	 */
+	public String getResourceName() {
+		return resourceName;
+	}
+
+	/**
+	 * @return the resource type, or {@code null} if not set.
+	 */
+	public String getResourceType() {
+		return resourceType;
+	}
+
+	/**
+	 * @return the application name, or {@code null} if not set.
+	 */
+	public String getApplicationName() {
+		return applicationName;
+	}
+
+	/**
+	 * @return the application version, or {@code null} if not set.
+	 */
+	public String getApplicationVersion() {
+		return applicationVersion;
+	}
+
+	/**
+	 * @return the application path, or {@code null} if not set.
+	 */
+	public String getApplicationPath() {
+		return applicationPath;
+	}
+
+	/**
+	 * @return the queue name, or {@code null} if not set.
+	 */
+	public String getQueueName() {
+		return queueName;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "AssetQuery [resourceName=" + resourceName + ", resourceType=" + resourceType + ", applicationName="
+				+ applicationName + ", applicationVersion=" + applicationVersion + ", applicationPath="
+				+ applicationPath + ", queueName=" + queueName + "]";
+	}
+
+	/**
+	 * Builder for queries.
+	 * 
+	 * @author delagarza
+	 *
+	 */
+	public static class Builder {
+		private String resourceName;
+		private String resourceType;
+		private String applicationName;
+		private String applicationVersion;
+		private String applicationPath;
+		private String queueName;
+
+		/**
+		 * @param resourceName
+		 *            the resource name.
+		 * @return {@code this} builder.
+		 */
+		public Builder withResourceName(final String resourceName) {
+			this.resourceName = resourceName;
+			return this;
+		}
+
+		/**
+		 * @param resourceType
+		 *            the resource type.
+		 * @return {@code this} builder.
+		 */
+		public Builder withResourceType(final String resourceType) {
+			this.resourceType = resourceType;
+			return this;
+		}
+
+		/**
+		 * @param applicationName
+		 *            the application name.
+		 * @return {@code this} builder.
+		 */
+		public Builder withApplicationName(final String applicationName) {
+			this.applicationName = applicationName;
+			return this;
+		}
+
+		/**
+		 * @param applicationVersion
+		 *            the application version.
+		 * @return {@code this} builder.
+		 */
+		public Builder withApplicationVersion(final String applicationVersion) {
+			this.applicationVersion = applicationVersion;
+			return this;
+		}
+
+		/**
+		 * @param applicationPath
+		 *            the application path.
+		 * @return {@code this} builder.
+		 */
+		public Builder withApplicationPath(final String applicationPath) {
+			this.applicationPath = applicationPath;
+			return this;
+		}
+
+		/**
+		 * @param queueName
+		 *            the queue name.
+		 * @return {@code this} builder.
+		 */
+		public Builder withQueueName(final String queueName) {
+			this.queueName = queueName;
+			return this;
+		}
+
+		/**
+		 * Builds a new query.
+		 * 
+		 * @return a new query.
+		 */
+		public AssetQuery newInstance() {
+			return new AssetQuery(resourceName, resourceType, applicationName, applicationVersion, applicationPath,
+					queueName);
+		}
+	}
+}
@@ -0,0 +1,160 @@
+package com.workflowconversion.portlet.core.search;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.workflowconversion.portlet.core.Settings;
+import com.workflowconversion.portlet.core.resource.ResourceProvider;
+import com.workflowconversion.portlet.core.resource.ResourceProviderListener;
+
+/**
+ * Keeps an {@link AssetIndex} over the resources of all resource providers, along with an
+ * {@link ApplicationSearchIndex} over their applications.
+ * 
+ * Each provider has its own index, which is rebuilt whenever the provider notifies that its resources changed; the
+ * indexes of all providers are then merged into a new global index, which replaces the current one atomically. Just
+ * like when iterating over the providers, if more than one provider contains the same resource, the first one has
+ * precedence. The search index is rebuilt from the merged index.
+ * 
+ * Notifications return right away: indexes are rebuilt on the given executor, and changes notified while a rebuild is
+ * pending are picked up by that same rebuild, so a burst of changes causes a single rebuild. Until then, the previous
+ * indexes are served.
+ * 
+ * The executor is not serialized; deserialized instances use the resource refresh executor of the current
+ * {@link Settings}.
+ * 
+ * @author delagarza
+ *
+ */
+public class GlobalAssetIndex implements ResourceProviderListener, Serializable {
+
+	private static final long serialVersionUID = -7023153985786316411L;
+	private final static Logger LOG = LoggerFactory.getLogger(GlobalAssetIndex.class);
+
+	private final List<ResourceProvider> resourceProviders;
+	// guarded by this
+	private final Map<ResourceProvider, AssetIndex> providerIndexes;
+	// providers that changed since the last rebuild started
+	private final Set<ResourceProvider> changedProviders;
+	private final AtomicBoolean rebuildPending;
+	// restored in readResolve()
+	private transient Executor rebuildExecutor;
+
+	private volatile AssetIndex index;
+	private volatile ApplicationSearchIndex searchIndex;
+
+	/**
+	 * Constructor. Registers the new instance as a listener of the given providers.
+	 * 
+	 * @param resourceProviders
+	 *            the resource providers, in order of precedence.
+	 * @param rebuildExecutor
+	 *            the executor on which indexes are rebuilt.
+	 */
+	public GlobalAssetIndex(final Collection<ResourceProvider> resourceProviders, final Executor rebuildExecutor) {
+		Validate.notEmpty(resourceProviders,
+				"resourceProviders cannot be null or empty; this is a coding problem and should be reported.");
+		Validate.notNull(rebuildExecutor,
+				"rebuildExecutor cannot be null; this is a coding problem and should be reported.");
+		this.resourceProviders = new ArrayList<ResourceProvider>(resourceProviders);
+		this.providerIndexes = new IdentityHashMap<ResourceProvider, AssetIndex>();
+		this.changedProviders = Collections.newSetFromMap(new ConcurrentHashMap<ResourceProvider, Boolean>());
+		this.rebuildPending = new AtomicBoolean();
+		this.rebuildExecutor = rebuildExecutor;
+		this.index = AssetIndex.EMPTY;
+		this.searchIndex = ApplicationSearchIndex.EMPTY;
+		for (final ResourceProvider resourceProvider : this.resourceProviders) {
+			resourceProvider.addListener(this);
+		}
+	}
+
+	/**
+	 * @return the current index; it will not reflect later changes on the resource providers.
+	 */
+	public AssetIndex getIndex() {
+		return index;
+	}
+
+	/**
+	 * @return the current application search index; it will not reflect later changes on the resource providers.
+	 */
+	public ApplicationSearchIndex getSearchIndex() {
+		return searchIndex;
+	}
+
+	// executors can't be serialized, so the one of the current settings is used
+	private Object readResolve() throws ObjectStreamException {
+		this.rebuildExecutor = Settings.getInstance().getResourceRefreshExecutor();
+		return this;
+	}
+
+	@Override
+	public void resourcesChanged(final ResourceProvider resourceProvider) {
+		changedProviders.add(resourceProvider);
+		if (rebuildPending.compareAndSet(false, true)) {
+			try {
+				rebuildExecutor.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							rebuild();
+						} catch (final RuntimeException e) {
+							LOG.error("Could not rebuild the asset index, serving the previous one.", e);
+						}
+					}
+				});
+			} catch (final RejectedExecutionException e) {
+				rebuildPending.set(false);
+				LOG.warn("Could not schedule the rebuild of the asset index after " + resourceProvider.getName()
+						+ " changed.", e);
+			}
+		}
+	}
+
+	private synchronized void rebuild() {
+		// changes notified from now on need another rebuild, since they might not be seen by this one
+		rebuildPending.set(false);
+		final long start = System.nanoTime();
+		final List<String> changedProviderNames = new ArrayList<String>();
+		for (final ResourceProvider resourceProvider : resourceProviders) {
+			if (changedProviders.remove(resourceProvider)) {
+				providerIndexes.put(resourceProvider, AssetIndex.build(resourceProvider.getResources()));
+				changedProviderNames.add(resourceProvider.getName());
+			}
+		}
+		if (changedProviderNames.isEmpty()) {
+			return;
+		}
+		final List<AssetIndex> indexes = new ArrayList<AssetIndex>(resourceProviders.size());
+		for (final ResourceProvider provider : resourceProviders) {
+			final AssetIndex providerIndex = providerIndexes.get(provider);
+			if (providerIndex != null) {
+				indexes.add(providerIndex);
+			}
+		}
+		final AssetIndex mergedIndex = AssetIndex.merge(indexes);
+		searchIndex = ApplicationSearchIndex.build(mergedIndex.getResources());
+		index = mergedIndex;
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Indexed " + mergedIndex.getResourceCount() + " resource(s) and "
+					+ searchIndex.getApplicationCount() + " application(s) after " + changedProviderNames
+					+ " changed, took " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+		}
+	}
+}
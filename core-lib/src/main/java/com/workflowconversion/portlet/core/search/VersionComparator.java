@@ -0,0 +1,97 @@
+package com.workflowconversion.portlet.core.search;
+
+import java.io.Serializable;
+import java.util.Comparator;
+
+/**
+ * Orders application versions the way people expect them to be ordered, e.g., {@code 1.2 < 1.10 < 2.0}.
+ * 
+ * Versions are split into runs of digits and runs of letters; separators such as {@code .}, {@code -} or {@code _}
+ * are ignored. Numeric runs are compared numerically and letter runs are compared ignoring case. A numeric run is
+ * greater than a letter run, and a version followed by a letter run (a qualifier) is smaller than the same version
+ * without it, so {@code 1.0-beta < 1.0 < 1.0.1}. Versions that are equivalent according to these rules are ordered by
+ * their natural order, so this comparator is consistent with {@link String#equals(Object)}. {@code null} versions are
+ * treated as empty.
+ * 
+ * @author delagarza
+ *
+ */
+public class VersionComparator implements Comparator<String>, Serializable {
+
+	private static final long serialVersionUID = 6713190240851862913L;
+
+	@Override
+	public int compare(final String version1, final String version2) {
+		final String v1 = version1 == null ? "" : version1;
+		final String v2 = version2 == null ? "" : version2;
+		int i1 = skipSeparators(v1, 0);
+		int i2 = skipSeparators(v2, 0);
+		while (i1 < v1.length() && i2 < v2.length()) {
+			final int end1 = endOfRun(v1, i1);
+			final int end2 = endOfRun(v2, i2);
+			final boolean numeric1 = Character.isDigit(v1.charAt(i1));
+			final boolean numeric2 = Character.isDigit(v2.charAt(i2));
+			final int result;
+			if (numeric1 && numeric2) {
+				result = compareNumbers(v1.substring(i1, end1), v2.substring(i2, end2));
+			} else if (numeric1 || numeric2) {
+				result = numeric1 ? 1 : -1;
+			} else {
+				result = v1.substring(i1, end1).compareToIgnoreCase(v2.substring(i2, end2));
+			}
+			if (result != 0) {
+				return result;
+			}
+			i1 = skipSeparators(v1, end1);
+			i2 = skipSeparators(v2, end2);
+		}
+		if (i1 < v1.length()) {
+			// the first version has more runs; it is a qualifier if it starts with a letter
+			return Character.isDigit(v1.charAt(i1)) ? 1 : -1;
+		}
+		if (i2 < v2.length()) {
+			return Character.isDigit(v2.charAt(i2)) ? -1 : 1;
+		}
+		return v1.compareTo(v2);
+	}
+
+	// compares numbers of any length without parsing them
+	private static int compareNumbers(final String number1, final String number2) {
+		final String n1 = stripLeadingZeros(number1);
+		final String n2 = stripLeadingZeros(number2);
+		if (n1.length() != n2.length()) {
+			return n1.length() < n2.length() ? -1 : 1;
+		}
+		return n1.compareTo(n2);
+	}
+
+	private static String stripLeadingZeros(final String number) {
+		int start = 0;
+		while (start < number.length() - 1 && number.charAt(start) == '0') {
+			start++;
+		}
+		return number.substring(start);
+	}
+
+	private static int endOfRun(final String version, final int start) {
+		final boolean numeric = Character.isDigit(version.charAt(start));
+		int end = start + 1;
+		while (end < version.length() && isRunCharacter(version.charAt(end))
+				&& Character.isDigit(version.charAt(end)) == numeric) {
+			end++;
+		}
+		return end;
+	}
+
+	private static int skipSeparators(final String version, final int start) {
+		int index = start;
+		while (index < version.length() && !isRunCharacter(version.charAt(index))) {
+			index++;
+		}
+		return index;
+	}
+
+	private static boolean isRunCharacter(final char c) {
+		return Character.isLetterOrDigit(c);
+	}
+}
@@ -4,16 +4,22 @@ import java.io.File;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
+import javax.xml.bind.JAXBException;
 
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.mysql.jdbc.AbandonedConnectionCleanupThread;
 import com.workflowconversion.portlet.core.Settings;
+import com.workflowconversion.portlet.core.exception.ApplicationException;
 import com.workflowconversion.portlet.core.execution.JobExecutionPropertiesHandler;
 import com.workflowconversion.portlet.core.execution.impl.DefaultJobExecutionPropertiesHandler;
 import com.workflowconversion.portlet.core.middleware.MiddlewareProvider;
@@ -23,12 +29,14 @@ import com.workflowconversion.portlet.core.resource.ResourceProvider;
 import com.workflowconversion.portlet.core.resource.impl.ClusterResourceProvider;
 import com.workflowconversion.portlet.core.resource.impl.InMemoryMockResourceProvider;
 import com.workflowconversion.portlet.core.resource.impl.UnicoreResourceProvider;
+import com.workflowconversion.portlet.core.utils.JAXBContextRegistry;
 import com.workflowconversion.portlet.core.validation.PortletSanityCheck;
 import com.workflowconversion.portlet.core.validation.impl.GUSEPortletSanityCheck;
 import com.workflowconversion.portlet.core.validation.impl.MockPortletSanityCheck;
 import com.workflowconversion.portlet.core.workflow.WorkflowExporterFactory;
 import com.workflowconversion.portlet.core.workflow.WorkflowManagerFactory;
 import com.workflowconversion.portlet.core.workflow.impl.DefaultWorkflowExporterFactory;
+import com.workflowconversion.portlet.core.workflow.impl.DefaultWorkflowManager;
 import com.workflowconversion.portlet.core.workflow.impl.DefaultWorkflowManagerFactory;
 import com.workflowconversion.portlet.core.workflow.impl.MockWorkflowExporterFactory;
 import com.workflowconversion.portlet.core.workflow.impl.MockWorkflowManagerFactory;
@@ -61,12 +69,21 @@ public class WorkflowConversionContextListener implements ServletContextListener
 			LOG.warn("#############################################################");
 		}
 
+		registerJAXBContexts(servletContextEvent);
+
 		final int cacheDuration = extractCacheDuration(servletContextEvent);
 
-		final MiddlewareProvider middlewareProvider = extractMiddlewareProvider(servletContextEvent, cacheDuration);
+		// a single thread is enough, refreshes are infrequent and should not compete with user requests
+		final ScheduledExecutorService resourceRefreshExecutor = Executors.newSingleThreadScheduledExecutor(
+				new ThreadFactoryBuilder().setNameFormat("resource-refresh-%d").setDaemon(true).build());
+		// remote queries mostly wait on the network; threads of unresponsive endpoints are abandoned and later reclaimed
+		final ExecutorService resourceDiscoveryExecutor = Executors.newCachedThreadPool(
+				new ThreadFactoryBuilder().setNameFormat("resource-discovery-%d").setDaemon(true).build());
+		final MiddlewareProvider middlewareProvider = extractMiddlewareProvider(servletContextEvent, cacheDuration,
+				resourceDiscoveryExecutor);
 		// resource providers are initialized after gUSE sends the "init" signal
 		final Collection<ResourceProvider> resourceProviders = extractResourceProviders(servletContextEvent,
-				middlewareProvider, cacheDuration);
+				middlewareProvider, cacheDuration, resourceRefreshExecutor, resourceDiscoveryExecutor);
 		final PortletSanityCheck portletSanityCheck = extractPortletSanityCheck(servletContextEvent);
 		final Class<? extends WorkflowManagerFactory> workflowManagerFactoryClass = extractWorkflowManagerFactoryClass(
 				servletContextEvent);
@@ -80,6 +97,10 @@ public class WorkflowConversionContextListener implements ServletContextListener
 		}
 		// use the same instance, the default implementation is thread-safe
 		final JobExecutionPropertiesHandler jobExecutionPropertiesHandler = new DefaultJobExecutionPropertiesHandler();
+		// bulk imports from all users share the same pool, so the server doesn't get flooded with parsing threads
+		final ExecutorService workflowImportExecutor = Executors.newFixedThreadPool(
+				extractWorkflowImportThreads(servletContextEvent),
+				new ThreadFactoryBuilder().setNameFormat("workflow-import-%d").setDaemon(true).build());
 
 		final Settings.Builder settingsBuilder = new Settings.Builder();
 
@@ -87,15 +108,34 @@ public class WorkflowConversionContextListener implements ServletContextListener
 				.withPortletSanityCheck(portletSanityCheck).withWorkflowStagingAreaPath(workflowStagingAreaPath)
 				.withWorkflowManagerFactoryClass(workflowManagerFactoryClass)
 				.withWorkflowExporterFactoryClass(workflowExporterFactoryClass)
-				.withJobExecutionPropertiesHandler(jobExecutionPropertiesHandler);
+				.withJobExecutionPropertiesHandler(jobExecutionPropertiesHandler)
+				.withWorkflowImportExecutor(workflowImportExecutor)
+				.withResourceRefreshExecutor(resourceRefreshExecutor)
+				.withResourceDiscoveryExecutor(resourceDiscoveryExecutor);
 
 		Settings.setInstance(settingsBuilder.newSettings());
 	}
 
+	private void registerJAXBContexts(final ServletContextEvent servletContextEvent) {
+		// creating contexts is expensive, do it once instead of on every load/save of the user workflows
+		try {
+			JAXBContextRegistry.register(DefaultWorkflowManager.class);
+			if (useMocks(servletContextEvent)) {
+				JAXBContextRegistry.register(InMemoryMockMiddlewareProvider.DCI_DATA_CONTEXT_PATH);
+			}
+		} catch (final JAXBException e) {
+			throw new ApplicationException("Could not create JAXB contexts.", e);
+		}
+	}
+
 	private int extractCacheDuration(final ServletContextEvent servletContextEvent) {
 		return extractIntegerParameter("cache.seconds.duration", 120, servletContextEvent);
 	}
 
+	private int extractWorkflowImportThreads(final ServletContextEvent servletContextEvent) {
+		return extractIntegerParameter("workflow.import.threads", 4, servletContextEvent);
+	}
+
 	private int extractIntegerParameter(final String parameterName, final int defaultValue,
 			final ServletContextEvent servletContextEvent) {
 		final String rawParamValue = extractInitParam(parameterName, servletContextEvent);
@@ -136,7 +176,8 @@ public class WorkflowConversionContextListener implements ServletContextListener
 	}
 
 	private Collection<ResourceProvider> extractResourceProviders(final ServletContextEvent servletContextEvent,
-			final MiddlewareProvider middlewareProvider, final int cacheDuration) {
+			final MiddlewareProvider middlewareProvider, final int cacheDuration,
+			final ScheduledExecutorService resourceRefreshExecutor, final ExecutorService resourceDiscoveryExecutor) {
 		// find out if we are using mocks
 		final Collection<ResourceProvider> resourceProviders = new LinkedList<ResourceProvider>();
 		if (useMocks(servletContextEvent)) {
@@ -146,8 +187,11 @@ public class WorkflowConversionContextListener implements ServletContextListener
 					.add(new InMemoryMockResourceProvider("Read-only mock app provider", middlewareProvider, false));
 		} else {
 			resourceProviders.add(new ClusterResourceProvider(middlewareProvider,
-					extractMaxDatabaseActiveConnections(servletContextEvent)));
-			resourceProviders.add(new UnicoreResourceProvider(middlewareProvider, cacheDuration));
+					extractMaxDatabaseActiveConnections(servletContextEvent),
+					extractDatabaseBatchSize(servletContextEvent), resourceRefreshExecutor, cacheDuration,
+					useCompactClusterApplicationCatalog(servletContextEvent)));
+			resourceProviders.add(new UnicoreResourceProvider(middlewareProvider, cacheDuration, resourceRefreshExecutor,
+					resourceDiscoveryExecutor, extractUnicoreDiscoveryTimeout(servletContextEvent)));
 		}
 		return Collections.unmodifiableCollection(resourceProviders);
 	}
@@ -156,6 +200,18 @@ public class WorkflowConversionContextListener implements ServletContextListener
 		return extractIntegerParameter("db.max.active.connections", 10, servletContextEvent);
 	}
 
+	private int extractDatabaseBatchSize(final ServletContextEvent servletContextEvent) {
+		return extractIntegerParameter("db.batch.size", 500, servletContextEvent);
+	}
+
+	private int extractUnicoreDiscoveryTimeout(final ServletContextEvent servletContextEvent) {
+		return extractIntegerParameter("unicore.discovery.timeout.seconds", 30, servletContextEvent);
+	}
+
+	private boolean useCompactClusterApplicationCatalog(final ServletContextEvent servletContextEvent) {
+		return Boolean.parseBoolean(extractInitParam("cluster.applications.compact", servletContextEvent));
+	}
+
 	private PortletSanityCheck extractPortletSanityCheck(final ServletContextEvent servletContextEvent) {
 		final PortletSanityCheck portletSanityCheck;
 		if (useMocks(servletContextEvent)) {
@@ -171,18 +227,23 @@ public class WorkflowConversionContextListener implements ServletContextListener
 	}
 
 	private MiddlewareProvider extractMiddlewareProvider(final ServletContextEvent servletContextEvent,
-			final int cacheDuration) {
+			final int cacheDuration, final ExecutorService refreshExecutor) {
 		if (useMocks(servletContextEvent)) {
 			return new InMemoryMockMiddlewareProvider();
 		} else {
-			return new WSPGRADEMiddlewareProvider(cacheDuration);
+			return new WSPGRADEMiddlewareProvider(cacheDuration, refreshExecutor);
 		}
 	}
 
 	@Override
 	public void contextDestroyed(final ServletContextEvent servletContextEvent) {
 		LOG.info("Performing cleanup tasks for a com.workflowconversion portlet");
+		Settings.getInstance().getWorkflowImportExecutor().shutdownNow();
+		Settings.getInstance().getResourceRefreshExecutor().shutdownNow();
+		Settings.getInstance().getResourceDiscoveryExecutor().shutdownNow();
 		Settings.clearInstance();
+		LOG.info("JAXB statistics: " + JAXBContextRegistry.getStatistics());
+		JAXBContextRegistry.clear();
 		// shutdown mysql cleanup thread
 		try {
 			AbandonedConnectionCleanupThread.shutdown();
@@ -0,0 +1,270 @@
+package com.workflowconversion.portlet.core.utils;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Process-wide registry of {@link JAXBContext}s.
+ * 
+ * Creating a {@link JAXBContext} is expensive, so contexts should be registered once, when the application starts.
+ * Contexts are thread-safe, but {@link Marshaller}s and {@link Unmarshaller}s are not. They are cheap to create out of a
+ * context, so each invocation creates its own instead of keeping them in thread-locals, which would outlive the
+ * application in pooled threads. Marshallers produce formatted output. Contexts that are used without having been
+ * registered are created on demand.
+ * 
+ * @author delagarza
+ *
+ */
+public class JAXBContextRegistry {
+
+	private final static Logger LOG = LoggerFactory.getLogger(JAXBContextRegistry.class);
+
+	private static final ConcurrentMap<String, JAXBContext> CONTEXTS = new ConcurrentHashMap<String, JAXBContext>();
+
+	private static final AtomicLong CONTEXTS_CREATED = new AtomicLong();
+	private static final AtomicLong CONTEXT_CREATION_NANOS = new AtomicLong();
+	private static final AtomicLong MARSHAL_COUNT = new AtomicLong();
+	private static final AtomicLong MARSHAL_NANOS = new AtomicLong();
+	private static final AtomicLong UNMARSHAL_COUNT = new AtomicLong();
+	private static final AtomicLong UNMARSHAL_NANOS = new AtomicLong();
+
+	/**
+	 * Creates and registers the context for the passed root class, if it hasn't been registered yet.
+	 * 
+	 * @param rootClass
+	 *            the class to be recognized by the context.
+	 * @throws JAXBException
+	 *             if the context could not be created.
+	 */
+	public static void register(final Class<?> rootClass) throws JAXBException {
+		Validate.notNull(rootClass, "rootClass cannot be null; this is a coding problem and should be reported.");
+		getContext(rootClass);
+	}
+
+	/**
+	 * Creates and registers the context for the passed context path, if it hasn't been registered yet.
+	 * 
+	 * @param contextPath
+	 *            the list of colon-separated package names that contain schema-derived classes.
+	 * @throws JAXBException
+	 *             if the context could not be created.
+	 */
+	public static void register(final String contextPath) throws JAXBException {
+		Validate.notBlank(contextPath,
+				"contextPath cannot be null, empty or contain only whitespaces; this is a coding problem and should be reported.");
+		getContext(contextPath);
+	}
+
+	/**
+	 * Marshals the passed object into a file, using the context registered for the class of the object.
+	 * 
+	 * @param jaxbElement
+	 *            the object to marshal.
+	 * @param target
+	 *            the file to write to.
+	 * @throws JAXBException
+	 *             if the object could not be marshalled.
+	 */
+	public static void marshal(final Object jaxbElement, final File target) throws JAXBException {
+		Validate.notNull(jaxbElement, "jaxbElement cannot be null; this is a coding problem and should be reported.");
+		Validate.notNull(target, "target cannot be null; this is a coding problem and should be reported.");
+		final Marshaller marshaller = getContext(jaxbElement.getClass()).createMarshaller();
+		marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+		final long start = System.nanoTime();
+		try {
+			marshaller.marshal(jaxbElement, target);
+		} finally {
+			MARSHAL_COUNT.incrementAndGet();
+			MARSHAL_NANOS.addAndGet(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Unmarshals the contents of a file, using the context registered for the passed class.
+	 * 
+	 * @param rootClass
+	 *            the class of the root element.
+	 * @param source
+	 *            the file to read from.
+	 * @return the unmarshalled object.
+	 * @throws JAXBException
+	 *             if the file could not be unmarshalled.
+	 */
+	public static <T> T unmarshal(final Class<T> rootClass, final File source) throws JAXBException {
+		Validate.notNull(rootClass, "rootClass cannot be null; this is a coding problem and should be reported.");
+		Validate.notNull(source, "source cannot be null; this is a coding problem and should be reported.");
+		final Unmarshaller unmarshaller = getContext(rootClass).createUnmarshaller();
+		final long start = System.nanoTime();
+		try {
+			return rootClass.cast(unmarshaller.unmarshal(source));
+		} finally {
+			UNMARSHAL_COUNT.incrementAndGet();
+			UNMARSHAL_NANOS.addAndGet(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Unmarshals the contents of a stream, using the context registered for the passed context path.
+	 * 
+	 * @param contextPath
+	 *            the list of colon-separated package names that contain schema-derived classes.
+	 * @param source
+	 *            the stream to read from. This stream will not be closed.
+	 * @return the unmarshalled object.
+	 * @throws JAXBException
+	 *             if the stream could not be unmarshalled.
+	 */
+	public static Object unmarshal(final String contextPath, final InputStream source) throws JAXBException {
+		Validate.notBlank(contextPath,
+				"contextPath cannot be null, empty or contain only whitespaces; this is a coding problem and should be reported.");
+		Validate.notNull(source, "source cannot be null; this is a coding problem and should be reported.");
+		final Unmarshaller unmarshaller = getContext(contextPath).createUnmarshaller();
+		final long start = System.nanoTime();
+		try {
+			return unmarshaller.unmarshal(source);
+		} finally {
+			UNMARSHAL_COUNT.incrementAndGet();
+			UNMARSHAL_NANOS.addAndGet(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * @return a snapshot of the timing metrics of this registry.
+	 */
+	public static Statistics getStatistics() {
+		return new Statistics(CONTEXTS_CREATED.get(), CONTEXT_CREATION_NANOS.get(), MARSHAL_COUNT.get(),
+				MARSHAL_NANOS.get(), UNMARSHAL_COUNT.get(), UNMARSHAL_NANOS.get());
+	}
+
+	/**
+	 * Removes all registered contexts. Should be invoked when the application is stopped, so no references to classes
+	 * of the application are kept.
+	 */
+	public static void clear() {
+		CONTEXTS.clear();
+	}
+
+	private static JAXBContext getContext(final Class<?> rootClass) throws JAXBException {
+		final String key = rootClass.getName();
+		final JAXBContext registeredContext = CONTEXTS.get(key);
+		if (registeredContext != null) {
+			return registeredContext;
+		}
+		final long start = System.nanoTime();
+		final JAXBContext context = JAXBContext.newInstance(rootClass);
+		return register(key, context, start);
+	}
+
+	private static JAXBContext getContext(final String contextPath) throws JAXBException {
+		final JAXBContext registeredContext = CONTEXTS.get(contextPath);
+		if (registeredContext != null) {
+			return registeredContext;
+		}
+		final long start = System.nanoTime();
+		final JAXBContext context = JAXBContext.newInstance(contextPath);
+		return register(contextPath, context, start);
+	}
+
+	private static JAXBContext register(final String key, final JAXBContext context, final long start) {
+		final long elapsedNanos = System.nanoTime() - start;
+		CONTEXTS_CREATED.incrementAndGet();
+		CONTEXT_CREATION_NANOS.addAndGet(elapsedNanos);
+		if (LOG.isInfoEnabled()) {
+			LOG.info("Created JAXB context for " + key + " in " + (elapsedNanos / 1000000) + "ms");
+		}
+		// if another thread was faster, use its context
+		final JAXBContext existingContext = CONTEXTS.putIfAbsent(key, context);
+		return existingContext == null ? context : existingContext;
+	}
+
+	/**
+	 * Timing metrics of the registry.
+	 * 
+	 * @author delagarza
+	 *
+	 */
+	public static class Statistics {
+		private final long contextsCreated;
+		private final long contextCreationNanos;
+		private final long marshalCount;
+		private final long marshalNanos;
+		private final long unmarshalCount;
+		private final long unmarshalNanos;
+
+		private Statistics(final long contextsCreated, final long contextCreationNanos, final long marshalCount,
+				final long marshalNanos, final long unmarshalCount, final long unmarshalNanos) {
+			this.contextsCreated = contextsCreated;
+			this.contextCreationNanos = contextCreationNanos;
+			this.marshalCount = marshalCount;
+			this.marshalNanos = marshalNanos;
+			this.unmarshalCount = unmarshalCount;
+			this.unmarshalNanos = unmarshalNanos;
+		}
+
+		/**
+		 * @return the number of contexts that have been created.
+		 */
+		public long getContextsCreated() {
+			return contextsCreated;
+		}
+
+		/**
+		 * @return the total time spent creating contexts, in nanoseconds.
+		 */
+		public long getContextCreationNanos() {
+			return contextCreationNanos;
+		}
+
+		/**
+		 * @return the number of marshal operations.
+		 */
+		public long getMarshalCount() {
+			return marshalCount;
+		}
+
+		/**
+		 * @return the total time spent marshalling, in nanoseconds.
+		 */
+		public long getMarshalNanos() {
+			return marshalNanos;
+		}
+
+		/**
+		 * @return the number of unmarshal operations.
+		 */
+		public long getUnmarshalCount() {
+			return unmarshalCount;
+		}
+
+		/**
+		 * @return the total time spent unmarshalling, in nanoseconds.
+		 */
+		public long getUnmarshalNanos() {
+			return unmarshalNanos;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return "Statistics [contextsCreated=" + contextsCreated + ", contextCreationNanos=" + contextCreationNanos
+					+ ", marshalCount=" + marshalCount + ", marshalNanos=" + marshalNanos + ", unmarshalCount="
+					+ unmarshalCount + ", unmarshalNanos=" + unmarshalNanos + "]";
+		}
+	}
+}
@@ -4,12 +4,19 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 
 import com.workflowconversion.portlet.core.resource.Application;
+import com.workflowconversion.portlet.core.resource.ApplicationKey;
 import com.workflowconversion.portlet.core.resource.Queue;
+import com.workflowconversion.portlet.core.resource.QueueKey;
 import com.workflowconversion.portlet.core.resource.Resource;
+import com.workflowconversion.portlet.core.resource.ResourceKey;
 
 /**
  * Convenience methods to generate system-wide keys for applications, queues.
  * 
+ * The generated keys are strings, meant to be used where keys need to be serialized (e.g., as identifiers outside of
+ * this library). Maps of resources, applications and queues should be keyed by {@link ResourceKey},
+ * {@link ApplicationKey} and {@link QueueKey} instead, which don't need to be built on every lookup.
+ * 
  * @author delagarza
  *
  */
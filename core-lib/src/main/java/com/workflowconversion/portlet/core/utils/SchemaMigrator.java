@@ -0,0 +1,136 @@
+package com.workflowconversion.portlet.core.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Applies SQL migration scripts to a MySQL database, in order, using {@link ScriptRunner}.
+ * 
+ * The version of the schema is the number of scripts that have been applied and is recorded in
+ * {@code tbl_schema_version}, so each script is applied only once. New schema changes must be added as new scripts at
+ * the end of the list; scripts that have already been released must never be modified. Since portal instances sharing
+ * the same database might start at the same time, migrations are serialized using a named lock.
+ * 
+ * @author delagarza
+ *
+ */
+public class SchemaMigrator {
+
+	private final static Logger LOG = LoggerFactory.getLogger(SchemaMigrator.class);
+
+	private final static String LOCK_NAME = "workflowconversion.schema.migration";
+	private final static int LOCK_TIMEOUT_SECONDS = 300;
+	private final static String CREATE_VERSION_TABLE_SQL = "CREATE TABLE IF NOT EXISTS tbl_schema_version (version INT NOT NULL PRIMARY KEY, script VARCHAR(256) NOT NULL, applied_on TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)";
+	private final static String GET_VERSION_SQL = "SELECT COALESCE(MAX(version), 0) FROM tbl_schema_version";
+	private final static String ADD_VERSION_SQL = "INSERT INTO tbl_schema_version (version, script) VALUES (?, ?)";
+	private final static String GET_LOCK_SQL = "SELECT GET_LOCK(?, ?)";
+	private final static String RELEASE_LOCK_SQL = "SELECT RELEASE_LOCK(?)";
+
+	private final Connection connection;
+	private final String[] scriptLocations;
+
+	/**
+	 * @param connection
+	 *            the connection to the database to migrate.
+	 * @param scriptLocations
+	 *            the locations, in the classpath, of all migration scripts, in the order in which they must be applied.
+	 */
+	public SchemaMigrator(final Connection connection, final String... scriptLocations) {
+		Validate.notNull(connection, "connection cannot be null; this is a coding problem and should be reported.");
+		Validate.noNullElements(scriptLocations,
+				"scriptLocations cannot be null or contain null elements; this is a coding problem and should be reported.");
+		this.connection = connection;
+		this.scriptLocations = scriptLocations.clone();
+	}
+
+	/**
+	 * Applies the scripts that have not been applied yet.
+	 * 
+	 * @return the number of applied scripts.
+	 * @throws IOException
+	 *             if a script could not be read.
+	 * @throws SQLException
+	 *             if a script could not be applied. Scripts applied before the failing one are kept.
+	 */
+	public int migrate() throws IOException, SQLException {
+		acquireLock();
+		try {
+			try (Statement statement = connection.createStatement()) {
+				statement.execute(CREATE_VERSION_TABLE_SQL);
+			}
+			final int currentVersion = getCurrentVersion();
+			if (currentVersion > scriptLocations.length) {
+				LOG.warn("The database schema version (" + currentVersion
+						+ ") is newer than the latest known migration (" + scriptLocations.length
+						+ "). Was a newer version of this portlet deployed on another portal instance?");
+			}
+			int appliedScripts = 0;
+			for (int version = currentVersion + 1; version <= scriptLocations.length; version++) {
+				applyScript(version, scriptLocations[version - 1]);
+				appliedScripts++;
+			}
+			return appliedScripts;
+		} finally {
+			releaseLock();
+		}
+	}
+
+	private void applyScript(final int version, final String scriptLocation) throws IOException, SQLException {
+		LOG.info("Migrating database schema to version " + version + " using " + scriptLocation);
+		final InputStream script = SchemaMigrator.class.getResourceAsStream('/' + scriptLocation);
+		if (script == null) {
+			throw new IOException("Could not find migration script in the classpath: " + scriptLocation);
+		}
+		// MySQL commits implicitly after DDL statements, so scripts are not executed in a transaction
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(script, StandardCharsets.UTF_8))) {
+			new ScriptRunner(connection, true, true).runScript(reader);
+		}
+		try (PreparedStatement statement = connection.prepareStatement(ADD_VERSION_SQL)) {
+			statement.setInt(1, version);
+			statement.setString(2, scriptLocation);
+			statement.executeUpdate();
+		}
+	}
+
+	private int getCurrentVersion() throws SQLException {
+		try (Statement statement = connection.createStatement();
+				ResultSet resultSet = statement.executeQuery(GET_VERSION_SQL)) {
+			resultSet.next();
+			return resultSet.getInt(1);
+		}
+	}
+
+	private void acquireLock() throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement(GET_LOCK_SQL)) {
+			statement.setString(1, LOCK_NAME);
+			statement.setInt(2, LOCK_TIMEOUT_SECONDS);
+			try (ResultSet resultSet = statement.executeQuery()) {
+				if (!resultSet.next() || resultSet.getInt(1) != 1) {
+					throw new SQLException("Timed out waiting for another instance to finish migrating the database schema.");
+				}
+			}
+		}
+	}
+
+	private void releaseLock() {
+		try (PreparedStatement statement = connection.prepareStatement(RELEASE_LOCK_SQL)) {
+			statement.setString(1, LOCK_NAME);
+			statement.executeQuery().close();
+		} catch (final SQLException e) {
+			// MySQL releases the lock anyway once the session ends
+			LOG.warn("Could not release schema migration lock.", e);
+		}
+	}
+}
@@ -0,0 +1,254 @@
+package com.workflowconversion.portlet.core.utils;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Supplier;
+
+/**
+ * Caching {@link Supplier} that never makes callers wait for a refresh once a value has been loaded.
+ * 
+ * The first invocation of {@link #get()} loads the value in the calling thread. After that, callers always get the
+ * current value; once the value is older than the time to live, the first caller triggers a refresh on the given
+ * executor and, like every other caller, gets the current (stale) value right away. Only one refresh runs at a time. If
+ * a refresh fails, the stale value is kept and the refresh is retried once the time to live elapses again.
+ * 
+ * @author delagarza
+ *
+ * @param <T>
+ *            the type of the supplied value.
+ */
+public class StaleWhileRevalidateSupplier<T> implements Supplier<T> {
+
+	private final static Logger LOG = LoggerFactory.getLogger(StaleWhileRevalidateSupplier.class);
+
+	private final String name;
+	private final Supplier<T> delegate;
+	private final long timeToLiveNanos;
+	private final Executor refreshExecutor;
+	private final AtomicBoolean refreshing;
+	private final Runnable refreshTask;
+
+	private final AtomicLong hits;
+	private final AtomicLong misses;
+	private final AtomicLong refreshes;
+	private final AtomicLong failedRefreshes;
+	private final AtomicLong refreshNanos;
+
+	private volatile T value;
+	private volatile long nextRefreshNanos;
+
+	/**
+	 * @param name
+	 *            the name of the cached value, used for logging.
+	 * @param delegate
+	 *            the supplier that loads the value.
+	 * @param timeToLive
+	 *            the time after which the value is refreshed.
+	 * @param unit
+	 *            the unit of {@code timeToLive}.
+	 * @param refreshExecutor
+	 *            the executor on which refreshes are performed.
+	 */
+	public StaleWhileRevalidateSupplier(final String name, final Supplier<T> delegate, final long timeToLive,
+			final TimeUnit unit, final Executor refreshExecutor) {
+		Validate.notBlank(name,
+				"name cannot be null, empty or contain only whitespaces; this is a coding problem and should be reported.");
+		Validate.notNull(delegate, "delegate cannot be null; this is a coding problem and should be reported.");
+		Validate.isTrue(timeToLive > 0, "invalid timeToLive " + timeToLive);
+		Validate.notNull(unit, "unit cannot be null; this is a coding problem and should be reported.");
+		Validate.notNull(refreshExecutor,
+				"refreshExecutor cannot be null; this is a coding problem and should be reported.");
+		this.name = name;
+		this.delegate = delegate;
+		this.timeToLiveNanos = unit.toNanos(timeToLive);
+		this.refreshExecutor = refreshExecutor;
+		this.refreshing = new AtomicBoolean();
+		this.refreshTask = new Runnable() {
+			@Override
+			public void run() {
+				try {
+					refresh();
+				} finally {
+					refreshing.set(false);
+				}
+			}
+		};
+		this.hits = new AtomicLong();
+		this.misses = new AtomicLong();
+		this.refreshes = new AtomicLong();
+		this.failedRefreshes = new AtomicLong();
+		this.refreshNanos = new AtomicLong();
+	}
+
+	@Override
+	public T get() {
+		T currentValue = value;
+		if (currentValue == null) {
+			currentValue = load();
+		} else {
+			hits.incrementAndGet();
+			if (System.nanoTime() - nextRefreshNanos >= 0) {
+				scheduleRefresh();
+			}
+		}
+		return currentValue;
+	}
+
+	/**
+	 * Refreshes the value on the refresh executor if it is stale or was never loaded, without waiting for it. Owners
+	 * can invoke this method periodically to keep the value fresh when there are no callers, or to load it if the
+	 * first load failed.
+	 */
+	public void refreshIfStale() {
+		if (value == null || System.nanoTime() - nextRefreshNanos >= 0) {
+			scheduleRefresh();
+		}
+	}
+
+	private void scheduleRefresh() {
+		if (refreshing.compareAndSet(false, true)) {
+			try {
+				refreshExecutor.execute(refreshTask);
+			} catch (final RejectedExecutionException e) {
+				refreshing.set(false);
+				LOG.warn("Could not schedule refresh of " + name + ", serving stale value.", e);
+			}
+		}
+	}
+
+	// loads the first value in the calling thread; concurrent callers wait for the same load
+	private synchronized T load() {
+		T currentValue = value;
+		if (currentValue == null) {
+			misses.incrementAndGet();
+			final long start = System.nanoTime();
+			currentValue = delegate.get();
+			Validate.validState(currentValue != null, "The supplier of " + name + " returned null.");
+			setValue(currentValue, start);
+		} else {
+			hits.incrementAndGet();
+		}
+		return currentValue;
+	}
+
+	private void refresh() {
+		final long start = System.nanoTime();
+		try {
+			final T newValue = delegate.get();
+			Validate.validState(newValue != null, "The supplier of " + name + " returned null.");
+			setValue(newValue, start);
+		} catch (final RuntimeException e) {
+			failedRefreshes.incrementAndGet();
+			refreshNanos.addAndGet(System.nanoTime() - start);
+			// try again later, until then, keep on serving the stale value
+			nextRefreshNanos = System.nanoTime() + timeToLiveNanos;
+			LOG.error("Could not refresh " + name + ", serving stale value.", e);
+		}
+	}
+
+	private void setValue(final T newValue, final long start) {
+		final long now = System.nanoTime();
+		refreshes.incrementAndGet();
+		refreshNanos.addAndGet(now - start);
+		value = newValue;
+		nextRefreshNanos = now + timeToLiveNanos;
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Loaded " + name + " in " + TimeUnit.NANOSECONDS.toMillis(now - start) + "ms");
+		}
+		valueLoaded(newValue);
+	}
+
+	/**
+	 * Invoked after a new value has been loaded and is already being served, in the thread that loaded it. Does nothing
+	 * by default.
+	 * 
+	 * @param newValue
+	 *            the loaded value.
+	 */
+	protected void valueLoaded(final T newValue) {
+	}
+
+	/**
+	 * @return a snapshot of the metrics of this supplier.
+	 */
+	public Statistics getStatistics() {
+		return new Statistics(hits.get(), misses.get(), refreshes.get(), failedRefreshes.get(), refreshNanos.get());
+	}
+
+	/**
+	 * Metrics of a {@link StaleWhileRevalidateSupplier}.
+	 * 
+	 * @author delagarza
+	 *
+	 */
+	public static class Statistics {
+		private final long hits;
+		private final long misses;
+		private final long refreshes;
+		private final long failedRefreshes;
+		private final long refreshNanos;
+
+		private Statistics(final long hits, final long misses, final long refreshes, final long failedRefreshes,
+				final long refreshNanos) {
+			this.hits = hits;
+			this.misses = misses;
+			this.refreshes = refreshes;
+			this.failedRefreshes = failedRefreshes;
+			this.refreshNanos = refreshNanos;
+		}
+
+		/**
+		 * @return the number of invocations that were served a cached value, stale or not.
+		 */
+		public long getHits() {
+			return hits;
+		}
+
+		/**
+		 * @return the number of invocations that had to wait for the value to be loaded.
+		 */
+		public long getMisses() {
+			return misses;
+		}
+
+		/**
+		 * @return the number of successful loads, including the first one.
+		 */
+		public long getRefreshes() {
+			return refreshes;
+		}
+
+		/**
+		 * @return the number of failed refreshes.
+		 */
+		public long getFailedRefreshes() {
+			return failedRefreshes;
+		}
+
+		/**
+		 * @return the total time spent loading, in nanoseconds.
+		 */
+		public long getRefreshNanos() {
+			return refreshNanos;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return "Statistics [hits=" + hits + ", misses=" + misses + ", refreshes=" + refreshes
+					+ ", failedRefreshes=" + failedRefreshes + ", refreshNanos=" + refreshNanos + "]";
+		}
+	}
+}
@@ -0,0 +1,180 @@
+package com.workflowconversion.portlet.core.utils;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+
+import org.xml.sax.SAXException;
+
+import com.workflowconversion.portlet.core.exception.ApplicationException;
+
+/**
+ * Pre-configured XML factories and parsers.
+ * 
+ * Looking up the implementation of an XML factory involves scanning the classpath, so factories are created and
+ * configured only once, with secure processing enabled. StAX factories are thread-safe and are shared. Parsers and
+ * transformers are not, so each thread gets its own instances, which are reset every time they are obtained.
+ * 
+ * Secure processing doesn't allow external DTDs to be loaded, so parsers don't validate against DTDs and ignore the
+ * external DTDs referenced by documents. Parsed documents must be checked by their handlers instead.
+ * 
+ * @author delagarza
+ *
+ */
+public class XMLFactories {
+
+	private static final String LOAD_EXTERNAL_DTD_FEATURE = "http://apache.org/xml/features/"
+			+ "nonvalidating/load-external-dtd";
+
+	// StAX factories are thread-safe once configured
+	private static final XMLInputFactory XML_INPUT_FACTORY = createXMLInputFactory();
+	private static final XMLOutputFactory XML_OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+	private static final XMLEventFactory XML_EVENT_FACTORY = XMLEventFactory.newInstance();
+
+	// these factories are not guaranteed to be thread-safe, access to them must be synchronized
+	private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY = createDocumentBuilderFactory();
+	private static final SAXParserFactory SAX_PARSER_FACTORY = createSAXParserFactory();
+	private static final TransformerFactory TRANSFORMER_FACTORY = createTransformerFactory();
+
+	private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDERS = new ThreadLocal<DocumentBuilder>();
+	private static final ThreadLocal<SAXParser> SAX_PARSERS = new ThreadLocal<SAXParser>();
+	private static final ThreadLocal<Transformer> TRANSFORMERS = new ThreadLocal<Transformer>();
+
+	private static XMLInputFactory createXMLInputFactory() {
+		final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+		inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+		return inputFactory;
+	}
+
+	private static DocumentBuilderFactory createDocumentBuilderFactory() {
+		final DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+		try {
+			documentBuilderFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+		} catch (final ParserConfigurationException e) {
+			throw new ApplicationException(
+					"Could not enable secure processing on DocumentBuilderFactory. This is probably a bug and should be reported.",
+					e);
+		}
+		return documentBuilderFactory;
+	}
+
+	private static SAXParserFactory createSAXParserFactory() {
+		final SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
+		try {
+			saxParserFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+			// otherwise documents with a DOCTYPE that references an external DTD would be rejected
+			saxParserFactory.setFeature(LOAD_EXTERNAL_DTD_FEATURE, false);
+		} catch (final ParserConfigurationException | SAXException e) {
+			throw new ApplicationException(
+					"Could not configure SAXParserFactory. This is probably a bug and should be reported.", e);
+		}
+		return saxParserFactory;
+	}
+
+	private static TransformerFactory createTransformerFactory() {
+		final TransformerFactory transformerFactory = TransformerFactory.newInstance();
+		try {
+			transformerFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+		} catch (final TransformerConfigurationException e) {
+			throw new ApplicationException(
+					"Could not enable secure processing on TransformerFactory. This is probably a bug and should be reported.",
+					e);
+		}
+		return transformerFactory;
+	}
+
+	/**
+	 * @return a shared, non-namespace-aware {@link XMLInputFactory} that neither supports DTDs nor external entities.
+	 */
+	public static XMLInputFactory getXMLInputFactory() {
+		return XML_INPUT_FACTORY;
+	}
+
+	/**
+	 * @return a shared {@link XMLOutputFactory}.
+	 */
+	public static XMLOutputFactory getXMLOutputFactory() {
+		return XML_OUTPUT_FACTORY;
+	}
+
+	/**
+	 * @return a shared {@link XMLEventFactory}.
+	 */
+	public static XMLEventFactory getXMLEventFactory() {
+		return XML_EVENT_FACTORY;
+	}
+
+	/**
+	 * Obtains the {@link DocumentBuilder} of the current thread.
+	 * 
+	 * @return a {@link DocumentBuilder} that must not be shared with other threads.
+	 * @throws ParserConfigurationException
+	 *             if the builder could not be created.
+	 */
+	public static DocumentBuilder getDocumentBuilder() throws ParserConfigurationException {
+		DocumentBuilder documentBuilder = DOCUMENT_BUILDERS.get();
+		if (documentBuilder == null) {
+			synchronized (DOCUMENT_BUILDER_FACTORY) {
+				documentBuilder = DOCUMENT_BUILDER_FACTORY.newDocumentBuilder();
+			}
+			DOCUMENT_BUILDERS.set(documentBuilder);
+		} else {
+			documentBuilder.reset();
+		}
+		return documentBuilder;
+	}
+
+	/**
+	 * Obtains the {@link SAXParser} of the current thread. The parser is not validating and doesn't load external DTDs.
+	 * 
+	 * @return a {@link SAXParser} that must not be shared with other threads.
+	 * @throws ParserConfigurationException
+	 *             if the parser could not be created.
+	 * @throws SAXException
+	 *             if the parser could not be created.
+	 */
+	public static SAXParser getSAXParser() throws ParserConfigurationException, SAXException {
+		SAXParser saxParser = SAX_PARSERS.get();
+		if (saxParser == null) {
+			synchronized (SAX_PARSER_FACTORY) {
+				saxParser = SAX_PARSER_FACTORY.newSAXParser();
+			}
+			SAX_PARSERS.set(saxParser);
+		} else {
+			saxParser.reset();
+		}
+		return saxParser;
+	}
+
+	/**
+	 * Obtains the identity {@link Transformer} of the current thread. Output properties set on previous uses of the
+	 * transformer are cleared.
+	 * 
+	 * @return an identity {@link Transformer} that must not be shared with other threads.
+	 * @throws TransformerConfigurationException
+	 *             if the transformer could not be created.
+	 */
+	public static Transformer getTransformer() throws TransformerConfigurationException {
+		Transformer transformer = TRANSFORMERS.get();
+		if (transformer == null) {
+			synchronized (TRANSFORMER_FACTORY) {
+				transformer = TRANSFORMER_FACTORY.newTransformer();
+			}
+			TRANSFORMERS.set(transformer);
+		} else {
+			transformer.reset();
+		}
+		return transformer;
+	}
+}
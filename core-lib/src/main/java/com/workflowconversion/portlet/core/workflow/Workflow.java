@@ -35,6 +35,9 @@ public class Workflow {
 	// we won't serialize the jobs to an xml file, or the status of the workflow
 	@XmlTransient
 	private final Collection<Job> jobs;
+	// null once the jobs have been loaded
+	@XmlTransient
+	private volatile JobLoader jobLoader;
 
 	/**
 	 * Constructor.
@@ -54,12 +57,36 @@ public class Workflow {
 	}
 
 	/**
+	 * Returns the jobs of this workflow. If this workflow was created with a {@link JobLoader}, the jobs will be loaded
+	 * the first time this method is invoked.
+	 * 
 	 * @return a collection containing all jobs.
 	 */
 	public Collection<Job> getJobs() {
+		final JobLoader currentJobLoader = jobLoader;
+		if (currentJobLoader != null) {
+			currentJobLoader.loadJobs(this);
+		}
 		return Collections.unmodifiableCollection(jobs);
 	}
 
+	/**
+	 * Sets the loader that will provide the jobs of this workflow on demand.
+	 * 
+	 * @param jobLoader
+	 *            the loader, or {@code null} to signal that the jobs have been already loaded.
+	 */
+	public void setJobLoader(final JobLoader jobLoader) {
+		this.jobLoader = jobLoader;
+	}
+
+	/**
+	 * @return {@code true} if the jobs of this workflow have been loaded.
+	 */
+	public boolean isLoaded() {
+		return jobLoader == null;
+	}
+
 	/**
 	 * @param id
 	 *            the id.
@@ -117,7 +144,28 @@ public class Workflow {
 	 */
 	@Override
 	public String toString() {
-		return "Workflow [id=" + id + ", name=" + name + ", archivePath=" + archivePath + ", jobs=" + jobs + "]";
+		// don't trigger the loading of the jobs
+		return "Workflow [id=" + id + ", name=" + name + ", archivePath=" + archivePath + ", jobs="
+				+ (isLoaded() ? jobs : "<not loaded>") + "]";
+	}
+
+	/**
+	 * Loads the jobs of a workflow on demand, so workflows can be listed without having to parse their archives.
+	 * 
+	 * @author delagarza
+	 *
+	 */
+	public interface JobLoader {
+
+		/**
+		 * Loads the jobs of the passed workflow using {@link Workflow#addJob(Job)} and then marks the workflow as
+		 * loaded by invoking {@link Workflow#setJobLoader(JobLoader)} with a {@code null} value. Implementations must
+		 * be thread-safe and must handle the case in which the workflow was already loaded by another thread.
+		 * 
+		 * @param workflow
+		 *            the workflow whose jobs will be loaded.
+		 */
+		public void loadJobs(final Workflow workflow);
 	}
 
 }
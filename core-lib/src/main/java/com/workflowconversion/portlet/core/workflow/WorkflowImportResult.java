@@ -0,0 +1,94 @@
+package com.workflowconversion.portlet.core.workflow;
+
+import java.io.File;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Outcome of importing a single archive through {@link WorkflowManager#importWorkflows(java.util.Collection)}.
+ * 
+ * @author delagarza
+ *
+ */
+public class WorkflowImportResult {
+
+	private final File serverSideWorkflowLocation;
+	private final Workflow workflow;
+	private final Exception error;
+
+	private WorkflowImportResult(final File serverSideWorkflowLocation, final Workflow workflow,
+			final Exception error) {
+		Validate.notNull(serverSideWorkflowLocation,
+				"serverSideWorkflowLocation cannot be null; this is a coding problem and should be reported.");
+		this.serverSideWorkflowLocation = serverSideWorkflowLocation;
+		this.workflow = workflow;
+		this.error = error;
+	}
+
+	/**
+	 * Creates a result for an archive that was successfully imported.
+	 * 
+	 * @param serverSideWorkflowLocation
+	 *            the location of the imported archive.
+	 * @param workflow
+	 *            the imported workflow.
+	 * @return a successful result.
+	 */
+	public static WorkflowImportResult success(final File serverSideWorkflowLocation, final Workflow workflow) {
+		Validate.notNull(workflow, "workflow cannot be null; this is a coding problem and should be reported.");
+		return new WorkflowImportResult(serverSideWorkflowLocation, workflow, null);
+	}
+
+	/**
+	 * Creates a result for an archive that could not be imported.
+	 * 
+	 * @param serverSideWorkflowLocation
+	 *            the location of the archive.
+	 * @param error
+	 *            the reason why the archive could not be imported.
+	 * @return a failed result.
+	 */
+	public static WorkflowImportResult failure(final File serverSideWorkflowLocation, final Exception error) {
+		Validate.notNull(error, "error cannot be null; this is a coding problem and should be reported.");
+		return new WorkflowImportResult(serverSideWorkflowLocation, null, error);
+	}
+
+	/**
+	 * @return the location of the archive.
+	 */
+	public File getServerSideWorkflowLocation() {
+		return serverSideWorkflowLocation;
+	}
+
+	/**
+	 * @return the imported workflow, or {@code null} if the archive could not be imported.
+	 */
+	public Workflow getWorkflow() {
+		return workflow;
+	}
+
+	/**
+	 * @return the reason why the archive could not be imported, or {@code null} if the archive was imported.
+	 */
+	public Exception getError() {
+		return error;
+	}
+
+	/**
+	 * @return whether the archive was imported.
+	 */
+	public boolean isSuccessful() {
+		return error == null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "WorkflowImportResult [serverSideWorkflowLocation=" + serverSideWorkflowLocation + ", workflow="
+				+ workflow + ", error=" + error + "]";
+	}
+}
@@ -35,6 +35,17 @@ public interface WorkflowManager {
 	 */
 	public Workflow importWorkflow(final File serverSideWorkflowLocation);
 
+	/**
+	 * Imports several workflows into the <i>staging</i> area. Archives are processed independently, so a failure while
+	 * importing one of them doesn't prevent the others from being imported.
+	 * 
+	 * @param serverSideWorkflowLocations
+	 *            the locations of the files containing the workflows to import.
+	 * 
+	 * @return the result of importing each of the passed archives, in the same order.
+	 */
+	public Collection<WorkflowImportResult> importWorkflows(final Collection<File> serverSideWorkflowLocations);
+
 	/**
 	 * Deletes a workflow from the staging area.
 	 * 
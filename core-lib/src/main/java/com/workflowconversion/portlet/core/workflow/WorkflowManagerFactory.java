@@ -1,8 +1,5 @@
 package com.workflowconversion.portlet.core.workflow;
 
-import java.util.Collection;
-
-import com.workflowconversion.portlet.core.resource.ResourceProvider;
 import com.workflowconversion.portlet.core.user.PortletUser;
 
 /**
@@ -22,15 +19,6 @@ public interface WorkflowManagerFactory {
 	 */
 	public WorkflowManagerFactory withPortletUser(final PortletUser portletUser);
 
-	/**
-	 * Sets the collection of available resource providers.
-	 * 
-	 * @param resourceProviders
-	 *            the resource providers.
-	 * @return {@code this factory}.
-	 */
-	public WorkflowManagerFactory withResourceProviders(final Collection<ResourceProvider> resourceProviders);
-
 	/**
 	 * Builds a new instance a workflow provider with the current settings.
 	 * 
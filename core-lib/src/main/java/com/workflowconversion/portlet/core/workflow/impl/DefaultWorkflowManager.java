@@ -1,67 +1,52 @@
 package com.workflowconversion.portlet.core.workflow.impl;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.DirectoryStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
-import java.text.MessageFormat;
+import java.nio.file.StandardOpenOption;
 import java.text.SimpleDateFormat;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
-import javax.xml.bind.Marshaller;
-import javax.xml.bind.Unmarshaller;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlRootElement;
 import javax.xml.bind.annotation.XmlTransient;
 import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerConfigurationException;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.TransformerFactoryConfigurationError;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
-
-import org.apache.commons.io.output.ByteArrayOutputStream;
+import javax.xml.stream.XMLStreamException;
+
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
 
 import com.workflowconversion.portlet.core.exception.ApplicationException;
 import com.workflowconversion.portlet.core.exception.InvalidWorkflowException;
@@ -72,21 +57,25 @@ import com.workflowconversion.portlet.core.resource.Application;
 import com.workflowconversion.portlet.core.resource.Queue;
 import com.workflowconversion.portlet.core.resource.Resource;
 import com.workflowconversion.portlet.core.search.AssetFinder;
+import com.workflowconversion.portlet.core.search.AssetQuery;
+import com.workflowconversion.portlet.core.utils.JAXBContextRegistry;
 import com.workflowconversion.portlet.core.workflow.Job;
 import com.workflowconversion.portlet.core.workflow.Workflow;
+import com.workflowconversion.portlet.core.workflow.WorkflowImportResult;
 import com.workflowconversion.portlet.core.workflow.WorkflowManager;
+import com.workflowconversion.portlet.core.workflow.impl.ParsedWorkflowArchive.ParsedJob;
 
 /**
  * Provides the default implementation to access workflows in the staging area.
- * 
+ *
  * Archives to be imported must contain the following elements under each of their "concrete" jobs (i.e., children of
  * the {@code real} element):
- * 
+ *
  * <ul>
  * <li>{@code <description key="workflowconversion.appVersion" value="..."/>}
  * <li>{@code <description key="workflowconversion.appName" value="..."/>}
  * </ul>
- * 
+ *
  * @author delagarza
  *
  */
@@ -94,17 +83,15 @@ import com.workflowconversion.portlet.core.workflow.WorkflowManager;
 @XmlAccessorType(XmlAccessType.FIELD)
 public class DefaultWorkflowManager implements WorkflowManager {
 
-	private static final String ATTRIBUTE_VALUE = "value";
-	private static final String ATTRIBUTE_KEY = "key";
-	private static final String NODE_JOB_DESCRIPTION = "description";
-	private static final String NODE_JOB_EXECUTE = "execute";
-	private static final String ATTRIBUTE_JOB_NAME = "name";
-	private static final String XPATH_ALL_JOBS_SELECTOR = "/workflow/real/job";
-	private static final String XPATH_SINGLE_JOB_SELECTOR = "/workflow/real/job[@name=''{0}'']";
-	private static final String XPATH_WORKFLOW_NAME = "/workflow/@name";
 	private static final String PATH_WORKFLOW_XML = "/workflow.xml";
+	private static final String ENTRY_WORKFLOW_XML = "workflow.xml";
+	private static final String PATH_MODIFIED_WORKFLOW_XML = "/workflow.xml.modified";
 	private static final String USER_WORKFLOWS_ARCHIVE_SUFFIX = ".zip";
 	private static final String USER_WORKFLOWS_XML_FILE_LOCATION = "user_workflows.xml";
+	private static final String USER_WORKFLOWS_XML_TMP_FILE_LOCATION = "user_workflows.xml.tmp";
+	private static final String USER_WORKFLOWS_JOURNAL_FILE_LOCATION = "user_workflows.journal";
+	// number of journal entries after which the journal is compacted into user_workflows.xml
+	private static final int JOURNAL_COMPACTION_THRESHOLD = 100;
 	private static final String PROPERTY_CURRENT_PARAMETERS = "params";
 	private static final String PROPERTY_PREFIX = "workflowconversion.";
 	private static final String PROPERTY_RESOURCE_NAME = PROPERTY_PREFIX + "resourceName";
@@ -135,9 +122,24 @@ public class DefaultWorkflowManager implements WorkflowManager {
 	private final Set<String> workflowsMarkedForDeletion;
 	@XmlTransient
 	private final Set<String> unstagedWorkflows;
+	@XmlTransient
+	private final WorkflowXmlReader workflowXmlReader;
+	@XmlTransient
+	private final WorkflowXmlWriter workflowXmlWriter;
+	@XmlTransient
+	private final WorkflowArchiveRewriter workflowArchiveRewriter;
+	@XmlTransient
+	private final ParsedWorkflowCache parsedWorkflowCache;
+	@XmlTransient
+	private final Workflow.JobLoader jobLoader;
+	@XmlTransient
+	private final ExecutorService importExecutor;
+	@XmlTransient
+	private final WorkflowJournal journal;
 
 	DefaultWorkflowManager(final Path userStagingArea, final AssetFinder assetFinder,
-			final JobExecutionPropertiesHandler jobHandler) {
+			final JobExecutionPropertiesHandler jobHandler, final ParsedWorkflowCache parsedWorkflowCache,
+			final ExecutorService importExecutor) {
 		Validate.isTrue(Files.exists(userStagingArea),
 				"The user's staging area does not exist, this is probably a coding problem and should be reported.");
 		this.userStagingArea = userStagingArea;
@@ -145,16 +147,29 @@ public class DefaultWorkflowManager implements WorkflowManager {
 		this.readWriteLock = new ReentrantReadWriteLock(false);
 		this.workflows = new TreeMap<String, Workflow>();
 		this.userWorkflowsXmlPath = Paths.get(userStagingArea.toString(), USER_WORKFLOWS_XML_FILE_LOCATION);
+		this.journal = new WorkflowJournal(
+				Paths.get(userStagingArea.toString(), USER_WORKFLOWS_JOURNAL_FILE_LOCATION));
 		this.jobHandler = jobHandler;
 		this.workflowsMarkedForDeletion = new TreeSet<String>();
 		this.unstagedWorkflows = new TreeSet<String>();
+		this.workflowXmlReader = new WorkflowXmlReader(PROPERTY_PREFIX);
+		this.workflowXmlWriter = new WorkflowXmlWriter(PROPERTY_PREFIX);
+		this.workflowArchiveRewriter = new WorkflowArchiveRewriter();
+		this.parsedWorkflowCache = parsedWorkflowCache;
+		this.importExecutor = importExecutor;
+		this.jobLoader = new Workflow.JobLoader() {
+			@Override
+			public void loadJobs(final Workflow workflow) {
+				loadStagedWorkflowJobs(workflow);
+			}
+		};
 	}
 
 	/**
 	 * JAXB serialization requires a default constructor.
 	 */
 	public DefaultWorkflowManager() {
-		this(Paths.get("."), null, null);
+		this(Paths.get("."), null, null, null, null);
 	}
 
 	@Override
@@ -163,7 +178,8 @@ public class DefaultWorkflowManager implements WorkflowManager {
 		writeLock.lock();
 		try {
 			loadStagedWorkflowsFromFile_notThreadSafe();
-			cleanStagingArea_notThreadSafe();
+			// user_workflows.xml might not reflect the latest committed changes
+			replayJournal_notThreadSafe();
 		} catch (final Exception e) {
 			throw new ApplicationException("Could not init DefaultWorkflowManager. Cause: " + e.getMessage(), e);
 		} finally {
@@ -174,83 +190,100 @@ public class DefaultWorkflowManager implements WorkflowManager {
 	@Override
 	public Workflow importWorkflow(final File serverSideWorkflowLocation) {
 		LOG.info("Importing workflow from " + serverSideWorkflowLocation.getAbsolutePath());
-		final Lock writeLock = readWriteLock.writeLock();
-		writeLock.lock();
 		try {
-			final String workflowId = new SimpleDateFormat(WORKFLOW_ID_FORMAT).format(new Date());
-			final Workflow parsedWorkflow = loadWorkflowFromArchive_notThreadSafe(serverSideWorkflowLocation.toPath(),
-					workflowId);
-			// this workflow is unstaged
-			unstagedWorkflows.add(parsedWorkflow.getId());
-			workflows.put(parsedWorkflow.getId(), parsedWorkflow);
+			// parsing doesn't touch the state of this manager, so the lock is only needed to register the workflow
+			final Workflow parsedWorkflow = loadWorkflowFromArchive(serverSideWorkflowLocation.toPath(),
+					generateWorkflowId());
+			addImportedWorkflows(Collections.singleton(parsedWorkflow));
 			return parsedWorkflow;
 		} catch (final Exception e) {
 			throw new ApplicationException(e.getMessage(), e);
-		} finally {
-			writeLock.unlock();
 		}
 	}
 
-	private String extractAttribute(final Node node, final String attributeName) {
-		return node.getAttributes().getNamedItem(attributeName).getNodeValue();
+	@Override
+	public Collection<WorkflowImportResult> importWorkflows(final Collection<File> serverSideWorkflowLocations) {
+		Validate.notNull(serverSideWorkflowLocations,
+				"serverSideWorkflowLocations cannot be null; this is a coding problem and should be reported.");
+		LOG.info("Importing " + serverSideWorkflowLocations.size() + " workflows");
+		// archives are parsed and resolved concurrently; jobs are resolved through the asset index, so imports only
+		// wait for each other when registering the imported workflows
+		final List<Future<Workflow>> pendingImports = new ArrayList<Future<Workflow>>(
+				serverSideWorkflowLocations.size());
+		for (final File serverSideWorkflowLocation : serverSideWorkflowLocations) {
+			pendingImports.add(importExecutor.submit(new Callable<Workflow>() {
+				@Override
+				public Workflow call() throws Exception {
+					return loadWorkflowFromArchive(serverSideWorkflowLocation.toPath(), generateWorkflowId());
+				}
+			}));
+		}
+		final Collection<WorkflowImportResult> results = new LinkedList<WorkflowImportResult>();
+		final Collection<Workflow> importedWorkflows = new LinkedList<Workflow>();
+		final Iterator<Future<Workflow>> pendingImportsIterator = pendingImports.iterator();
+		for (final File serverSideWorkflowLocation : serverSideWorkflowLocations) {
+			final Future<Workflow> pendingImport = pendingImportsIterator.next();
+			try {
+				final Workflow parsedWorkflow = pendingImport.get();
+				importedWorkflows.add(parsedWorkflow);
+				results.add(WorkflowImportResult.success(serverSideWorkflowLocation, parsedWorkflow));
+			} catch (final ExecutionException e) {
+				final Exception cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+				LOG.error("Could not import workflow from " + serverSideWorkflowLocation.getAbsolutePath()
+						+ ". Cause: " + cause.getMessage(), cause);
+				results.add(WorkflowImportResult.failure(serverSideWorkflowLocation, cause));
+			} catch (final InterruptedException e) {
+				// keep the interrupted status, the remaining imports will be cancelled as well
+				Thread.currentThread().interrupt();
+				pendingImport.cancel(true);
+				results.add(WorkflowImportResult.failure(serverSideWorkflowLocation, e));
+			}
+		}
+		addImportedWorkflows(importedWorkflows);
+		return Collections.unmodifiableCollection(results);
+	}
+
+	private String generateWorkflowId() {
+		return new SimpleDateFormat(WORKFLOW_ID_FORMAT).format(new Date());
+	}
+
+	private void addImportedWorkflows(final Collection<Workflow> importedWorkflows) {
+		final Lock writeLock = readWriteLock.writeLock();
+		writeLock.lock();
+		try {
+			for (final Workflow importedWorkflow : importedWorkflows) {
+				addImportedWorkflow_notThreadSafe(importedWorkflow);
+			}
+		} finally {
+			writeLock.unlock();
+		}
 	}
 
-	private String extractJobParameters(final Node node, final Map<String, String> jobProperties) {
+	private String extractJobParameters(final Map<String, String> jobProperties,
+			final Map<String, String> executionProperties) {
 		String parameters = jobProperties.get(PROPERTY_ORIGINAL_PARAMETERS);
 		// if the params are missing, use the ones from the execution nodes
 		if (parameters == null) {
-			final Map<String, String> executionProperties = extractJobProperties(node, NODE_JOB_EXECUTE, "");
 			parameters = executionProperties.get(PROPERTY_CURRENT_PARAMETERS);
 		}
 		return StringUtils.trimToEmpty(parameters);
 	}
 
-	private Resource extractResource(final Node node, final Map<String, String> jobProperties) {
-		assetFinder.addSearchCriterion(Resource.Field.Name, getProperty(PROPERTY_RESOURCE_NAME, jobProperties));
-		assetFinder.addSearchCriterion(Resource.Field.Type, getProperty(PROPERTY_RESOURCE_TYPE, jobProperties));
-		return assetFinder.findResource();
-	}
-
-	private Application extractApplication(final Resource resource, final Node node,
-			final Map<String, String> jobProperties) {
-		assetFinder.addSearchCriterion(Application.Field.Version, getProperty(PROPERTY_APP_VERSION, jobProperties));
-		assetFinder.addSearchCriterion(Application.Field.Name, getProperty(PROPERTY_APP_NAME, jobProperties));
-		assetFinder.addSearchCriterion(Application.Field.Path, getProperty(PROPERTY_APP_PATH, jobProperties));
-		return assetFinder.findApplication(resource);
-	}
-
-	private Queue extractQueue(final Resource resource, final Node node, final Map<String, String> jobProperties) {
-		assetFinder.addSearchCriterion(Queue.Field.Name, getProperty(PROPERTY_QUEUE_NAME, jobProperties));
-		return assetFinder.findQueue(resource);
+	private AssetQuery extractAssetQuery(final Map<String, String> jobProperties) {
+		final AssetQuery.Builder queryBuilder = new AssetQuery.Builder();
+		queryBuilder.withResourceName(getProperty(PROPERTY_RESOURCE_NAME, jobProperties))
+				.withResourceType(getProperty(PROPERTY_RESOURCE_TYPE, jobProperties))
+				.withApplicationName(getProperty(PROPERTY_APP_NAME, jobProperties))
+				.withApplicationVersion(getProperty(PROPERTY_APP_VERSION, jobProperties))
+				.withApplicationPath(getProperty(PROPERTY_APP_PATH, jobProperties))
+				.withQueueName(getProperty(PROPERTY_QUEUE_NAME, jobProperties));
+		return queryBuilder.newInstance();
 	}
 
 	private String getProperty(final String propertyName, final Map<String, String> jobProperties) {
 		return StringUtils.trimToNull(jobProperties.get(propertyName));
 	}
 
-	private Map<String, String> extractJobProperties(final Node parentNode, final String childrenNodeName,
-			final String propertyPrefix) {
-		final Map<String, String> propertyMap = new TreeMap<String, String>();
-		final NodeList children = parentNode.getChildNodes();
-		for (int i = 0; i < children.getLength(); i++) {
-			final Node child = children.item(i);
-			if (child.getNodeType() == Node.ELEMENT_NODE && childrenNodeName.equals(child.getNodeName())) {
-				// it is an element with the desired tagname, extract all attributes whose name starts with the prefix
-				final Node keyNode = child.getAttributes().getNamedItem(ATTRIBUTE_KEY);
-				if (keyNode != null) {
-					final String key = keyNode.getNodeValue();
-					if (StringUtils.isBlank(propertyPrefix) || key.startsWith(propertyPrefix)) {
-						final Node valueNode = child.getAttributes().getNamedItem(ATTRIBUTE_VALUE);
-						if (valueNode != null) {
-							propertyMap.put(key, valueNode.getNodeValue());
-						}
-					}
-				}
-			}
-		}
-		return propertyMap;
-	}
-
 	@Override
 	public void deleteWorkflow(final Workflow workflow) {
 		final Lock writeLock = readWriteLock.writeLock();
@@ -280,12 +313,12 @@ public class DefaultWorkflowManager implements WorkflowManager {
 		try {
 			if (workflows.containsKey(workflow.getId())) {
 				saveWorkflowToArchive_notThreadSafe(workflow);
+				parsedWorkflowCache.invalidate(workflow.getArchivePath());
 				workflows.put(workflow.getId(), workflow);
 			} else {
 				throw new WorkflowNotFoundException(workflow);
 			}
-		} catch (final XPathExpressionException | TransformerException | SAXException | ParserConfigurationException
-				| IOException e) {
+		} catch (final XMLStreamException | IOException e) {
 			throw new ApplicationException("Could not save workflow. This is a coding problem and should be reported.",
 					e);
 		} finally {
@@ -298,10 +331,21 @@ public class DefaultWorkflowManager implements WorkflowManager {
 		final Lock writeLock = readWriteLock.writeLock();
 		writeLock.lock();
 		try {
-			// handle workflows marked for deletion and workflows that haven't been staged yet
-			deleteWorkflowsMarkedForDeletion_notThreadSafe();
-			stageUnstagedWorkflows_notThreadSafe();
-			saveWorkflowsToXmlFile_notThreadSafe();
+			// record the changes to the staging area before performing them, so they can be replayed if something goes
+			// wrong; imported archives are moved into the staging area first, replaying an entry must not depend on
+			// temporary files of this session
+			final Collection<WorkflowJournal.Entry> journalEntries = prepareJournalEntries_notThreadSafe();
+			journal.append(journalEntries);
+			// workflows that were never staged are not part of the journal
+			deleteUnstagedWorkflowsMarkedForDeletion_notThreadSafe();
+			for (final WorkflowJournal.Entry journalEntry : journalEntries) {
+				applyJournalEntry_notThreadSafe(journalEntry);
+			}
+			if (journal.getCommittedEntries() >= JOURNAL_COMPACTION_THRESHOLD) {
+				compactJournal_notThreadSafe();
+			}
+		} catch (final IOException e) {
+			throw new ApplicationException("Could not commit changes. Cause: " + e.getMessage(), e);
 		} finally {
 			writeLock.unlock();
 		}
@@ -335,241 +379,247 @@ public class DefaultWorkflowManager implements WorkflowManager {
 		}
 	}
 
-	//////////////////////////////////
-	////// NOT THREAD SAFE METHODS
-	//////////////////////////////////
-	private void saveWorkflowToArchive_notThreadSafe(final Workflow workflow) throws IOException, SAXException,
-			ParserConfigurationException, TransformerException, XPathExpressionException {
-		try (final FileSystem fileSystem = FileSystems.newFileSystem(workflow.getArchivePath(), null)) {
-			// we're just interested in workflow.xml
-			final Path workflowXmlPath = fileSystem.getPath(PATH_WORKFLOW_XML);
-			// get the modified DOM document that reflects the changes in execution properties
-			final Document modifiedWorkflowDocument = getModifiedDocument_notThreadSafe(workflow,
-					Files.newInputStream(workflowXmlPath));
-			// transform the modified DOM to an OutputStream
-			saveDomInWorkflowArchive_notThreadSafe(workflowXmlPath, modifiedWorkflowDocument);
-		}
-	}
-
-	private void saveDomInWorkflowArchive_notThreadSafe(final Path workflowXmlPath,
-			final Document modifiedWorkflowDocument) throws TransformerFactoryConfigurationError,
-			TransformerConfigurationException, TransformerException, IOException {
-		final TransformerFactory tFactory = TransformerFactory.newInstance();
-		final Transformer transformer = tFactory.newTransformer();
-		transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-		transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-		final DOMSource source = new DOMSource(modifiedWorkflowDocument);
-		final ByteArrayOutputStream modifiedWorkflowXmlOutputStream = new ByteArrayOutputStream();
-		final StreamResult result = new StreamResult(modifiedWorkflowXmlOutputStream);
-		transformer.transform(source, result);
-		// modify the zipfile directly
-		final InputStream modifiedWorkflowXmlInputStream = new ByteArrayInputStream(
-				modifiedWorkflowXmlOutputStream.toByteArray());
-		Files.copy(modifiedWorkflowXmlInputStream, workflowXmlPath, StandardCopyOption.REPLACE_EXISTING);
-	}
-
-	private Document getModifiedDocument_notThreadSafe(final Workflow workflow,
-			final InputStream originalWorkflowXmlInputStream)
-			throws ParserConfigurationException, SAXException, IOException, XPathExpressionException {
-		// get the workflow.xml descriptor from the current workflow archive and load it on a DOM
-		final Document currentWorkflowDocument = getDocumentFromInputStream_notThreadSafe(
-				originalWorkflowXmlInputStream);
-		// go through each job and modify the DOM
-		final XPath xPath = XPathFactory.newInstance().newXPath();
-		final MessageFormat singleJobSelectorFormat = new MessageFormat(XPATH_SINGLE_JOB_SELECTOR);
-		for (final Job job : workflow.getJobs()) {
-			final String xPathExpression = singleJobSelectorFormat.format(new Object[] { job.getName() });
-			final NodeList jobList = (NodeList) xPath.evaluate(xPathExpression,
-					currentWorkflowDocument.getDocumentElement(), XPathConstants.NODESET);
-			if (jobList.getLength() == 0) {
-				throw new JobNotFoundException(job.getName());
-			} else if (jobList.getLength() > 1) {
-				throw new InvalidWorkflowException("More than one job with the name '" + job.getName() + "' was found.",
-						workflow.getArchivePath());
-			}
-			// we know we have only one job, extract the execution properties
-			final Node jobNode = jobList.item(0);
-			final Map<String, String> jobExecutionProperties = extractJobProperties(jobNode, NODE_JOB_EXECUTE, "");
-			// transform the properties accordingly
-			if (jobHandler.canHandle(job)) {
-				jobHandler.handle(job, jobExecutionProperties);
-			} else {
-				// don't throw an exception, save the workflow as-is
-				LOG.warn("Job " + job + " can't be handled.");
-				continue;
-			}
-			// write the modified properties to the dom
-			writeExecutionProperties_notThreadSafe(jobNode, jobExecutionProperties, xPath);
-			// write job information in the description nodes
-			writeJobProperties_notThreadSafe(jobNode, job, xPath);
-		}
-		return currentWorkflowDocument;
-	}
-
-	private Document getDocumentFromInputStream_notThreadSafe(final InputStream inputStream)
-			throws ParserConfigurationException, SAXException, IOException {
-		final DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
-		final DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
-		final Document currentWorkflowDocument = documentBuilder.parse(inputStream);
-		return currentWorkflowDocument;
-	}
-
-	private void writeExecutionProperties_notThreadSafe(final Node jobNode,
-			final Map<String, String> executionProperties, final XPath xPath) throws XPathExpressionException {
-
-		final NodeList childrenExecuteNodes = (NodeList) xPath.evaluate(NODE_JOB_EXECUTE, jobNode,
-				XPathConstants.NODESET);
-		final Collection<Node> nodesToRemove = new LinkedList<Node>();
-		final Collection<Element> nodesToInsert = new LinkedList<Element>();
-		final Set<String> processedProperties = new TreeSet<String>();
-		for (int i = 0; i < childrenExecuteNodes.getLength(); i++) {
-			final Node childExecuteNode = childrenExecuteNodes.item(i);
-			// if the property is not in the map, it means that this node is to be removed
-			final String propertyKey = childExecuteNode.getAttributes().getNamedItem(ATTRIBUTE_KEY).getNodeValue();
-			final String propertyValue = executionProperties.get(propertyKey);
-			if (propertyValue == null) {
-				// not found on the properties, it means that this node has to be removed
-				nodesToRemove.add(childExecuteNode);
-			} else {
-				// found on the properties, update the 'value' attribute
-				childExecuteNode.getAttributes().getNamedItem(ATTRIBUTE_VALUE).setNodeValue(propertyValue);
+	private void loadStagedWorkflowJobs(final Workflow workflow) {
+		// workflows owned by this manager are only modified under the write lock; callers must not hold the read lock,
+		// since it can't be upgraded
+		final Lock writeLock = readWriteLock.writeLock();
+		writeLock.lock();
+		try {
+			// another thread could have loaded the jobs while we were waiting for the lock
+			if (!workflow.isLoaded()) {
+				loadStagedWorkflowJobs_notThreadSafe(workflow);
 			}
-			processedProperties.add(propertyKey);
+		} catch (final IOException e) {
+			throw new ApplicationException("Could not load the jobs of workflow with ID " + workflow.getId()
+					+ ". Cause: " + e.getMessage(), e);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	private Workflow loadWorkflowFromArchive(final Path workflowArchiveLocation, final String workflowId)
+			throws IOException {
+		return createWorkflow(workflowId, workflowArchiveLocation,
+				parseWorkflowArchive(workflowArchiveLocation));
+	}
 
+	private ParsedWorkflowArchive parseWorkflowArchive(final Path workflowArchiveLocation)
+			throws IOException {
+		// only the central directory and workflow.xml are read, the rest of the archive is never touched
+		try (final FileChannel channel = FileChannel.open(workflowArchiveLocation, StandardOpenOption.READ)) {
+			final ZipCentralDirectory centralDirectory = ZipCentralDirectory.read(channel);
+			if (centralDirectory != null) {
+				final ZipCentralDirectory.Entry workflowXmlEntry = centralDirectory.getEntry(ENTRY_WORKFLOW_XML);
+				if (workflowXmlEntry == null) {
+					throw new InvalidWorkflowException("The file doesn't contain a 'workflow.xml' entry.",
+							workflowArchiveLocation);
+				}
+				try (final InputStream workflowXmlInputStream = centralDirectory.newInputStream(channel,
+						workflowXmlEntry)) {
+					return parseWorkflowXml(workflowArchiveLocation, workflowXmlInputStream);
+				}
+			}
 		}
-		// find out which properties were not processed yet
-		for (final Map.Entry<String, String> entry : executionProperties.entrySet()) {
-			if (!processedProperties.contains(entry.getKey())) {
-				// if a property is present on the properties but has not been processed,
-				// it means that we need to add a new node
-				nodesToInsert.add(createNewNode_notThreadSafe(jobNode, NODE_JOB_EXECUTE, "desc", "null", "inh", "null",
-						"label", "null", ATTRIBUTE_KEY, entry.getKey(), ATTRIBUTE_VALUE, entry.getValue()));
+		// ZIP64 archives are handled by the zip file system provider
+		try (final FileSystem fileSystem = FileSystems.newFileSystem(workflowArchiveLocation, null)) {
+			final Path workflowXmlPath = fileSystem.getPath(PATH_WORKFLOW_XML);
+			if (!Files.exists(workflowXmlPath)) {
+				throw new InvalidWorkflowException("The file doesn't contain a 'workflow.xml' entry.",
+						workflowArchiveLocation);
+			}
+			try (final InputStream workflowXmlInputStream = Files.newInputStream(workflowXmlPath)) {
+				return parseWorkflowXml(workflowArchiveLocation, workflowXmlInputStream);
 			}
 		}
-		// add/remove nodes accordingly
-		for (final Node nodeToRemove : nodesToRemove) {
-			jobNode.removeChild(nodeToRemove);
+	}
+
+	private ParsedWorkflowArchive parseWorkflowXml(final Path workflowArchiveLocation,
+			final InputStream workflowXmlInputStream) throws IOException {
+		final Collection<ParsedJob> parsedJobs = new LinkedList<ParsedJob>();
+		// stream workflow.xml, jobs are resolved later on
+		final String workflowName;
+		try {
+			workflowName = workflowXmlReader.read(workflowXmlInputStream, new WorkflowXmlReader.JobParsedListener() {
+				@Override
+				public void jobParsed(final String jobName, final Map<String, String> descriptionProperties,
+						final Map<String, String> executeProperties) {
+					parsedJobs.add(new ParsedJob(jobName, descriptionProperties, executeProperties));
+				}
+			});
+		} catch (final XMLStreamException e) {
+			throw new InvalidWorkflowException("Error while reading 'workflow.xml'", workflowArchiveLocation, e);
+		}
+		return new ParsedWorkflowArchive(workflowName, parsedJobs);
+	}
+
+	private Workflow createWorkflow(final String workflowId, final Path workflowArchiveLocation,
+			final ParsedWorkflowArchive parsedArchive) {
+		final Workflow workflow = new Workflow();
+		workflow.setId(workflowId);
+		workflow.setArchivePath(workflowArchiveLocation.toAbsolutePath());
+		addJobs(workflow, parsedArchive);
+		workflow.setName(parsedArchive.getWorkflowName());
+		return workflow;
+	}
+
+	private void addJobs(final Workflow workflow, final ParsedWorkflowArchive parsedArchive) {
+		// resources, applications and queues are always resolved, the resource providers might have changed
+		final List<Job> jobs = new ArrayList<Job>(parsedArchive.getJobs().size());
+		for (final ParsedJob parsedJob : parsedArchive.getJobs()) {
+			jobs.add(createJob(parsedJob.getName(), parsedJob.getDescriptionProperties(),
+					parsedJob.getExecuteProperties()));
 		}
-		for (final Element nodeToInsert : nodesToInsert) {
-			jobNode.appendChild(nodeToInsert);
+		// jobs are added only once all of them were created, so if creating one of them fails, the workflow is left
+		// untouched and loading its jobs can be retried
+		for (final Job job : jobs) {
+			workflow.addJob(job);
 		}
 	}
 
-	private void writeJobProperties_notThreadSafe(final Node jobNode, final Job job, final XPath xPath)
-			throws XPathExpressionException {
-		// remove all the description nodes that match
-		final NodeList childrenDescriptionNodes = (NodeList) xPath.evaluate(NODE_JOB_DESCRIPTION, jobNode,
-				XPathConstants.NODESET);
-		final Collection<Node> nodesToRemove = new LinkedList<Node>();
-		for (int i = 0; i < childrenDescriptionNodes.getLength(); i++) {
-			final Node childDescriptionNode = childrenDescriptionNodes.item(i);
-			final String propertyKey = childDescriptionNode.getAttributes().getNamedItem(ATTRIBUTE_KEY).getNodeValue();
-			if (StringUtils.isNotBlank(propertyKey) && propertyKey.startsWith(PROPERTY_PREFIX)) {
-				nodesToRemove.add(childDescriptionNode);
-			}
+	private Job createJob(final String jobName, final Map<String, String> jobProperties,
+			final Map<String, String> executionProperties) {
+		final Job parsedJob = new Job(jobName);
+		parsedJob.setParameters(extractJobParameters(jobProperties, executionProperties));
+		// the asset finder is stateless, so jobs of concurrent imports are resolved without locking
+		final AssetQuery query = extractAssetQuery(jobProperties);
+		final Resource resource = assetFinder.findResource(query);
+		final Application application = assetFinder.findApplication(resource, query);
+		final Queue queue = assetFinder.findQueue(resource, query);
+		if (resource != null) {
+			parsedJob.setResource(resource);
+		}
+		if (application != null) {
+			parsedJob.setApplication(application);
 		}
-		for (final Node nodeToRemove : nodesToRemove) {
-			jobNode.removeChild(nodeToRemove);
-		}
-		// add a node for each of the job properties
-		jobNode.appendChild(createNewNode_notThreadSafe(jobNode, NODE_JOB_DESCRIPTION, ATTRIBUTE_KEY,
-				PROPERTY_RESOURCE_NAME, ATTRIBUTE_VALUE, job.getResourceName()));
-		jobNode.appendChild(createNewNode_notThreadSafe(jobNode, NODE_JOB_DESCRIPTION, ATTRIBUTE_KEY,
-				PROPERTY_RESOURCE_TYPE, ATTRIBUTE_VALUE, job.getResourceType()));
-		jobNode.appendChild(createNewNode_notThreadSafe(jobNode, NODE_JOB_DESCRIPTION, ATTRIBUTE_KEY, PROPERTY_APP_NAME,
-				ATTRIBUTE_VALUE, job.getApplication().getName()));
-		jobNode.appendChild(createNewNode_notThreadSafe(jobNode, NODE_JOB_DESCRIPTION, ATTRIBUTE_KEY,
-				PROPERTY_APP_VERSION, ATTRIBUTE_VALUE, job.getApplication().getVersion()));
-		jobNode.appendChild(createNewNode_notThreadSafe(jobNode, NODE_JOB_DESCRIPTION, ATTRIBUTE_KEY, PROPERTY_APP_PATH,
-				ATTRIBUTE_VALUE, job.getApplication().getPath()));
-		jobNode.appendChild(createNewNode_notThreadSafe(jobNode, NODE_JOB_DESCRIPTION, ATTRIBUTE_KEY,
-				PROPERTY_ORIGINAL_PARAMETERS, ATTRIBUTE_VALUE, job.getParameters()));
-		final Queue queue = job.getQueue();
 		if (queue != null) {
-			jobNode.appendChild(createNewNode_notThreadSafe(jobNode, NODE_JOB_DESCRIPTION, ATTRIBUTE_KEY,
-					PROPERTY_QUEUE_NAME, ATTRIBUTE_VALUE, queue.getName()));
+			parsedJob.setQueue(queue);
 		}
+		return parsedJob;
 	}
 
-	private Element createNewNode_notThreadSafe(final Node parentNode, final String name, final String... attributes) {
-		if (attributes == null || attributes.length % 2 != 0) {
-			throw new IllegalArgumentException(
-					"Attributes are provided as varargs: name1, value1, name2, value2, ... nameN, valueN. Provided values: "
-							+ Arrays.toString(attributes) + ". This is a coding problem and should be reported.");
+	//////////////////////////////////
+	////// NOT THREAD SAFE METHODS
+	//////////////////////////////////
+	private void saveWorkflowToArchive_notThreadSafe(final Workflow workflow) throws IOException, XMLStreamException {
+		// index the jobs by name so each job in workflow.xml can be matched in constant time
+		final Map<String, Job> pendingJobs = new TreeMap<String, Job>();
+		for (final Job job : workflow.getJobs()) {
+			pendingJobs.put(job.getName(), job);
 		}
-		final Element newNode = parentNode.getOwnerDocument().createElement(name);
-		for (int i = 0; i < attributes.length; i += 2) {
-			newNode.setAttribute(attributes[i], attributes[i + 1]);
+		final Set<String> rewrittenJobs = new TreeSet<String>();
+		final WorkflowArchiveRewriter.EntryRewriter workflowXmlRewriter = new WorkflowArchiveRewriter.EntryRewriter() {
+			@Override
+			public void rewriteEntry(final InputStream originalWorkflowXmlInputStream,
+					final OutputStream modifiedWorkflowXmlOutputStream) throws IOException, XMLStreamException {
+				rewrittenJobs.clear();
+				workflowXmlWriter.write(originalWorkflowXmlInputStream, modifiedWorkflowXmlOutputStream,
+						new WorkflowXmlWriter.JobRewriter() {
+							@Override
+							public Map<String, String> rewriteJob(final String jobName,
+									final Map<String, String> executeProperties) {
+								return rewriteJob_notThreadSafe(workflow, pendingJobs.get(jobName), executeProperties,
+										rewrittenJobs);
+							}
+						});
+				// throwing an exception here leaves the archive untouched
+				for (final String jobName : pendingJobs.keySet()) {
+					if (!rewrittenJobs.contains(jobName)) {
+						throw new JobNotFoundException(jobName);
+					}
+				}
+			}
+		};
+		// the rest of the entries (e.g., bundled input files) are copied without being recompressed
+		if (!workflowArchiveRewriter.rewriteEntry(workflow.getArchivePath(), ENTRY_WORKFLOW_XML,
+				workflowXmlRewriter)) {
+			LOG.info("Archive " + workflow.getArchivePath()
+					+ " can only be modified by mounting it as a zip file system; saving might take a while.");
+			saveWorkflowToArchiveUsingZipFileSystem_notThreadSafe(workflow, workflowXmlRewriter);
 		}
-		return newNode;
-
 	}
 
-	private Workflow loadWorkflowFromArchive_notThreadSafe(final Path workflowArchiveLocation, final String workflowId)
-			throws IOException, ParserConfigurationException, SAXException {
-		try (final FileSystem fileSystem = FileSystems.newFileSystem(workflowArchiveLocation, null)) {
+	private void saveWorkflowToArchiveUsingZipFileSystem_notThreadSafe(final Workflow workflow,
+			final WorkflowArchiveRewriter.EntryRewriter workflowXmlRewriter) throws IOException, XMLStreamException {
+		try (final FileSystem fileSystem = FileSystems.newFileSystem(workflow.getArchivePath(), null)) {
+			// we're just interested in workflow.xml
 			final Path workflowXmlPath = fileSystem.getPath(PATH_WORKFLOW_XML);
-			if (!Files.exists(workflowXmlPath)) {
-				throw new InvalidWorkflowException("The file doesn't contain a 'workflow.xml' entry.",
-						workflowArchiveLocation);
-			}
-
-			try (final InputStream workflowXmlInputStream = Files.newInputStream(workflowXmlPath)) {
-				// read workflow.xml into a document
-				final Document document = getDocumentFromInputStream_notThreadSafe(workflowXmlInputStream);
-
-				final XPath xPath = XPathFactory.newInstance().newXPath();
-				final String workflowName;
-				try {
-					workflowName = (String) xPath.evaluate(XPATH_WORKFLOW_NAME, document, XPathConstants.STRING);
-				} catch (final XPathExpressionException e) {
-					throw new InvalidWorkflowException("Error while evaluation XPath expression '/workflow/@name'",
-							workflowArchiveLocation, e);
+			// the modified workflow.xml is written next to the original one and replaces it only if there were no
+			// errors, this way the archive is left untouched if something goes wrong
+			final Path modifiedWorkflowXmlPath = fileSystem.getPath(PATH_MODIFIED_WORKFLOW_XML);
+			try {
+				try (final InputStream originalWorkflowXmlInputStream = Files.newInputStream(workflowXmlPath);
+						final OutputStream modifiedWorkflowXmlOutputStream = Files
+								.newOutputStream(modifiedWorkflowXmlPath)) {
+					workflowXmlRewriter.rewriteEntry(originalWorkflowXmlInputStream, modifiedWorkflowXmlOutputStream);
 				}
+				Files.move(modifiedWorkflowXmlPath, workflowXmlPath, StandardCopyOption.REPLACE_EXISTING);
+			} finally {
+				Files.deleteIfExists(modifiedWorkflowXmlPath);
+			}
+		}
+	}
 
-				final Workflow parsedWorkflow = new Workflow();
-				parsedWorkflow.setId(workflowId);
-				parsedWorkflow.setName(workflowName);
-				parsedWorkflow.setArchivePath(workflowArchiveLocation.toAbsolutePath());
-
-				final NodeList jobNodeList;
-				try {
-					jobNodeList = (NodeList) xPath.evaluate(XPATH_ALL_JOBS_SELECTOR, document, XPathConstants.NODESET);
-				} catch (final XPathExpressionException e) {
-					throw new InvalidWorkflowException("Error while evaluation XPath expression '/workflow/real/job'",
-							workflowArchiveLocation, e);
-				}
+	// returns the description properties to write, or null if the job needs no changes
+	private Map<String, String> rewriteJob_notThreadSafe(final Workflow workflow, final Job job,
+			final Map<String, String> jobExecutionProperties, final Set<String> rewrittenJobs) {
+		if (job == null) {
+			// this job is not part of the workflow model, leave it alone
+			return null;
+		}
+		if (!rewrittenJobs.add(job.getName())) {
+			throw new InvalidWorkflowException("More than one job with the name '" + job.getName() + "' was found.",
+					workflow.getArchivePath());
+		}
+		// transform the properties accordingly
+		if (!jobHandler.canHandle(job)) {
+			// don't throw an exception, save the workflow as-is
+			LOG.warn("Job " + job + " can't be handled.");
+			return null;
+		}
+		jobHandler.handle(job, jobExecutionProperties);
+		// write job information in the description nodes
+		final Map<String, String> jobProperties = new LinkedHashMap<String, String>();
+		jobProperties.put(PROPERTY_RESOURCE_NAME, job.getResourceName());
+		jobProperties.put(PROPERTY_RESOURCE_TYPE, job.getResourceType());
+		jobProperties.put(PROPERTY_APP_NAME, job.getApplication().getName());
+		jobProperties.put(PROPERTY_APP_VERSION, job.getApplication().getVersion());
+		jobProperties.put(PROPERTY_APP_PATH, job.getApplication().getPath());
+		jobProperties.put(PROPERTY_ORIGINAL_PARAMETERS, job.getParameters());
+		final Queue queue = job.getQueue();
+		if (queue != null) {
+			jobProperties.put(PROPERTY_QUEUE_NAME, queue.getName());
+		}
+		return jobProperties;
+	}
 
-				for (int i = 0; i < jobNodeList.getLength(); i++) {
-					final Node node = jobNodeList.item(i);
-					final String jobName = extractAttribute(node, ATTRIBUTE_JOB_NAME);
-					final Job parsedJob = new Job(jobName);
-					final Map<String, String> jobProperties = extractJobProperties(node, NODE_JOB_DESCRIPTION,
-							PROPERTY_PREFIX);
-					parsedJob.setParameters(extractJobParameters(node, jobProperties));
-					assetFinder.clearAllFields();
-					final Resource resource = extractResource(node, jobProperties);
-					final Application application = extractApplication(resource, node, jobProperties);
-					final Queue queue = extractQueue(resource, node, jobProperties);
-					if (resource != null) {
-						parsedJob.setResource(resource);
-					}
-					if (application != null) {
-						parsedJob.setApplication(application);
-					}
-					if (queue != null) {
-						parsedJob.setQueue(queue);
-					}
-					parsedWorkflow.addJob(parsedJob);
-				}
+	private void addImportedWorkflow_notThreadSafe(final Workflow importedWorkflow) {
+		// ids are generated outside of the lock, concurrent imports could have gotten the same one
+		final String generatedWorkflowId = importedWorkflow.getId();
+		String workflowId = generatedWorkflowId;
+		for (int suffix = 1; workflows.containsKey(workflowId); suffix++) {
+			workflowId = generatedWorkflowId + '_' + suffix;
+		}
+		importedWorkflow.setId(workflowId);
+		// this workflow is unstaged
+		unstagedWorkflows.add(workflowId);
+		workflows.put(workflowId, importedWorkflow);
+	}
 
-				return parsedWorkflow;
-			}
+	private void loadStagedWorkflowJobs_notThreadSafe(final Workflow workflow) throws IOException {
+		final Path workflowArchiveLocation = workflow.getArchivePath();
+		// staged archives seldom change, so there's a good chance they were already parsed in a previous session
+		ParsedWorkflowArchive parsedArchive = parsedWorkflowCache.get(workflow.getId(), workflowArchiveLocation);
+		if (parsedArchive == null) {
+			parsedArchive = parseWorkflowArchive(workflowArchiveLocation);
+			parsedWorkflowCache.put(workflow.getId(), workflowArchiveLocation, parsedArchive);
+		} else if (LOG.isDebugEnabled()) {
+			LOG.debug("Using cached contents of " + workflowArchiveLocation + " for workflow ID " + workflow.getId());
 		}
+		addJobs(workflow, parsedArchive);
+		workflow.setJobLoader(null);
 	}
 
-	private void loadStagedWorkflowsFromFile_notThreadSafe()
-			throws IOException, ParserConfigurationException, SAXException {
+	private void loadStagedWorkflowsFromFile_notThreadSafe() throws IOException {
 		try {
 			workflows.clear();
 			unstagedWorkflows.clear();
@@ -577,17 +627,15 @@ public class DefaultWorkflowManager implements WorkflowManager {
 
 			// if the file does not exist, don't load anything and log this event
 			if (Files.exists(userWorkflowsXmlPath)) {
-				final JAXBContext jaxbContext = JAXBContext.newInstance(DefaultWorkflowManager.class);
-				final Unmarshaller jaxbUnmarshaller = jaxbContext.createUnmarshaller();
-
 				// this manager has "empty" workflows, only name, id and archivePath are contained
-				// in the xml file, so we need to load the workflows from the archive
-				final DefaultWorkflowManager workflowManager = (DefaultWorkflowManager) jaxbUnmarshaller
-						.unmarshal(userWorkflowsXmlPath.toFile());
+				// in the xml file; the jobs will be loaded from the archive the first time they are needed
+				final DefaultWorkflowManager workflowManager = JAXBContextRegistry
+						.unmarshal(DefaultWorkflowManager.class, userWorkflowsXmlPath.toFile());
 
 				for (final Workflow workflow : workflowManager.workflows.values()) {
-					workflows.put(workflow.getId(),
-							loadWorkflowFromArchive_notThreadSafe(workflow.getArchivePath(), workflow.getId()));
+					workflow.setArchivePath(workflow.getArchivePath().toAbsolutePath());
+					workflow.setJobLoader(jobLoader);
+					workflows.put(workflow.getId(), workflow);
 				}
 			} else {
 				LOG.info(
@@ -599,84 +647,142 @@ public class DefaultWorkflowManager implements WorkflowManager {
 		}
 	}
 
-	private void cleanStagingArea_notThreadSafe() {
-		// remove archives on the staging area that don't belong to any workflow
-		LOG.info("Cleaning staging area");
-		final Set<Path> orphanArchives = new TreeSet<Path>();
-		try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(userStagingArea)) {
-			for (final Path path : directoryStream) {
-				if (path.toString().endsWith(USER_WORKFLOWS_ARCHIVE_SUFFIX)) {
-					orphanArchives.add(path.toAbsolutePath());
-				}
-			}
-		} catch (final IOException e) {
-			LOG.error("Could not list entries while clearing staging area of old archives. Cause: " + e.getMessage(),
-					e);
+	private void replayJournal_notThreadSafe() throws IOException {
+		final List<WorkflowJournal.Entry> journalEntries = journal.recover();
+		if (journalEntries.isEmpty()) {
+			return;
 		}
-		for (final Workflow workflow : workflows.values()) {
-			orphanArchives.remove(workflow.getArchivePath().toAbsolutePath());
+		LOG.info("Replaying " + journalEntries.size() + " journal entries");
+		// there's no point in staging a workflow that is deleted later on
+		final Set<String> deletedWorkflowIds = new TreeSet<String>();
+		final ListIterator<WorkflowJournal.Entry> journalEntriesIterator = journalEntries
+				.listIterator(journalEntries.size());
+		while (journalEntriesIterator.hasPrevious()) {
+			final WorkflowJournal.Entry journalEntry = journalEntriesIterator.previous();
+			if (journalEntry.getOperation() == WorkflowJournal.Operation.Delete) {
+				deletedWorkflowIds.add(journalEntry.getWorkflowId());
+			} else if (deletedWorkflowIds.contains(journalEntry.getWorkflowId())) {
+				journalEntriesIterator.remove();
+			}
 		}
-		// any path remaining should be removed
-		for (final Path orphanArchive : orphanArchives) {
+		// entries are idempotent, it doesn't matter if some of them were already applied
+		for (final WorkflowJournal.Entry journalEntry : journalEntries) {
 			try {
-				LOG.info("Deleting orphan archive: " + orphanArchive.toString());
-				Files.deleteIfExists(orphanArchive);
+				applyJournalEntry_notThreadSafe(journalEntry);
 			} catch (final IOException e) {
-				LOG.error("Could not delete orphan archive " + orphanArchive.toString());
+				LOG.error("Could not replay journal entry " + journalEntry + ". Cause: " + e.getMessage(), e);
 			}
 		}
+		// otherwise the same entries would be replayed on every session until the compaction threshold is reached
+		compactJournal_notThreadSafe();
 	}
 
-	private void deleteWorkflowsMarkedForDeletion_notThreadSafe() {
-		final Collection<String> removedKeys = new LinkedList<String>();
-		for (final String keyToRemove : workflowsMarkedForDeletion) {
-			// remove it from the map
-			final Workflow workflow = workflows.remove(keyToRemove);
-			removedKeys.add(keyToRemove);
-			// and remove the archive
-			try {
-				Files.deleteIfExists(workflow.getArchivePath());
-			} catch (final IOException e) {
-				LOG.error("Could not delete archive located on " + workflow.getArchivePath().toString()
-						+ " of workflow ID " + workflow.getId(), e);
+	private Collection<WorkflowJournal.Entry> prepareJournalEntries_notThreadSafe() throws IOException {
+		final Collection<WorkflowJournal.Entry> journalEntries = new LinkedList<WorkflowJournal.Entry>();
+		for (final String workflowId : workflowsMarkedForDeletion) {
+			if (!unstagedWorkflows.contains(workflowId)) {
+				final Workflow workflow = workflows.get(workflowId);
+				journalEntries.add(WorkflowJournal.Entry.delete(workflowId, workflow.getArchivePath()));
 			}
 		}
-		workflowsMarkedForDeletion.removeAll(removedKeys);
+		for (final String workflowId : unstagedWorkflows) {
+			if (!workflowsMarkedForDeletion.contains(workflowId)) {
+				final Workflow workflow = workflows.get(workflowId);
+				// if the commit fails after this point, the workflow stays unstaged and the archive is moved again
+				// on the next commit
+				final Path archivePath = generateWorkflowPath_notThreadSafe();
+				Files.move(workflow.getArchivePath(), archivePath);
+				workflow.setArchivePath(archivePath);
+				journalEntries.add(WorkflowJournal.Entry.stage(workflowId, workflow.getName(), archivePath));
+			}
+		}
+		return journalEntries;
 	}
 
-	private void stageUnstagedWorkflows_notThreadSafe() {
-		for (final Map.Entry<String, Workflow> entry : workflows.entrySet()) {
-			final Workflow workflow = entry.getValue();
-			if (unstagedWorkflows.contains(entry.getKey()) && !workflowsMarkedForDeletion.contains(entry.getKey())) {
-				// move the archive to the staging area
-				try {
-					moveWorkflowToStagingArea_notThreadSafe(workflow);
-					unstagedWorkflows.remove(entry.getKey());
-				} catch (final IOException e) {
-					throw new ApplicationException("Could not move archive to staging area. Cause: " + e.getMessage(),
-							e);
-				}
+	private void applyJournalEntry_notThreadSafe(final WorkflowJournal.Entry journalEntry) throws IOException {
+		switch (journalEntry.getOperation()) {
+		case Stage:
+			stageWorkflow_notThreadSafe(journalEntry);
+			break;
+		case Delete:
+			deleteStagedWorkflow_notThreadSafe(journalEntry);
+			break;
+		default:
+			throw new ApplicationException("Unsupported journal operation: " + journalEntry.getOperation()
+					+ ". This is a coding problem and should be reported.");
+		}
+	}
+
+	private void stageWorkflow_notThreadSafe(final WorkflowJournal.Entry journalEntry) throws IOException {
+		final String workflowId = journalEntry.getWorkflowId();
+		final Path archivePath = journalEntry.getArchivePath();
+		// archives are moved into the staging area before being journaled, this only happens if it was removed
+		// by other means or if the entry was written by an older version
+		if (!Files.exists(archivePath)) {
+			LOG.warn("The archive " + archivePath + " of workflow ID " + workflowId
+					+ " does not exist, the workflow will not be staged");
+			return;
+		}
+		Workflow workflow = workflows.get(workflowId);
+		if (workflow == null) {
+			// replaying a workflow that is not in user_workflows.xml
+			workflow = new Workflow();
+			workflow.setId(workflowId);
+			workflow.setName(journalEntry.getWorkflowName());
+			workflow.setJobLoader(jobLoader);
+			workflows.put(workflowId, workflow);
+		}
+		workflow.setArchivePath(archivePath);
+		unstagedWorkflows.remove(workflowId);
+	}
+
+	private void deleteStagedWorkflow_notThreadSafe(final WorkflowJournal.Entry journalEntry) {
+		final String workflowId = journalEntry.getWorkflowId();
+		workflows.remove(workflowId);
+		workflowsMarkedForDeletion.remove(workflowId);
+		deleteArchive_notThreadSafe(workflowId, journalEntry.getArchivePath());
+	}
+
+	private void deleteUnstagedWorkflowsMarkedForDeletion_notThreadSafe() {
+		final Collection<String> removedKeys = new LinkedList<String>();
+		for (final String keyToRemove : workflowsMarkedForDeletion) {
+			if (unstagedWorkflows.remove(keyToRemove)) {
+				final Workflow workflow = workflows.remove(keyToRemove);
+				removedKeys.add(keyToRemove);
+				deleteArchive_notThreadSafe(keyToRemove, workflow.getArchivePath());
 			}
 		}
+		workflowsMarkedForDeletion.removeAll(removedKeys);
 	}
 
-	private void saveWorkflowsToXmlFile_notThreadSafe() {
+	private void deleteArchive_notThreadSafe(final String workflowId, final Path archivePath) {
+		parsedWorkflowCache.invalidate(archivePath);
 		try {
-			final JAXBContext jaxbContext = JAXBContext.newInstance(DefaultWorkflowManager.class);
-			final Marshaller jaxbMarshaller = jaxbContext.createMarshaller();
+			Files.deleteIfExists(archivePath);
+		} catch (final IOException e) {
+			LOG.error("Could not delete archive located on " + archivePath.toString() + " of workflow ID "
+					+ workflowId, e);
+		}
+	}
 
-			jaxbMarshaller.setProperty(javax.xml.bind.Marshaller.JAXB_FORMATTED_OUTPUT, true);
+	private void compactJournal_notThreadSafe() throws IOException {
+		LOG.info("Compacting journal into " + userWorkflowsXmlPath);
+		saveWorkflowsToXmlFile_notThreadSafe();
+		// user_workflows.xml contains all committed changes now
+		journal.clear();
+	}
 
-			jaxbMarshaller.marshal(this, userWorkflowsXmlPath.toFile());
+	private void saveWorkflowsToXmlFile_notThreadSafe() throws IOException {
+		// write to a temporary file first, so user_workflows.xml is replaced in a single step
+		final Path userWorkflowsXmlTmpPath = Paths.get(userStagingArea.toString(),
+				USER_WORKFLOWS_XML_TMP_FILE_LOCATION);
+		try {
+			JAXBContextRegistry.marshal(this, userWorkflowsXmlTmpPath.toFile());
 		} catch (final JAXBException e) {
 			throw new ApplicationException(e.getMessage(), e);
 		}
-	}
-
-	private void moveWorkflowToStagingArea_notThreadSafe(final Workflow workflow) throws IOException {
-		final Path newArchivePath = generateWorkflowPath_notThreadSafe();
-		Files.move(workflow.getArchivePath(), newArchivePath, StandardCopyOption.REPLACE_EXISTING);
-		workflow.setArchivePath(newArchivePath);
+		Files.move(userWorkflowsXmlTmpPath, userWorkflowsXmlPath, StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
 	}
 
 	private Path generateWorkflowPath_notThreadSafe() throws IOException {
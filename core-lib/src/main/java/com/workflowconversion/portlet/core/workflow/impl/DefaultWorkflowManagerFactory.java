@@ -4,14 +4,13 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Collection;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.commons.lang3.Validate;
 
 import com.workflowconversion.portlet.core.Settings;
 import com.workflowconversion.portlet.core.exception.ApplicationException;
 import com.workflowconversion.portlet.core.execution.JobExecutionPropertiesHandler;
-import com.workflowconversion.portlet.core.resource.ResourceProvider;
 import com.workflowconversion.portlet.core.search.AssetFinder;
 import com.workflowconversion.portlet.core.user.PortletUser;
 import com.workflowconversion.portlet.core.workflow.WorkflowManager;
@@ -19,14 +18,19 @@ import com.workflowconversion.portlet.core.workflow.WorkflowManagerFactory;
 
 /**
  * Factory that constructs instances of {@link WorkflowManager}s.
- * 
+ *
  * @author delagarza
  *
  */
 public class DefaultWorkflowManagerFactory implements WorkflowManagerFactory {
 
+	private static final long MAX_CACHED_WORKFLOW_ARCHIVES = 1000;
+	// parsed archives are shared across sessions, so users don't have to wait for their staged workflows to be parsed
+	// every time the portlet is opened
+	private static final ParsedWorkflowCache PARSED_WORKFLOW_CACHE = new ParsedWorkflowCache(
+			MAX_CACHED_WORKFLOW_ARCHIVES);
+
 	private PortletUser portletUser;
-	private Collection<ResourceProvider> resourceProviders;
 
 	@Override
 	public WorkflowManagerFactory withPortletUser(final PortletUser portletUser) {
@@ -34,18 +38,10 @@ public class DefaultWorkflowManagerFactory implements WorkflowManagerFactory {
 		return this;
 	}
 
-	@Override
-	public WorkflowManagerFactory withResourceProviders(final Collection<ResourceProvider> resourceProviders) {
-		this.resourceProviders = resourceProviders;
-		return this;
-	}
-
 	@Override
 	public WorkflowManager newInstance() {
 		Validate.notNull(portletUser,
 				"portletUser cannot be null; please use the withPortletUser() method to set a valid instance.");
-		Validate.notEmpty(resourceProviders,
-				"resourceProviders cannot be null or empty; please use the withResourceProviders() method to set the applications.");
 		final String stagingAreaPath = Settings.getInstance().getWorkflowStagingAreaPath();
 		Validate.notBlank(stagingAreaPath,
 				"invalid staging area, please configure the 'workflow.stagingArea.path' property in the web.xml file.");
@@ -54,12 +50,14 @@ public class DefaultWorkflowManagerFactory implements WorkflowManagerFactory {
 			if (!Files.exists(stagingArea)) {
 				Files.createDirectories(stagingArea);
 			}
-			final AssetFinder assetFinder = new AssetFinder();
-			assetFinder.init(resourceProviders);
+			// assets are looked up in the global index, which covers the resource providers of the portlet and is kept
+			// up to date as they change
+			final AssetFinder assetFinder = new AssetFinder(Settings.getInstance().getAssetIndex());
 			final JobExecutionPropertiesHandler executionPropertiesHandler = Settings.getInstance()
 					.getJobExecutionPropertiesHandler();
+			final ExecutorService importExecutor = Settings.getInstance().getWorkflowImportExecutor();
 			final WorkflowManager workflowManager = new DefaultWorkflowManager(stagingArea, assetFinder,
-					executionPropertiesHandler);
+					executionPropertiesHandler, PARSED_WORKFLOW_CACHE, importExecutor);
 			return workflowManager;
 		} catch (final IOException e) {
 			throw new ApplicationException(
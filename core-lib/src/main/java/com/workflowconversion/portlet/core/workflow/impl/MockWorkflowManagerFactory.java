@@ -3,13 +3,14 @@ package com.workflowconversion.portlet.core.workflow.impl;
 import java.io.File;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedList;
 import java.util.Map;
 import java.util.TreeMap;
 
-import com.workflowconversion.portlet.core.resource.ResourceProvider;
 import com.workflowconversion.portlet.core.user.PortletUser;
 import com.workflowconversion.portlet.core.workflow.Job;
 import com.workflowconversion.portlet.core.workflow.Workflow;
+import com.workflowconversion.portlet.core.workflow.WorkflowImportResult;
 import com.workflowconversion.portlet.core.workflow.WorkflowManager;
 import com.workflowconversion.portlet.core.workflow.WorkflowManagerFactory;
 
@@ -26,11 +27,6 @@ public class MockWorkflowManagerFactory implements WorkflowManagerFactory {
 		return this;
 	}
 
-	@Override
-	public WorkflowManagerFactory withResourceProviders(final Collection<ResourceProvider> resourceProviders) {
-		return this;
-	}
-
 	@Override
 	public WorkflowManager newInstance() {
 		return new MockWorkflowManager();
@@ -56,6 +52,16 @@ public class MockWorkflowManagerFactory implements WorkflowManagerFactory {
 			return newWorkflow;
 		}
 
+		@Override
+		public Collection<WorkflowImportResult> importWorkflows(final Collection<File> serverSideWorkflowLocations) {
+			final Collection<WorkflowImportResult> results = new LinkedList<WorkflowImportResult>();
+			for (final File serverSideWorkflowLocation : serverSideWorkflowLocations) {
+				results.add(WorkflowImportResult.success(serverSideWorkflowLocation,
+						importWorkflow(serverSideWorkflowLocation)));
+			}
+			return results;
+		}
+
 		private Workflow addNewWorkflow() {
 			final Workflow newWorkflow = new Workflow();
 			newWorkflow.setId(Integer.toString(CURRENT_WF_ID));
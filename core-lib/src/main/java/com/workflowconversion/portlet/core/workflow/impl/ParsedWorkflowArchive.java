@@ -0,0 +1,103 @@
+package com.workflowconversion.portlet.core.workflow.impl;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Immutable representation of the contents of {@code workflow.xml} as read by {@link WorkflowXmlReader}.
+ * 
+ * Instances of this class hold the raw properties of each job, not the resolved resources, applications or queues, so
+ * they can be safely reused even if the resources offered by the resource providers change.
+ * 
+ * @author delagarza
+ *
+ */
+class ParsedWorkflowArchive {
+
+	private final String workflowName;
+	private final Collection<ParsedJob> jobs;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param workflowName
+	 *            the name of the workflow.
+	 * @param jobs
+	 *            the jobs, in document order.
+	 */
+	ParsedWorkflowArchive(final String workflowName, final Collection<ParsedJob> jobs) {
+		Validate.notNull(jobs, "jobs cannot be null; this is a coding problem and should be reported.");
+		this.workflowName = workflowName;
+		this.jobs = Collections.unmodifiableCollection(new LinkedList<ParsedJob>(jobs));
+	}
+
+	/**
+	 * @return the name of the workflow.
+	 */
+	String getWorkflowName() {
+		return workflowName;
+	}
+
+	/**
+	 * @return the parsed jobs, in document order.
+	 */
+	Collection<ParsedJob> getJobs() {
+		return jobs;
+	}
+
+	/**
+	 * The properties of a single {@code /workflow/real/job} element.
+	 * 
+	 * @author delagarza
+	 *
+	 */
+	static class ParsedJob {
+		private final String name;
+		private final Map<String, String> descriptionProperties;
+		private final Map<String, String> executeProperties;
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param name
+		 *            the name of the job.
+		 * @param descriptionProperties
+		 *            the properties found in the {@code description} children of the job.
+		 * @param executeProperties
+		 *            the properties found in the {@code execute} children of the job.
+		 */
+		ParsedJob(final String name, final Map<String, String> descriptionProperties,
+				final Map<String, String> executeProperties) {
+			this.name = name;
+			this.descriptionProperties = Collections
+					.unmodifiableMap(new TreeMap<String, String>(descriptionProperties));
+			this.executeProperties = Collections.unmodifiableMap(new TreeMap<String, String>(executeProperties));
+		}
+
+		/**
+		 * @return the name of the job.
+		 */
+		String getName() {
+			return name;
+		}
+
+		/**
+		 * @return the properties found in the {@code description} children of the job.
+		 */
+		Map<String, String> getDescriptionProperties() {
+			return descriptionProperties;
+		}
+
+		/**
+		 * @return the properties found in the {@code execute} children of the job.
+		 */
+		Map<String, String> getExecuteProperties() {
+			return executeProperties;
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package com.workflowconversion.portlet.core.workflow.impl;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Cache of parsed workflow archives that outlives the {@link DefaultWorkflowManager} instances.
+ * 
+ * Entries are keyed by the location of the archive, which lives in the staging area of its user, and are validated
+ * against the id of the workflow and the {@link WorkflowArchiveFingerprint} of the archive, so archives that were
+ * modified since they were cached are parsed again. This class is thread-safe.
+ * 
+ * @author delagarza
+ *
+ */
+class ParsedWorkflowCache {
+
+	private final static Logger LOG = LoggerFactory.getLogger(ParsedWorkflowCache.class);
+
+	private final Cache<Path, Entry> entries;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param maximumSize
+	 *            the maximum number of archives to keep in the cache.
+	 */
+	ParsedWorkflowCache(final long maximumSize) {
+		Validate.isTrue(maximumSize > 0,
+				"maximumSize must be a positive number; this is a coding problem and should be reported.");
+		this.entries = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+	}
+
+	/**
+	 * Obtains the cached contents of an archive.
+	 * 
+	 * @param workflowId
+	 *            the id of the workflow contained in the archive.
+	 * @param archivePath
+	 *            the location of the archive.
+	 * @return the parsed contents of the archive, or {@code null} if the archive is not in the cache or if it changed
+	 *         since it was cached.
+	 * @throws IOException
+	 *             if the archive could not be read.
+	 */
+	ParsedWorkflowArchive get(final String workflowId, final Path archivePath) throws IOException {
+		final Path key = archivePath.toAbsolutePath();
+		final Entry entry = entries.getIfPresent(key);
+		if (entry == null) {
+			return null;
+		}
+		if (!entry.workflowId.equals(workflowId) || !entry.fingerprint.matches(key)) {
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("Cached contents of " + key + " are stale, the archive will be parsed again.");
+			}
+			entries.invalidate(key);
+			return null;
+		}
+		return entry.parsedArchive;
+	}
+
+	/**
+	 * Adds the parsed contents of an archive to the cache.
+	 * 
+	 * @param workflowId
+	 *            the id of the workflow contained in the archive.
+	 * @param archivePath
+	 *            the location of the archive.
+	 * @param parsedArchive
+	 *            the parsed contents of the archive.
+	 * @throws IOException
+	 *             if the archive could not be read.
+	 */
+	void put(final String workflowId, final Path archivePath, final ParsedWorkflowArchive parsedArchive)
+			throws IOException {
+		Validate.notBlank(workflowId,
+				"workflowId cannot be null, empty or contain only whitespaces; this is a coding problem and should be reported.");
+		Validate.notNull(parsedArchive,
+				"parsedArchive cannot be null; this is a coding problem and should be reported.");
+		final Path key = archivePath.toAbsolutePath();
+		entries.put(key, new Entry(workflowId, WorkflowArchiveFingerprint.of(key), parsedArchive));
+	}
+
+	/**
+	 * Removes the contents of an archive from the cache.
+	 * 
+	 * @param archivePath
+	 *            the location of the archive.
+	 */
+	void invalidate(final Path archivePath) {
+		entries.invalidate(archivePath.toAbsolutePath());
+	}
+
+	private static class Entry {
+		private final String workflowId;
+		private final WorkflowArchiveFingerprint fingerprint;
+		private final ParsedWorkflowArchive parsedArchive;
+
+		private Entry(final String workflowId, final WorkflowArchiveFingerprint fingerprint,
+				final ParsedWorkflowArchive parsedArchive) {
+			this.workflowId = workflowId;
+			this.fingerprint = fingerprint;
+			this.parsedArchive = parsedArchive;
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package com.workflowconversion.portlet.core.workflow.impl;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Identifies the contents of a workflow archive by its size, its modification time and the central directory entry of
+ * its {@code workflow.xml}, that is, the CRC-32 and the compressed size of {@code workflow.xml} and the position of its
+ * local header in the archive.
+ * 
+ * Only the end of the archive is read to obtain the entry (see {@link ZipCentralDirectory}), so checking a fingerprint
+ * doesn't depend on the size of the archive, and {@link #matches(Path)} only does it when the size and the
+ * modification time of the archive are the same as the ones of this fingerprint. For archives whose central directory
+ * can't be read this way (i.e., ZIP64 archives) or that have no {@code workflow.xml}, only the size and the
+ * modification time are compared.
+ * 
+ * @author delagarza
+ *
+ */
+class WorkflowArchiveFingerprint {
+
+	private static final String ENTRY_WORKFLOW_XML = "workflow.xml";
+	// used for the fields of the entry when the entry could not be read
+	private static final long UNKNOWN = -1;
+
+	private final long size;
+	private final long lastModifiedMillis;
+	private final long workflowXmlCrc;
+	private final long workflowXmlCompressedSize;
+	private final long workflowXmlLocalHeaderOffset;
+
+	private WorkflowArchiveFingerprint(final long size, final long lastModifiedMillis, final long workflowXmlCrc,
+			final long workflowXmlCompressedSize, final long workflowXmlLocalHeaderOffset) {
+		this.size = size;
+		this.lastModifiedMillis = lastModifiedMillis;
+		this.workflowXmlCrc = workflowXmlCrc;
+		this.workflowXmlCompressedSize = workflowXmlCompressedSize;
+		this.workflowXmlLocalHeaderOffset = workflowXmlLocalHeaderOffset;
+	}
+
+	/**
+	 * Computes the fingerprint of the passed archive.
+	 * 
+	 * @param archivePath
+	 *            the location of the archive.
+	 * @return the fingerprint of the archive.
+	 * @throws IOException
+	 *             if the archive could not be read.
+	 */
+	static WorkflowArchiveFingerprint of(final Path archivePath) throws IOException {
+		Validate.notNull(archivePath, "archivePath cannot be null; this is a coding problem and should be reported.");
+		final BasicFileAttributes attributes = Files.readAttributes(archivePath, BasicFileAttributes.class);
+		final ZipCentralDirectory.Entry workflowXmlEntry = readWorkflowXmlEntry(archivePath);
+		if (workflowXmlEntry == null) {
+			return new WorkflowArchiveFingerprint(attributes.size(), attributes.lastModifiedTime().toMillis(), UNKNOWN,
+					UNKNOWN, UNKNOWN);
+		}
+		return new WorkflowArchiveFingerprint(attributes.size(), attributes.lastModifiedTime().toMillis(),
+				workflowXmlEntry.getCrc(), workflowXmlEntry.getCompressedSize(),
+				workflowXmlEntry.getLocalHeaderOffset());
+	}
+
+	/**
+	 * Checks whether the passed archive still has this fingerprint.
+	 * 
+	 * @param archivePath
+	 *            the location of the archive.
+	 * @return {@code true} if the size and modification time of the archive and the central directory entry of its
+	 *         {@code workflow.xml} match this fingerprint.
+	 * @throws IOException
+	 *             if the archive could not be read.
+	 */
+	boolean matches(final Path archivePath) throws IOException {
+		Validate.notNull(archivePath, "archivePath cannot be null; this is a coding problem and should be reported.");
+		final BasicFileAttributes attributes = Files.readAttributes(archivePath, BasicFileAttributes.class);
+		// the cheap checks go first
+		if (attributes.size() != size || attributes.lastModifiedTime().toMillis() != lastModifiedMillis) {
+			return false;
+		}
+		final ZipCentralDirectory.Entry workflowXmlEntry = readWorkflowXmlEntry(archivePath);
+		if (workflowXmlEntry == null) {
+			return workflowXmlCrc == UNKNOWN;
+		}
+		return workflowXmlEntry.getCrc() == workflowXmlCrc
+				&& workflowXmlEntry.getCompressedSize() == workflowXmlCompressedSize
+				&& workflowXmlEntry.getLocalHeaderOffset() == workflowXmlLocalHeaderOffset;
+	}
+
+	// returns null if the central directory is not supported or if there is no workflow.xml
+	private static ZipCentralDirectory.Entry readWorkflowXmlEntry(final Path archivePath) throws IOException {
+		try (final FileChannel channel = FileChannel.open(archivePath, StandardOpenOption.READ)) {
+			final ZipCentralDirectory centralDirectory = ZipCentralDirectory.read(channel);
+			return centralDirectory == null ? null : centralDirectory.getEntry(ENTRY_WORKFLOW_XML);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "WorkflowArchiveFingerprint [size=" + size + ", lastModifiedMillis=" + lastModifiedMillis
+				+ ", workflowXmlCrc=" + workflowXmlCrc + ", workflowXmlCompressedSize=" + workflowXmlCompressedSize
+				+ ", workflowXmlLocalHeaderOffset=" + workflowXmlLocalHeaderOffset + "]";
+	}
+}
@@ -0,0 +1,315 @@
+package com.workflowconversion.portlet.core.workflow.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipException;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.io.CountingOutputStream;
+
+/**
+ * Replaces the contents of a single entry of a zip archive.
+ * 
+ * All other entries are copied byte by byte, without decompressing them, using
+ * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}, and only the replaced entry is
+ * compressed. The zip file system provider doesn't recompress unchanged entries either, so both take time proportional
+ * to the size of the archive; this class only saves the fixed cost of mounting the archive and of staging the new entry
+ * in a temporary file (see {@code WorkflowArchiveRewriterBenchmark}). The new archive is written next to the original
+ * one, with the same permissions, and replaces it in a single step once it has been completely written, so the
+ * original archive is left untouched if something goes wrong. This class is thread-safe, but concurrent modifications
+ * of the same archive are not.
+ * 
+ * @author delagarza
+ *
+ */
+class WorkflowArchiveRewriter {
+
+	private final static Logger LOG = LoggerFactory.getLogger(WorkflowArchiveRewriter.class);
+
+	private static final String TMP_ARCHIVE_SUFFIX = ".tmp";
+	private static final int VERSION_NEEDED_DEFLATED = 20;
+	private static final int DATA_DESCRIPTOR_LENGTH = 16;
+	private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Replaces the contents of an entry of an archive.
+	 * 
+	 * @param archivePath
+	 *            the location of the archive.
+	 * @param entryName
+	 *            the name of the entry to replace.
+	 * @param entryRewriter
+	 *            produces the new contents of the entry out of the original ones. If it throws an exception, the
+	 *            archive is not modified.
+	 * @return {@code true} if the archive was modified, {@code false} if the format of the archive is not supported
+	 *         (e.g., ZIP64 archives), in which case the archive is not modified.
+	 * @throws ZipException
+	 *             if the archive is not a valid zip archive or if the entry does not exist.
+	 * @throws IOException
+	 *             if the archive could not be read or written.
+	 * @throws XMLStreamException
+	 *             if thrown by the passed {@link EntryRewriter}.
+	 */
+	boolean rewriteEntry(final Path archivePath, final String entryName, final EntryRewriter entryRewriter)
+			throws IOException, XMLStreamException {
+		Validate.notNull(archivePath, "archivePath cannot be null; this is a coding problem and should be reported.");
+		Validate.notBlank(entryName,
+				"entryName cannot be null, empty or contain only whitespaces; this is a coding problem and should be reported.");
+		Validate.notNull(entryRewriter,
+				"entryRewriter cannot be null; this is a coding problem and should be reported.");
+		final Path absoluteArchivePath = archivePath.toAbsolutePath();
+		// the temporary archive must be in the same file system, so it can be atomically moved
+		final Path tmpArchivePath = Files.createTempFile(absoluteArchivePath.getParent(),
+				absoluteArchivePath.getFileName().toString(), TMP_ARCHIVE_SUFFIX);
+		try {
+			try (final FileChannel source = FileChannel.open(absoluteArchivePath, StandardOpenOption.READ);
+					final FileChannel target = FileChannel.open(tmpArchivePath, StandardOpenOption.WRITE,
+							StandardOpenOption.TRUNCATE_EXISTING)) {
+				if (!rewriteEntry(source, target, entryName, entryRewriter)) {
+					if (LOG.isDebugEnabled()) {
+						LOG.debug("The format of the archive " + absoluteArchivePath + " is not supported.");
+					}
+					return false;
+				}
+				target.force(true);
+			}
+			// temporary files are only accessible by their owner
+			copyPermissions(absoluteArchivePath, tmpArchivePath);
+			Files.move(tmpArchivePath, absoluteArchivePath, StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			return true;
+		} finally {
+			Files.deleteIfExists(tmpArchivePath);
+		}
+	}
+
+	private static void copyPermissions(final Path source, final Path target) throws IOException {
+		final PosixFileAttributeView sourceAttributes = Files.getFileAttributeView(source,
+				PosixFileAttributeView.class);
+		if (sourceAttributes != null) {
+			Files.setPosixFilePermissions(target, sourceAttributes.readAttributes().permissions());
+		}
+	}
+
+	private boolean rewriteEntry(final FileChannel source, final FileChannel target, final String entryName,
+			final EntryRewriter entryRewriter) throws IOException, XMLStreamException {
+		final ZipCentralDirectory centralDirectory = ZipCentralDirectory.read(source);
+		if (centralDirectory == null) {
+			return false;
+		}
+		final ZipCentralDirectory.Entry rewrittenEntry = centralDirectory.getEntry(entryName);
+		if (rewrittenEntry == null) {
+			throw new ZipException("The archive does not contain an entry named '" + entryName + "'.");
+		}
+
+		// entries are copied in the order in which they are stored, an entry spans until the next one begins
+		final List<ZipCentralDirectory.Entry> entriesInArchiveOrder = new ArrayList<ZipCentralDirectory.Entry>(
+				centralDirectory.getEntries());
+		Collections.sort(entriesInArchiveOrder, new Comparator<ZipCentralDirectory.Entry>() {
+			@Override
+			public int compare(final ZipCentralDirectory.Entry entry1, final ZipCentralDirectory.Entry entry2) {
+				return Long.compare(entry1.getLocalHeaderOffset(), entry2.getLocalHeaderOffset());
+			}
+		});
+		final Map<ZipCentralDirectory.Entry, Long> newLocalHeaderOffsets = new IdentityHashMap<ZipCentralDirectory.Entry, Long>(
+				entriesInArchiveOrder.size());
+		byte[] rewrittenCentralHeader = null;
+		// whatever precedes the first entry (e.g., the stub of a self-extracting archive) is kept
+		if (!entriesInArchiveOrder.isEmpty()) {
+			transfer(source, 0, entriesInArchiveOrder.get(0).getLocalHeaderOffset(), target);
+		}
+		for (int i = 0; i < entriesInArchiveOrder.size(); i++) {
+			final ZipCentralDirectory.Entry entry = entriesInArchiveOrder.get(i);
+			final long entryStart = entry.getLocalHeaderOffset();
+			final long entryEnd = i + 1 < entriesInArchiveOrder.size()
+					? entriesInArchiveOrder.get(i + 1).getLocalHeaderOffset() : centralDirectory.getOffset();
+			newLocalHeaderOffsets.put(entry, target.position());
+			if (entry == rewrittenEntry) {
+				rewrittenCentralHeader = writeRewrittenEntry(source, target, centralDirectory, entry,
+						entryRewriter);
+				if (rewrittenCentralHeader == null) {
+					// the new entry would need ZIP64 records
+					return false;
+				}
+			} else {
+				transfer(source, entryStart, entryEnd - entryStart, target);
+			}
+		}
+
+		final long centralDirectoryOffset = target.position();
+		for (final ZipCentralDirectory.Entry entry : centralDirectory.getEntries()) {
+			final long newLocalHeaderOffset = newLocalHeaderOffsets.get(entry);
+			final ByteBuffer centralHeader = ByteBuffer
+					.wrap(entry == rewrittenEntry ? rewrittenCentralHeader : entry.getCentralHeader())
+					.order(ByteOrder.LITTLE_ENDIAN);
+			if (newLocalHeaderOffset >= ZipCentralDirectory.MAX_32_BIT_VALUE) {
+				// the new archive would need ZIP64 records
+				return false;
+			}
+			centralHeader.putInt(ZipCentralDirectory.CENTRAL_HEADER_LOCAL_HEADER_OFFSET_OFFSET,
+					(int) newLocalHeaderOffset);
+			writeFully(target, centralHeader);
+		}
+		final long centralDirectorySize = target.position() - centralDirectoryOffset;
+		if (centralDirectoryOffset >= ZipCentralDirectory.MAX_32_BIT_VALUE) {
+			return false;
+		}
+
+		final byte[] comment = centralDirectory.getComment();
+		final ByteBuffer endOfCentralDirectory = ByteBuffer
+				.allocate(ZipCentralDirectory.END_OF_CENTRAL_DIRECTORY_LENGTH + comment.length)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		endOfCentralDirectory.putInt(ZipCentralDirectory.END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+		endOfCentralDirectory.putShort((short) 0);
+		endOfCentralDirectory.putShort((short) 0);
+		endOfCentralDirectory.putShort((short) centralDirectory.getEntries().size());
+		endOfCentralDirectory.putShort((short) centralDirectory.getEntries().size());
+		endOfCentralDirectory.putInt((int) centralDirectorySize);
+		endOfCentralDirectory.putInt((int) centralDirectoryOffset);
+		endOfCentralDirectory.putShort((short) comment.length);
+		endOfCentralDirectory.put(comment);
+		endOfCentralDirectory.flip();
+		writeFully(target, endOfCentralDirectory);
+		return true;
+	}
+
+	// writes the local header, the deflated data and a data descriptor; returns the updated central header or null if
+	// the entry turned out to be too large for the classic zip format
+	private byte[] writeRewrittenEntry(final FileChannel source, final FileChannel target,
+			final ZipCentralDirectory centralDirectory, final ZipCentralDirectory.Entry entry,
+			final EntryRewriter entryRewriter)
+			throws IOException, XMLStreamException {
+		// the sizes and the checksum are not known until the data has been written, so they go in a data descriptor
+		final int flags = (entry.getFlags() & ZipCentralDirectory.FLAG_UTF8)
+				| ZipCentralDirectory.FLAG_DATA_DESCRIPTOR;
+		final byte[] centralHeader = entry.getCentralHeader();
+		final ByteBuffer localHeader = ByteBuffer
+				.allocate(ZipCentralDirectory.LOCAL_HEADER_LENGTH + entry.getNameLength())
+				.order(ByteOrder.LITTLE_ENDIAN);
+		localHeader.putInt(ZipCentralDirectory.LOCAL_HEADER_SIGNATURE);
+		localHeader.putShort((short) VERSION_NEEDED_DEFLATED);
+		localHeader.putShort((short) flags);
+		localHeader.putShort((short) ZipCentralDirectory.METHOD_DEFLATED);
+		localHeader.putShort((short) entry.getLastModifiedTime());
+		localHeader.putShort((short) entry.getLastModifiedDate());
+		// checksum, compressed size and uncompressed size
+		localHeader.putInt(0);
+		localHeader.putInt(0);
+		localHeader.putInt(0);
+		localHeader.putShort((short) entry.getNameLength());
+		localHeader.putShort((short) 0);
+		localHeader.put(centralHeader, ZipCentralDirectory.CENTRAL_HEADER_LENGTH, entry.getNameLength());
+		localHeader.flip();
+		writeFully(target, localHeader);
+
+		final CRC32 crc = new CRC32();
+		final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		final CountingOutputStream compressedOutputStream;
+		final CountingOutputStream uncompressedOutputStream;
+		try (final InputStream originalInputStream = centralDirectory.newInputStream(source, entry)) {
+			// don't close the output streams, they would close the target channel
+			compressedOutputStream = new CountingOutputStream(
+					new BufferedOutputStream(Channels.newOutputStream(target), OUTPUT_BUFFER_SIZE));
+			final DeflaterOutputStream deflaterOutputStream = new DeflaterOutputStream(compressedOutputStream,
+					deflater);
+			uncompressedOutputStream = new CountingOutputStream(new CheckedOutputStream(deflaterOutputStream, crc));
+			entryRewriter.rewriteEntry(originalInputStream, uncompressedOutputStream);
+			deflaterOutputStream.finish();
+			compressedOutputStream.flush();
+		} finally {
+			deflater.end();
+		}
+		if (compressedOutputStream.getCount() >= ZipCentralDirectory.MAX_32_BIT_VALUE
+				|| uncompressedOutputStream.getCount() >= ZipCentralDirectory.MAX_32_BIT_VALUE) {
+			return null;
+		}
+
+		final ByteBuffer dataDescriptor = ByteBuffer.allocate(DATA_DESCRIPTOR_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+		dataDescriptor.putInt(ZipCentralDirectory.DATA_DESCRIPTOR_SIGNATURE);
+		dataDescriptor.putInt((int) crc.getValue());
+		dataDescriptor.putInt((int) compressedOutputStream.getCount());
+		dataDescriptor.putInt((int) uncompressedOutputStream.getCount());
+		dataDescriptor.flip();
+		writeFully(target, dataDescriptor);
+
+		final ByteBuffer centralHeaderFields = ByteBuffer.wrap(centralHeader).order(ByteOrder.LITTLE_ENDIAN);
+		centralHeaderFields.putShort(ZipCentralDirectory.CENTRAL_HEADER_VERSION_NEEDED_OFFSET,
+				(short) Math.max(entry.getVersionNeeded(), VERSION_NEEDED_DEFLATED));
+		centralHeaderFields.putShort(ZipCentralDirectory.CENTRAL_HEADER_FLAGS_OFFSET, (short) flags);
+		centralHeaderFields.putShort(ZipCentralDirectory.CENTRAL_HEADER_METHOD_OFFSET,
+				(short) ZipCentralDirectory.METHOD_DEFLATED);
+		centralHeaderFields.putInt(ZipCentralDirectory.CENTRAL_HEADER_CRC_OFFSET, (int) crc.getValue());
+		centralHeaderFields.putInt(ZipCentralDirectory.CENTRAL_HEADER_COMPRESSED_SIZE_OFFSET,
+				(int) compressedOutputStream.getCount());
+		centralHeaderFields.putInt(ZipCentralDirectory.CENTRAL_HEADER_UNCOMPRESSED_SIZE_OFFSET,
+				(int) uncompressedOutputStream.getCount());
+		return centralHeader;
+	}
+
+	private static void transfer(final FileChannel source, final long position, final long count,
+			final FileChannel target) throws IOException {
+		long transferred = 0;
+		while (transferred < count) {
+			final long transferredNow = source.transferTo(position + transferred, count - transferred, target);
+			if (transferredNow <= 0) {
+				throw new ZipException("Unexpected end of archive.");
+			}
+			transferred += transferredNow;
+		}
+	}
+
+	private static void writeFully(final FileChannel target, final ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			target.write(buffer);
+		}
+	}
+
+	/**
+	 * Produces the new contents of an entry.
+	 * 
+	 * @author delagarza
+	 *
+	 */
+	static interface EntryRewriter {
+		/**
+		 * Writes the new contents of an entry.
+		 * 
+		 * @param originalEntry
+		 *            the original, uncompressed, contents of the entry. Do not close this stream.
+		 * @param modifiedEntry
+		 *            the stream to which the new contents are written. Do not close this stream.
+		 * @throws IOException
+		 *             if the contents could not be read or written.
+		 * @throws XMLStreamException
+		 *             if the original contents could not be parsed.
+		 */
+		void rewriteEntry(final InputStream originalEntry, final OutputStream modifiedEntry)
+				throws IOException, XMLStreamException;
+	}
+}
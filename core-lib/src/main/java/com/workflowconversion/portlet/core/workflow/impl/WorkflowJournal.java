@@ -0,0 +1,317 @@
+package com.workflowconversion.portlet.core.workflow.impl;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.workflowconversion.portlet.core.exception.ApplicationException;
+
+/**
+ * Append-only journal of the operations performed on the staging area of a user.
+ * 
+ * Each invocation of {@link #append(Collection)} writes a batch of entries followed by a commit marker and forces the
+ * data to the storage device before returning, so a batch is either completely present or not present at all after a
+ * crash. Entries must be idempotent, since they can be replayed more than once. Each entry is stored in its own line,
+ * with its fields separated by spaces and URL-encoded. This class is not thread-safe.
+ * 
+ * @author delagarza
+ *
+ */
+class WorkflowJournal {
+
+	private final static Logger LOG = LoggerFactory.getLogger(WorkflowJournal.class);
+
+	private static final String ENCODING = StandardCharsets.UTF_8.name();
+	private static final String FIELD_SEPARATOR = " ";
+	private static final String LINE_SEPARATOR = "\n";
+	private static final String COMMIT_MARKER = "COMMIT";
+
+	private final Path journalPath;
+	private int committedEntries;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param journalPath
+	 *            the location of the journal file.
+	 */
+	WorkflowJournal(final Path journalPath) {
+		Validate.notNull(journalPath, "journalPath cannot be null; this is a coding problem and should be reported.");
+		this.journalPath = journalPath;
+	}
+
+	/**
+	 * Reads all committed entries. Entries belonging to a batch whose commit marker was not written are discarded and
+	 * removed from the journal.
+	 * 
+	 * @return the committed entries, in the order in which they were appended.
+	 * @throws IOException
+	 *             if the journal could not be read.
+	 */
+	List<Entry> recover() throws IOException {
+		final List<Entry> entries = new LinkedList<Entry>();
+		committedEntries = 0;
+		if (!Files.exists(journalPath)) {
+			return entries;
+		}
+		// all fields are URL-encoded, so each character takes exactly one byte
+		final String contents = new String(Files.readAllBytes(journalPath), StandardCharsets.US_ASCII);
+		final List<Entry> currentBatch = new LinkedList<Entry>();
+		int committedLength = 0;
+		int lineStart = 0;
+		int lineEnd;
+		while ((lineEnd = contents.indexOf(LINE_SEPARATOR, lineStart)) != -1) {
+			final String line = contents.substring(lineStart, lineEnd);
+			lineStart = lineEnd + LINE_SEPARATOR.length();
+			if (COMMIT_MARKER.equals(line)) {
+				entries.addAll(currentBatch);
+				currentBatch.clear();
+				committedLength = lineStart;
+			} else {
+				final Entry entry = Entry.parse(line);
+				if (entry == null) {
+					LOG.warn("Ignoring malformed entry in journal " + journalPath + ": " + line);
+				} else {
+					currentBatch.add(entry);
+				}
+			}
+		}
+		if (committedLength < contents.length()) {
+			LOG.warn("Discarding uncommitted entries from journal " + journalPath);
+			try (final FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.WRITE)) {
+				channel.truncate(committedLength);
+				channel.force(true);
+			}
+		}
+		committedEntries = entries.size();
+		return entries;
+	}
+
+	/**
+	 * Appends the passed entries as a single batch. Once this method returns, the entries are guaranteed to be
+	 * returned by {@link #recover()}.
+	 * 
+	 * @param entries
+	 *            the entries to append.
+	 * @throws IOException
+	 *             if the journal could not be written.
+	 */
+	void append(final Collection<Entry> entries) throws IOException {
+		Validate.notNull(entries, "entries cannot be null; this is a coding problem and should be reported.");
+		if (entries.isEmpty()) {
+			return;
+		}
+		final StringBuilder batch = new StringBuilder();
+		for (final Entry entry : entries) {
+			batch.append(entry.format()).append(LINE_SEPARATOR);
+		}
+		batch.append(COMMIT_MARKER).append(LINE_SEPARATOR);
+		try (final FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+			final ByteBuffer buffer = ByteBuffer.wrap(batch.toString().getBytes(StandardCharsets.US_ASCII));
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			channel.force(true);
+		}
+		committedEntries += entries.size();
+	}
+
+	/**
+	 * Removes all entries. Invoke this method only after the state described by the entries has been persisted
+	 * somewhere else.
+	 * 
+	 * @throws IOException
+	 *             if the journal could not be removed.
+	 */
+	void clear() throws IOException {
+		Files.deleteIfExists(journalPath);
+		committedEntries = 0;
+	}
+
+	/**
+	 * @return the number of committed entries currently in the journal.
+	 */
+	int getCommittedEntries() {
+		return committedEntries;
+	}
+
+	/**
+	 * Type of operation recorded in an entry.
+	 * 
+	 * @author delagarza
+	 *
+	 */
+	static enum Operation {
+		/**
+		 * An imported workflow archive, already moved into the staging area, was added to the staged workflows.
+		 */
+		Stage,
+		/**
+		 * A staged workflow was deleted.
+		 */
+		Delete
+	}
+
+	/**
+	 * Single operation on the staging area.
+	 * 
+	 * @author delagarza
+	 *
+	 */
+	static class Entry {
+		private final Operation operation;
+		private final String workflowId;
+		private final String workflowName;
+		private final Path archivePath;
+
+		private Entry(final Operation operation, final String workflowId, final String workflowName,
+				final Path archivePath) {
+			this.operation = operation;
+			this.workflowId = workflowId;
+			this.workflowName = workflowName;
+			this.archivePath = archivePath;
+		}
+
+		/**
+		 * Creates an entry that records that a workflow is staged. The archive must already be in the staging area, so
+		 * replaying the entry never depends on files that belong to a previous session.
+		 * 
+		 * @param workflowId
+		 *            the id of the workflow.
+		 * @param workflowName
+		 *            the name of the workflow.
+		 * @param archivePath
+		 *            the location of the archive in the staging area.
+		 * @return a new entry.
+		 */
+		static Entry stage(final String workflowId, final String workflowName, final Path archivePath) {
+			Validate.notBlank(workflowId,
+					"workflowId cannot be null, empty or contain only whitespaces; this is a coding problem and should be reported.");
+			Validate.notBlank(workflowName,
+					"workflowName cannot be null, empty or contain only whitespaces; this is a coding problem and should be reported.");
+			Validate.notNull(archivePath,
+					"archivePath cannot be null; this is a coding problem and should be reported.");
+			return new Entry(Operation.Stage, workflowId, workflowName, archivePath);
+		}
+
+		/**
+		 * Creates an entry that records that a staged workflow is deleted.
+		 * 
+		 * @param workflowId
+		 *            the id of the workflow.
+		 * @param archivePath
+		 *            the location of the archive in the staging area.
+		 * @return a new entry.
+		 */
+		static Entry delete(final String workflowId, final Path archivePath) {
+			Validate.notBlank(workflowId,
+					"workflowId cannot be null, empty or contain only whitespaces; this is a coding problem and should be reported.");
+			Validate.notNull(archivePath,
+					"archivePath cannot be null; this is a coding problem and should be reported.");
+			return new Entry(Operation.Delete, workflowId, null, archivePath);
+		}
+
+		/**
+		 * @return the operation.
+		 */
+		Operation getOperation() {
+			return operation;
+		}
+
+		/**
+		 * @return the id of the workflow.
+		 */
+		String getWorkflowId() {
+			return workflowId;
+		}
+
+		/**
+		 * @return the name of the workflow, only set for {@link Operation#Stage} entries.
+		 */
+		String getWorkflowName() {
+			return workflowName;
+		}
+
+		/**
+		 * @return the location of the archive in the staging area.
+		 */
+		Path getArchivePath() {
+			return archivePath;
+		}
+
+		private String format() {
+			final StringBuilder line = new StringBuilder(operation.name());
+			line.append(FIELD_SEPARATOR).append(encode(workflowId));
+			line.append(FIELD_SEPARATOR).append(encode(archivePath.toString()));
+			if (operation == Operation.Stage) {
+				line.append(FIELD_SEPARATOR).append(encode(workflowName));
+			}
+			return line.toString();
+		}
+
+		private static Entry parse(final String line) {
+			final String[] fields = StringUtils.split(line, FIELD_SEPARATOR);
+			try {
+				final Operation operation = Operation.valueOf(fields[0]);
+				final String workflowId = decode(fields[1]);
+				final Path archivePath = Paths.get(decode(fields[2]));
+				switch (operation) {
+				case Stage:
+					// journals written by older versions also contain the location of the archive before it was staged
+					return stage(workflowId, decode(fields[3]), archivePath);
+				case Delete:
+					return delete(workflowId, archivePath);
+				default:
+					return null;
+				}
+			} catch (final IllegalArgumentException | IndexOutOfBoundsException e) {
+				return null;
+			}
+		}
+
+		private static String encode(final String value) {
+			try {
+				return URLEncoder.encode(value, ENCODING);
+			} catch (final UnsupportedEncodingException e) {
+				throw new ApplicationException(
+						"UTF-8 is not supported. This is a coding problem and should be reported.", e);
+			}
+		}
+
+		private static String decode(final String value) {
+			try {
+				return URLDecoder.decode(value, ENCODING);
+			} catch (final UnsupportedEncodingException e) {
+				throw new ApplicationException(
+						"UTF-8 is not supported. This is a coding problem and should be reported.", e);
+			}
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return format();
+		}
+	}
+}
@@ -0,0 +1,170 @@
+package com.workflowconversion.portlet.core.workflow.impl;
+
+import java.io.InputStream;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+
+import com.workflowconversion.portlet.core.utils.XMLFactories;
+
+/**
+ * Single-pass StAX reader for {@code workflow.xml}.
+ * 
+ * Only the information needed to build a workflow is extracted: the {@code name} attribute of the root element and,
+ * for each {@code /workflow/real/job} element, its {@code name} attribute together with the key/value pairs found in
+ * its {@code description} and {@code execute} children. No DOM is built, so memory usage does not depend on the number
+ * of jobs contained in the workflow.
+ * 
+ * @author delagarza
+ *
+ */
+class WorkflowXmlReader {
+
+	static final String NODE_WORKFLOW = "workflow";
+	static final String NODE_REAL = "real";
+	static final String NODE_JOB = "job";
+	static final String NODE_JOB_DESCRIPTION = "description";
+	static final String NODE_JOB_EXECUTE = "execute";
+	static final String ATTRIBUTE_NAME = "name";
+	static final String ATTRIBUTE_KEY = "key";
+	static final String ATTRIBUTE_VALUE = "value";
+
+	// depth of each of the elements we are interested in, the root element has depth 1
+	private static final int DEPTH_WORKFLOW = 1;
+	private static final int DEPTH_REAL = 2;
+	private static final int DEPTH_JOB = 3;
+	private static final int DEPTH_JOB_CHILD = 4;
+
+	// shared factories, thread-safe once configured
+	private static final XMLInputFactory INPUT_FACTORY = XMLFactories.getXMLInputFactory();
+
+	private final String descriptionPropertyPrefix;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param descriptionPropertyPrefix
+	 *            only {@code description} properties whose key start with this prefix will be reported.
+	 */
+	WorkflowXmlReader(final String descriptionPropertyPrefix) {
+		this.descriptionPropertyPrefix = StringUtils.trimToEmpty(descriptionPropertyPrefix);
+	}
+
+	/**
+	 * Reads the passed {@code workflow.xml} and reports each job to the passed listener, in document order.
+	 * 
+	 * @param workflowXmlInputStream
+	 *            the contents of {@code workflow.xml}. This stream will not be closed.
+	 * @param listener
+	 *            the listener that will be notified for each parsed job.
+	 * @return the name of the workflow, or an empty string if the root element has no {@code name} attribute.
+	 * @throws XMLStreamException
+	 *             if the passed input is not well-formed or if its root element is not {@code workflow}.
+	 */
+	String read(final InputStream workflowXmlInputStream, final JobParsedListener listener)
+			throws XMLStreamException {
+		Validate.notNull(workflowXmlInputStream,
+				"workflowXmlInputStream cannot be null; this is a coding problem and should be reported.");
+		Validate.notNull(listener, "listener cannot be null; this is a coding problem and should be reported.");
+		final XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(workflowXmlInputStream);
+		try {
+			String workflowName = "";
+			// whether the current element is a descendant of /workflow/real
+			boolean insideReal = false;
+			int depth = 0;
+			String currentJobName = null;
+			Map<String, String> descriptionProperties = null;
+			Map<String, String> executeProperties = null;
+			while (reader.hasNext()) {
+				switch (reader.next()) {
+				case XMLStreamConstants.START_ELEMENT:
+					depth++;
+					final String elementName = reader.getLocalName();
+					if (depth == DEPTH_WORKFLOW) {
+						if (!NODE_WORKFLOW.equals(elementName)) {
+							throw new XMLStreamException("Expected '" + NODE_WORKFLOW + "' as root element, found '"
+									+ elementName + "'.", reader.getLocation());
+						}
+						workflowName = StringUtils.defaultString(getAttribute(reader, ATTRIBUTE_NAME));
+					} else if (depth == DEPTH_REAL) {
+						insideReal = NODE_REAL.equals(elementName);
+					} else if (depth == DEPTH_JOB && insideReal && NODE_JOB.equals(elementName)) {
+						currentJobName = getAttribute(reader, ATTRIBUTE_NAME);
+						descriptionProperties = new TreeMap<String, String>();
+						executeProperties = new TreeMap<String, String>();
+					} else if (depth == DEPTH_JOB_CHILD && currentJobName != null) {
+						if (NODE_JOB_DESCRIPTION.equals(elementName)) {
+							readProperty(reader, descriptionPropertyPrefix, descriptionProperties);
+						} else if (NODE_JOB_EXECUTE.equals(elementName)) {
+							readProperty(reader, "", executeProperties);
+						}
+					}
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					if (depth == DEPTH_JOB && currentJobName != null) {
+						listener.jobParsed(currentJobName, descriptionProperties, executeProperties);
+						currentJobName = null;
+						descriptionProperties = null;
+						executeProperties = null;
+					} else if (depth == DEPTH_REAL) {
+						insideReal = false;
+					}
+					depth--;
+					break;
+				default:
+					// we don't care about text, comments, etc.
+					break;
+				}
+			}
+			return workflowName;
+		} finally {
+			reader.close();
+		}
+	}
+
+	private void readProperty(final XMLStreamReader reader, final String prefix,
+			final Map<String, String> properties) {
+		final String key = getAttribute(reader, ATTRIBUTE_KEY);
+		if (key != null && (prefix.isEmpty() || key.startsWith(prefix))) {
+			final String value = getAttribute(reader, ATTRIBUTE_VALUE);
+			if (value != null) {
+				properties.put(key, value);
+			}
+		}
+	}
+
+	private static String getAttribute(final XMLStreamReader reader, final String attributeName) {
+		return reader.getAttributeValue(null, attributeName);
+	}
+
+	/**
+	 * Callback used to report parsed jobs.
+	 * 
+	 * @author delagarza
+	 *
+	 */
+	interface JobParsedListener {
+
+		/**
+		 * Invoked once for each {@code /workflow/real/job} element, right after its closing tag has been read.
+		 * 
+		 * @param jobName
+		 *            the value of the {@code name} attribute of the job, can be {@code null} if the attribute is
+		 *            missing.
+		 * @param descriptionProperties
+		 *            the key/value pairs of the {@code description} children whose key starts with the configured
+		 *            prefix.
+		 * @param executeProperties
+		 *            the key/value pairs of all {@code execute} children.
+		 */
+		void jobParsed(final String jobName, final Map<String, String> descriptionProperties,
+				final Map<String, String> executeProperties);
+	}
+}
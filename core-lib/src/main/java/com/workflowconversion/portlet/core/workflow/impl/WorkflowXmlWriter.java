@@ -0,0 +1,335 @@
+package com.workflowconversion.portlet.core.workflow.impl;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.Characters;
+import javax.xml.stream.events.StartDocument;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+
+import com.workflowconversion.portlet.core.utils.XMLFactories;
+
+/**
+ * Single-pass StAX transformer for {@code workflow.xml}.
+ * 
+ * The original document is copied event by event to the output. Only the {@code /workflow/real/job} elements are
+ * buffered (one at a time) so that their {@code execute} and {@code description} children can be rewritten, which
+ * means that the memory needed to save a workflow does not depend on the number of jobs it contains.
+ * 
+ * @author delagarza
+ *
+ */
+class WorkflowXmlWriter {
+
+	private static final String DEFAULT_ENCODING = "UTF-8";
+
+	// depth of each of the elements we are interested in, the root element has depth 1
+	private static final int DEPTH_REAL = 2;
+	private static final int DEPTH_JOB = 3;
+	// depths relative to a buffered job, the job element itself has depth 1
+	private static final int RELATIVE_DEPTH_JOB = 1;
+	private static final int RELATIVE_DEPTH_JOB_CHILD = 2;
+
+	// new execute nodes get these attributes (besides key and value)
+	private static final String[] DEFAULT_EXECUTE_ATTRIBUTES = { "desc", "null", "inh", "null", "label", "null" };
+
+	// shared factories, thread-safe once configured
+	private static final XMLInputFactory INPUT_FACTORY = XMLFactories.getXMLInputFactory();
+	private static final XMLOutputFactory OUTPUT_FACTORY = XMLFactories.getXMLOutputFactory();
+	private static final XMLEventFactory EVENT_FACTORY = XMLFactories.getXMLEventFactory();
+
+	private final String descriptionPropertyPrefix;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param descriptionPropertyPrefix
+	 *            {@code description} nodes whose key start with this prefix will be replaced when a job is rewritten.
+	 */
+	WorkflowXmlWriter(final String descriptionPropertyPrefix) {
+		Validate.notBlank(descriptionPropertyPrefix,
+				"descriptionPropertyPrefix cannot be null, empty or contain only whitespaces; this is a coding problem and should be reported.");
+		this.descriptionPropertyPrefix = descriptionPropertyPrefix;
+	}
+
+	/**
+	 * Copies {@code workflow.xml} from the passed input to the passed output, giving the passed rewriter the chance to
+	 * modify each of the jobs.
+	 * 
+	 * @param originalWorkflowXml
+	 *            the original contents of {@code workflow.xml}. This stream will not be closed.
+	 * @param modifiedWorkflowXml
+	 *            where the modified {@code workflow.xml} will be written to. This stream will not be closed.
+	 * @param rewriter
+	 *            the rewriter that decides how each job is modified.
+	 * @throws XMLStreamException
+	 *             if the input is not well-formed or if the output could not be written.
+	 */
+	void write(final InputStream originalWorkflowXml, final OutputStream modifiedWorkflowXml,
+			final JobRewriter rewriter) throws XMLStreamException {
+		Validate.notNull(originalWorkflowXml,
+				"originalWorkflowXml cannot be null; this is a coding problem and should be reported.");
+		Validate.notNull(modifiedWorkflowXml,
+				"modifiedWorkflowXml cannot be null; this is a coding problem and should be reported.");
+		Validate.notNull(rewriter, "rewriter cannot be null; this is a coding problem and should be reported.");
+		final XMLEventReader reader = INPUT_FACTORY.createXMLEventReader(originalWorkflowXml);
+		XMLEventWriter writer = null;
+		try {
+			boolean insideReal = false;
+			int depth = 0;
+			// events of the job currently being read
+			List<XMLEvent> jobEvents = null;
+			while (reader.hasNext()) {
+				final XMLEvent event = reader.nextEvent();
+				if (writer == null) {
+					// keep the encoding of the original document
+					writer = OUTPUT_FACTORY.createXMLEventWriter(modifiedWorkflowXml, getEncoding(event));
+				}
+				if (event.isStartElement()) {
+					depth++;
+					final String elementName = event.asStartElement().getName().getLocalPart();
+					if (depth == DEPTH_REAL) {
+						insideReal = WorkflowXmlReader.NODE_REAL.equals(elementName);
+					} else if (depth == DEPTH_JOB && insideReal && WorkflowXmlReader.NODE_JOB.equals(elementName)) {
+						jobEvents = new ArrayList<XMLEvent>();
+					}
+				}
+				if (jobEvents != null) {
+					jobEvents.add(event);
+				} else {
+					writer.add(event);
+				}
+				if (event.isEndElement()) {
+					if (depth == DEPTH_JOB && jobEvents != null) {
+						writeJob(jobEvents, rewriter, writer);
+						jobEvents = null;
+					} else if (depth == DEPTH_REAL) {
+						insideReal = false;
+					}
+					depth--;
+				}
+			}
+			if (writer != null) {
+				writer.flush();
+			}
+		} finally {
+			if (writer != null) {
+				writer.close();
+			}
+			reader.close();
+		}
+	}
+
+	private String getEncoding(final XMLEvent firstEvent) {
+		if (firstEvent.isStartDocument()) {
+			final StartDocument startDocument = (StartDocument) firstEvent;
+			if (startDocument.encodingSet()) {
+				return startDocument.getCharacterEncodingScheme();
+			}
+		}
+		return DEFAULT_ENCODING;
+	}
+
+	private void writeJob(final List<XMLEvent> jobEvents, final JobRewriter rewriter, final XMLEventWriter writer)
+			throws XMLStreamException {
+		final StartElement jobElement = jobEvents.get(0).asStartElement();
+		final String jobName = getAttribute(jobElement, WorkflowXmlReader.ATTRIBUTE_NAME);
+		final Map<String, String> executeProperties = extractExecuteProperties(jobEvents);
+		final Map<String, String> descriptionProperties = jobName == null ? null
+				: rewriter.rewriteJob(jobName, executeProperties);
+		if (descriptionProperties == null) {
+			// the rewriter is not interested in this job, copy it as-is
+			for (final XMLEvent event : jobEvents) {
+				writer.add(event);
+			}
+			return;
+		}
+
+		final List<XMLEvent> rewrittenEvents = new ArrayList<XMLEvent>(jobEvents.size());
+		final Set<String> processedProperties = new TreeSet<String>();
+		Characters childIndentation = null;
+		int depth = 0;
+		// depth of the element that is being removed, -1 if no element is being removed
+		int removedElementDepth = -1;
+		for (final XMLEvent event : jobEvents) {
+			if (event.isStartElement()) {
+				depth++;
+			}
+			if (removedElementDepth != -1) {
+				// skip the whole subtree of a removed element
+				if (event.isEndElement() && depth == removedElementDepth) {
+					removedElementDepth = -1;
+				}
+			} else if (depth == RELATIVE_DEPTH_JOB_CHILD && event.isStartElement()) {
+				final StartElement childElement = event.asStartElement();
+				final String childName = childElement.getName().getLocalPart();
+				final String key = getAttribute(childElement, WorkflowXmlReader.ATTRIBUTE_KEY);
+				final Characters indentation = removeTrailingWhitespace(rewrittenEvents);
+				if (childIndentation == null) {
+					childIndentation = indentation;
+				}
+				if (WorkflowXmlReader.NODE_JOB_EXECUTE.equals(childName) && key != null) {
+					processedProperties.add(key);
+					final String value = executeProperties.get(key);
+					if (value == null) {
+						// the property is not present anymore, remove the node
+						removedElementDepth = depth;
+					} else {
+						addIndentation(rewrittenEvents, indentation);
+						rewrittenEvents.add(replaceAttribute(childElement, WorkflowXmlReader.ATTRIBUTE_VALUE, value));
+					}
+				} else if (WorkflowXmlReader.NODE_JOB_DESCRIPTION.equals(childName) && key != null
+						&& key.startsWith(descriptionPropertyPrefix)) {
+					// our own properties get replaced
+					removedElementDepth = depth;
+				} else {
+					addIndentation(rewrittenEvents, indentation);
+					rewrittenEvents.add(event);
+				}
+			} else if (depth == RELATIVE_DEPTH_JOB && event.isEndElement()) {
+				// closing tag of the job, append the new nodes right after the last child
+				final Characters closingIndentation = removeTrailingWhitespace(rewrittenEvents);
+				for (final Map.Entry<String, String> entry : executeProperties.entrySet()) {
+					if (!processedProperties.contains(entry.getKey())) {
+						// not present in the original document, we need to add a new node
+						final List<String> attributes = new ArrayList<String>(Arrays.asList(DEFAULT_EXECUTE_ATTRIBUTES));
+						attributes.addAll(Arrays.asList(WorkflowXmlReader.ATTRIBUTE_KEY, entry.getKey(),
+								WorkflowXmlReader.ATTRIBUTE_VALUE, entry.getValue()));
+						addNewElement(rewrittenEvents, childIndentation, WorkflowXmlReader.NODE_JOB_EXECUTE,
+								attributes);
+					}
+				}
+				for (final Map.Entry<String, String> entry : descriptionProperties.entrySet()) {
+					addNewElement(rewrittenEvents, childIndentation, WorkflowXmlReader.NODE_JOB_DESCRIPTION,
+							Arrays.asList(WorkflowXmlReader.ATTRIBUTE_KEY, entry.getKey(),
+									WorkflowXmlReader.ATTRIBUTE_VALUE, StringUtils.defaultString(entry.getValue())));
+				}
+				addIndentation(rewrittenEvents, closingIndentation);
+				rewrittenEvents.add(event);
+			} else {
+				rewrittenEvents.add(event);
+			}
+			if (event.isEndElement()) {
+				depth--;
+			}
+		}
+		for (final XMLEvent event : rewrittenEvents) {
+			writer.add(event);
+		}
+	}
+
+	private Map<String, String> extractExecuteProperties(final List<XMLEvent> jobEvents) {
+		final Map<String, String> executeProperties = new TreeMap<String, String>();
+		int depth = 0;
+		for (final XMLEvent event : jobEvents) {
+			if (event.isStartElement()) {
+				depth++;
+				final StartElement element = event.asStartElement();
+				if (depth == RELATIVE_DEPTH_JOB_CHILD
+						&& WorkflowXmlReader.NODE_JOB_EXECUTE.equals(element.getName().getLocalPart())) {
+					final String key = getAttribute(element, WorkflowXmlReader.ATTRIBUTE_KEY);
+					final String value = getAttribute(element, WorkflowXmlReader.ATTRIBUTE_VALUE);
+					if (key != null && value != null) {
+						executeProperties.put(key, value);
+					}
+				}
+			} else if (event.isEndElement()) {
+				depth--;
+			}
+		}
+		return executeProperties;
+	}
+
+	// removes the whitespace-only text that precedes an element, so removed elements don't leave empty lines behind
+	private Characters removeTrailingWhitespace(final List<XMLEvent> events) {
+		if (!events.isEmpty()) {
+			final XMLEvent lastEvent = events.get(events.size() - 1);
+			if (lastEvent.isCharacters() && lastEvent.asCharacters().isWhiteSpace()) {
+				events.remove(events.size() - 1);
+				return lastEvent.asCharacters();
+			}
+		}
+		return null;
+	}
+
+	private void addIndentation(final List<XMLEvent> events, final Characters indentation) {
+		if (indentation != null) {
+			events.add(indentation);
+		}
+	}
+
+	private void addNewElement(final List<XMLEvent> events, final Characters indentation, final String elementName,
+			final List<String> attributes) {
+		final List<Attribute> elementAttributes = new ArrayList<Attribute>(attributes.size() / 2);
+		for (int i = 0; i < attributes.size(); i += 2) {
+			elementAttributes.add(EVENT_FACTORY.createAttribute(attributes.get(i), attributes.get(i + 1)));
+		}
+		addIndentation(events, indentation);
+		events.add(EVENT_FACTORY.createStartElement("", "", elementName, elementAttributes.iterator(), null));
+		events.add(EVENT_FACTORY.createEndElement("", "", elementName));
+	}
+
+	private StartElement replaceAttribute(final StartElement element, final String attributeName,
+			final String attributeValue) {
+		final List<Attribute> attributes = new ArrayList<Attribute>();
+		@SuppressWarnings("unchecked")
+		final Iterator<Attribute> iterator = element.getAttributes();
+		while (iterator.hasNext()) {
+			final Attribute attribute = iterator.next();
+			if (attributeName.equals(attribute.getName().getLocalPart())) {
+				attributes.add(EVENT_FACTORY.createAttribute(attribute.getName(), attributeValue));
+			} else {
+				attributes.add(attribute);
+			}
+		}
+		return EVENT_FACTORY.createStartElement(element.getName(), attributes.iterator(), element.getNamespaces());
+	}
+
+	private String getAttribute(final StartElement element, final String attributeName) {
+		final Attribute attribute = element.getAttributeByName(new QName(attributeName));
+		return attribute == null ? null : attribute.getValue();
+	}
+
+	/**
+	 * Decides how each of the jobs in {@code workflow.xml} is rewritten.
+	 * 
+	 * @author delagarza
+	 *
+	 */
+	interface JobRewriter {
+
+		/**
+		 * Invoked once for each {@code /workflow/real/job} element.
+		 * 
+		 * @param jobName
+		 *            the name of the job.
+		 * @param executeProperties
+		 *            the key/value pairs found in the {@code execute} children of the job. Implementations modify this
+		 *            map in place; keys that are removed from the map cause the corresponding {@code execute} node to be
+		 *            removed, new keys cause new nodes to be added.
+		 * @return the {@code description} properties that will replace the ones starting with the configured prefix
+		 *         (in iteration order), or {@code null} if the job should be left untouched.
+		 */
+		Map<String, String> rewriteJob(final String jobName, final Map<String, String> executeProperties);
+	}
+}
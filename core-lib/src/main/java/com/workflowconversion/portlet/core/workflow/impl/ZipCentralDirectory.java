@@ -0,0 +1,465 @@
+package com.workflowconversion.portlet.core.workflow.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Central directory of a zip archive, read directly from the end of the archive.
+ * 
+ * Only the end of central directory record and the central directory are read, so inspecting an archive doesn't
+ * depend on its size. They are read into heap buffers rather than memory-mapped, since mappings are only released when
+ * garbage-collected and, until then, keep the archive from being replaced or deleted on some platforms (e.g.,
+ * Windows). The contents of single entries can then be streamed through
+ * {@link #newInputStream(FileChannel, Entry)}.
+ * 
+ * Only single-disk archives in the classic zip format are supported, that is, archives with fewer than 65535 entries
+ * and smaller than 4GB. ZIP64 archives are reported as unsupported. Names are decoded as UTF-8, the same way the zip
+ * file system provider does it by default.
+ * 
+ * @author delagarza
+ *
+ */
+class ZipCentralDirectory {
+
+	static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+	static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+	static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+	static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+	static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE = 0x07064b50;
+
+	static final int LOCAL_HEADER_LENGTH = 30;
+	static final int CENTRAL_HEADER_LENGTH = 46;
+	static final int END_OF_CENTRAL_DIRECTORY_LENGTH = 22;
+	static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_LENGTH = 20;
+
+	// offsets of the fields of a local header
+	static final int LOCAL_HEADER_NAME_LENGTH_OFFSET = 26;
+	static final int LOCAL_HEADER_EXTRA_LENGTH_OFFSET = 28;
+
+	// offsets of the fields of a central header
+	static final int CENTRAL_HEADER_VERSION_NEEDED_OFFSET = 6;
+	static final int CENTRAL_HEADER_FLAGS_OFFSET = 8;
+	static final int CENTRAL_HEADER_METHOD_OFFSET = 10;
+	static final int CENTRAL_HEADER_TIME_OFFSET = 12;
+	static final int CENTRAL_HEADER_DATE_OFFSET = 14;
+	static final int CENTRAL_HEADER_CRC_OFFSET = 16;
+	static final int CENTRAL_HEADER_COMPRESSED_SIZE_OFFSET = 20;
+	static final int CENTRAL_HEADER_UNCOMPRESSED_SIZE_OFFSET = 24;
+	static final int CENTRAL_HEADER_NAME_LENGTH_OFFSET = 28;
+	static final int CENTRAL_HEADER_EXTRA_LENGTH_OFFSET = 30;
+	static final int CENTRAL_HEADER_COMMENT_LENGTH_OFFSET = 32;
+	static final int CENTRAL_HEADER_LOCAL_HEADER_OFFSET_OFFSET = 42;
+
+	static final int FLAG_ENCRYPTED = 0x0001;
+	static final int FLAG_DATA_DESCRIPTOR = 0x0008;
+	static final int FLAG_UTF8 = 0x0800;
+
+	static final int METHOD_STORED = 0;
+	static final int METHOD_DEFLATED = 8;
+
+	// values of the fields that signal that the real value is stored in ZIP64 records
+	static final int MAX_16_BIT_VALUE = 0xFFFF;
+	static final long MAX_32_BIT_VALUE = 0xFFFFFFFFL;
+
+	private final List<Entry> entries;
+	private final Map<String, Entry> entriesByName;
+	private final long offset;
+	private final long size;
+	private final byte[] comment;
+
+	private ZipCentralDirectory(final List<Entry> entries, final long offset, final long size, final byte[] comment) {
+		this.entries = Collections.unmodifiableList(entries);
+		this.entriesByName = new TreeMap<String, Entry>();
+		for (final Entry entry : entries) {
+			this.entriesByName.put(entry.getName(), entry);
+		}
+		this.offset = offset;
+		this.size = size;
+		this.comment = comment;
+	}
+
+	/**
+	 * Reads the central directory of an archive.
+	 * 
+	 * @param channel
+	 *            the channel from which the archive will be read. Its position is not modified.
+	 * @return the central directory, or {@code null} if the archive is a ZIP64 or a multi-disk archive.
+	 * @throws ZipException
+	 *             if the archive is not a valid zip archive.
+	 * @throws IOException
+	 *             if the archive could not be read.
+	 */
+	static ZipCentralDirectory read(final FileChannel channel) throws IOException {
+		Validate.notNull(channel, "channel cannot be null; this is a coding problem and should be reported.");
+		final long archiveSize = channel.size();
+		// the end of central directory record is followed by a comment of up to 64KB
+		final int tailLength = (int) Math.min(archiveSize, END_OF_CENTRAL_DIRECTORY_LENGTH + MAX_16_BIT_VALUE);
+		final ByteBuffer tail = readFully(channel, archiveSize - tailLength, tailLength);
+		int endOfCentralDirectoryPosition = -1;
+		for (int i = tailLength - END_OF_CENTRAL_DIRECTORY_LENGTH; i >= 0; i--) {
+			if (tail.getInt(i) == END_OF_CENTRAL_DIRECTORY_SIGNATURE
+					&& i + END_OF_CENTRAL_DIRECTORY_LENGTH + getUnsignedShort(tail, i + 20) <= tailLength) {
+				endOfCentralDirectoryPosition = i;
+				break;
+			}
+		}
+		if (endOfCentralDirectoryPosition == -1) {
+			throw new ZipException("End of central directory record not found.");
+		}
+		final int diskNumber = getUnsignedShort(tail, endOfCentralDirectoryPosition + 4);
+		final int centralDirectoryDiskNumber = getUnsignedShort(tail, endOfCentralDirectoryPosition + 6);
+		final int entriesOnDisk = getUnsignedShort(tail, endOfCentralDirectoryPosition + 8);
+		final int totalEntries = getUnsignedShort(tail, endOfCentralDirectoryPosition + 10);
+		final long centralDirectorySize = getUnsignedInt(tail, endOfCentralDirectoryPosition + 12);
+		final long centralDirectoryOffset = getUnsignedInt(tail, endOfCentralDirectoryPosition + 16);
+		final int commentLength = getUnsignedShort(tail, endOfCentralDirectoryPosition + 20);
+		if (diskNumber != 0 || centralDirectoryDiskNumber != 0 || entriesOnDisk != totalEntries) {
+			return null;
+		}
+		if (totalEntries == MAX_16_BIT_VALUE || centralDirectorySize == MAX_32_BIT_VALUE
+				|| centralDirectoryOffset == MAX_32_BIT_VALUE) {
+			return null;
+		}
+		final int locatorPosition = endOfCentralDirectoryPosition - ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_LENGTH;
+		if (locatorPosition >= 0 && tail.getInt(locatorPosition) == ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE) {
+			return null;
+		}
+		final long archiveOffsetOfTail = archiveSize - tailLength;
+		if (centralDirectoryOffset + centralDirectorySize > archiveOffsetOfTail + endOfCentralDirectoryPosition) {
+			throw new ZipException("Invalid central directory offset or size.");
+		}
+
+		final byte[] comment = new byte[commentLength];
+		tail.position(endOfCentralDirectoryPosition + END_OF_CENTRAL_DIRECTORY_LENGTH);
+		tail.get(comment);
+
+		// only possible with huge names, extra fields or comments, such archives are reported as unsupported
+		if (centralDirectorySize > Integer.MAX_VALUE) {
+			return null;
+		}
+		final ByteBuffer centralDirectory = readFully(channel, centralDirectoryOffset, (int) centralDirectorySize);
+		final List<Entry> entries = new ArrayList<Entry>(totalEntries);
+		int position = 0;
+		for (int i = 0; i < totalEntries; i++) {
+			if (position + CENTRAL_HEADER_LENGTH > centralDirectory.limit()
+					|| centralDirectory.getInt(position) != CENTRAL_HEADER_SIGNATURE) {
+				throw new ZipException("Invalid central directory header.");
+			}
+			final int headerLength = CENTRAL_HEADER_LENGTH
+					+ getUnsignedShort(centralDirectory, position + CENTRAL_HEADER_NAME_LENGTH_OFFSET)
+					+ getUnsignedShort(centralDirectory, position + CENTRAL_HEADER_EXTRA_LENGTH_OFFSET)
+					+ getUnsignedShort(centralDirectory, position + CENTRAL_HEADER_COMMENT_LENGTH_OFFSET);
+			if (position + headerLength > centralDirectory.limit()) {
+				throw new ZipException("Invalid central directory header.");
+			}
+			final byte[] centralHeader = new byte[headerLength];
+			centralDirectory.position(position);
+			centralDirectory.get(centralHeader);
+			final Entry entry = new Entry(centralHeader);
+			if (entry.getCompressedSize() == MAX_32_BIT_VALUE || entry.getUncompressedSize() == MAX_32_BIT_VALUE
+					|| entry.getLocalHeaderOffset() == MAX_32_BIT_VALUE) {
+				return null;
+			}
+			entries.add(entry);
+			position += headerLength;
+		}
+		return new ZipCentralDirectory(entries, centralDirectoryOffset, centralDirectorySize, comment);
+	}
+
+	private static ByteBuffer readFully(final FileChannel channel, final long position, final int length)
+			throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) == -1) {
+				throw new EOFException("Unexpected end of archive.");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	static int getUnsignedShort(final ByteBuffer buffer, final int index) {
+		return buffer.getShort(index) & MAX_16_BIT_VALUE;
+	}
+
+	static long getUnsignedInt(final ByteBuffer buffer, final int index) {
+		return buffer.getInt(index) & MAX_32_BIT_VALUE;
+	}
+
+	/**
+	 * Opens a stream to read the uncompressed contents of an entry. Closing the returned stream does not close the
+	 * channel.
+	 * 
+	 * @param channel
+	 *            the channel from which the archive is read. Its position is not modified.
+	 * @param entry
+	 *            an entry of this central directory.
+	 * @return a stream with the uncompressed contents of the entry.
+	 * @throws ZipException
+	 *             if the entry is encrypted, uses an unsupported compression method or its local header is invalid.
+	 * @throws IOException
+	 *             if the archive could not be read.
+	 */
+	InputStream newInputStream(final FileChannel channel, final Entry entry) throws IOException {
+		Validate.notNull(channel, "channel cannot be null; this is a coding problem and should be reported.");
+		Validate.notNull(entry, "entry cannot be null; this is a coding problem and should be reported.");
+		if ((entry.getFlags() & FLAG_ENCRYPTED) != 0) {
+			throw new ZipException("The entry '" + entry.getName() + "' is encrypted.");
+		}
+		if (entry.getMethod() != METHOD_STORED && entry.getMethod() != METHOD_DEFLATED) {
+			throw new ZipException("The entry '" + entry.getName() + "' uses an unsupported compression method.");
+		}
+		// the length of the extra field in the local header can differ from the one in the central header
+		final ByteBuffer localHeader = readFully(channel, entry.getLocalHeaderOffset(), LOCAL_HEADER_LENGTH);
+		if (localHeader.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+			throw new ZipException("Invalid local header for entry '" + entry.getName() + "'.");
+		}
+		final long dataOffset = entry.getLocalHeaderOffset() + LOCAL_HEADER_LENGTH
+				+ getUnsignedShort(localHeader, LOCAL_HEADER_NAME_LENGTH_OFFSET)
+				+ getUnsignedShort(localHeader, LOCAL_HEADER_EXTRA_LENGTH_OFFSET);
+		final InputStream compressedInputStream = new ChannelRegionInputStream(channel, dataOffset,
+				entry.getCompressedSize());
+		if (entry.getMethod() == METHOD_STORED) {
+			return compressedInputStream;
+		}
+		// raw deflate streams might need an extra dummy byte at the end (see Inflater(boolean))
+		return new EntryInflaterInputStream(
+				new SequenceInputStream(compressedInputStream, new ByteArrayInputStream(new byte[1])));
+	}
+
+	/**
+	 * @return the entries, in the order in which they appear in the central directory.
+	 */
+	List<Entry> getEntries() {
+		return entries;
+	}
+
+	/**
+	 * @param name
+	 *            the name of the entry.
+	 * @return the entry with the given name, or {@code null} if there is no such entry.
+	 */
+	Entry getEntry(final String name) {
+		return entriesByName.get(name);
+	}
+
+	/**
+	 * @return the position of the central directory in the archive.
+	 */
+	long getOffset() {
+		return offset;
+	}
+
+	/**
+	 * @return the size of the central directory, in bytes.
+	 */
+	long getSize() {
+		return size;
+	}
+
+	/**
+	 * @return the comment of the archive.
+	 */
+	byte[] getComment() {
+		return comment.clone();
+	}
+
+	// reads a region of a channel using absolute positions, so the channel can be shared
+	private static class ChannelRegionInputStream extends InputStream {
+		private final FileChannel channel;
+		private long position;
+		private long remaining;
+
+		private ChannelRegionInputStream(final FileChannel channel, final long position, final long length) {
+			this.channel = channel;
+			this.position = position;
+			this.remaining = length;
+		}
+
+		@Override
+		public int read() throws IOException {
+			final byte[] singleByte = new byte[1];
+			return read(singleByte, 0, 1) == -1 ? -1 : singleByte[0] & 0xFF;
+		}
+
+		@Override
+		public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+			if (length == 0) {
+				return 0;
+			}
+			if (remaining <= 0) {
+				return -1;
+			}
+			final int bytesToRead = (int) Math.min(length, remaining);
+			final int bytesRead = channel.read(ByteBuffer.wrap(buffer, offset, bytesToRead), position);
+			if (bytesRead == -1) {
+				throw new EOFException("Unexpected end of archive.");
+			}
+			position += bytesRead;
+			remaining -= bytesRead;
+			return bytesRead;
+		}
+
+		@Override
+		public long skip(final long count) {
+			final long skipped = Math.max(0, Math.min(count, remaining));
+			position += skipped;
+			remaining -= skipped;
+			return skipped;
+		}
+
+		@Override
+		public int available() {
+			return (int) Math.min(Integer.MAX_VALUE, remaining);
+		}
+	}
+
+	// releases the native resources of its inflater when closed
+	private static class EntryInflaterInputStream extends InflaterInputStream {
+		private boolean closed;
+
+		private EntryInflaterInputStream(final InputStream compressedInputStream) {
+			super(compressedInputStream, new Inflater(true));
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (!closed) {
+				closed = true;
+				inf.end();
+				super.close();
+			}
+		}
+	}
+
+	/**
+	 * Entry of the central directory. All fields are read from the raw central header.
+	 * 
+	 * @author delagarza
+	 *
+	 */
+	static class Entry {
+		private final byte[] centralHeader;
+		private final ByteBuffer fields;
+		private final String name;
+
+		private Entry(final byte[] centralHeader) {
+			this.centralHeader = centralHeader;
+			this.fields = ByteBuffer.wrap(centralHeader).order(ByteOrder.LITTLE_ENDIAN);
+			this.name = new String(centralHeader, CENTRAL_HEADER_LENGTH, getNameLength(), StandardCharsets.UTF_8);
+		}
+
+		/**
+		 * @return the name of the entry.
+		 */
+		String getName() {
+			return name;
+		}
+
+		/**
+		 * @return a copy of the raw central header of this entry, including name, extra field and comment.
+		 */
+		byte[] getCentralHeader() {
+			return centralHeader.clone();
+		}
+
+		/**
+		 * @return the length of the name of the entry, in bytes.
+		 */
+		int getNameLength() {
+			return getUnsignedShort(fields, CENTRAL_HEADER_NAME_LENGTH_OFFSET);
+		}
+
+		/**
+		 * @return the version needed to extract the entry.
+		 */
+		int getVersionNeeded() {
+			return getUnsignedShort(fields, CENTRAL_HEADER_VERSION_NEEDED_OFFSET);
+		}
+
+		/**
+		 * @return the general purpose flags.
+		 */
+		int getFlags() {
+			return getUnsignedShort(fields, CENTRAL_HEADER_FLAGS_OFFSET);
+		}
+
+		/**
+		 * @return the compression method.
+		 */
+		int getMethod() {
+			return getUnsignedShort(fields, CENTRAL_HEADER_METHOD_OFFSET);
+		}
+
+		/**
+		 * @return the modification time, in MS-DOS format.
+		 */
+		int getLastModifiedTime() {
+			return getUnsignedShort(fields, CENTRAL_HEADER_TIME_OFFSET);
+		}
+
+		/**
+		 * @return the modification date, in MS-DOS format.
+		 */
+		int getLastModifiedDate() {
+			return getUnsignedShort(fields, CENTRAL_HEADER_DATE_OFFSET);
+		}
+
+		/**
+		 * @return the CRC-32 of the uncompressed data.
+		 */
+		long getCrc() {
+			return getUnsignedInt(fields, CENTRAL_HEADER_CRC_OFFSET);
+		}
+
+		/**
+		 * @return the size of the compressed data, in bytes.
+		 */
+		long getCompressedSize() {
+			return getUnsignedInt(fields, CENTRAL_HEADER_COMPRESSED_SIZE_OFFSET);
+		}
+
+		/**
+		 * @return the size of the uncompressed data, in bytes.
+		 */
+		long getUncompressedSize() {
+			return getUnsignedInt(fields, CENTRAL_HEADER_UNCOMPRESSED_SIZE_OFFSET);
+		}
+
+		/**
+		 * @return the position of the local header of the entry in the archive.
+		 */
+		long getLocalHeaderOffset() {
+			return getUnsignedInt(fields, CENTRAL_HEADER_LOCAL_HEADER_OFFSET_OFFSET);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return "Entry [name=" + name + ", method=" + getMethod() + ", compressedSize=" + getCompressedSize()
+					+ ", uncompressedSize=" + getUncompressedSize() + ", localHeaderOffset=" + getLocalHeaderOffset()
+					+ "]";
+		}
+	}
+}
@@ -1,4 +1,5 @@
--- MySQL Script to set up the needed table and stored procedures for the WS-PGRADE Extensions.
+-- Initial schema: tables and stored procedures for the WS-PGRADE Extensions. Statements are idempotent, so this
+-- script can be applied to databases that were set up before migrations were introduced.
 USE guse;
 
 -- information about queues and resources is stored by dci_bridge_service in dci-bridge.xml, so it would be redundant to have tables to store those
@@ -14,6 +15,15 @@ CREATE TABLE IF NOT EXISTS tbl_application (
 	UNIQUE INDEX (resource_name(64), resource_type(16), name(64), version(32), path(128))	
 );
 
+-- one row per resource, its version is incremented each time the applications of the resource are saved, so portal
+-- instances sharing this database can detect concurrent modifications and reload only the resources that changed
+CREATE TABLE IF NOT EXISTS tbl_resource_version (
+	resource_name	TEXT			NOT NULL,
+	resource_type	TEXT			NOT NULL,
+	version			BIGINT			NOT NULL DEFAULT 0,
+	UNIQUE INDEX (resource_name(64), resource_type(16))
+);
+
 -- create the "get" stored procedure
 DROP PROCEDURE IF EXISTS sp_get_applications;
 DELIMITER #
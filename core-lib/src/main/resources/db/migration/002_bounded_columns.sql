@@ -0,0 +1,115 @@
+-- Bounded columns that match the maximum lengths of the fields of resources and applications, so they can be fully
+-- indexed. Applications are clustered by resource, so the applications of a resource are read in a single range scan.
+--
+-- Requires MySQL 5.7.9 or newer with InnoDB and the DYNAMIC row format (the default since 5.7.9), which allows index
+-- keys of up to 3072 bytes instead of 767. Columns use the 3-byte utf8 character set, so the primary keys take up to
+-- (64 + 256) * 3 = 960 bytes. A unique index over the full identity of an application would take 4992 bytes, more
+-- than any row format allows, so uniqueness is enforced on a stored SHA-1 of the identity instead of on column
+-- prefixes, which would have rejected applications that differ only after the prefix. Descriptions are not part of
+-- the identity and stay TEXT.
+--
+-- Identity columns use the binary utf8_bin collation, so the lookups done by the UPDATE and DELETE statements of the
+-- provider match exactly the same rows the hash tells apart, and both agree with the application keys used in Java,
+-- which are case-sensitive too.
+--
+-- Existing values longer than the new columns are never truncated: the migration fails before changing anything and
+-- names the offending column, so the rows can be fixed and the provider restarted. Each step checks whether it was
+-- already applied, so a migration that failed halfway can simply be run again.
+USE guse;
+
+DROP PROCEDURE IF EXISTS sp_migrate_bounded_columns;
+DELIMITER #
+CREATE PROCEDURE sp_migrate_bounded_columns()
+BEGIN
+	IF EXISTS (SELECT 1 FROM tbl_application WHERE CHAR_LENGTH(resource_name) > 256) THEN
+		SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'tbl_application.resource_name has values over 256 characters';
+	END IF;
+	IF EXISTS (SELECT 1 FROM tbl_application WHERE CHAR_LENGTH(resource_type) > 64) THEN
+		SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'tbl_application.resource_type has values over 64 characters';
+	END IF;
+	IF EXISTS (SELECT 1 FROM tbl_application WHERE CHAR_LENGTH(name) > 256) THEN
+		SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'tbl_application.name has values over 256 characters';
+	END IF;
+	IF EXISTS (SELECT 1 FROM tbl_application WHERE CHAR_LENGTH(version) > 64) THEN
+		SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'tbl_application.version has values over 64 characters';
+	END IF;
+	IF EXISTS (SELECT 1 FROM tbl_application WHERE CHAR_LENGTH(path) > 1024) THEN
+		SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'tbl_application.path has values over 1024 characters';
+	END IF;
+	IF EXISTS (SELECT 1 FROM tbl_resource_version WHERE CHAR_LENGTH(resource_name) > 256) THEN
+		SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'tbl_resource_version.resource_name has values over 256 characters';
+	END IF;
+	IF EXISTS (SELECT 1 FROM tbl_resource_version WHERE CHAR_LENGTH(resource_type) > 64) THEN
+		SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'tbl_resource_version.resource_type has values over 64 characters';
+	END IF;
+
+	-- modifying columns to what they already are does nothing
+	ALTER TABLE tbl_application
+		MODIFY resource_name	VARCHAR(256)	CHARACTER SET utf8 COLLATE utf8_bin	NOT NULL,
+		MODIFY resource_type	VARCHAR(64)		CHARACTER SET utf8 COLLATE utf8_bin	NOT NULL,
+		MODIFY name				VARCHAR(256)	CHARACTER SET utf8 COLLATE utf8_bin	NOT NULL,
+		MODIFY version			VARCHAR(64)		CHARACTER SET utf8 COLLATE utf8_bin	NOT NULL,
+		MODIFY path				VARCHAR(1024)	CHARACTER SET utf8 COLLATE utf8_bin	NOT NULL,
+		MODIFY description		TEXT			CHARACTER SET utf8,
+		ROW_FORMAT = DYNAMIC;
+	ALTER TABLE tbl_resource_version
+		MODIFY resource_name	VARCHAR(256)	CHARACTER SET utf8 COLLATE utf8_bin	NOT NULL,
+		MODIFY resource_type	VARCHAR(64)		CHARACTER SET utf8 COLLATE utf8_bin	NOT NULL,
+		ROW_FORMAT = DYNAMIC;
+
+	-- the prefix indexes created by 001_initial_schema.sql are named after their first column
+	IF EXISTS (SELECT 1 FROM information_schema.STATISTICS WHERE TABLE_SCHEMA = DATABASE()
+			AND TABLE_NAME = 'tbl_application' AND INDEX_NAME = 'resource_name') THEN
+		ALTER TABLE tbl_application DROP INDEX resource_name;
+	END IF;
+	IF EXISTS (SELECT 1 FROM information_schema.STATISTICS WHERE TABLE_SCHEMA = DATABASE()
+			AND TABLE_NAME = 'tbl_resource_version' AND INDEX_NAME = 'resource_name') THEN
+		ALTER TABLE tbl_resource_version DROP INDEX resource_name;
+	END IF;
+
+	IF NOT EXISTS (SELECT 1 FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE()
+			AND TABLE_NAME = 'tbl_application' AND COLUMN_NAME = 'id') THEN
+		ALTER TABLE tbl_application
+			ADD COLUMN id			BIGINT			NOT NULL AUTO_INCREMENT,
+			ADD PRIMARY KEY (resource_type, resource_name, id),
+			ADD INDEX idx_application_id (id);
+	END IF;
+
+	-- the fields of applications and resources never contain CHAR(0), so different identities concatenate to
+	-- different values
+	IF NOT EXISTS (SELECT 1 FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE()
+			AND TABLE_NAME = 'tbl_application' AND COLUMN_NAME = 'application_hash') THEN
+		ALTER TABLE tbl_application
+			ADD COLUMN application_hash	BINARY(20)	AS (UNHEX(SHA1(CONCAT_WS(CHAR(0), resource_type, resource_name,
+				name, version, path)))) STORED,
+			ADD UNIQUE INDEX ux_application (application_hash);
+	END IF;
+
+	IF NOT EXISTS (SELECT 1 FROM information_schema.TABLE_CONSTRAINTS WHERE TABLE_SCHEMA = DATABASE()
+			AND TABLE_NAME = 'tbl_resource_version' AND CONSTRAINT_TYPE = 'PRIMARY KEY') THEN
+		ALTER TABLE tbl_resource_version
+			ADD PRIMARY KEY (resource_type, resource_name);
+	END IF;
+END#
+DELIMITER ;
+
+CALL sp_migrate_bounded_columns();
+DROP PROCEDURE sp_migrate_bounded_columns;
+
+-- rows are already sorted by resource
+DROP PROCEDURE IF EXISTS sp_get_applications;
+DELIMITER #
+CREATE PROCEDURE sp_get_applications(
+	IN param_resource_name		VARCHAR(256),
+	IN param_resource_type		VARCHAR(64)
+)
+BEGIN
+	SELECT
+		resource_name, resource_type, name, version, path, description
+	FROM
+		tbl_application
+	WHERE
+		resource_type = param_resource_type AND
+		resource_name = param_resource_name;
+END#
+DELIMITER ;
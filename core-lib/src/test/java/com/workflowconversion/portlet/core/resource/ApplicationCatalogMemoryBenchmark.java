@@ -0,0 +1,77 @@
+package com.workflowconversion.portlet.core.resource;
+
+/**
+ * Compares the heap used by a {@link MapApplicationCatalog} and a {@link ColumnarApplicationCatalog} holding the same
+ * applications. Applications are built from fresh strings, the way they are read from the database, so strings that
+ * repeat across applications (e.g., versions or descriptions) are not shared unless the catalog shares them.
+ * 
+ * Run with {@code java -Xmx2g ... ApplicationCatalogMemoryBenchmark [applications] [distinct names]}; the numbers are
+ * only meaningful when nothing else runs in the same JVM.
+ * 
+ * @author delagarza
+ *
+ */
+public class ApplicationCatalogMemoryBenchmark {
+
+	private final static int DEFAULT_APPLICATIONS = 200000;
+	private final static int DEFAULT_DISTINCT_NAMES = 5000;
+
+	/**
+	 * Entry point.
+	 * 
+	 * @param args
+	 *            optionally, the number of applications and the number of distinct application names.
+	 */
+	public static void main(final String[] args) {
+		final int applications = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_APPLICATIONS;
+		final int distinctNames = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_DISTINCT_NAMES;
+
+		// warm up, so class loading does not count towards the first measurement
+		fill(new MapApplicationCatalog(), 1000, 100);
+		fill(new ColumnarApplicationCatalog(), 1000, 100);
+
+		final long mapBytes = measure(new MapApplicationCatalog(), applications, distinctNames);
+		final long columnarBytes = measure(new ColumnarApplicationCatalog(), applications, distinctNames);
+
+		System.out.println(String.format("%d applications, %d distinct names", applications, distinctNames));
+		System.out.println(String.format("map catalog:      %,d bytes (%d bytes per application)", mapBytes,
+				mapBytes / applications));
+		System.out.println(String.format("columnar catalog: %,d bytes (%d bytes per application)", columnarBytes,
+				columnarBytes / applications));
+		System.out.println(String.format("ratio:            %.2f", (double) columnarBytes / mapBytes));
+	}
+
+	private static long measure(final ApplicationCatalog catalog, final int applications, final int distinctNames) {
+		final long before = usedMemory();
+		fill(catalog, applications, distinctNames);
+		final long after = usedMemory();
+		// keep the catalog reachable until it has been measured
+		if (catalog.size() != applications) {
+			throw new IllegalStateException("Expected " + applications + " applications, found " + catalog.size());
+		}
+		return after - before;
+	}
+
+	private static void fill(final ApplicationCatalog catalog, final int applications, final int distinctNames) {
+		for (int i = 0; i < applications; i++) {
+			final String name = "module-" + (i % distinctNames);
+			final String version = (i / distinctNames % 10) + "." + (i / distinctNames / 10) + ".0";
+			catalog.add(new Application.Builder().withName(new String(name)).withVersion(new String(version))
+					.withPath("/opt/software/" + name + '/' + version + "/bin/" + name)
+					.withDescription(new String("Loaded through environment modules")).newInstance());
+		}
+	}
+
+	private static long usedMemory() {
+		final Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+			try {
+				Thread.sleep(100);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
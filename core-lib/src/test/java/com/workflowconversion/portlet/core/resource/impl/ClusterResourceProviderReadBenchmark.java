@@ -0,0 +1,160 @@
+package com.workflowconversion.portlet.core.resource.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.workflowconversion.portlet.core.middleware.impl.InMemoryMockMiddlewareProvider;
+import com.workflowconversion.portlet.core.resource.Application;
+import com.workflowconversion.portlet.core.resource.Resource;
+
+/**
+ * Measures how many times per second several threads can look up resources in a {@link ClusterResourceProvider}, first
+ * alone and then while another thread keeps saving a resource with many applications. Readers don't wait for saves, so
+ * both numbers should be close; before resources were published as snapshots, readers waited for each save to finish.
+ * 
+ * Saves need a MySQL server. Run with
+ * {@code java -Djdbc.driver=com.mysql.jdbc.Driver ... ClusterResourceProviderReadBenchmark <jdbc url> <user> <password>
+ * [reader threads] [seconds] [applications]}, with the JDBC driver in the classpath. The database must be a scratch
+ * database; the schema is created if needed and the saved applications are deleted afterwards.
+ * 
+ * @author delagarza
+ *
+ */
+public class ClusterResourceProviderReadBenchmark {
+
+	private final static String DEFAULT_DRIVER = "com.mysql.jdbc.Driver";
+	private final static int DEFAULT_READERS = 4;
+	private final static int DEFAULT_SECONDS = 10;
+	private final static int DEFAULT_APPLICATIONS = 5000;
+	// one of the enabled clusters of the mock middleware provider
+	private final static String RESOURCE_NAME = "c153-110.localcloud";
+	private final static String RESOURCE_TYPE = "pbs";
+	private final static int REFRESH_PERIOD = 3600;
+
+	/**
+	 * Entry point.
+	 * 
+	 * @param args
+	 *            the JDBC url, user and password of the database and, optionally, the number of reader threads, the
+	 *            duration of each measurement in seconds and the number of applications of the saved resource.
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the threads.
+	 */
+	public static void main(final String[] args) throws InterruptedException {
+		if (args.length < 3) {
+			System.err.println("Usage: ClusterResourceProviderReadBenchmark <jdbc url> <user> <password> "
+					+ "[reader threads] [seconds] [applications]");
+			System.exit(1);
+		}
+		final int readers = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_READERS;
+		final int seconds = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_SECONDS;
+		final int applications = args.length > 5 ? Integer.parseInt(args[5]) : DEFAULT_APPLICATIONS;
+
+		final ScheduledExecutorService refreshExecutor = Executors.newSingleThreadScheduledExecutor();
+		try {
+			final ClusterResourceProvider provider = new ClusterResourceProvider(new InMemoryMockMiddlewareProvider(),
+					2, 1000, refreshExecutor, REFRESH_PERIOD, false);
+			provider.init(args[0], System.getProperty("jdbc.driver", DEFAULT_DRIVER), args[1], args[2]);
+			final Resource resource = provider.getResource(RESOURCE_NAME, RESOURCE_TYPE);
+			if (!resource.getApplications().isEmpty()) {
+				throw new IllegalStateException(
+						"The resource already has applications, the benchmark must use a scratch database.");
+			}
+
+			// warm up
+			measure(provider, null, readers, 1, 0, new AtomicLong());
+			final long readsAlone = measure(provider, null, readers, seconds, 0, new AtomicLong());
+			final AtomicLong saves = new AtomicLong();
+			final long readsWhileSaving = measure(provider, resource, readers, seconds, applications, saves);
+
+			System.out.println(String.format("%d reader threads, %d seconds, %d applications per save", readers,
+					seconds, applications));
+			System.out.println(String.format("without saves: %,14.0f reads/s", (double) readsAlone / seconds));
+			System.out.println(String.format("while saving:  %,14.0f reads/s, %d saves", (double) readsWhileSaving
+					/ seconds, saves.get()));
+		} finally {
+			refreshExecutor.shutdownNow();
+		}
+	}
+
+	// returns the number of reads done by all readers; the resource is saved repeatedly unless it is null
+	private static long measure(final ClusterResourceProvider provider, final Resource savedResource,
+			final int readers, final int seconds, final int applications, final AtomicLong saves)
+			throws InterruptedException {
+		final CountDownLatch start = new CountDownLatch(1);
+		final long[] reads = new long[readers];
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+		final List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < readers; i++) {
+			final int reader = i;
+			threads.add(new Thread(new Runnable() {
+				@Override
+				public void run() {
+					awaitQuietly(start);
+					long localReads = 0;
+					while (System.nanoTime() < deadline) {
+						// the same lookups done while loading a workflow
+						if (provider.getResource(RESOURCE_NAME, RESOURCE_TYPE) == null
+								|| provider.getResources().isEmpty()) {
+							throw new IllegalStateException("Resources disappeared while reading them.");
+						}
+						localReads += 2;
+					}
+					reads[reader] = localReads;
+				}
+			}));
+		}
+		if (savedResource != null) {
+			threads.add(new Thread(new Runnable() {
+				@Override
+				public void run() {
+					awaitQuietly(start);
+					while (System.nanoTime() < deadline) {
+						// every other save inserts all applications, the next one deletes them
+						if (savedResource.getApplications().isEmpty()) {
+							for (int i = 0; i < applications; i++) {
+								savedResource.addApplication(new Application.Builder().withName("module-" + i)
+										.withVersion("1.0").withPath("/opt/software/module-" + i + "/bin")
+										.withDescription("Benchmark application").newInstance());
+							}
+						} else {
+							savedResource.removeAllApplications();
+						}
+						provider.save(savedResource);
+						saves.incrementAndGet();
+					}
+					// leave the database as it was
+					if (!savedResource.getApplications().isEmpty()) {
+						savedResource.removeAllApplications();
+						provider.save(savedResource);
+					}
+				}
+			}));
+		}
+		for (final Thread thread : threads) {
+			thread.start();
+		}
+		start.countDown();
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+		long totalReads = 0;
+		for (final long threadReads : reads) {
+			totalReads += threadReads;
+		}
+		return totalReads;
+	}
+
+	private static void awaitQuietly(final CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package com.workflowconversion.portlet.core.resource.impl;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import com.workflowconversion.portlet.core.middleware.impl.InMemoryMockMiddlewareProvider;
+import com.workflowconversion.portlet.core.resource.Application;
+import com.workflowconversion.portlet.core.resource.Resource;
+
+/**
+ * Measures how many applications per second {@link ClusterResourceProvider#save(Resource)} inserts and deletes with
+ * different batch sizes. A batch size of one needs a round trip per application, the way applications were saved
+ * before.
+ * 
+ * No embedded database can run the migration scripts, so this benchmark needs a MySQL server. Run with
+ * {@code java -Djdbc.driver=com.mysql.jdbc.Driver ... ClusterResourceProviderSaveBenchmark <jdbc url> <user> <password>
+ * [applications] [batch size]...}, with the JDBC driver in the classpath. The database must be a scratch database; the
+ * schema is created if needed and the saved applications are deleted afterwards.
+ * 
+ * @author delagarza
+ *
+ */
+public class ClusterResourceProviderSaveBenchmark {
+
+	private final static String DEFAULT_DRIVER = "com.mysql.jdbc.Driver";
+	private final static int DEFAULT_APPLICATIONS = 5000;
+	private final static int[] DEFAULT_BATCH_SIZES = { 1, 100, 1000 };
+	// one of the enabled clusters of the mock middleware provider
+	private final static String RESOURCE_NAME = "c153-110.localcloud";
+	private final static String RESOURCE_TYPE = "pbs";
+	private final static int REFRESH_PERIOD = 3600;
+
+	/**
+	 * Entry point.
+	 * 
+	 * @param args
+	 *            the JDBC url, user and password of the database and, optionally, the number of saved applications
+	 *            and the batch sizes to measure.
+	 */
+	public static void main(final String[] args) {
+		if (args.length < 3) {
+			System.err.println("Usage: ClusterResourceProviderSaveBenchmark <jdbc url> <user> <password> "
+					+ "[applications] [batch size]...");
+			System.exit(1);
+		}
+		final int applications = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_APPLICATIONS;
+		final int[] batchSizes = new int[args.length > 4 ? args.length - 4 : DEFAULT_BATCH_SIZES.length];
+		for (int i = 0; i < batchSizes.length; i++) {
+			batchSizes[i] = args.length > 4 ? Integer.parseInt(args[i + 4]) : DEFAULT_BATCH_SIZES[i];
+		}
+		final String driverClassName = System.getProperty("jdbc.driver", DEFAULT_DRIVER);
+
+		System.out.println(String.format("%d applications saved to %s/%s", applications, RESOURCE_NAME, RESOURCE_TYPE));
+		for (final int batchSize : batchSizes) {
+			final ScheduledExecutorService refreshExecutor = Executors.newSingleThreadScheduledExecutor();
+			try {
+				final ClusterResourceProvider provider = new ClusterResourceProvider(
+						new InMemoryMockMiddlewareProvider(), 1, batchSize, refreshExecutor, REFRESH_PERIOD, false);
+				provider.init(args[0], driverClassName, args[1], args[2]);
+				final Resource resource = provider.getResource(RESOURCE_NAME, RESOURCE_TYPE);
+				if (!resource.getApplications().isEmpty()) {
+					throw new IllegalStateException(
+							"The resource already has applications, the benchmark must use a scratch database.");
+				}
+
+				for (int i = 0; i < applications; i++) {
+					resource.addApplication(new Application.Builder().withName("module-" + i).withVersion("1.0")
+							.withPath("/opt/software/module-" + i + "/bin").withDescription("Benchmark application")
+							.newInstance());
+				}
+				long start = System.nanoTime();
+				provider.save(resource);
+				final long insertNanos = System.nanoTime() - start;
+				// make sure the applications reached the database
+				assertPersistedApplications(args, driverClassName, applications);
+
+				resource.removeAllApplications();
+				start = System.nanoTime();
+				provider.save(resource);
+				final long deleteNanos = System.nanoTime() - start;
+				assertPersistedApplications(args, driverClassName, 0);
+
+				System.out.println(String.format("batch size %,6d: %,10.0f inserted apps/s, %,10.0f deleted apps/s",
+						batchSize, applications / (insertNanos / 1e9), applications / (deleteNanos / 1e9)));
+			} finally {
+				refreshExecutor.shutdownNow();
+			}
+		}
+	}
+
+	// reads the applications of the resource with a new provider, so they come from the database
+	private static void assertPersistedApplications(final String[] args, final String driverClassName,
+			final int expectedApplications) {
+		final ScheduledExecutorService refreshExecutor = Executors.newSingleThreadScheduledExecutor();
+		try {
+			final ClusterResourceProvider provider = new ClusterResourceProvider(new InMemoryMockMiddlewareProvider(),
+					1, 1, refreshExecutor, REFRESH_PERIOD, false);
+			provider.init(args[0], driverClassName, args[1], args[2]);
+			final int persistedApplications = provider.getResource(RESOURCE_NAME, RESOURCE_TYPE).getApplications()
+					.size();
+			if (persistedApplications != expectedApplications) {
+				throw new IllegalStateException("Expected " + expectedApplications + " persisted applications, found "
+						+ persistedApplications + '.');
+			}
+		} finally {
+			refreshExecutor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,303 @@
+package com.workflowconversion.portlet.core.resource.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.w3.x2005.x08.addressing.EndpointReferenceType;
+
+import com.workflowconversion.portlet.core.middleware.impl.InMemoryMockMiddlewareProvider;
+import com.workflowconversion.portlet.core.resource.Application;
+import com.workflowconversion.portlet.core.resource.Resource;
+import com.workflowconversion.portlet.core.resource.ResourceProvider;
+import com.workflowconversion.portlet.core.resource.ResourceProviderListener;
+
+import dci.data.Item;
+import de.fzj.unicore.uas.security.ClientProperties;
+
+/**
+ * Tests the discovery of UNICORE resources against stub registries and target system factories (TSF) that answer
+ * after a delay, fail or never answer. The stubs replace the UNICORE servers of the two enabled UNICORE items of
+ * {@link InMemoryMockMiddlewareProvider}; each registry lists two TSFs.
+ * 
+ * There are no test dependencies, so these are plain test classes: public {@code test*} methods that throw on failure.
+ * 
+ * @author delagarza
+ *
+ */
+public class UnicoreResourceProviderTest {
+
+	private final static String ITEM_1 = "unicore.fake.org:8080";
+	private final static String ITEM_2 = "uni-core.com:8090";
+	private final static int TSFS_PER_ITEM = 2;
+	private final static long DELAY_MILLIS = 500;
+	private final static int CACHE_DURATION = 1;
+	private final static int DISCOVERY_TIMEOUT = 2;
+
+	private ScheduledExecutorService refreshExecutor;
+	private ExecutorService discoveryExecutor;
+
+	/**
+	 * Creates the refresh and discovery executors.
+	 */
+	public void setUp() {
+		refreshExecutor = Executors.newSingleThreadScheduledExecutor();
+		discoveryExecutor = Executors.newCachedThreadPool();
+	}
+
+	/**
+	 * Stops the refresh and discovery executors.
+	 */
+	public void tearDown() {
+		refreshExecutor.shutdownNow();
+		discoveryExecutor.shutdownNow();
+	}
+
+	/**
+	 * Registries and TSFs of all items must be queried at the same time.
+	 */
+	public void testEndpointsAreQueriedConcurrently() {
+		final StubUnicoreResourceProvider provider = new StubUnicoreResourceProvider(refreshExecutor,
+				discoveryExecutor);
+		provider.setDelayed(ITEM_1, ITEM_2, tsfUrl(ITEM_1, 0), tsfUrl(ITEM_1, 1), tsfUrl(ITEM_2, 0), tsfUrl(ITEM_2, 1));
+
+		final long start = System.nanoTime();
+		provider.init();
+		final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		assertFalse(provider.hasInitErrors(), "the provider should have been initialized");
+		assertApplication(provider, ITEM_1, tsfUrl(ITEM_1, TSFS_PER_ITEM - 1));
+		assertApplication(provider, ITEM_2, tsfUrl(ITEM_2, TSFS_PER_ITEM - 1));
+		assertEquals(2, provider.maxConcurrentRegistryQueries.get(), "registries queried at the same time");
+		assertEquals(2 * TSFS_PER_ITEM, provider.maxConcurrentTsfQueries.get(), "TSFs queried at the same time");
+		// one registry delay plus one TSF delay, instead of six delays
+		assertTrue(elapsedMillis < 4 * DELAY_MILLIS, "discovery took " + elapsedMillis + "ms");
+	}
+
+	/**
+	 * Endpoints that don't answer within the discovery timeout must not hold up the other endpoints, and must be
+	 * cancelled.
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the cancellation.
+	 */
+	public void testUnresponsiveEndpointsTimeOut() throws InterruptedException {
+		final StubUnicoreResourceProvider provider = new StubUnicoreResourceProvider(refreshExecutor,
+				discoveryExecutor);
+		provider.setUnresponsive(ITEM_1);
+
+		final long start = System.nanoTime();
+		provider.init();
+		final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		assertTrue(elapsedMillis < TimeUnit.SECONDS.toMillis(DISCOVERY_TIMEOUT) + 2 * DELAY_MILLIS,
+				"discovery took " + elapsedMillis + "ms");
+		assertEquals(null, provider.getResource(ITEM_1, UnicoreResourceProvider.UNICORE_RESOURCE_TYPE),
+				"resource of the unresponsive registry");
+		assertApplication(provider, ITEM_2, tsfUrl(ITEM_2, TSFS_PER_ITEM - 1));
+		assertTrue(provider.cancelledQueries.await(DELAY_MILLIS, TimeUnit.MILLISECONDS),
+				"the unresponsive query should have been cancelled");
+	}
+
+	/**
+	 * Endpoints that fail must be represented by the data they returned the last time they could be queried.
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the refresh.
+	 */
+	public void testFailingEndpointsKeepLastKnownData() throws InterruptedException {
+		final StubUnicoreResourceProvider provider = new StubUnicoreResourceProvider(refreshExecutor,
+				discoveryExecutor);
+		provider.init();
+		assertApplication(provider, ITEM_1, tsfUrl(ITEM_1, TSFS_PER_ITEM - 1));
+		assertApplication(provider, ITEM_2, tsfUrl(ITEM_2, TSFS_PER_ITEM - 1));
+
+		// the registry of the first item fails, the second one still lists its TSFs, but they fail
+		provider.setFailing(ITEM_1, tsfUrl(ITEM_2, 0), tsfUrl(ITEM_2, 1));
+		final int registryQueriesBeforeRefresh = provider.registryQueries.get();
+		awaitRefresh(provider);
+
+		assertTrue(provider.registryQueries.get() >= registryQueriesBeforeRefresh + 2,
+				"registries should have been queried again");
+		assertApplication(provider, ITEM_1, tsfUrl(ITEM_1, TSFS_PER_ITEM - 1));
+		assertApplication(provider, ITEM_2, tsfUrl(ITEM_2, TSFS_PER_ITEM - 1));
+	}
+
+	/**
+	 * Expired resources must be refreshed even if nobody requests them, so endpoints that failed during the
+	 * initialization eventually show up.
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the refresh.
+	 */
+	public void testResourcesAreRefreshedWithoutRequests() throws InterruptedException {
+		final StubUnicoreResourceProvider provider = new StubUnicoreResourceProvider(refreshExecutor,
+				discoveryExecutor);
+		provider.setFailing(ITEM_1);
+		provider.init();
+		assertEquals(null, provider.getResource(ITEM_1, UnicoreResourceProvider.UNICORE_RESOURCE_TYPE),
+				"resource of the failing registry");
+
+		provider.setBehavior(Behavior.OK, ITEM_1);
+		awaitRefresh(provider);
+
+		assertApplication(provider, ITEM_1, tsfUrl(ITEM_1, TSFS_PER_ITEM - 1));
+		assertApplication(provider, ITEM_2, tsfUrl(ITEM_2, TSFS_PER_ITEM - 1));
+	}
+
+	// waits until the provider notifies that its resources were refreshed, without requesting them
+	private static void awaitRefresh(final UnicoreResourceProvider provider) throws InterruptedException {
+		final CountDownLatch refreshed = new CountDownLatch(1);
+		provider.addListener(new ResourceProviderListener() {
+			@Override
+			public void resourcesChanged(final ResourceProvider resourceProvider) {
+				refreshed.countDown();
+			}
+		});
+		assertTrue(refreshed.await(TimeUnit.SECONDS.toMillis(CACHE_DURATION + DISCOVERY_TIMEOUT * 2) + DELAY_MILLIS,
+				TimeUnit.MILLISECONDS), "resources should have been refreshed");
+	}
+
+	// each TSF offers a single application, named after the TSF; later TSFs of an item replace the earlier ones
+	private static void assertApplication(final UnicoreResourceProvider provider, final String item,
+			final String applicationName) {
+		final Resource resource = provider.getResource(item, UnicoreResourceProvider.UNICORE_RESOURCE_TYPE);
+		assertTrue(resource != null, "resource " + item + " should exist");
+		assertEquals(1, resource.getApplications().size(), "applications of " + item);
+		assertEquals(applicationName, resource.getApplications().iterator().next().getName(),
+				"application of " + item);
+	}
+
+	private static String tsfUrl(final String item, final int index) {
+		return "https://" + item + "/TSF-" + index + "/services/TargetSystemFactoryService";
+	}
+
+	private static void assertTrue(final boolean condition, final String message) {
+		if (!condition) {
+			throw new AssertionError(message);
+		}
+	}
+
+	private static void assertFalse(final boolean condition, final String message) {
+		assertTrue(!condition, message);
+	}
+
+	private static void assertEquals(final Object expected, final Object actual, final String message) {
+		if (expected == null ? actual != null : !expected.equals(actual)) {
+			throw new AssertionError(message + ": expected <" + expected + "> but was <" + actual + '>');
+		}
+	}
+
+	private static enum Behavior {
+		OK, DELAYED, FAILING, UNRESPONSIVE
+	}
+
+	// answers registry and TSF queries according to the behavior set for each endpoint, by item name or TSF url
+	private static class StubUnicoreResourceProvider extends UnicoreResourceProvider {
+		private static final long serialVersionUID = -2106329614856712376L;
+
+		private final ConcurrentMap<String, Behavior> behaviors;
+		private final AtomicInteger registryQueries;
+		private final AtomicInteger concurrentRegistryQueries;
+		private final AtomicInteger maxConcurrentRegistryQueries;
+		private final AtomicInteger concurrentTsfQueries;
+		private final AtomicInteger maxConcurrentTsfQueries;
+		private final CountDownLatch cancelledQueries;
+
+		private StubUnicoreResourceProvider(final ScheduledExecutorService refreshExecutor,
+				final ExecutorService discoveryExecutor) {
+			super(new InMemoryMockMiddlewareProvider(), CACHE_DURATION, refreshExecutor, discoveryExecutor,
+					DISCOVERY_TIMEOUT);
+			this.behaviors = new ConcurrentHashMap<String, Behavior>();
+			this.registryQueries = new AtomicInteger();
+			this.concurrentRegistryQueries = new AtomicInteger();
+			this.maxConcurrentRegistryQueries = new AtomicInteger();
+			this.concurrentTsfQueries = new AtomicInteger();
+			this.maxConcurrentTsfQueries = new AtomicInteger();
+			this.cancelledQueries = new CountDownLatch(1);
+		}
+
+		private void setDelayed(final String... endpoints) {
+			setBehavior(Behavior.DELAYED, endpoints);
+		}
+
+		private void setFailing(final String... endpoints) {
+			setBehavior(Behavior.FAILING, endpoints);
+		}
+
+		private void setUnresponsive(final String... endpoints) {
+			setBehavior(Behavior.UNRESPONSIVE, endpoints);
+		}
+
+		private void setBehavior(final Behavior behavior, final String... endpoints) {
+			for (final String endpoint : endpoints) {
+				behaviors.put(endpoint, behavior);
+			}
+		}
+
+		@Override
+		List<EndpointReferenceType> listTargetSystemFactories(final Item item) throws Exception {
+			final String itemName = item.getName().trim();
+			registryQueries.incrementAndGet();
+			answer(itemName, concurrentRegistryQueries, maxConcurrentRegistryQueries);
+			final List<EndpointReferenceType> tsfEPRs = new ArrayList<EndpointReferenceType>();
+			for (int i = 0; i < TSFS_PER_ITEM; i++) {
+				final EndpointReferenceType epr = EndpointReferenceType.Factory.newInstance();
+				epr.addNewAddress().setStringValue(tsfUrl(itemName, i));
+				tsfEPRs.add(epr);
+			}
+			return tsfEPRs;
+		}
+
+		@Override
+		Resource queryTargetSystemFactory(final String resourceName, final String serverUrl,
+				final EndpointReferenceType epr, final ClientProperties clientProperties) throws Exception {
+			answer(serverUrl, concurrentTsfQueries, maxConcurrentTsfQueries);
+			final Resource.Builder resourceBuilder = new Resource.Builder();
+			resourceBuilder.withType(UNICORE_RESOURCE_TYPE).withName(resourceName).canModifyApplications(false);
+			resourceBuilder.withApplications(Collections.singletonList(new Application.Builder().withName(serverUrl)
+					.withVersion("1.0").withPath("not available").newInstance()));
+			return resourceBuilder.newInstance();
+		}
+
+		private void answer(final String endpoint, final AtomicInteger concurrentQueries,
+				final AtomicInteger maxConcurrentQueries) throws Exception {
+			final Behavior behavior = behaviors.containsKey(endpoint) ? behaviors.get(endpoint) : Behavior.OK;
+			final int queries = concurrentQueries.incrementAndGet();
+			try {
+				int maxQueries;
+				do {
+					maxQueries = maxConcurrentQueries.get();
+				} while (queries > maxQueries && !maxConcurrentQueries.compareAndSet(maxQueries, queries));
+				switch (behavior) {
+				case DELAYED:
+					Thread.sleep(DELAY_MILLIS);
+					break;
+				case FAILING:
+					throw new IOException("Connection to " + endpoint + " refused.");
+				case UNRESPONSIVE:
+					try {
+						Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+					} catch (final InterruptedException e) {
+						cancelledQueries.countDown();
+						throw e;
+					}
+					break;
+				default:
+					break;
+				}
+			} finally {
+				concurrentQueries.decrementAndGet();
+			}
+		}
+	}
+}
@@ -0,0 +1,286 @@
+package com.workflowconversion.portlet.core.search;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.workflowconversion.portlet.core.resource.Application;
+import com.workflowconversion.portlet.core.resource.FormField;
+import com.workflowconversion.portlet.core.resource.Queue;
+import com.workflowconversion.portlet.core.resource.Resource;
+import com.workflowconversion.portlet.core.resource.ResourceKey;
+import com.workflowconversion.portlet.core.resource.ResourceProvider;
+import com.workflowconversion.portlet.core.resource.ResourceProviderListener;
+
+/**
+ * Measures how long it takes to resolve the resource, application and queue of every job of a large workflow with
+ * {@link AssetFinder} and with a scan of the resource providers, the way jobs were resolved before: criteria were put
+ * in new maps for each job and each provider was asked for the resource until one had it. Both must resolve the same
+ * assets, otherwise the benchmark fails. Some jobs reference assets that don't exist, like jobs of workflows imported
+ * from other portals.
+ * 
+ * Run with {@code java ... AssetFinderBenchmark [jobs] [providers] [resources per provider] [rounds]}. Allocated bytes
+ * are only reported on JVMs that can measure them per thread.
+ * 
+ * @author delagarza
+ *
+ */
+public class AssetFinderBenchmark {
+
+	private final static int DEFAULT_JOBS = 10000;
+	private final static int DEFAULT_PROVIDERS = 3;
+	private final static int DEFAULT_RESOURCES_PER_PROVIDER = 50;
+	private final static int DEFAULT_ROUNDS = 10;
+	private final static int APPLICATIONS_PER_RESOURCE = 200;
+	private final static int QUEUES_PER_RESOURCE = 4;
+	// one in this many jobs references a resource that doesn't exist
+	private final static int UNKNOWN_RESOURCE_RATIO = 20;
+
+	/**
+	 * Entry point.
+	 * 
+	 * @param args
+	 *            optionally, the number of jobs of the workflow, the number of resource providers, the number of
+	 *            resources of each provider and the number of measured rounds.
+	 */
+	public static void main(final String[] args) {
+		final int jobs = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_JOBS;
+		final int providerCount = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PROVIDERS;
+		final int resourcesPerProvider = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_RESOURCES_PER_PROVIDER;
+		final int rounds = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_ROUNDS;
+
+		final List<ResourceProvider> providers = new ArrayList<ResourceProvider>();
+		for (int i = 0; i < providerCount; i++) {
+			providers.add(new BenchmarkResourceProvider(i, resourcesPerProvider));
+		}
+		// indexes are rebuilt in the calling thread, so they are complete once the providers are initialized
+		final GlobalAssetIndex assetIndex = new GlobalAssetIndex(providers, new Executor() {
+			@Override
+			public void execute(final Runnable command) {
+				command.run();
+			}
+		});
+		for (final ResourceProvider provider : providers) {
+			provider.init();
+		}
+		final AssetFinder assetFinder = new AssetFinder(assetIndex);
+		final List<Map<String, String>> jobProperties = generateJobProperties(jobs, providerCount,
+				resourcesPerProvider);
+
+		final Object[] indexedAssets = resolveWithAssetFinder(assetFinder, jobProperties);
+		final Object[] scannedAssets = resolveWithProviderScan(providers, jobProperties);
+		if (!Arrays.equals(indexedAssets, scannedAssets)) {
+			throw new IllegalStateException("Both approaches did not resolve the same assets.");
+		}
+		System.out.println(String.format("%d jobs, %d providers with %d resources each, %d applications per resource",
+				jobs, providerCount, resourcesPerProvider, APPLICATIONS_PER_RESOURCE));
+
+		// warm up
+		for (int i = 0; i < rounds; i++) {
+			resolveWithAssetFinder(assetFinder, jobProperties);
+			resolveWithProviderScan(providers, jobProperties);
+		}
+		long indexedNanos = Long.MAX_VALUE, scanNanos = Long.MAX_VALUE;
+		long indexedBytes = Long.MAX_VALUE, scanBytes = Long.MAX_VALUE;
+		for (int i = 0; i < rounds; i++) {
+			long allocatedBefore = getAllocatedBytes();
+			long start = System.nanoTime();
+			resolveWithAssetFinder(assetFinder, jobProperties);
+			indexedNanos = Math.min(indexedNanos, System.nanoTime() - start);
+			indexedBytes = Math.min(indexedBytes, getAllocatedBytes() - allocatedBefore);
+
+			allocatedBefore = getAllocatedBytes();
+			start = System.nanoTime();
+			resolveWithProviderScan(providers, jobProperties);
+			scanNanos = Math.min(scanNanos, System.nanoTime() - start);
+			scanBytes = Math.min(scanBytes, getAllocatedBytes() - allocatedBefore);
+		}
+		report("asset finder", indexedNanos, indexedBytes, jobs);
+		report("provider scan", scanNanos, scanBytes, jobs);
+	}
+
+	private static void report(final String approach, final long nanos, final long allocatedBytes, final int jobs) {
+		System.out.println(String.format("%-13s best of rounds: %,8.2f ms per workflow, %,6d ns per job, %s allocated",
+				approach, nanos / 1e6, nanos / jobs,
+				allocatedBytes < 0 ? "n/a" : String.format("%,d bytes", allocatedBytes)));
+	}
+
+	// returns the resource, application and queue of each job, in order
+	private static Object[] resolveWithAssetFinder(final AssetFinder assetFinder,
+			final List<Map<String, String>> jobProperties) {
+		final Object[] assets = new Object[jobProperties.size() * 3];
+		int index = 0;
+		for (final Map<String, String> properties : jobProperties) {
+			// same query DefaultWorkflowManager builds for each job
+			final AssetQuery query = new AssetQuery.Builder()
+					.withResourceName(StringUtils.trimToNull(properties.get("resource.name")))
+					.withResourceType(StringUtils.trimToNull(properties.get("resource.type")))
+					.withApplicationName(StringUtils.trimToNull(properties.get("app.name")))
+					.withApplicationVersion(StringUtils.trimToNull(properties.get("app.version")))
+					.withApplicationPath(StringUtils.trimToNull(properties.get("app.path")))
+					.withQueueName(StringUtils.trimToNull(properties.get("queue.name"))).newInstance();
+			final Resource resource = assetFinder.findResource(query);
+			assets[index++] = resource;
+			assets[index++] = assetFinder.findApplication(resource, query);
+			assets[index++] = assetFinder.findQueue(resource, query);
+		}
+		return assets;
+	}
+
+	private static Object[] resolveWithProviderScan(final List<ResourceProvider> providers,
+			final List<Map<String, String>> jobProperties) {
+		final Object[] assets = new Object[jobProperties.size() * 3];
+		int index = 0;
+		for (final Map<String, String> properties : jobProperties) {
+			final Map<FormField, String> resourceFields = new TreeMap<FormField, String>();
+			final Map<FormField, String> applicationFields = new TreeMap<FormField, String>();
+			final Map<FormField, String> queueFields = new TreeMap<FormField, String>();
+			resourceFields.put(Resource.Field.Name, properties.get("resource.name"));
+			resourceFields.put(Resource.Field.Type, properties.get("resource.type"));
+			applicationFields.put(Application.Field.Name, properties.get("app.name"));
+			applicationFields.put(Application.Field.Version, properties.get("app.version"));
+			applicationFields.put(Application.Field.Path, properties.get("app.path"));
+			queueFields.put(Queue.Field.Name, properties.get("queue.name"));
+
+			final String resourceName = StringUtils.trimToNull(resourceFields.get(Resource.Field.Name));
+			final String resourceType = StringUtils.trimToNull(resourceFields.get(Resource.Field.Type));
+			Resource resource = null;
+			for (final ResourceProvider provider : providers) {
+				resource = provider.getResource(resourceName, resourceType);
+				if (resource != null) {
+					break;
+				}
+			}
+			assets[index++] = resource;
+			assets[index++] = resource == null ? null
+					: resource.getApplication(StringUtils.trimToNull(applicationFields.get(Application.Field.Name)),
+							StringUtils.trimToNull(applicationFields.get(Application.Field.Version)),
+							StringUtils.trimToNull(applicationFields.get(Application.Field.Path)));
+			assets[index++] = resource == null ? null
+					: resource.getQueue(StringUtils.trimToNull(queueFields.get(Queue.Field.Name)));
+		}
+		return assets;
+	}
+
+	// the properties DefaultWorkflowManager reads from the description of each job
+	private static List<Map<String, String>> generateJobProperties(final int jobs, final int providerCount,
+			final int resourcesPerProvider) {
+		final Random random = new Random(42);
+		final List<Map<String, String>> jobProperties = new ArrayList<Map<String, String>>(jobs);
+		for (int job = 0; job < jobs; job++) {
+			final int provider = random.nextInt(providerCount);
+			final int resource = random.nextInt(resourcesPerProvider);
+			final int application = random.nextInt(APPLICATIONS_PER_RESOURCE);
+			final Map<String, String> properties = new TreeMap<String, String>();
+			properties.put("resource.name", job % UNKNOWN_RESOURCE_RATIO == 0 ? "decommissioned.cluster.org"
+					: resourceName(provider, resource));
+			properties.put("resource.type", resourceType(provider));
+			properties.put("app.name", "module-" + application);
+			properties.put("app.version", (application % 5) + ".0");
+			properties.put("app.path", "/opt/software/module-" + application + "/bin");
+			properties.put("queue.name", "queue-" + random.nextInt(QUEUES_PER_RESOURCE));
+			jobProperties.add(properties);
+		}
+		return jobProperties;
+	}
+
+	private static String resourceName(final int provider, final int resource) {
+		return "cluster-" + provider + '-' + resource + ".uni.edu";
+	}
+
+	private static String resourceType(final int provider) {
+		return provider % 2 == 0 ? "pbs" : "moab";
+	}
+
+	private static long getAllocatedBytes() {
+		final java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+		if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threadMXBean)
+					.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+	// read-only provider with generated resources, looked up by key like the real providers do
+	private static class BenchmarkResourceProvider implements ResourceProvider {
+		private static final long serialVersionUID = 4735402237781090417L;
+
+		private final int id;
+		private final Map<ResourceKey, Resource> resources;
+		private final Collection<ResourceProviderListener> listeners;
+
+		private BenchmarkResourceProvider(final int id, final int resourceCount) {
+			this.id = id;
+			this.resources = new TreeMap<ResourceKey, Resource>();
+			this.listeners = new CopyOnWriteArrayList<ResourceProviderListener>();
+			for (int i = 0; i < resourceCount; i++) {
+				final List<Application> applications = new ArrayList<Application>(APPLICATIONS_PER_RESOURCE);
+				for (int j = 0; j < APPLICATIONS_PER_RESOURCE; j++) {
+					applications.add(new Application.Builder().withName("module-" + j).withVersion((j % 5) + ".0")
+							.withPath("/opt/software/module-" + j + "/bin").withDescription("Application " + j)
+							.newInstance());
+				}
+				final List<Queue> queues = new ArrayList<Queue>(QUEUES_PER_RESOURCE);
+				for (int j = 0; j < QUEUES_PER_RESOURCE; j++) {
+					queues.add(new Queue.Builder().withName("queue-" + j).newInstance());
+				}
+				final Resource resource = new Resource.Builder().withName(resourceName(id, i))
+						.withType(resourceType(id)).canModifyApplications(false).withApplications(applications)
+						.withQueues(queues).newInstance();
+				resources.put(resource.getKey(), resource);
+			}
+		}
+
+		@Override
+		public boolean canAddApplications() {
+			return false;
+		}
+
+		@Override
+		public String getName() {
+			return "Benchmark provider " + id;
+		}
+
+		@Override
+		public void init() {
+			for (final ResourceProviderListener listener : listeners) {
+				listener.resourcesChanged(this);
+			}
+		}
+
+		@Override
+		public boolean hasInitErrors() {
+			return false;
+		}
+
+		@Override
+		public Collection<Resource> getResources() {
+			return Collections.unmodifiableCollection(resources.values());
+		}
+
+		@Override
+		public Resource getResource(final String name, final String type) {
+			return resources.get(new ResourceKey(name, type));
+		}
+
+		@Override
+		public void save(final Resource resource) {
+			throw new UnsupportedOperationException("Benchmark resources are read-only.");
+		}
+
+		@Override
+		public void addListener(final ResourceProviderListener listener) {
+			listeners.add(listener);
+		}
+	}
+}
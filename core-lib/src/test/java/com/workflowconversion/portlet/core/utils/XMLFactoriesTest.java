@@ -0,0 +1,99 @@
+package com.workflowconversion.portlet.core.utils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.SAXParser;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Tests the {@link javax.xml.parsers.SAXParser} handed out by {@link XMLFactories} with the kind of documents uploaded
+ * through the bulk upload dialog, with and without a DOCTYPE that references an external DTD.
+ * 
+ * There are no test dependencies, so these are plain test classes: public {@code test*} methods that throw on failure.
+ * 
+ * @author delagarza
+ *
+ */
+public class XMLFactoriesTest {
+
+	private final static String RESOURCES = "<resources>\n"
+			+ "  <resource name=\"cluster.example.org\" type=\"pbs\">\n"
+			+ "    <application name=\"blast\" version=\"2.2\" path=\"/usr/bin/blast\"/>\n"
+			+ "  </resource>\n"
+			+ "</resources>\n";
+
+	/**
+	 * Documents without a DOCTYPE are parsed.
+	 * 
+	 * @throws Exception
+	 *             if the document could not be parsed.
+	 */
+	public void testDocumentWithoutDoctypeIsParsed() throws Exception {
+		final List<String> elements = parse("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" + RESOURCES);
+		assertElements(elements);
+	}
+
+	/**
+	 * Documents that reference an external DTD are parsed without loading it, even if the DTD does not exist, instead of
+	 * being rejected because secure processing forbids loading it.
+	 * 
+	 * @throws Exception
+	 *             if the document could not be parsed.
+	 */
+	public void testExternalDtdIsNotLoaded() throws Exception {
+		final List<String> elements = parse("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+				+ "<!DOCTYPE resources SYSTEM \"resources-that-do-not-exist.dtd\">\n" + RESOURCES);
+		assertElements(elements);
+	}
+
+	/**
+	 * Each thread reuses its parser, which must not keep state from previous documents.
+	 * 
+	 * @throws Exception
+	 *             if the documents could not be parsed.
+	 */
+	public void testParserIsReused() throws Exception {
+		final SAXParser saxParser = XMLFactories.getSAXParser();
+		parse("<!DOCTYPE resources SYSTEM \"resources.dtd\">\n" + RESOURCES);
+		assertTrue(saxParser == XMLFactories.getSAXParser(), "the parser of the thread should be reused");
+		assertElements(parse(RESOURCES));
+	}
+
+	private static List<String> parse(final String document) throws Exception {
+		final List<String> elements = new ArrayList<String>();
+		XMLFactories.getSAXParser().parse(new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8)),
+				new DefaultHandler() {
+					@Override
+					public void startElement(final String uri, final String localName, final String qName,
+							final Attributes attributes) throws SAXException {
+						elements.add(qName);
+					}
+				});
+		return elements;
+	}
+
+	private static void assertElements(final List<String> elements) {
+		assertEquals(3, elements.size(), "number of parsed elements");
+		assertEquals("resources", elements.get(0), "first element");
+		assertEquals("resource", elements.get(1), "second element");
+		assertEquals("application", elements.get(2), "third element");
+	}
+
+	private static void assertTrue(final boolean condition, final String message) {
+		if (!condition) {
+			throw new AssertionError(message);
+		}
+	}
+
+	private static void assertEquals(final Object expected, final Object actual, final String message) {
+		if (expected == null ? actual != null : !expected.equals(actual)) {
+			throw new AssertionError(message + ": expected <" + expected + "> but was <" + actual + '>');
+		}
+	}
+}
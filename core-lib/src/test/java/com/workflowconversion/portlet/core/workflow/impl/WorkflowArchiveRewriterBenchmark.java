@@ -0,0 +1,143 @@
+package com.workflowconversion.portlet.core.workflow.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Measures how long it takes to replace {@code workflow.xml} in archives that bundle input files of increasing size,
+ * using {@link WorkflowArchiveRewriter} and using the zip file system provider, the way archives were saved before.
+ * Neither of them recompresses the bundled files, so both grow linearly with their size; the difference is the fixed
+ * cost of mounting the archive, which stays in the tens of milliseconds.
+ * 
+ * Run with {@code java ... WorkflowArchiveRewriterBenchmark [payload size in MB]...}; archives are created in the
+ * temporary directory and deleted afterwards.
+ * 
+ * @author delagarza
+ *
+ */
+public class WorkflowArchiveRewriterBenchmark {
+
+	private final static int[] DEFAULT_PAYLOAD_MEGABYTES = { 16, 64, 256 };
+	private final static int PAYLOAD_ENTRY_SIZE = 8 * 1024 * 1024;
+	private final static int JOBS = 1000;
+	private final static int ROUNDS = 3;
+
+	/**
+	 * Entry point.
+	 * 
+	 * @param args
+	 *            optionally, the sizes of the bundled files, in megabytes.
+	 * @throws Exception
+	 *             if the archives could not be created or rewritten.
+	 */
+	public static void main(final String[] args) throws Exception {
+		final int[] payloadMegabytes = new int[args.length == 0 ? DEFAULT_PAYLOAD_MEGABYTES.length : args.length];
+		for (int i = 0; i < payloadMegabytes.length; i++) {
+			payloadMegabytes[i] = args.length == 0 ? DEFAULT_PAYLOAD_MEGABYTES[i] : Integer.parseInt(args[i]);
+		}
+		final byte[] workflowXml = generateWorkflowXml();
+		final Path directory = Files.createTempDirectory("archive-rewriter-benchmark");
+		try {
+			for (final int megabytes : payloadMegabytes) {
+				final Path archivePath = directory.resolve("workflow-" + megabytes + ".zip");
+				createArchive(archivePath, workflowXml, megabytes);
+				final long rewriterNanos = measure(archivePath, true);
+				final long fileSystemNanos = measure(archivePath, false);
+				System.out.println(String.format("%,6d MB payload: rewriter %,9.1f ms, zip file system %,9.1f ms",
+						megabytes, rewriterNanos / 1e6, fileSystemNanos / 1e6));
+				Files.delete(archivePath);
+			}
+		} finally {
+			Files.deleteIfExists(directory);
+		}
+	}
+
+	// best of a few rounds, so the first round can warm up the page cache
+	private static long measure(final Path archivePath, final boolean useRewriter) throws Exception {
+		final WorkflowArchiveRewriter rewriter = new WorkflowArchiveRewriter();
+		long bestNanos = Long.MAX_VALUE;
+		for (int i = 0; i < ROUNDS; i++) {
+			final long start = System.nanoTime();
+			if (useRewriter) {
+				if (!rewriter.rewriteEntry(archivePath, "workflow.xml", new CopyingEntryRewriter())) {
+					throw new IllegalStateException("The archive format is not supported by the rewriter.");
+				}
+			} else {
+				rewriteWithZipFileSystem(archivePath);
+			}
+			bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+		}
+		return bestNanos;
+	}
+
+	private static void rewriteWithZipFileSystem(final Path archivePath) throws IOException {
+		try (final FileSystem fileSystem = FileSystems.newFileSystem(archivePath, (ClassLoader) null)) {
+			final Path workflowXmlPath = fileSystem.getPath("/workflow.xml");
+			final Path modifiedWorkflowXmlPath = fileSystem.getPath("/workflow.xml.modified");
+			try (final InputStream inputStream = Files.newInputStream(workflowXmlPath);
+					final OutputStream outputStream = Files.newOutputStream(modifiedWorkflowXmlPath)) {
+				IOUtils.copy(inputStream, outputStream);
+			}
+			Files.move(modifiedWorkflowXmlPath, workflowXmlPath, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static void createArchive(final Path archivePath, final byte[] workflowXml, final int payloadMegabytes)
+			throws IOException {
+		// random data doesn't compress, so the bundled files are stored, like most input files end up being
+		final byte[] payload = new byte[PAYLOAD_ENTRY_SIZE];
+		new Random(42).nextBytes(payload);
+		final CRC32 crc = new CRC32();
+		crc.update(payload);
+		try (final ZipOutputStream zipOutputStream = new ZipOutputStream(Files.newOutputStream(archivePath))) {
+			zipOutputStream.putNextEntry(new ZipEntry("workflow.xml"));
+			zipOutputStream.write(workflowXml);
+			zipOutputStream.closeEntry();
+			final long entries = (long) payloadMegabytes * 1024 * 1024 / PAYLOAD_ENTRY_SIZE;
+			for (int i = 0; i < entries; i++) {
+				final ZipEntry payloadEntry = new ZipEntry("inputs/input-" + i + ".bin");
+				payloadEntry.setMethod(ZipEntry.STORED);
+				payloadEntry.setSize(payload.length);
+				payloadEntry.setCompressedSize(payload.length);
+				payloadEntry.setCrc(crc.getValue());
+				zipOutputStream.putNextEntry(payloadEntry);
+				zipOutputStream.write(payload);
+				zipOutputStream.closeEntry();
+			}
+		}
+	}
+
+	private static byte[] generateWorkflowXml() {
+		final StringBuilder xml = new StringBuilder();
+		xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<workflow name=\"benchmark\">\n  <real>\n");
+		for (int job = 0; job < JOBS; job++) {
+			xml.append("    <job name=\"job").append(job).append("\">\n");
+			xml.append("      <execute key=\"jobmanager\" value=\"queue").append(job).append("\"/>\n");
+			xml.append("    </job>\n");
+		}
+		xml.append("  </real>\n</workflow>\n");
+		return xml.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	// the contents of workflow.xml don't matter, only the cost of replacing them
+	private static class CopyingEntryRewriter implements WorkflowArchiveRewriter.EntryRewriter {
+		@Override
+		public void rewriteEntry(final InputStream originalEntry, final OutputStream modifiedEntry)
+				throws IOException {
+			IOUtils.copy(originalEntry, modifiedEntry);
+		}
+	}
+}
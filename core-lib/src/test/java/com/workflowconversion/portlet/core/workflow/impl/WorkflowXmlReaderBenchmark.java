@@ -0,0 +1,195 @@
+package com.workflowconversion.portlet.core.workflow.impl;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Compares the time and the heap needed to read the jobs of a generated {@code workflow.xml} with
+ * {@link WorkflowXmlReader} and with a DOM and XPath, the way workflows were read before. Both readers must report the
+ * same jobs, otherwise the benchmark fails.
+ * 
+ * Run with {@code java ... WorkflowXmlReaderBenchmark [jobs] [rounds]}. Allocated bytes are only reported on JVMs that
+ * can measure them per thread.
+ * 
+ * @author delagarza
+ *
+ */
+public class WorkflowXmlReaderBenchmark {
+
+	private final static String PROPERTY_PREFIX = "workflowconversion.";
+	private final static int DEFAULT_JOBS = 5000;
+	private final static int DEFAULT_ROUNDS = 10;
+	private final static int PROPERTIES_PER_JOB = 10;
+
+	/**
+	 * Entry point.
+	 * 
+	 * @param args
+	 *            optionally, the number of jobs of the generated workflow and the number of measured rounds.
+	 * @throws Exception
+	 *             if the workflow could not be read.
+	 */
+	public static void main(final String[] args) throws Exception {
+		final int jobs = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_JOBS;
+		final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ROUNDS;
+		final byte[] workflowXml = generateWorkflowXml(jobs);
+
+		final List<ReadJob> domJobs = readWithDom(workflowXml);
+		final List<ReadJob> staxJobs = readWithStax(workflowXml);
+		if (!domJobs.equals(staxJobs)) {
+			throw new IllegalStateException("The readers did not report the same jobs.");
+		}
+		System.out.println(String.format("workflow.xml with %d jobs, %,d bytes", jobs, workflowXml.length));
+
+		// warm up
+		for (int i = 0; i < rounds; i++) {
+			readWithDom(workflowXml);
+			readWithStax(workflowXml);
+		}
+		long domNanos = Long.MAX_VALUE, staxNanos = Long.MAX_VALUE;
+		long domBytes = Long.MAX_VALUE, staxBytes = Long.MAX_VALUE;
+		for (int i = 0; i < rounds; i++) {
+			long allocatedBefore = getAllocatedBytes();
+			long start = System.nanoTime();
+			readWithDom(workflowXml);
+			domNanos = Math.min(domNanos, System.nanoTime() - start);
+			domBytes = Math.min(domBytes, getAllocatedBytes() - allocatedBefore);
+
+			allocatedBefore = getAllocatedBytes();
+			start = System.nanoTime();
+			readWithStax(workflowXml);
+			staxNanos = Math.min(staxNanos, System.nanoTime() - start);
+			staxBytes = Math.min(staxBytes, getAllocatedBytes() - allocatedBefore);
+		}
+		report("DOM and XPath", domNanos, domBytes);
+		report("StAX", staxNanos, staxBytes);
+	}
+
+	private static void report(final String reader, final long nanos, final long allocatedBytes) {
+		System.out.println(String.format("%-14s best of rounds: %,8.1f ms, %s allocated", reader, nanos / 1e6,
+				allocatedBytes < 0 ? "n/a" : String.format("%,d bytes", allocatedBytes)));
+	}
+
+	private static List<ReadJob> readWithStax(final byte[] workflowXml) throws Exception {
+		final List<ReadJob> jobs = new ArrayList<ReadJob>();
+		new WorkflowXmlReader(PROPERTY_PREFIX).read(new ByteArrayInputStream(workflowXml),
+				new WorkflowXmlReader.JobParsedListener() {
+					@Override
+					public void jobParsed(final String jobName, final Map<String, String> descriptionProperties,
+							final Map<String, String> executeProperties) {
+						jobs.add(new ReadJob(jobName, descriptionProperties, executeProperties));
+					}
+				});
+		return jobs;
+	}
+
+	// same approach as the reader that was replaced: build a DOM, then select the jobs with XPath
+	private static List<ReadJob> readWithDom(final byte[] workflowXml) throws Exception {
+		final Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+				.parse(new ByteArrayInputStream(workflowXml));
+		final XPath xPath = XPathFactory.newInstance().newXPath();
+		final NodeList jobNodes = (NodeList) xPath.evaluate("/workflow/real/job", document.getDocumentElement(),
+				XPathConstants.NODESET);
+		final List<ReadJob> jobs = new ArrayList<ReadJob>(jobNodes.getLength());
+		for (int i = 0; i < jobNodes.getLength(); i++) {
+			final Node jobNode = jobNodes.item(i);
+			jobs.add(new ReadJob(jobNode.getAttributes().getNamedItem("name").getNodeValue(),
+					extractProperties(jobNode, "description", PROPERTY_PREFIX),
+					extractProperties(jobNode, "execute", "")));
+		}
+		return jobs;
+	}
+
+	private static Map<String, String> extractProperties(final Node jobNode, final String childName,
+			final String prefix) {
+		final Map<String, String> properties = new TreeMap<String, String>();
+		final NodeList children = jobNode.getChildNodes();
+		for (int i = 0; i < children.getLength(); i++) {
+			final Node child = children.item(i);
+			if (child.getNodeType() == Node.ELEMENT_NODE && childName.equals(child.getNodeName())) {
+				final Node keyNode = child.getAttributes().getNamedItem("key");
+				final Node valueNode = child.getAttributes().getNamedItem("value");
+				if (keyNode != null && valueNode != null && keyNode.getNodeValue().startsWith(prefix)) {
+					properties.put(keyNode.getNodeValue(), valueNode.getNodeValue());
+				}
+			}
+		}
+		return properties;
+	}
+
+	private static byte[] generateWorkflowXml(final int jobs) {
+		final StringBuilder xml = new StringBuilder();
+		xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		xml.append("<workflow name=\"benchmark\" download=\"all\">\n");
+		xml.append("  <graf name=\"benchmark-graph\"/>\n");
+		xml.append("  <real>\n");
+		for (int job = 0; job < jobs; job++) {
+			xml.append("    <job name=\"job").append(job).append("\" x=\"10\" y=\"20\">\n");
+			for (int property = 0; property < PROPERTIES_PER_JOB; property++) {
+				// half of the description properties are not ours and must be skipped
+				final String key = (property % 2 == 0 ? PROPERTY_PREFIX : "other.") + "property" + property;
+				xml.append("      <description key=\"").append(key).append("\" value=\"value").append(job)
+						.append('.').append(property).append("\"/>\n");
+				xml.append("      <execute key=\"execute").append(property).append("\" value=\"value").append(job)
+						.append('.').append(property).append("\"/>\n");
+			}
+			xml.append("      <port name=\"input\" seq=\"0\" type=\"input\"/>\n");
+			xml.append("    </job>\n");
+		}
+		xml.append("  </real>\n");
+		xml.append("</workflow>\n");
+		return xml.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	// returns -1 if the JVM can't measure allocated bytes
+	private static long getAllocatedBytes() {
+		final java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+		if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threadMXBean)
+					.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+	private static class ReadJob {
+		private final String name;
+		private final Map<String, String> descriptionProperties;
+		private final Map<String, String> executeProperties;
+
+		private ReadJob(final String name, final Map<String, String> descriptionProperties,
+				final Map<String, String> executeProperties) {
+			this.name = name;
+			this.descriptionProperties = descriptionProperties;
+			this.executeProperties = executeProperties;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof ReadJob)) {
+				return false;
+			}
+			final ReadJob other = (ReadJob) obj;
+			return name.equals(other.name) && descriptionProperties.equals(other.descriptionProperties)
+					&& executeProperties.equals(other.executeProperties);
+		}
+
+		@Override
+		public int hashCode() {
+			return name.hashCode();
+		}
+	}
+}
@@ -9,6 +9,7 @@ import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.workflowconversion.portlet.core.exception.InvalidApplicationException;
 import com.workflowconversion.portlet.core.resource.Application;
 import com.workflowconversion.portlet.core.resource.Resource;
 import com.workflowconversion.portlet.core.resource.ResourceProvider;
@@ -171,6 +172,13 @@ public abstract class AbstractFileProcessor<T> {
 		}
 		final Application.Builder applicationBuilder = new Application.Builder();
 		applicationBuilder.withName(name).withVersion(version).withPath(path).withDescription(description);
-		return applicationBuilder.newInstance();
+		final Application application = applicationBuilder.newInstance();
+		try {
+			application.validateFieldLengths();
+		} catch (final InvalidApplicationException e) {
+			listener.parsingError(e.getMessage(), lineNumber);
+			return null;
+		}
+		return application;
 	}
 }
@@ -32,6 +32,7 @@ import com.vaadin.ui.Upload.SucceededEvent;
 import com.vaadin.ui.VerticalLayout;
 import com.vaadin.ui.Window;
 import com.workflowconversion.portlet.core.exception.ApplicationException;
+import com.workflowconversion.portlet.core.exception.ResourceModifiedException;
 import com.workflowconversion.portlet.core.resource.Resource;
 import com.workflowconversion.portlet.core.resource.ResourceProvider;
 import com.workflowconversion.portlet.ui.HorizontalSeparator;
@@ -231,10 +232,21 @@ public class BulkUploadApplicationsDialog extends Window {
 		@Override
 		public void parsingCompleted(final Collection<Resource> parsedResources) {
 			try {
+				final Collection<Resource> savedResources = new LinkedList<Resource>();
 				for (final Resource parsedResource : parsedResources) {
-					resourceProvider.save(parsedResource);
+					try {
+						resourceProvider.save(parsedResource);
+						savedResources.add(parsedResource);
+					} catch (final ResourceModifiedException e) {
+						errors.add("The applications of resource " + parsedResource.getName() + '/'
+								+ parsedResource.getType()
+								+ " were not saved because the resource was modified by someone else; please upload them again.");
+					} catch (final ApplicationException e) {
+						errors.add("The applications of resource " + parsedResource.getName() + '/'
+								+ parsedResource.getType() + " were not saved: " + e.getMessage());
+					}
 				}
-				final int numberOfParsedApplications = getApplicationCount(parsedResources);
+				final int numberOfParsedApplications = getApplicationCount(savedResources);
 				if (errors.isEmpty()) {
 					final String message = "Processed and added " + numberOfParsedApplications
 							+ " application(s) without errors.";
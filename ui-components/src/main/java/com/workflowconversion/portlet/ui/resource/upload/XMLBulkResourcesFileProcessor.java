@@ -6,7 +6,6 @@ import java.util.Map;
 import java.util.TreeMap;
 
 import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
@@ -22,6 +21,7 @@ import com.workflowconversion.portlet.core.resource.FormField;
 import com.workflowconversion.portlet.core.resource.Resource;
 import com.workflowconversion.portlet.core.resource.ResourceProvider;
 import com.workflowconversion.portlet.core.utils.KeyUtils;
+import com.workflowconversion.portlet.core.utils.XMLFactories;
 
 /**
  * Processes an uploaded XML file.
@@ -45,9 +45,7 @@ public class XMLBulkResourcesFileProcessor extends AbstractFileProcessor<Resourc
 		if (LOG.isInfoEnabled()) {
 			LOG.info("Parsing applications file from " + serverSideFile.getAbsolutePath());
 		}
-		final SAXParserFactory factory = SAXParserFactory.newInstance();
-		factory.setValidating(true);
-		final SAXParser saxParser = factory.newSAXParser();
+		final SAXParser saxParser = XMLFactories.getSAXParser();
 		final Map<String, Resource> parsedResources = new TreeMap<String, Resource>();
 		final SAXHandler saxHandler = new SAXHandler(parsedResources);
 		saxParser.parse(serverSideFile, saxHandler);
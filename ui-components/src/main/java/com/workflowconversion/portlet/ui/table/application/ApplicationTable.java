@@ -123,6 +123,8 @@ public class ApplicationTable extends AbstractTableWithControls<Application> {
 
 	@Override
 	protected void save(final Application application) {
+		// edited cells are not limited in length; the row is marked with the error
+		application.validateFieldLengths();
 		if (owningResource.getApplication(application.getName(), application.getVersion(),
 				application.getPath()) == null) {
 			// new application
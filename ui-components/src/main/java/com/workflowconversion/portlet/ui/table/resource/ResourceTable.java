@@ -5,9 +5,11 @@ import org.apache.commons.lang3.Validate;
 import com.vaadin.data.Item;
 import com.vaadin.ui.Label;
 import com.workflowconversion.portlet.core.exception.ApplicationException;
+import com.workflowconversion.portlet.core.exception.ResourceModifiedException;
 import com.workflowconversion.portlet.core.resource.Resource;
 import com.workflowconversion.portlet.core.resource.ResourceProvider;
 import com.workflowconversion.portlet.core.utils.KeyUtils;
+import com.workflowconversion.portlet.ui.NotificationUtils;
 import com.workflowconversion.portlet.ui.table.AbstractGenericElementDetailsDialog;
 import com.workflowconversion.portlet.ui.table.AbstractTableWithControls;
 import com.workflowconversion.portlet.ui.table.AbstractTableWithControlsFactory;
@@ -98,7 +100,18 @@ public class ResourceTable extends AbstractTableWithControls<Resource> {
 	public void elementDetailsSaved(final Object itemId, final Resource resource) {
 		if (resourceProvider.canAddApplications() && resource.canModifyApplications()) {
 			super.elementDetailsSaved(itemId, resource);
-			resourceProvider.save(resource);
+			try {
+				resourceProvider.save(resource);
+			} catch (final ResourceModifiedException e) {
+				// display what is currently stored, so the user can apply the changes again
+				final Resource currentResource = resourceProvider.getResource(resource.getName(), resource.getType());
+				if (currentResource != null) {
+					super.elementDetailsSaved(itemId, currentResource);
+				}
+				NotificationUtils.displayError("Your changes could not be saved.", e);
+			} catch (final ApplicationException e) {
+				NotificationUtils.displayError("Your changes could not be saved.", e);
+			}
 		} else {
 			throw new ApplicationException(
 					"The resource and/or the provider don't support modifying/adding applications. This seems to be a coding problem and should be reported.");
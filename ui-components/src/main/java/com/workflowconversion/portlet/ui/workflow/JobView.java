@@ -1,6 +1,6 @@
 package com.workflowconversion.portlet.ui.workflow;
 
-import java.util.Collection;
+import java.util.ArrayList;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -8,17 +8,26 @@ import org.slf4j.LoggerFactory;
 import com.vaadin.data.Item;
 import com.vaadin.data.Property.ValueChangeEvent;
 import com.vaadin.data.Property.ValueChangeListener;
+import com.vaadin.event.FieldEvents.TextChangeEvent;
+import com.vaadin.event.FieldEvents.TextChangeListener;
+import com.vaadin.ui.AbstractTextField.TextChangeEventMode;
 import com.vaadin.ui.ComboBox;
 import com.vaadin.ui.HorizontalLayout;
+import com.vaadin.ui.TextField;
 import com.workflowconversion.portlet.core.resource.Application;
 import com.workflowconversion.portlet.core.resource.Queue;
 import com.workflowconversion.portlet.core.resource.Resource;
-import com.workflowconversion.portlet.core.resource.ResourceProvider;
+import com.workflowconversion.portlet.core.search.ApplicationSearchQuery;
+import com.workflowconversion.portlet.core.search.ApplicationSearchResult;
+import com.workflowconversion.portlet.core.search.GlobalAssetIndex;
 import com.workflowconversion.portlet.core.workflow.Job;
 
 /**
  * Displays a job.
  * 
+ * Only the first applications matching the text typed in the search field are listed, so the list stays short no
+ * matter how many applications are available.
+ * 
  * @author delagarza
  *
  */
@@ -32,17 +41,20 @@ public class JobView extends HorizontalLayout {
 	private final static String PROPERTY_RESOURCE = "WorkflowView_property_resource";
 	private final static String PROPERTY_QUEUE_CAPTION = "WorkflowView_property_queue_name";
 	private final static String PROPERTY_QUEUE = "WorkflowView_property_queue";
+	private final static int MAX_LISTED_APPLICATIONS = 100;
 
+	private final TextField applicationSearchField;
 	private final ComboBox applicationComboBox;
 	private final ComboBox queueComboBox;
-	private final Collection<ResourceProvider> resourceProviders;
+	private final GlobalAssetIndex assetIndex;
 	private final String jobName;
 
-	JobView(final Job job, final Collection<ResourceProvider> resourceProviders) {
+	JobView(final Job job, final GlobalAssetIndex assetIndex) {
+		this.applicationSearchField = getSearchField("Search", "Filter applications by name");
 		this.applicationComboBox = getComboBox("Application", "Select an application");
 		this.queueComboBox = getComboBox("Queue", "Select a queue");
 		this.jobName = job.getName();
-		this.resourceProviders = resourceProviders;
+		this.assetIndex = assetIndex;
 		initUI(job);
 	}
 
@@ -60,25 +72,26 @@ public class JobView extends HorizontalLayout {
 		queueComboBox.addContainerProperty(PROPERTY_QUEUE, Queue.class, null);
 		queueComboBox.setItemCaptionPropertyId(PROPERTY_QUEUE_CAPTION);
 
-		for (final ResourceProvider resourceProvider : resourceProviders) {
-			for (final Resource resource : resourceProvider.getResources()) {
-				for (final Application application : resource.getApplications()) {
-					final Object itemKey = applicationComboBox.addItem();
-					final Item item = applicationComboBox.getItem(itemKey);
-					item.getItemProperty(PROPERTY_APPLICATION).setValue(application);
-					item.getItemProperty(PROPERTY_RESOURCE).setValue(resource);
-					item.getItemProperty(PROPERTY_APPLICATION_CAPTION)
-							.setValue(generateApplicationCaption(resource, application));
-				}
+		applicationSearchField.setTextChangeEventMode(TextChangeEventMode.LAZY);
+		applicationSearchField.addTextChangeListener(new TextChangeListener() {
+			private static final long serialVersionUID = 2301879464417326581L;
+
+			@Override
+			public void textChange(final TextChangeEvent event) {
+				fillApplicationComboBox(event.getText());
 			}
-		}
+		});
 
 		applicationComboBox.addValueChangeListener(new ValueChangeListener() {
 			private static final long serialVersionUID = -6747726727427744762L;
 
 			@Override
 			public void valueChange(final ValueChangeEvent event) {
-				final Item selectedApplicationItem = applicationComboBox.getItem(event.getProperty().getValue());
+				final Object selectedApplicationItemKey = event.getProperty().getValue();
+				if (selectedApplicationItemKey == null) {
+					return;
+				}
+				final Item selectedApplicationItem = applicationComboBox.getItem(selectedApplicationItemKey);
 				final Resource resource = (Resource) selectedApplicationItem.getItemProperty(PROPERTY_RESOURCE)
 						.getValue();
 
@@ -105,22 +118,11 @@ public class JobView extends HorizontalLayout {
 		final Resource jobResource = job.getResource();
 		final Application jobApplication = job.getApplication();
 		if (jobResource != null && jobApplication != null) {
-			for (final Object applicationItemKey : applicationComboBox.getItemIds()) {
-				final Item applicationItem = applicationComboBox.getItem(applicationItemKey);
-				final Resource resource = (Resource) applicationItem.getItemProperty(PROPERTY_RESOURCE).getValue();
-				final Application application = (Application) applicationItem.getItemProperty(PROPERTY_APPLICATION)
-						.getValue();
-				if (LOG.isDebugEnabled()) {
-					LOG.debug("Checking resource=" + resource == null ? "null"
-							: resource.getName() + ", application=" + application);
-				}
-				if (application == jobApplication && jobResource == resource) {
-					LOG.debug("Found resource, application for job.");
-					applicationComboBox.setValue(applicationItemKey);
-					break;
-				}
-			}
+			// the application of the job is always listed, regardless of the search
+			applicationComboBox.setValue(addApplicationItem(jobResource, jobApplication));
 		}
+		fillApplicationComboBox(null);
+
 		final Queue jobQueue = job.getQueue();
 		if (jobQueue != null) {
 			for (final Object queueItemKey : queueComboBox.getItemIds()) {
@@ -139,10 +141,56 @@ public class JobView extends HorizontalLayout {
 
 		setMargin(false);
 		setSpacing(true);
+		addComponent(applicationSearchField);
 		addComponent(applicationComboBox);
 		addComponent(queueComboBox);
 	}
 
+	// replaces the listed applications, except the selected one, with the first ones matching the given text
+	private void fillApplicationComboBox(final String nameSubstring) {
+		final Object selectedItemKey = applicationComboBox.getValue();
+		for (final Object itemKey : new ArrayList<Object>(applicationComboBox.getItemIds())) {
+			if (!itemKey.equals(selectedItemKey)) {
+				applicationComboBox.removeItem(itemKey);
+			}
+		}
+		final Resource selectedResource;
+		final Application selectedApplication;
+		if (selectedItemKey != null) {
+			final Item selectedItem = applicationComboBox.getItem(selectedItemKey);
+			selectedResource = (Resource) selectedItem.getItemProperty(PROPERTY_RESOURCE).getValue();
+			selectedApplication = (Application) selectedItem.getItemProperty(PROPERTY_APPLICATION).getValue();
+		} else {
+			selectedResource = null;
+			selectedApplication = null;
+		}
+
+		final ApplicationSearchQuery.Builder queryBuilder = new ApplicationSearchQuery.Builder();
+		queryBuilder.withNameSubstring(nameSubstring).withLimit(MAX_LISTED_APPLICATIONS);
+		final ApplicationSearchResult result = assetIndex.getSearchIndex().search(queryBuilder.newInstance());
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Listing " + result.getHits().size() + " of " + result.getTotalHits()
+					+ " application(s) matching '" + nameSubstring + "' for job " + jobName);
+		}
+		for (final ApplicationSearchResult.Hit hit : result.getHits()) {
+			if (selectedApplication == null || !hit.getResource().getKey().equals(selectedResource.getKey())
+					|| !hit.getApplication().getKey().equals(selectedApplication.getKey())) {
+				addApplicationItem(hit.getResource(), hit.getApplication());
+			}
+		}
+		applicationComboBox.markAsDirty();
+	}
+
+	@SuppressWarnings("unchecked")
+	private Object addApplicationItem(final Resource resource, final Application application) {
+		final Object itemKey = applicationComboBox.addItem();
+		final Item item = applicationComboBox.getItem(itemKey);
+		item.getItemProperty(PROPERTY_APPLICATION).setValue(application);
+		item.getItemProperty(PROPERTY_RESOURCE).setValue(resource);
+		item.getItemProperty(PROPERTY_APPLICATION_CAPTION).setValue(generateApplicationCaption(resource, application));
+		return itemKey;
+	}
+
 	private Object generateApplicationCaption(final Resource resource, final Application application) {
 		final StringBuilder builder = new StringBuilder(application.getName());
 		builder.append(" (").append(application.getVersion()).append(") on ").append(resource.getName());
@@ -173,6 +221,16 @@ public class JobView extends HorizontalLayout {
 		return job;
 	}
 
+	private TextField getSearchField(final String caption, final String description) {
+		final TextField textField = new TextField();
+		textField.setCaptionAsHtml(true);
+		textField.setCaption("<h3>" + caption + "</h3>");
+		textField.setImmediate(true);
+		textField.setDescription(description);
+		textField.setInputPrompt(description);
+		return textField;
+	}
+
 	private ComboBox getComboBox(final String caption, final String description) {
 		final ComboBox comboBox = new ComboBox();
 		comboBox.setCaptionAsHtml(true);
@@ -1,12 +1,10 @@
 package com.workflowconversion.portlet.ui.workflow;
 
-import java.util.Collection;
-
 import org.apache.commons.lang3.Validate;
 
 import com.vaadin.ui.Panel;
 import com.vaadin.ui.VerticalLayout;
-import com.workflowconversion.portlet.core.resource.ResourceProvider;
+import com.workflowconversion.portlet.core.search.GlobalAssetIndex;
 import com.workflowconversion.portlet.core.workflow.Job;
 import com.workflowconversion.portlet.core.workflow.Workflow;
 
@@ -25,21 +23,21 @@ public class WorkflowView extends VerticalLayout {
 	/**
 	 * @param workflow
 	 *            the workflow to display.
-	 * @param applicationMap
-	 *            the map of all available applications.
+	 * @param assetIndex
+	 *            the index of all available applications.
 	 */
-	public WorkflowView(final Workflow workflow, final Collection<ResourceProvider> resourceProviders) {
+	public WorkflowView(final Workflow workflow, final GlobalAssetIndex assetIndex) {
 		Validate.notNull(workflow,
 				"workflow cannot be null. This seems to be a coding problem and should be reported.");
-		Validate.notNull(resourceProviders,
-				"resourceProviders cannot be null. This seems to be a coding problem and should be reported.");
+		Validate.notNull(assetIndex,
+				"assetIndex cannot be null. This seems to be a coding problem and should be reported.");
 		this.workflow = workflow;
-		initUI(workflow, resourceProviders);
+		initUI(workflow, assetIndex);
 	}
 
-	private void initUI(final Workflow workflow, final Collection<ResourceProvider> resourceProviders) {
+	private void initUI(final Workflow workflow, final GlobalAssetIndex assetIndex) {
 		for (final Job job : workflow.getJobs()) {
-			final Panel jobPanel = new Panel(job.getName(), new JobView(job, resourceProviders));
+			final Panel jobPanel = new Panel(job.getName(), new JobView(job, assetIndex));
 			addComponent(jobPanel);
 		}
 	}
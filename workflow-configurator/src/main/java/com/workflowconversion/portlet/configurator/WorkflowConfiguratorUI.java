@@ -31,7 +31,7 @@ import com.vaadin.ui.VerticalLayout;
 import com.vaadin.ui.Window;
 import com.workflowconversion.portlet.core.Settings;
 import com.workflowconversion.portlet.core.exception.ApplicationException;
-import com.workflowconversion.portlet.core.resource.ResourceProvider;
+import com.workflowconversion.portlet.core.search.GlobalAssetIndex;
 import com.workflowconversion.portlet.core.workflow.Job;
 import com.workflowconversion.portlet.core.workflow.Workflow;
 import com.workflowconversion.portlet.core.workflow.WorkflowManager;
@@ -72,7 +72,6 @@ public class WorkflowConfiguratorUI extends WorkflowConversionUI {
 	protected Layout prepareContent() {
 		final WorkflowManagerFactory workflowManagerFactory = Settings.getInstance().getWorkflowManagerFactory();
 		workflowManagerFactory.withPortletUser(currentUser);
-		workflowManagerFactory.withResourceProviders(Settings.getInstance().getResourceProviders());
 		workflowManager = workflowManagerFactory.newInstance();
 		workflowManager.init();
 
@@ -81,7 +80,7 @@ public class WorkflowConfiguratorUI extends WorkflowConversionUI {
 
 		// fill the combobox with workflows
 		for (final Workflow workflow : workflowManager.getImportedWorkflows()) {
-			addWorkflowToComboBox(workflow, workflowComboBox, Settings.getInstance().getResourceProviders());
+			addWorkflowToComboBox(workflow, workflowComboBox, Settings.getInstance().getAssetIndex());
 		}
 
 		final VerticalLayout workflowDetailsLayout = new VerticalLayout();
@@ -125,7 +124,7 @@ public class WorkflowConfiguratorUI extends WorkflowConversionUI {
 			@Override
 			public void buttonClick(final ClickEvent event) {
 				try {
-					importButtonClicked(Settings.getInstance().getResourceProviders(), workflowComboBox);
+					importButtonClicked(Settings.getInstance().getAssetIndex(), workflowComboBox);
 				} finally {
 					importButton.setEnabled(true);
 				}
@@ -184,13 +183,12 @@ public class WorkflowConfiguratorUI extends WorkflowConversionUI {
 		return mainLayout;
 	}
 
-	private void importButtonClicked(final Collection<ResourceProvider> resourceProviders,
-			final ComboBox workflowComboBox) {
+	private void importButtonClicked(final GlobalAssetIndex assetIndex, final ComboBox workflowComboBox) {
 		final Window importWorkflowDialog = new WorkflowUploadDialog(new WorkflowUploadListener() {
 			@Override
 			public void workflowUploaded(final File location) {
 				final Workflow uploadedWorkflow = workflowManager.importWorkflow(location);
-				addWorkflowToComboBox(uploadedWorkflow, workflowComboBox, resourceProviders);
+				addWorkflowToComboBox(uploadedWorkflow, workflowComboBox, assetIndex);
 				NotificationUtils.displayTrayMessage(
 						"The workflow was uploaded successfully. Don't forget to commit your changes by clicking on the [Save All] button.");
 
@@ -228,11 +226,11 @@ public class WorkflowConfiguratorUI extends WorkflowConversionUI {
 
 	@SuppressWarnings("unchecked")
 	private void addWorkflowToComboBox(final Workflow workflow, final ComboBox workflowComboBox,
-			final Collection<ResourceProvider> resourceProviders) {
+			final GlobalAssetIndex assetIndex) {
 		final Object id = workflowComboBox.addItem();
 		final Item item = workflowComboBox.getItem(id);
 		item.getItemProperty(PROPERTY_NAME_CAPTION).setValue(workflow.getName());
-		workflowViewMap.put(id, new WorkflowView(workflow, resourceProviders));
+		workflowViewMap.put(id, new WorkflowView(workflow, assetIndex));
 	}
 
 	private void saveButtonClicked() {